@@ -0,0 +1,109 @@
+package OllamaClient.src;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Utilidades comunes de las cachés en disco
+ *
+ * Las cachés de texto extraído, imágenes, miniaturas, embeddings y los puntos de
+ * control del análisis por partes nombran sus archivos con el SHA-256 (en
+ * hexadecimal en minúsculas) del contenido o de una clave, y limitan el espacio
+ * que ocupan eliminando primero los archivos usados hace más tiempo.
+ */
+public final class CacheFiles {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    // Tamaño del bloque con el que se lee un archivo para calcular su hash
+    private static final int HASH_BUFFER_BYTES = 64 * 1024;
+
+    private CacheFiles() {
+    }
+
+    /**
+     * Crea un MessageDigest de SHA-256 para calcular un hash por partes
+     */
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Toda JVM debe incluir SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * SHA-256 de un texto (en UTF-8), en hexadecimal
+     */
+    public static String sha256Hex(String text) {
+        return toHex(sha256().digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * SHA-256 del contenido de un archivo, en hexadecimal
+     */
+    public static String sha256Hex(File file) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[HASH_BUFFER_BYTES];
+        try (InputStream input = Files.newInputStream(file.toPath())) {
+            int n;
+            while ((n = input.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Bytes en hexadecimal en minúsculas
+     */
+    public static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Elimina los archivos más antiguos de un directorio de caché hasta que ocupe
+     * como mucho maxBytes, conservando siempre el archivo keep
+     */
+    public static void trim(File cacheDir, long maxBytes, File keep) {
+        File[] files = cacheDir.listFiles((dir, name) -> !name.endsWith(".tmp"));
+        if (files == null) {
+            return;
+        }
+
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (total <= maxBytes) {
+                break;
+            }
+            if (file.equals(keep)) {
+                continue;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+            }
+        }
+    }
+}
@@ -53,6 +53,8 @@ public class ConfigManager {
             DEFAULT_MAIN_CONFIG.put("maxTokens", 1000000);
             System.out.println("Adding multimodalEnabled");
             DEFAULT_MAIN_CONFIG.put("multimodalEnabled", false);
+            System.out.println("Adding conversationEnabled");
+            DEFAULT_MAIN_CONFIG.put("conversationEnabled", false);
             System.out.println("Adding recentFiles");
             DEFAULT_MAIN_CONFIG.put("recentFiles", new JSONArray());
             System.out.println("Adding windowWidth");
@@ -63,6 +65,56 @@ public class ConfigManager {
             DEFAULT_MAIN_CONFIG.put("splitterPosition", 250);
             System.out.println("Adding autoSaveEnabled");
             DEFAULT_MAIN_CONFIG.put("autoSaveEnabled", true);
+            System.out.println("Adding HTTP transport settings");
+            DEFAULT_MAIN_CONFIG.put("httpPoolSize", 8);
+            DEFAULT_MAIN_CONFIG.put("httpConnectTimeout", 5000);
+            DEFAULT_MAIN_CONFIG.put("generateTimeout", 30000);
+            DEFAULT_MAIN_CONFIG.put("chatTimeout", 60000);
+            DEFAULT_MAIN_CONFIG.put("tagsTimeout", 5000);
+            DEFAULT_MAIN_CONFIG.put("embedTimeout", 60000);
+            System.out.println("Adding fanOutConcurrency");
+            DEFAULT_MAIN_CONFIG.put("fanOutConcurrency", 2);
+            System.out.println("Adding batchConcurrency");
+            DEFAULT_MAIN_CONFIG.put("batchConcurrency", 2);
+            System.out.println("Adding keep-alive settings");
+            DEFAULT_MAIN_CONFIG.put("preloadOnSelect", true);
+            DEFAULT_MAIN_CONFIG.put("keepAliveFrequent", "30m");
+            DEFAULT_MAIN_CONFIG.put("keepAliveDefault", "5m");
+            DEFAULT_MAIN_CONFIG.put("keepAliveFrequentModels", 2);
+            DEFAULT_MAIN_CONFIG.put("preloadTimeout", 120000);
+            System.out.println("Adding modelCatalogTtl");
+            DEFAULT_MAIN_CONFIG.put("modelCatalogTtl", 60000);
+            System.out.println("Adding modelProfiles");
+            DEFAULT_MAIN_CONFIG.put("modelProfiles", new JSONObject());
+            System.out.println("Adding image pipeline settings");
+            DEFAULT_MAIN_CONFIG.put("imageMaxDimension", 0);
+            DEFAULT_MAIN_CONFIG.put("imageCacheEntries", 64);
+            DEFAULT_MAIN_CONFIG.put("imageCacheMaxMb", 256);
+            System.out.println("Adding thumbnail cache settings");
+            DEFAULT_MAIN_CONFIG.put("thumbnailCacheEntries", 200);
+            DEFAULT_MAIN_CONFIG.put("thumbnailCacheMaxMb", 64);
+            System.out.println("Adding response viewer settings");
+            DEFAULT_MAIN_CONFIG.put("responseDocumentLimitKb", 512);
+            DEFAULT_MAIN_CONFIG.put("responseStoreMemoryMb", 8);
+            System.out.println("Adding file extraction settings");
+            DEFAULT_MAIN_CONFIG.put("extractionThreads", 0);
+            DEFAULT_MAIN_CONFIG.put("extractionMaxCharsPerFile", 200000);
+            DEFAULT_MAIN_CONFIG.put("extractionCacheMaxMb", 256);
+            DEFAULT_MAIN_CONFIG.put("textMaxKb", 4096);
+            DEFAULT_MAIN_CONFIG.put("textSampling", "head");
+            System.out.println("Adding map-reduce settings");
+            DEFAULT_MAIN_CONFIG.put("mapReduceEnabled", false);
+            DEFAULT_MAIN_CONFIG.put("mapReduceConcurrency", 2);
+            DEFAULT_MAIN_CONFIG.put("mapReduceChunkChars", 0);
+            DEFAULT_MAIN_CONFIG.put("mapReduceOverlapChars", 400);
+            DEFAULT_MAIN_CONFIG.put("mapReduceMaxCharsPerFile", 20000000);
+            System.out.println("Adding retrieval settings");
+            DEFAULT_MAIN_CONFIG.put("retrievalEnabled", false);
+            DEFAULT_MAIN_CONFIG.put("embeddingModel", "nomic-embed-text");
+            DEFAULT_MAIN_CONFIG.put("embeddingBatchSize", 32);
+            DEFAULT_MAIN_CONFIG.put("retrievalChunkChars", 1500);
+            DEFAULT_MAIN_CONFIG.put("retrievalOverlapChars", 200);
+            DEFAULT_MAIN_CONFIG.put("retrievalTopK", 8);
 
             System.out.println("Creating DEFAULT_SEARCH_CONFIG");
             DEFAULT_SEARCH_CONFIG = new JSONObject();
@@ -142,6 +194,13 @@ public class ConfigManager {
         return instance;
     }
 
+    /**
+     * Obtiene el directorio de configuración de la aplicación
+     */
+    public String getConfigDir() {
+        return configDir;
+    }
+
     /**
      * Carga todas las configuraciones
      */
@@ -170,11 +229,50 @@ public class ConfigManager {
             mainConfig.put("topP", 0.9f);
             mainConfig.put("maxTokens", 1000000);
             mainConfig.put("multimodalEnabled", false);
+            mainConfig.put("conversationEnabled", false);
             mainConfig.put("recentFiles", new JSONArray());
             mainConfig.put("windowWidth", 1100);
             mainConfig.put("windowHeight", 700);
             mainConfig.put("splitterPosition", 250);
             mainConfig.put("autoSaveEnabled", true);
+            mainConfig.put("httpPoolSize", 8);
+            mainConfig.put("httpConnectTimeout", 5000);
+            mainConfig.put("generateTimeout", 30000);
+            mainConfig.put("chatTimeout", 60000);
+            mainConfig.put("tagsTimeout", 5000);
+            mainConfig.put("embedTimeout", 60000);
+            mainConfig.put("fanOutConcurrency", 2);
+            mainConfig.put("batchConcurrency", 2);
+            mainConfig.put("preloadOnSelect", true);
+            mainConfig.put("keepAliveFrequent", "30m");
+            mainConfig.put("keepAliveDefault", "5m");
+            mainConfig.put("keepAliveFrequentModels", 2);
+            mainConfig.put("preloadTimeout", 120000);
+            mainConfig.put("modelCatalogTtl", 60000);
+            mainConfig.put("modelProfiles", new JSONObject());
+            mainConfig.put("imageMaxDimension", 0);
+            mainConfig.put("imageCacheEntries", 64);
+            mainConfig.put("imageCacheMaxMb", 256);
+            mainConfig.put("thumbnailCacheEntries", 200);
+            mainConfig.put("thumbnailCacheMaxMb", 64);
+            mainConfig.put("responseDocumentLimitKb", 512);
+            mainConfig.put("responseStoreMemoryMb", 8);
+            mainConfig.put("extractionThreads", 0);
+            mainConfig.put("extractionMaxCharsPerFile", 200000);
+            mainConfig.put("extractionCacheMaxMb", 256);
+            mainConfig.put("textMaxKb", 4096);
+            mainConfig.put("textSampling", "head");
+            mainConfig.put("mapReduceEnabled", false);
+            mainConfig.put("mapReduceConcurrency", 2);
+            mainConfig.put("mapReduceChunkChars", 0);
+            mainConfig.put("mapReduceOverlapChars", 400);
+            mainConfig.put("mapReduceMaxCharsPerFile", 20000000);
+            mainConfig.put("retrievalEnabled", false);
+            mainConfig.put("embeddingModel", "nomic-embed-text");
+            mainConfig.put("embeddingBatchSize", 32);
+            mainConfig.put("retrievalChunkChars", 1500);
+            mainConfig.put("retrievalOverlapChars", 200);
+            mainConfig.put("retrievalTopK", 8);
             logger.warn("Using fallback configuration because DEFAULT_MAIN_CONFIG is null");
         }
 
@@ -289,7 +387,7 @@ public class ConfigManager {
     /**
      * Guarda la configuración principal
      */
-    public void saveMainConfig() {
+    public synchronized void saveMainConfig() {
         saveConfigToFile(mainConfigPath, mainConfig);
     }
 
@@ -478,35 +576,67 @@ public class ConfigManager {
     /**
      * Getter para obtener un valor como String de la configuración principal
      */
-    public String getMainConfigString(String key, String defaultValue) {
+    public synchronized String getMainConfigString(String key, String defaultValue) {
         return mainConfig.optString(key, defaultValue);
     }
 
     /**
      * Getter para obtener un valor como int de la configuración principal
      */
-    public int getMainConfigInt(String key, int defaultValue) {
+    public synchronized int getMainConfigInt(String key, int defaultValue) {
         return mainConfig.optInt(key, defaultValue);
     }
 
     /**
      * Getter para obtener un valor como float de la configuración principal
      */
-    public float getMainConfigFloat(String key, float defaultValue) {
+    public synchronized float getMainConfigFloat(String key, float defaultValue) {
         return (float) mainConfig.optDouble(key, defaultValue);
     }
 
     /**
      * Getter para obtener un valor como boolean de la configuración principal
      */
-    public boolean getMainConfigBoolean(String key, boolean defaultValue) {
+    public synchronized boolean getMainConfigBoolean(String key, boolean defaultValue) {
         return mainConfig.optBoolean(key, defaultValue);
     }
 
     /**
-     * Setter para la configuración principal
+     * Getter para obtener una copia de un objeto JSON de la configuración principal
+     */
+    public synchronized JSONObject getMainConfigObject(String key) {
+        JSONObject value = mainConfig.optJSONObject(key);
+        return value != null ? new JSONObject(value.toString()) : new JSONObject();
+    }
+
+    /**
+     * Obtiene una copia del perfil de opciones de generación de un modelo
+     * (claves de "options" de la API de Ollama más keep_alive). Vacío si no tiene.
+     */
+    public synchronized JSONObject getModelProfile(String model) {
+        JSONObject profiles = mainConfig.optJSONObject("modelProfiles");
+        JSONObject profile = (profiles != null && model != null) ? profiles.optJSONObject(model) : null;
+        return profile != null ? new JSONObject(profile.toString()) : new JSONObject();
+    }
+
+    /**
+     * Guarda el perfil de opciones de generación de un modelo. Un perfil vacío lo elimina.
+     */
+    public void setModelProfile(String model, JSONObject profile) {
+        JSONObject profiles = getMainConfigObject("modelProfiles");
+        if (profile == null || profile.length() == 0) {
+            profiles.remove(model);
+        } else {
+            profiles.put(model, profile);
+        }
+        setMainConfig("modelProfiles", profiles);
+    }
+
+    /**
+     * Setter para la configuración principal. Está sincronizado con el guardado, ya que
+     * se llama también desde hilos en segundo plano (por ejemplo, ModelPreloader.recordUse).
      */
-    public void setMainConfig(String key, Object value) {
+    public synchronized void setMainConfig(String key, Object value) {
         mainConfig.put(key, value);
         if (mainConfig.optBoolean("autoSaveEnabled", true)) {
             saveMainConfig();
@@ -595,7 +725,7 @@ public class ConfigManager {
     /**
      * Registra un archivo reciente en la configuración
      */
-    public void addRecentFile(String filePath) {
+    public synchronized void addRecentFile(String filePath) {
         // Obtener lista actual
         JSONArray recentFiles;
         if (mainConfig.has("recentFiles")) {
@@ -639,7 +769,7 @@ public class ConfigManager {
     /**
      * Obtiene la lista de archivos recientes
      */
-    public List<String> getRecentFiles() {
+    public synchronized List<String> getRecentFiles() {
         List<String> result = new ArrayList<>();
 
         // Verificar si existe la configuración
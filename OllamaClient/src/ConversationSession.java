@@ -0,0 +1,123 @@
+package OllamaClient.src;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Sesión de conversación de varios turnos con un modelo
+ *
+ * Con /api/generate se guarda el "context" devuelto por el servidor y se envía
+ * en el siguiente turno junto con el texto nuevo, de forma que Ollama no vuelve
+ * a evaluar el prompt anterior (incluidos los archivos adjuntos). Con /api/chat
+ * se guarda la lista de mensajes y solo se añade el nuevo turno del usuario.
+ *
+ * La sesión solo es válida para el modelo, el tipo de petición y los adjuntos
+ * con los que empezó; si cambia cualquiera de ellos hay que empezar una nueva.
+ */
+public class ConversationSession {
+
+    // Endpoint con el que se mantiene la conversación
+    public enum Mode {
+        GENERATE,
+        CHAT
+    }
+
+    private final String model;
+    private final Mode mode;
+    private final String attachmentsKey;
+
+    private int[] context;
+    private final JSONArray messages = new JSONArray();
+    private int turnCount = 0;
+
+    public ConversationSession(String model, Mode mode, String attachmentsKey) {
+        this.model = model;
+        this.mode = mode;
+        this.attachmentsKey = attachmentsKey;
+    }
+
+    /**
+     * Calcula una clave que identifica el contenido adjunto al primer turno
+     */
+    public static String keyFor(String... attachments) {
+        StringBuilder key = new StringBuilder();
+        for (String attachment : attachments) {
+            String value = attachment != null ? attachment : "";
+            key.append(value.length()).append(':').append(value.hashCode()).append(';');
+        }
+        return key.toString();
+    }
+
+    /**
+     * Indica si una nueva consulta puede continuar esta sesión
+     */
+    public boolean isCompatible(String model, Mode mode, String attachmentsKey) {
+        return this.model.equals(model) && this.mode == mode && this.attachmentsKey.equals(attachmentsKey);
+    }
+
+    /**
+     * Indica si ya se ha completado algún turno, es decir, si el siguiente
+     * prompt es una pregunta de seguimiento que no necesita repetir los adjuntos
+     */
+    public boolean isFollowUp() {
+        return turnCount > 0;
+    }
+
+    public int getTurnCount() {
+        return turnCount;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Añade el contexto de la sesión a una petición de /api/generate
+     */
+    public void applyContext(JSONObject request) {
+        if (context != null && context.length > 0) {
+            request.put("context", new JSONArray(context));
+        }
+    }
+
+    /**
+     * Devuelve el historial de mensajes con el nuevo turno del usuario añadido,
+     * listo para una petición de /api/chat. El turno no se guarda en la sesión
+     * hasta que la respuesta termina (ver recordChatTurn).
+     */
+    public JSONArray messagesWith(JSONObject userMessage) {
+        JSONArray result = new JSONArray();
+        for (int i = 0; i < messages.length(); i++) {
+            result.put(messages.get(i));
+        }
+        result.put(userMessage);
+        return result;
+    }
+
+    /**
+     * Registra un turno completado de /api/generate con el contexto devuelto
+     */
+    public void recordGenerateTurn(int[] newContext) {
+        if (newContext != null && newContext.length > 0) {
+            context = newContext;
+            turnCount++;
+        }
+    }
+
+    /**
+     * Registra un turno completado de /api/chat
+     */
+    public void recordChatTurn(JSONObject userMessage, String assistantResponse) {
+        JSONObject assistantMessage = new JSONObject();
+        assistantMessage.put("role", "assistant");
+        assistantMessage.put("content", assistantResponse);
+
+        messages.put(userMessage);
+        messages.put(assistantMessage);
+        turnCount++;
+    }
+}
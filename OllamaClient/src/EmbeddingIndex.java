@@ -0,0 +1,874 @@
+package OllamaClient.src;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Índice local de embeddings para enviar al modelo solo los fragmentos relevantes
+ *
+ * El texto de cada archivo se divide en fragmentos que se convierten en vectores
+ * con el endpoint de embeddings de Ollama. Los vectores, normalizados, se guardan
+ * como filas de floats en un archivo proyectado en memoria (memory-mapped) y los
+ * datos de cada fragmento (archivo, posición y hash del texto) en un JSON aparte.
+ * La búsqueda recorre las filas de los archivos seleccionados calculando el
+ * producto escalar con la consulta (la similitud coseno, al estar normalizados)
+ * y se queda con los topK mejores. El índice se actualiza por archivo según su
+ * tamaño y fecha de modificación, y los fragmentos cuyo texto no ha cambiado
+ * conservan su vector, de modo que solo se calculan los embeddings de lo nuevo.
+ * Hay un índice por modelo de embeddings y tamaño de fragmento.
+ */
+public class EmbeddingIndex {
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingIndex.class);
+
+    // Subdirectorio de los índices dentro del directorio de configuración
+    private static final String INDEX_DIR_NAME = "cache" + File.separator + "embeddings";
+    private static final String VECTORS_FILE_NAME = "vectors.f32";
+    private static final String METADATA_FILE_NAME = "index.json";
+    private static final int FORMAT_VERSION = 1;
+
+    public static final String DEFAULT_MODEL = "nomic-embed-text";
+    public static final int DEFAULT_BATCH_SIZE = 32;
+    public static final int DEFAULT_CHUNK_CHARS = 1500;
+    public static final int DEFAULT_OVERLAP_CHARS = 200;
+    public static final int DEFAULT_TOP_K = 8;
+
+    private static final int MIN_CHUNK_CHARS = 200;
+
+    // Capacidad inicial del archivo de vectores, en filas; después se duplica
+    private static final int INITIAL_CAPACITY_ROWS = 1024;
+
+    // Filas que se copian de una vez desde la proyección durante la búsqueda
+    private static final int SCAN_BLOCK_ROWS = 256;
+
+    // Espera máxima por la siguiente página de un PDF antes de comprobar si la extracción ha terminado
+    private static final long PAGE_POLL_MS = 50;
+
+    // Bytes del SHA-256 que identifican el texto de un fragmento
+    private static final int CHUNK_HASH_BYTES = 16;
+
+    private static final Map<String, EmbeddingIndex> instances = new HashMap<>();
+
+    /**
+     * Notificación del progreso de la indexación
+     */
+    public interface ProgressListener {
+        /**
+         * Se llama desde el hilo que indexa cada vez que termina un archivo
+         */
+        void fileIndexed(int completed, int total, File file);
+    }
+
+    /**
+     * Fragmento encontrado por una búsqueda
+     */
+    public static final class Match {
+        private final File file;
+        private final int start;
+        private final int end;
+        private final float score;
+        private final String text;
+
+        private Match(File file, int start, int end, float score, String text) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+            this.score = score;
+            this.text = text;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * Posición del fragmento (en caracteres) en el texto extraído del archivo
+         */
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        /**
+         * Similitud coseno con la consulta
+         */
+        public float getScore() {
+            return score;
+        }
+
+        public String getText() {
+            return text;
+        }
+    }
+
+    /**
+     * Archivo indexado: versión (tamaño y fecha) y sus fragmentos
+     */
+    private static final class IndexedFile {
+        private final String path;
+        private final long size;
+        private final long modified;
+        private final List<IndexedChunk> chunks;
+
+        private IndexedFile(String path, long size, long modified, List<IndexedChunk> chunks) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.chunks = chunks;
+        }
+    }
+
+    /**
+     * Fragmento indexado: fila de su vector, posición en el texto y hash del texto
+     */
+    private static final class IndexedChunk {
+        private int row;
+        private final int start;
+        private final int end;
+        private final String hash;
+
+        private IndexedChunk(int row, int start, int end, String hash) {
+            this.row = row;
+            this.start = start;
+            this.end = end;
+            this.hash = hash;
+        }
+    }
+
+    private final String model;
+    private final int chunkChars;
+    private final int overlapChars;
+    private final int batchSize;
+    private final File indexDir;
+    private final OllamaHttpTransport transport;
+    private final FileContentExtractor fileContentExtractor;
+
+    private final Map<String, IndexedFile> files = new LinkedHashMap<>();
+    private final Deque<Integer> freeRows = new ArrayDeque<>();
+    private boolean loaded = false;
+    private int dimension = 0;
+    private int rowCount = 0;
+
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private FloatBuffer vectors;
+    private int capacityRows = 0;
+
+    // Texto extraído durante la última actualización, para no volver a extraerlo al buscar
+    private final Map<String, String> recentTexts = new HashMap<>();
+
+    private EmbeddingIndex(String model, int chunkChars, int overlapChars, int batchSize) {
+        ConfigManager configManager = ConfigManager.getInstance();
+        this.model = model;
+        this.chunkChars = chunkChars;
+        this.overlapChars = overlapChars;
+        this.batchSize = batchSize;
+        this.indexDir = new File(new File(configManager.getConfigDir(), INDEX_DIR_NAME),
+                CacheFiles.sha256Hex(model + '|' + chunkChars + '|' + overlapChars).substring(0, 16));
+        this.transport = OllamaHttpTransport.getInstance(configManager);
+        this.fileContentExtractor = FileContentExtractor.getInstance();
+    }
+
+    /**
+     * Obtiene el índice del modelo de embeddings y el tamaño de fragmento configurados
+     */
+    public static synchronized EmbeddingIndex getInstance() {
+        ConfigManager configManager = ConfigManager.getInstance();
+        String model = configManager.getMainConfigString("embeddingModel", DEFAULT_MODEL);
+        int chunkChars = Math.max(MIN_CHUNK_CHARS, configManager.getMainConfig("retrievalChunkChars", DEFAULT_CHUNK_CHARS));
+        int overlap = configManager.getMainConfig("retrievalOverlapChars", DEFAULT_OVERLAP_CHARS);
+        int overlapChars = Math.max(0, Math.min(overlap, chunkChars / 4));
+        int batchSize = Math.max(1, configManager.getMainConfig("embeddingBatchSize", DEFAULT_BATCH_SIZE));
+
+        String key = model + '|' + chunkChars + '|' + overlapChars;
+        EmbeddingIndex index = instances.get(key);
+        if (index == null) {
+            index = new EmbeddingIndex(model, chunkChars, overlapChars, batchSize);
+            instances.put(key, index);
+        }
+        return index;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    /**
+     * Pone al día el índice para los archivos indicados: solo se vuelven a procesar los
+     * que han cambiado de tamaño o fecha, y de ellos solo se calculan los embeddings de
+     * los fragmentos con texto nuevo. También se retiran los archivos que ya no existen.
+     * Devuelve el número de fragmentos enviados al modelo. Si cancelled devuelve true,
+     * se guarda lo indexado hasta entonces y se lanza CancellationException.
+     */
+    public synchronized int update(List<File> selection, ProgressListener listener,
+                                   BooleanSupplier cancelled) throws IOException {
+        load();
+        recentTexts.clear();
+
+        // Filas de versiones anteriores: se reutilizan cuando el índice guardado ya no las usa
+        List<Integer> released = new ArrayList<>();
+        boolean changed = removeMissingFiles(released);
+        int embedded = 0;
+        long start = System.currentTimeMillis();
+        try {
+            int total = selection.size();
+            for (int i = 0; i < total; i++) {
+                if (cancelled != null && cancelled.getAsBoolean()) {
+                    throw new CancellationException("Indexación cancelada");
+                }
+                File file = selection.get(i);
+                IndexedFile current = files.get(file.getAbsolutePath());
+                if (file.isFile() && (current == null || current.size != file.length()
+                        || current.modified != file.lastModified())) {
+                    embedded += indexFile(file, current, released, cancelled);
+                    changed = true;
+                }
+                if (listener != null) {
+                    listener.fileIndexed(i + 1, total, file);
+                }
+            }
+        } finally {
+            if (changed && loaded) {
+                save();
+                freeRows.addAll(released);
+            }
+        }
+
+        if (embedded > 0) {
+            logger.info("Índice de embeddings ({}): {} fragmentos nuevos en {} ms, {} filas en total",
+                    model, embedded, System.currentTimeMillis() - start, rowCount - freeRows.size());
+        }
+        return embedded;
+    }
+
+    /**
+     * Busca los topK fragmentos de los archivos indicados más parecidos a la consulta,
+     * ordenados de mayor a menor similitud. Los archivos deben estar ya indexados con update.
+     */
+    public synchronized List<Match> search(String query, List<File> selection, int topK) throws IOException {
+        load();
+        try {
+            if (query.isBlank() || topK <= 0 || dimension == 0) {
+                return new ArrayList<>();
+            }
+
+            // Fragmentos candidatos por fila
+            IndexedChunk[] chunkByRow = new IndexedChunk[rowCount];
+            IndexedFile[] fileByRow = new IndexedFile[rowCount];
+            int candidates = 0;
+            for (File file : selection) {
+                IndexedFile indexed = files.get(file.getAbsolutePath());
+                if (indexed == null) {
+                    continue;
+                }
+                for (IndexedChunk chunk : indexed.chunks) {
+                    chunkByRow[chunk.row] = chunk;
+                    fileByRow[chunk.row] = indexed;
+                    candidates++;
+                }
+            }
+            if (candidates == 0) {
+                return new ArrayList<>();
+            }
+
+            float[] queryVector = embed(Collections.singletonList(query)).get(0);
+            checkDimension(queryVector);
+
+            long start = System.nanoTime();
+            int k = Math.min(topK, candidates);
+            int[] bestRows = new int[k];
+            float[] bestScores = new float[k];
+            int found = scan(queryVector, chunkByRow, bestRows, bestScores);
+            logger.info("Búsqueda en el índice de embeddings: {} fragmentos comparados en {} ms",
+                    candidates, (System.nanoTime() - start) / 1_000_000);
+
+            // Texto de los fragmentos; si un archivo ha cambiado desde la indexación, se omiten
+            Map<String, String> texts = new HashMap<>(recentTexts);
+            List<Match> matches = new ArrayList<>(found);
+            for (int i = 0; i < found; i++) {
+                IndexedChunk chunk = chunkByRow[bestRows[i]];
+                IndexedFile indexed = fileByRow[bestRows[i]];
+                String text = texts.get(indexed.path);
+                if (text == null) {
+                    text = extractText(new File(indexed.path));
+                    texts.put(indexed.path, text);
+                }
+                if (chunk.end > text.length() || !chunk.hash.equals(chunkHash(text.substring(chunk.start, chunk.end)))) {
+                    logger.warn("El archivo {} ha cambiado desde que se indexó; se omite un fragmento", indexed.path);
+                    continue;
+                }
+                matches.add(new Match(new File(indexed.path), chunk.start, chunk.end, bestScores[i],
+                        text.substring(chunk.start, chunk.end)));
+            }
+            return matches;
+        } finally {
+            recentTexts.clear();
+        }
+    }
+
+    /**
+     * Bloque de fragmentos para el prompt, con el mismo formato que los archivos completos
+     */
+    public static String formatMatches(List<Match> matches) {
+        StringBuilder content = new StringBuilder();
+        content.append("# FRAGMENTOS RELEVANTES DE LOS ARCHIVOS SELECCIONADOS\n\n");
+        if (matches.isEmpty()) {
+            content.append("(No se encontraron fragmentos relacionados con la consulta.)\n\n");
+        }
+        for (int i = 0; i < matches.size(); i++) {
+            Match match = matches.get(i);
+            String extension = extensionOf(match.getFile().getName());
+            content.append("## FRAGMENTO ").append(i + 1).append(": ").append(match.getFile().getName())
+                    .append(" (").append(match.getFile().getPath()).append(", caracteres ")
+                    .append(match.getStart()).append("-").append(match.getEnd()).append(")\n\n");
+            content.append("```").append(extension).append("\n");
+            content.append(match.getText()).append("\n");
+            content.append("```\n\n");
+        }
+        return content.toString();
+    }
+
+    /**
+     * Recorre por bloques las filas candidatas y deja en bestRows y bestScores las
+     * mejores, de mayor a menor similitud. Devuelve cuántas se han encontrado.
+     */
+    private int scan(float[] query, IndexedChunk[] chunkByRow, int[] bestRows, float[] bestScores) {
+        int k = bestRows.length;
+        int found = 0;
+        float[] block = new float[SCAN_BLOCK_ROWS * dimension];
+        for (int first = 0; first < rowCount; first += SCAN_BLOCK_ROWS) {
+            int count = Math.min(SCAN_BLOCK_ROWS, rowCount - first);
+            int last = first;
+            for (int row = first; row < first + count; row++) {
+                if (chunkByRow[row] != null) {
+                    last = row + 1;
+                }
+            }
+            if (last == first) {
+                continue;
+            }
+
+            // Copia contigua desde la proyección: el producto escalar trabaja sobre un array
+            vectors.get(first * dimension, block, 0, (last - first) * dimension);
+            for (int row = first; row < last; row++) {
+                if (chunkByRow[row] == null) {
+                    continue;
+                }
+                float score = dot(query, block, (row - first) * dimension);
+                if (found == k && score <= bestScores[k - 1]) {
+                    continue;
+                }
+
+                // Inserción ordenada en la lista de los k mejores
+                int position = found < k ? found++ : k - 1;
+                while (position > 0 && bestScores[position - 1] < score) {
+                    bestScores[position] = bestScores[position - 1];
+                    bestRows[position] = bestRows[position - 1];
+                    position--;
+                }
+                bestScores[position] = score;
+                bestRows[position] = row;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Producto escalar de la consulta con la fila que empieza en offset. Las cuatro
+     * sumas parciales son independientes, de modo que las multiplicaciones de un
+     * paso no esperan al resultado del anterior.
+     */
+    static float dot(float[] query, float[] block, int offset) {
+        int length = query.length;
+        float sum0 = 0;
+        float sum1 = 0;
+        float sum2 = 0;
+        float sum3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            sum0 += query[i] * block[offset + i];
+            sum1 += query[i + 1] * block[offset + i + 1];
+            sum2 += query[i + 2] * block[offset + i + 2];
+            sum3 += query[i + 3] * block[offset + i + 3];
+        }
+        for (; i < length; i++) {
+            sum0 += query[i] * block[offset + i];
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    /**
+     * Indexa una versión nueva de un archivo, conservando los vectores de los
+     * fragmentos cuyo texto ya estaba en la versión anterior
+     */
+    private int indexFile(File file, IndexedFile previous, List<Integer> released,
+                          BooleanSupplier cancelled) throws IOException {
+        String path = file.getAbsolutePath();
+        long size = file.length();
+        long modified = file.lastModified();
+
+        FileChunks fileChunks = new FileChunks(previous, cancelled);
+        String text;
+        try {
+            if (extensionOf(file.getName()).equals("pdf")) {
+                text = extractPdf(file, fileChunks);
+            } else {
+                text = extractText(file);
+            }
+            fileChunks.finish(text);
+        } catch (IOException | RuntimeException e) {
+            // Ningún fragmento guardado usa todavía estas filas
+            if (loaded) {
+                freeRows.addAll(fileChunks.allocated);
+            }
+            throw e;
+        }
+
+        for (Deque<Integer> rows : fileChunks.reusable.values()) {
+            released.addAll(rows);
+        }
+        files.put(path, new IndexedFile(path, size, modified, fileChunks.chunks));
+        recentTexts.put(path, text);
+        logger.debug("Indexado {}: {} fragmentos, {} nuevos", path, fileChunks.chunks.size(), fileChunks.embedded);
+        return fileChunks.embedded;
+    }
+
+    /**
+     * Extrae un PDF en otro hilo y va troceando sus páginas según llegan, de modo que
+     * los embeddings de las primeras se piden mientras se extraen las siguientes. Si
+     * el texto ya está en la caché de extracción no llega ninguna página y los
+     * fragmentos se sacan después del texto completo.
+     */
+    private String extractPdf(File file, FileChunks fileChunks) throws IOException {
+        BlockingQueue<String> pages = new LinkedBlockingQueue<>();
+        FutureTask<String> extraction = new FutureTask<>(() ->
+                fileContentExtractor.readDocument(file, "pdf", (pageIndex, pageCount, text) -> pages.add(text)));
+        Thread thread = new Thread(extraction, "embedding-pdf-" + file.getName());
+        thread.setDaemon(true);
+        thread.start();
+
+        try {
+            // Las páginas se encolan antes de terminar la extracción: hecha y vacía, no quedan más
+            while (!extraction.isDone() || !pages.isEmpty()) {
+                String page = pages.poll(PAGE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (page != null) {
+                    fileChunks.append(page);
+                }
+            }
+            return extraction.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Indexación interrumpida");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Error al extraer " + file.getName() + ": " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Fragmentos de la versión nueva de un archivo, que se van cortando a medida que
+     * llega su texto. Los que ya estaban en la versión anterior conservan su fila; los
+     * demás se envían a embeddings en lotes de batchSize en cuanto se completa cada lote.
+     */
+    private final class FileChunks {
+        private final Map<String, Deque<Integer>> reusable = new HashMap<>();
+        private final BooleanSupplier cancelled;
+        private final StringBuilder text = new StringBuilder();
+        private final List<IndexedChunk> chunks = new ArrayList<>();
+        private final List<IndexedChunk> pending = new ArrayList<>();
+        private final List<String> pendingTexts = new ArrayList<>();
+        private final List<int[]> ranges = new ArrayList<>();
+        private final List<Integer> allocated = new ArrayList<>();
+        private int nextStart = 0;
+        private int embedded = 0;
+
+        private FileChunks(IndexedFile previous, BooleanSupplier cancelled) {
+            this.cancelled = cancelled;
+            if (previous != null) {
+                for (IndexedChunk chunk : previous.chunks) {
+                    reusable.computeIfAbsent(chunk.hash, hash -> new ArrayDeque<>()).add(chunk.row);
+                }
+            }
+        }
+
+        /**
+         * Añade texto y procesa los fragmentos que ya no pueden cambiar
+         */
+        private void append(String part) throws IOException {
+            text.append(part);
+            cut(false);
+        }
+
+        /**
+         * Completa el texto con lo que no haya llegado por partes y procesa el resto
+         */
+        private void finish(String fullText) throws IOException {
+            text.append(fullText, text.length(), fullText.length());
+            cut(true);
+            embedPending();
+        }
+
+        private void cut(boolean complete) throws IOException {
+            ranges.clear();
+            nextStart = MapReduceAnalyzer.splitRanges(text, nextStart, chunkChars, overlapChars, complete, ranges);
+            for (int[] range : ranges) {
+                String chunkText = text.substring(range[0], range[1]);
+                String hash = chunkHash(chunkText);
+                Deque<Integer> rows = reusable.get(hash);
+                IndexedChunk chunk = new IndexedChunk(-1, range[0], range[1], hash);
+                if (rows != null && !rows.isEmpty()) {
+                    chunk.row = rows.poll();
+                } else {
+                    pending.add(chunk);
+                    pendingTexts.add(chunkText);
+                    if (pending.size() >= batchSize) {
+                        embedPending();
+                    }
+                }
+                chunks.add(chunk);
+            }
+        }
+
+        private void embedPending() throws IOException {
+            if (pending.isEmpty()) {
+                return;
+            }
+            if (cancelled != null && cancelled.getAsBoolean()) {
+                throw new CancellationException("Indexación cancelada");
+            }
+            List<float[]> embeddings = embed(pendingTexts);
+            for (int i = 0; i < embeddings.size(); i++) {
+                float[] vector = embeddings.get(i);
+                checkDimension(vector);
+                int row = allocateRow();
+                allocated.add(row);
+                vectors.put(row * dimension, vector);
+                pending.get(i).row = row;
+            }
+            embedded += pending.size();
+            pending.clear();
+            pendingTexts.clear();
+        }
+    }
+
+    /**
+     * Retira del índice los archivos que ya no existen
+     */
+    private boolean removeMissingFiles(List<Integer> released) {
+        boolean removed = false;
+        Iterator<IndexedFile> iterator = files.values().iterator();
+        while (iterator.hasNext()) {
+            IndexedFile indexed = iterator.next();
+            if (!new File(indexed.path).isFile()) {
+                for (IndexedChunk chunk : indexed.chunks) {
+                    released.add(chunk.row);
+                }
+                iterator.remove();
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Texto de un archivo tal como se indexa: documentos completos (desde la caché de
+     * extracción) y archivos de texto con el límite textMaxKb
+     */
+    private String extractText(File file) throws IOException {
+        String extension = extensionOf(file.getName());
+        if (extension.equals("pdf") || extension.equals("docx")) {
+            return fileContentExtractor.readDocument(file, extension);
+        }
+        return fileContentExtractor.readText(file);
+    }
+
+    /**
+     * Pide a Ollama los embeddings de varios textos y los devuelve normalizados
+     */
+    private List<float[]> embed(List<String> texts) throws IOException {
+        JSONObject request = new JSONObject();
+        request.put("model", model);
+        request.put("input", new JSONArray(texts));
+        request.put("truncate", true);
+
+        String body;
+        try (InputStream response = transport.postJson(OllamaHttpTransport.Endpoint.EMBED, request.toString())) {
+            body = new String(response.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        List<float[]> result = new ArrayList<>(texts.size());
+        try {
+            JSONArray embeddings = new JSONObject(body).getJSONArray("embeddings");
+            if (embeddings.length() != texts.size()) {
+                throw new IOException("El modelo de embeddings " + model + " devolvió " + embeddings.length()
+                        + " vectores para " + texts.size() + " textos");
+            }
+            for (int i = 0; i < embeddings.length(); i++) {
+                JSONArray values = embeddings.getJSONArray(i);
+                float[] vector = new float[values.length()];
+                for (int j = 0; j < vector.length; j++) {
+                    vector[j] = (float) values.getDouble(j);
+                }
+                normalize(vector);
+                result.add(vector);
+            }
+        } catch (JSONException e) {
+            throw new IOException("Respuesta no válida del modelo de embeddings " + model + ": " + e.getMessage(), e);
+        }
+        return result;
+    }
+
+    private static void normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1.0 / Math.sqrt(norm));
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] *= scale;
+            }
+        }
+    }
+
+    /**
+     * Fija la dimensión con el primer vector. Si el modelo devuelve otra dimensión
+     * (se ha sustituido por otro con el mismo nombre), el índice se descarta.
+     */
+    private void checkDimension(float[] vector) throws IOException {
+        if (vector.length == 0) {
+            throw new IOException("El modelo de embeddings " + model + " devolvió un vector vacío");
+        }
+        if (dimension == 0) {
+            dimension = vector.length;
+            return;
+        }
+        if (vector.length != dimension) {
+            discard();
+            throw new IOException("El modelo de embeddings " + model + " devuelve ahora vectores de "
+                    + vector.length + " dimensiones en lugar de " + dimension
+                    + ". Se ha vaciado el índice: vuelve a enviar la consulta para reconstruirlo.");
+        }
+    }
+
+    /**
+     * Devuelve una fila libre o añade una al final, ampliando la proyección si hace falta
+     */
+    private int allocateRow() throws IOException {
+        Integer free = freeRows.poll();
+        if (free != null) {
+            return free;
+        }
+        if (rowCount >= capacityRows) {
+            long maxRows = Integer.MAX_VALUE / ((long) dimension * Float.BYTES);
+            if (rowCount >= maxRows) {
+                throw new IOException("El índice de embeddings ha alcanzado su tamaño máximo (" + rowCount + " fragmentos)");
+            }
+            long capacity = Math.max(INITIAL_CAPACITY_ROWS, capacityRows * 2L);
+            map((int) Math.min(capacity, maxRows));
+        }
+        return rowCount++;
+    }
+
+    /**
+     * Proyecta en memoria las primeras capacity filas del archivo de vectores (lo amplía si es necesario)
+     */
+    private void map(int capacity) throws IOException {
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * dimension * Float.BYTES);
+        vectors = mapped.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        capacityRows = capacity;
+    }
+
+    /**
+     * Abre el índice guardado, o uno vacío si no existe, no es de este modelo o está dañado
+     */
+    private void load() throws IOException {
+        if (loaded) {
+            return;
+        }
+        if (!indexDir.isDirectory() && !indexDir.mkdirs()) {
+            throw new IOException("No se pudo crear el directorio del índice: " + indexDir.getPath());
+        }
+
+        File metadataFile = new File(indexDir, METADATA_FILE_NAME);
+        File vectorsFile = new File(indexDir, VECTORS_FILE_NAME);
+        if (metadataFile.isFile()) {
+            try {
+                readMetadata(metadataFile);
+            } catch (IOException | JSONException e) {
+                logger.warn("Índice de embeddings dañado, se reconstruirá: {}", e.getMessage());
+                clearEntries();
+            }
+        }
+        if ((long) rowCount * dimension * Float.BYTES > vectorsFile.length()) {
+            logger.warn("Faltan vectores en {}, se reconstruirá el índice", vectorsFile.getPath());
+            clearEntries();
+        }
+
+        channel = FileChannel.open(vectorsFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (dimension > 0) {
+            long rowBytes = (long) dimension * Float.BYTES;
+            map((int) Math.min(Math.max(rowCount, channel.size() / rowBytes), Integer.MAX_VALUE / rowBytes));
+        }
+
+        // Las filas que no usa ningún fragmento quedan libres
+        boolean[] used = new boolean[rowCount];
+        for (IndexedFile indexed : files.values()) {
+            for (IndexedChunk chunk : indexed.chunks) {
+                used[chunk.row] = true;
+            }
+        }
+        for (int row = 0; row < rowCount; row++) {
+            if (!used[row]) {
+                freeRows.add(row);
+            }
+        }
+        loaded = true;
+        logger.info("Índice de embeddings ({}) abierto: {} archivos, {} filas", model, files.size(), rowCount);
+    }
+
+    private void readMetadata(File metadataFile) throws IOException {
+        JSONObject json = new JSONObject(new String(Files.readAllBytes(metadataFile.toPath()), StandardCharsets.UTF_8));
+        if (json.getInt("version") != FORMAT_VERSION || !model.equals(json.getString("model"))) {
+            return;
+        }
+        dimension = json.getInt("dimension");
+        rowCount = json.getInt("rows");
+
+        JSONArray fileList = json.getJSONArray("files");
+        for (int i = 0; i < fileList.length(); i++) {
+            JSONObject entry = fileList.getJSONObject(i);
+            JSONArray chunkList = entry.getJSONArray("chunks");
+            List<IndexedChunk> chunks = new ArrayList<>(chunkList.length());
+            for (int j = 0; j < chunkList.length(); j++) {
+                JSONArray values = chunkList.getJSONArray(j);
+                int row = values.getInt(0);
+                if (row < 0 || row >= rowCount) {
+                    throw new IOException("Fila fuera de rango: " + row);
+                }
+                chunks.add(new IndexedChunk(row, values.getInt(1), values.getInt(2), values.getString(3)));
+            }
+            String path = entry.getString("path");
+            files.put(path, new IndexedFile(path, entry.getLong("size"), entry.getLong("modified"), chunks));
+        }
+    }
+
+    /**
+     * Vuelca los vectores a disco y después guarda los datos de los fragmentos, de modo
+     * que el JSON guardado nunca apunta a filas sin escribir
+     */
+    private void save() throws IOException {
+        if (mapped != null) {
+            mapped.force();
+        }
+
+        JSONArray fileList = new JSONArray();
+        for (IndexedFile indexed : files.values()) {
+            JSONArray chunkList = new JSONArray();
+            for (IndexedChunk chunk : indexed.chunks) {
+                JSONArray values = new JSONArray();
+                values.put(chunk.row);
+                values.put(chunk.start);
+                values.put(chunk.end);
+                values.put(chunk.hash);
+                chunkList.put(values);
+            }
+            JSONObject entry = new JSONObject();
+            entry.put("path", indexed.path);
+            entry.put("size", indexed.size);
+            entry.put("modified", indexed.modified);
+            entry.put("chunks", chunkList);
+            fileList.put(entry);
+        }
+
+        JSONObject json = new JSONObject();
+        json.put("version", FORMAT_VERSION);
+        json.put("model", model);
+        json.put("dimension", dimension);
+        json.put("rows", rowCount);
+        json.put("files", fileList);
+
+        // Escritura en un archivo temporal para no dejar el índice a medias
+        File metadataFile = new File(indexDir, METADATA_FILE_NAME);
+        File tempFile = File.createTempFile("index-", ".tmp", indexDir);
+        try {
+            Files.write(tempFile.toPath(), json.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(tempFile.toPath(), metadataFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    /**
+     * Vacía el índice; la siguiente operación empieza con uno nuevo. El archivo de
+     * vectores no se borra (puede seguir proyectado): sus filas se sobrescriben.
+     */
+    private void discard() throws IOException {
+        loaded = false;
+        clearEntries();
+        freeRows.clear();
+        mapped = null;
+        vectors = null;
+        capacityRows = 0;
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        Files.deleteIfExists(new File(indexDir, METADATA_FILE_NAME).toPath());
+    }
+
+    private void clearEntries() {
+        files.clear();
+        dimension = 0;
+        rowCount = 0;
+    }
+
+    private static String extensionOf(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(dot + 1).toLowerCase() : "";
+    }
+
+    private static String chunkHash(String text) {
+        return CacheFiles.sha256Hex(text).substring(0, CHUNK_HASH_BYTES * 2);
+    }
+}
@@ -0,0 +1,145 @@
+package OllamaClient.src;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caché en disco del texto extraído de documentos PDF y DOCX
+ *
+ * El texto se guarda en el directorio de configuración con el SHA-256 del
+ * contenido del documento como clave, de modo que volver a analizar el mismo
+ * documento (aunque se haya copiado o tocado) lee el texto ya extraído sin
+ * abrir PDFBox ni POI. El hash se recuerda por ruta, tamaño y fecha de
+ * modificación para no volver a leer el documento mientras no cambie. El
+ * tamaño de la caché se limita con extractionCacheMaxMb eliminando primero
+ * las entradas usadas hace más tiempo; con 0 la caché queda desactivada.
+ */
+public class ExtractionCache {
+    private static final Logger logger = LoggerFactory.getLogger(ExtractionCache.class);
+
+    // Subdirectorio de la caché de texto dentro del directorio de configuración
+    private static final String CACHE_DIR_NAME = "cache" + File.separator + "text";
+
+    public static final int DEFAULT_CACHE_MAX_MB = 256;
+
+    // Hashes recordados por ruta, tamaño y fecha de modificación
+    private static final int MAX_HASH_ENTRIES = 1024;
+
+    /**
+     * Extracción del texto de un documento (se llama solo si no está en la caché)
+     */
+    public interface Extractor {
+        String extract(File file) throws IOException;
+    }
+
+    private static ExtractionCache instance;
+
+    private final ConfigManager configManager;
+    private final File cacheDir;
+    private final Map<String, String> hashes;
+
+    /**
+     * Constructor privado para Singleton
+     */
+    private ExtractionCache() {
+        this.configManager = ConfigManager.getInstance();
+        this.cacheDir = new File(configManager.getConfigDir(), CACHE_DIR_NAME);
+        this.hashes = Collections.synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > MAX_HASH_ENTRIES;
+            }
+        });
+    }
+
+    /**
+     * Obtiene la instancia única de la caché de extracción
+     */
+    public static synchronized ExtractionCache getInstance() {
+        if (instance == null) {
+            instance = new ExtractionCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Devuelve el texto del documento desde la caché o, si no está, lo extrae con
+     * extractor y lo guarda. format distingue extracciones distintas del mismo contenido.
+     */
+    public String getOrExtract(File source, String format, Extractor extractor) throws IOException {
+        long maxBytes = configManager.getMainConfig("extractionCacheMaxMb", DEFAULT_CACHE_MAX_MB) * 1024L * 1024L;
+        if (maxBytes <= 0) {
+            return extractor.extract(source);
+        }
+
+        File cacheFile = new File(cacheDir, hashOf(source) + "-" + format + ".txt");
+        String cached = readFromDisk(cacheFile);
+        if (cached != null) {
+            logger.debug("Texto de {} leído de la caché", source.getName());
+            return cached;
+        }
+
+        long start = System.nanoTime();
+        String text = extractor.extract(source);
+        logger.info("Texto extraído de {} en {} ms", source.getName(), (System.nanoTime() - start) / 1_000_000);
+        writeToDisk(text, cacheFile, maxBytes);
+        return text;
+    }
+
+    private String readFromDisk(File cacheFile) {
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+        try {
+            String text = new String(Files.readAllBytes(cacheFile.toPath()), StandardCharsets.UTF_8);
+            // Marcar como usado para que la limpieza elimine primero los que no se usan
+            cacheFile.setLastModified(System.currentTimeMillis());
+            return text;
+        } catch (IOException e) {
+            logger.warn("Texto en caché ilegible, se extrae de nuevo: {}", cacheFile.getName());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String text, File cacheFile, long maxBytes) {
+        try {
+            if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+                throw new IOException("No se pudo crear el directorio de caché: " + cacheDir.getPath());
+            }
+
+            // Escribir en un temporal y renombrar para no dejar un archivo a medias
+            File tempFile = new File(cacheFile.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+            Files.write(tempFile.toPath(), text.getBytes(StandardCharsets.UTF_8));
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+            CacheFiles.trim(cacheDir, maxBytes, cacheFile);
+        } catch (IOException e) {
+            // El texto ya está extraído; solo se pierde la copia en disco
+            logger.warn("No se pudo guardar el texto extraído en caché: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Calcula el SHA-256 del contenido, reutilizando el último cálculo si el archivo no ha cambiado
+     */
+    private String hashOf(File source) throws IOException {
+        String identity = source.getAbsolutePath() + '|' + source.length() + '|' + source.lastModified();
+        String cached = hashes.get(identity);
+        if (cached != null) {
+            return cached;
+        }
+
+        String sha256 = CacheFiles.sha256Hex(source);
+        hashes.put(identity, sha256);
+        return sha256;
+    }
+}
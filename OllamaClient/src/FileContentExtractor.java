@@ -0,0 +1,319 @@
+package OllamaClient.src;
+
+import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Extracción del texto de los archivos seleccionados para el prompt
+ *
+ * Cada archivo (texto, código, PDF o DOCX) se extrae en un pool de hilos de
+ * tamaño fijo, por defecto uno por núcleo, de modo que analizar cientos de
+ * archivos no se hace de uno en uno. El progreso se notifica a medida que
+ * termina cada archivo, pero el resultado se compone siempre en el orden de
+ * la selección. El texto de cada archivo se limita a extractionMaxCharsPerFile
+ * caracteres; de los archivos de texto solo se lee esa cantidad de bytes. El
+ * texto de los PDF y DOCX se guarda en la caché de extracción. Para el
+ * análisis por partes, que divide el texto después, el límite es
+ * mapReduceMaxCharsPerFile tanto para documentos como para archivos de texto.
+ */
+public class FileContentExtractor {
+    private static final Logger logger = LoggerFactory.getLogger(FileContentExtractor.class);
+
+    public static final int DEFAULT_MAX_CHARS_PER_FILE = 200000;
+    public static final int DEFAULT_TEXT_MAX_KB = 4096;
+    public static final int DEFAULT_MAP_REDUCE_MAX_CHARS_PER_FILE = 20000000;
+
+    // Intervalo con el que se comprueba la cancelación mientras se espera a los archivos
+    private static final long CANCEL_POLL_MS = 100;
+
+    private static FileContentExtractor instance;
+
+    private final ConfigManager configManager;
+    private final ExtractionCache extractionCache;
+    private final ExecutorService executor;
+    private final int threads;
+
+    /**
+     * Notificación del progreso de la extracción
+     */
+    public interface ProgressListener {
+        /**
+         * Se llama desde el hilo que espera la extracción cada vez que termina un archivo
+         */
+        void fileDone(int completed, int total, FileExplorerPanel.FileInfo file);
+    }
+
+    /**
+     * Constructor privado para Singleton
+     */
+    private FileContentExtractor() {
+        this.configManager = ConfigManager.getInstance();
+        this.extractionCache = ExtractionCache.getInstance();
+
+        int configuredThreads = configManager.getMainConfig("extractionThreads", 0);
+        this.threads = configuredThreads > 0 ? configuredThreads : Runtime.getRuntime().availableProcessors();
+
+        // Hilos daemon para no impedir la finalización de la aplicación
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "file-extractor-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Obtiene la instancia única del extractor
+     */
+    public static synchronized FileContentExtractor getInstance() {
+        if (instance == null) {
+            instance = new FileContentExtractor();
+        }
+        return instance;
+    }
+
+    /**
+     * Número de hilos del pool de extracción
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Límite de caracteres por archivo
+     */
+    public int getMaxCharsPerFile() {
+        return Math.max(1, configManager.getMainConfig("extractionMaxCharsPerFile", DEFAULT_MAX_CHARS_PER_FILE));
+    }
+
+    /**
+     * Límite de caracteres por archivo en el análisis por partes
+     */
+    public int getMapReduceMaxCharsPerFile() {
+        return Math.max(1, configManager.getMainConfig("mapReduceMaxCharsPerFile", DEFAULT_MAP_REDUCE_MAX_CHARS_PER_FILE));
+    }
+
+    /**
+     * Límite de bytes de los archivos de texto
+     */
+    public long getTextMaxBytes() {
+        return Math.max(1, configManager.getMainConfig("textMaxKb", DEFAULT_TEXT_MAX_KB)) * 1024L;
+    }
+
+    /**
+     * Extrae todos los archivos en paralelo y compone el bloque de archivos del prompt
+     * en el orden de la lista. Bloquea hasta que terminan todos; si cancelled devuelve
+     * true mientras tanto, se interrumpen las extracciones pendientes y se lanza
+     * CancellationException.
+     */
+    public String extractAll(List<FileExplorerPanel.FileInfo> files, ProgressListener listener,
+                             BooleanSupplier cancelled) throws InterruptedException {
+        return extractAll(files, false, listener, cancelled);
+    }
+
+    /**
+     * Como extractAll, pero con forMapReduce cada archivo se limita solo a
+     * getMapReduceMaxCharsPerFile() caracteres, sin extractionMaxCharsPerFile ni textMaxKb
+     */
+    public String extractAll(List<FileExplorerPanel.FileInfo> files, boolean forMapReduce,
+                             ProgressListener listener, BooleanSupplier cancelled) throws InterruptedException {
+        int maxChars = forMapReduce ? getMapReduceMaxCharsPerFile() : getMaxCharsPerFile();
+        long maxTextBytes = forMapReduce ? maxChars : getTextMaxBytes();
+        int total = files.size();
+        String[] sections = new String[total];
+        CompletionService<Integer> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<Integer>> futures = new ArrayList<>(total);
+
+        long start = System.currentTimeMillis();
+        try {
+            for (int i = 0; i < total; i++) {
+                final int index = i;
+                futures.add(completionService.submit(() -> {
+                    sections[index] = formatSection(files.get(index), maxChars, maxTextBytes);
+                    return index;
+                }));
+            }
+
+            int completed = 0;
+            while (completed < total) {
+                if (cancelled != null && cancelled.getAsBoolean()) {
+                    throw new CancellationException("Extracción de archivos cancelada");
+                }
+                Future<Integer> done = completionService.poll(CANCEL_POLL_MS, TimeUnit.MILLISECONDS);
+                if (done == null) {
+                    continue;
+                }
+                int index;
+                try {
+                    index = done.get();
+                } catch (ExecutionException e) {
+                    // formatSection no lanza excepciones comprobadas; un error aquí es un fallo inesperado
+                    throw new IllegalStateException("Error inesperado al extraer archivos", e.getCause());
+                }
+                completed++;
+                if (listener != null) {
+                    listener.fileDone(completed, total, files.get(index));
+                }
+            }
+        } finally {
+            for (Future<Integer> future : futures) {
+                future.cancel(true);
+            }
+        }
+
+        StringBuilder content = new StringBuilder();
+        content.append("# ARCHIVOS SELECCIONADOS\n\n");
+        for (String section : sections) {
+            content.append(section);
+        }
+        logger.info("Extraídos {} archivos en {} ms con {} hilos", total, System.currentTimeMillis() - start, threads);
+        return content.toString();
+    }
+
+    /**
+     * Extrae el texto de un archivo según su extensión, limitado a getMaxCharsPerFile()
+     * caracteres (con una nota al final si se ha recortado)
+     */
+    public String extract(File file, String extension) throws IOException {
+        return extract(file, extension, getMaxCharsPerFile(), getTextMaxBytes());
+    }
+
+    /**
+     * Texto completo de un archivo para el análisis por partes, limitado solo a
+     * getMapReduceMaxCharsPerFile() caracteres
+     */
+    public String extractForMapReduce(File file) throws IOException {
+        int maxChars = getMapReduceMaxCharsPerFile();
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return extract(file, dot >= 0 ? name.substring(dot + 1) : "", maxChars, maxChars);
+    }
+
+    private String extract(File file, String extension, int maxChars, long maxTextBytes) throws IOException {
+        String text;
+        switch (extension.toLowerCase()) {
+            case "pdf":
+            case "docx":
+                text = readDocument(file, extension);
+                break;
+            default:
+                // Cada byte produce como mucho un carácter: el texto no supera maxChars
+                text = readText(file, Math.min(maxTextBytes, maxChars));
+                break;
+        }
+        if (text.length() > maxChars) {
+            return text.substring(0, maxChars) + "\n[... contenido truncado a " + maxChars + " caracteres ...]";
+        }
+        return text;
+    }
+
+    /**
+     * Extrae el texto completo de un PDF o DOCX, usando la caché de extracción
+     * para no volver a procesar un documento que no ha cambiado
+     */
+    public String readDocument(File file, String extension) throws IOException {
+        return readDocument(file, extension, null);
+    }
+
+    /**
+     * Como readDocument, pero si el texto de un PDF no está en la caché, pages recibe
+     * cada página en orden según se extrae. Si está en la caché no recibe nada.
+     */
+    public String readDocument(File file, String extension, PdfTextExtractor.PageListener pages) throws IOException {
+        String format = extension.toLowerCase();
+        switch (format) {
+            case "pdf":
+                return extractionCache.getOrExtract(file, format,
+                        source -> PdfTextExtractor.getInstance().extract(source, pages));
+            case "docx":
+                return extractionCache.getOrExtract(file, format, FileContentExtractor::readDocx);
+            default:
+                throw new IllegalArgumentException("No es un documento PDF o DOCX: " + extension);
+        }
+    }
+
+    /**
+     * Sección del prompt para un archivo, con el mismo formato para errores e imágenes
+     */
+    private String formatSection(FileExplorerPanel.FileInfo file, int maxChars, long maxTextBytes) {
+        StringBuilder section = new StringBuilder();
+        if (file.isImage()) {
+            section.append("## IMAGEN: ").append(file.getName())
+                    .append(" (no se muestra contenido binario)\n\n");
+            return section.toString();
+        }
+
+        try {
+            String text = extract(new File(file.getPath()), file.getExtension(), maxChars, maxTextBytes);
+            section.append("## ARCHIVO: ").append(file.getName())
+                    .append(" (").append(file.getPath()).append(")\n\n");
+            section.append("```").append(file.getExtension()).append("\n");
+            section.append(text).append("\n");
+            section.append("```\n\n");
+        } catch (IOException e) {
+            logger.error("Error al cargar contenido del archivo: " + file.getPath(), e);
+            section.append("## ERROR al cargar ").append(file.getName())
+                    .append(": ").append(e.getMessage()).append("\n\n");
+        }
+        return section.toString();
+    }
+
+    /**
+     * Lee un archivo de texto con el límite de bytes (textMaxKb) y el muestreo
+     * (textSampling) configurados, añadiendo una nota si no se ha leído entero
+     */
+    public String readText(File file) throws IOException {
+        return readText(file, getTextMaxBytes());
+    }
+
+    private String readText(File file, long maxBytes) throws IOException {
+        TextFileReader.Sampling sampling = TextFileReader.Sampling.fromConfig(
+                configManager.getMainConfigString("textSampling", "head"));
+        TextFileReader.Sample sample = TextFileReader.read(file, sampling, maxBytes);
+        if (!sample.isTruncated()) {
+            return sample.getText();
+        }
+        return sample.getText() + "\n[... archivo truncado: se muestran " + sample.getBytesRead() + " de "
+                + sample.getFileSize() + " bytes (" + sampling.name().toLowerCase() + ") ...]";
+    }
+
+    /**
+     * Extrae el texto de un archivo PDF, por páginas en paralelo
+     */
+    public static String readPdf(File file) throws IOException {
+        return PdfTextExtractor.getInstance().extract(file, null);
+    }
+
+    /**
+     * Extrae el texto de un archivo DOCX
+     */
+    public static String readDocx(File file) throws IOException {
+        try (FileInputStream fis = new FileInputStream(file);
+             XWPFDocument document = new XWPFDocument(fis);
+             XWPFWordExtractor extractor = new XWPFWordExtractor(document)) {
+            return extractor.getText();
+        } catch (NoClassDefFoundError e) {
+            logger.error("Dependencia faltante: Apache POI", e);
+            throw new IOException("Error al leer DOCX: Falta la dependencia de Apache POI. " +
+                    "Añade 'org.apache.poi:poi-ooxml:5.2.3' a tu proyecto.");
+        }
+    }
+}
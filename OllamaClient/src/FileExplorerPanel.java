@@ -5,18 +5,48 @@ import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeExpansionListener;
+import javax.swing.event.TreeWillExpandListener;
 import javax.swing.tree.*;
 import java.awt.*;
+import java.awt.event.KeyEvent;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Consumer;
 
 /**
  * Panel para explorar y seleccionar archivos de un directorio
+ *
+ * El árbol se carga de forma perezosa: cada carpeta tiene un hijo provisional
+ * hasta que se expande, y entonces su contenido se lista en segundo plano con un
+ * DirectoryStream mientras se muestra "Cargando...". Plegar la carpeta o pulsar
+ * Escape cancela la carga. La selección de todos los archivos soportados recorre
+ * el disco en segundo plano sin crear nodos del árbol.
+ *
+ * Las carpetas expandidas se vigilan con un WatchService: las creaciones,
+ * borrados y modificaciones se aplican como inserciones, eliminaciones y
+ * actualizaciones de nodos concretos, sin volver a listar la carpeta (salvo si
+ * el sistema pierde eventos). Al plegar una carpeta se deja de vigilar y sus
+ * nodos se descartan; la selección se conserva en selectedFiles.
  */
 public class FileExplorerPanel extends JPanel {
     private static final Logger logger = LoggerFactory.getLogger(FileExplorerPanel.class);
@@ -25,6 +55,7 @@ public class FileExplorerPanel extends JPanel {
     private DefaultTreeModel treeModel;
     private JButton selectFolderButton;
     private JButton clearSelectionButton;
+    private JButton selectAllButton;
     private JButton analyzeSelectedButton;
     private JTextField currentFolderField;
     private JScrollPane treeScrollPane;
@@ -33,6 +64,26 @@ public class FileExplorerPanel extends JPanel {
     private final Map<String, Boolean> selectedFiles = new HashMap<>();
     private final Set<String> supportedExtensions = new HashSet<>();
 
+    // Textos del hijo provisional de las carpetas
+    private static final String PLACEHOLDER_LOADING = "Cargando... (Esc para cancelar)";
+    private static final String PLACEHOLDER_CANCELLED = "Carga cancelada";
+    private static final String PLACEHOLDER_EMPTY = "(carpeta vacía)";
+
+    // Cargas de carpetas en curso (solo se usan desde el EDT)
+    private final Map<DefaultMutableTreeNode, SwingWorker<List<FileNode>, Void>> pendingLoads = new HashMap<>();
+
+    // Selección de todos los archivos soportados en curso
+    private SwingWorker<Integer, String> selectAllWorker;
+
+    // Vigilancia de las carpetas cargadas; las claves se registran desde los hilos de carga
+    private WatchService watchService;
+    private final Map<WatchKey, DefaultMutableTreeNode> watchedNodes = new ConcurrentHashMap<>();
+    private final Map<DefaultMutableTreeNode, WatchKey> watchKeys = new ConcurrentHashMap<>();
+
+    // Cambios recibidos mientras su carpeta se está listando; se aplican al terminar (solo EDT)
+    private final Map<DefaultMutableTreeNode, List<EntryChange>> deferredChanges = new HashMap<>();
+    private final Set<DefaultMutableTreeNode> rescanAfterLoad = new HashSet<>();
+
     // Consumidor para notificar cuando se seleccionan archivos para análisis
     private Consumer<List<FileInfo>> onFilesSelectedForAnalysis;
 
@@ -88,6 +139,8 @@ public class FileExplorerPanel extends JPanel {
         // Botones de acción
         selectFolderButton = new JButton("Seleccionar Carpeta");
         clearSelectionButton = new JButton("Limpiar Selección");
+        selectAllButton = new JButton("Seleccionar Todos");
+        selectAllButton.setToolTipText("Seleccionar todos los archivos soportados de la carpeta y sus subcarpetas");
         analyzeSelectedButton = new JButton("Analizar Seleccionados");
 
         // Árbol de archivos
@@ -117,6 +170,7 @@ public class FileExplorerPanel extends JPanel {
 
         // Panel inferior con botones de acción
         JPanel bottomPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        bottomPanel.add(selectAllButton);
         bottomPanel.add(clearSelectionButton);
         bottomPanel.add(analyzeSelectedButton);
 
@@ -136,6 +190,45 @@ public class FileExplorerPanel extends JPanel {
         // Manejador para limpiar selección
         clearSelectionButton.addActionListener(e -> clearSelection());
 
+        // Manejador para seleccionar (o dejar de seleccionar) todos los archivos soportados
+        selectAllButton.addActionListener(e -> selectAllSupportedFiles());
+
+        // Carga perezosa de las carpetas al expandirlas
+        fileTree.addTreeWillExpandListener(new TreeWillExpandListener() {
+            @Override
+            public void treeWillExpand(TreeExpansionEvent event) {
+                DefaultMutableTreeNode node = (DefaultMutableTreeNode) event.getPath().getLastPathComponent();
+                loadChildren(node);
+            }
+
+            @Override
+            public void treeWillCollapse(TreeExpansionEvent event) {
+                // La carpeta se descarga una vez plegada
+            }
+        });
+
+        // Al plegar una carpeta se cancela su carga, se deja de vigilar y se descartan sus nodos
+        fileTree.addTreeExpansionListener(new TreeExpansionListener() {
+            @Override
+            public void treeExpanded(TreeExpansionEvent event) {
+            }
+
+            @Override
+            public void treeCollapsed(TreeExpansionEvent event) {
+                unloadDirectory((DefaultMutableTreeNode) event.getPath().getLastPathComponent());
+            }
+        });
+
+        // Escape cancela todas las cargas en curso
+        fileTree.getInputMap(JComponent.WHEN_FOCUSED)
+                .put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), "cancelLoads");
+        fileTree.getActionMap().put("cancelLoads", new AbstractAction() {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent e) {
+                cancelAllLoads(true);
+            }
+        });
+
         // Manejador para analizar archivos seleccionados
         analyzeSelectedButton.addActionListener(e -> analyzeSelectedFiles());
 
@@ -189,71 +282,650 @@ public class FileExplorerPanel extends JPanel {
     }
 
     /**
-     * Refresca el árbol de archivos con el contenido de la carpeta seleccionada
+     * Refresca el árbol de archivos con el contenido de la carpeta seleccionada.
+     * Solo se lista el primer nivel; el resto se carga al expandir cada carpeta.
      */
     private void refreshTree() {
+        cancelAllLoads(false);
+        unwatchAll();
         if (rootFolder == null || !rootFolder.exists() || !rootFolder.isDirectory()) {
             initEmptyTree();
             return;
         }
 
         FileNode rootNode = new FileNode(rootFolder.getName(), true, rootFolder.getAbsolutePath());
-        DefaultMutableTreeNode root = new DefaultMutableTreeNode(rootNode);
-
-        populateTree(root, rootFolder);
+        DefaultMutableTreeNode root = createDirectoryNode(rootNode);
 
         treeModel = new DefaultTreeModel(root);
         fileTree.setModel(treeModel);
 
-        // Expandir el árbol
-        for (int i = 0; i < fileTree.getRowCount(); i++) {
-            fileTree.expandRow(i);
+        // La raíz no es visible, así que no recibe evento de expansión
+        loadChildren(root);
+    }
+
+    /**
+     * Crea el nodo de una carpeta con un hijo provisional, para que se pueda expandir
+     */
+    private DefaultMutableTreeNode createDirectoryNode(FileNode fileNode) {
+        DefaultMutableTreeNode node = new DefaultMutableTreeNode(fileNode);
+        node.add(new DefaultMutableTreeNode(""));
+        return node;
+    }
+
+    /**
+     * Lista en segundo plano el contenido de una carpeta aún no cargada y lo añade
+     * al nodo al terminar, sustituyendo al hijo provisional. La carpeta se empieza
+     * a vigilar antes de listarla para no perder cambios intermedios.
+     */
+    private void loadChildren(DefaultMutableTreeNode node) {
+        if (!(node.getUserObject() instanceof FileNode)) {
+            return;
+        }
+        FileNode directory = (FileNode) node.getUserObject();
+        if (!directory.isDirectory() || directory.isLoaded() || pendingLoads.containsKey(node)) {
+            return;
         }
+
+        setPlaceholderText(node, PLACEHOLDER_LOADING);
+        startListing(node, true);
     }
 
     /**
-     * Rellena el árbol con los archivos y subcarpetas
+     * Vuelve a listar una carpeta ya cargada y aplica las diferencias (cuando el
+     * sistema ha perdido eventos de vigilancia)
      */
-    private void populateTree(DefaultMutableTreeNode parentNode, File directory) {
-        File[] files = directory.listFiles();
-        if (files == null) {
+    private void reloadDirectory(DefaultMutableTreeNode node) {
+        if (pendingLoads.containsKey(node)) {
+            rescanAfterLoad.add(node);
             return;
         }
+        startListing(node, false);
+    }
 
-        // Primero agregar directorios
-        Arrays.stream(files)
-                .filter(File::isDirectory)
-                .sorted()
-                .forEach(file -> {
-                    FileNode fileNode = new FileNode(file.getName(), true, file.getAbsolutePath());
-                    DefaultMutableTreeNode directoryNode = new DefaultMutableTreeNode(fileNode);
-                    parentNode.add(directoryNode);
-                    populateTree(directoryNode, file);
-                });
+    private void startListing(DefaultMutableTreeNode node, boolean initial) {
+        FileNode directory = (FileNode) node.getUserObject();
+
+        SwingWorker<List<FileNode>, Void> worker = new SwingWorker<>() {
+            @Override
+            protected List<FileNode> doInBackground() throws Exception {
+                Path path = Paths.get(directory.getFilePath());
+                if (initial) {
+                    watch(node, path, this);
+                }
+                return listDirectory(path, this);
+            }
+
+            @Override
+            protected void done() {
+                // Una carga cancelada ya ha restaurado el nodo
+                if (pendingLoads.get(node) != this) {
+                    return;
+                }
+                pendingLoads.remove(node);
+
+                List<FileNode> children;
+                try {
+                    children = get();
+                } catch (CancellationException | InterruptedException e) {
+                    return;
+                } catch (ExecutionException e) {
+                    logger.warn("No se pudo listar la carpeta {}: {}", directory.getFilePath(), e.getCause().getMessage());
+                    if (initial) {
+                        unwatch(node);
+                        setPlaceholderText(node, "Error: " + e.getCause().getMessage());
+                    }
+                    return;
+                }
+
+                if (initial) {
+                    addChildren(node, children);
+                    directory.setLoaded(true);
+                } else {
+                    reconcileChildren(node, children);
+                }
+
+                // Cambios llegados durante el listado
+                List<EntryChange> changes = deferredChanges.remove(node);
+                if (rescanAfterLoad.remove(node)) {
+                    reloadDirectory(node);
+                } else if (changes != null) {
+                    for (EntryChange change : changes) {
+                        applyChange(node, change);
+                    }
+                }
+            }
+        };
+        pendingLoads.put(node, worker);
+        worker.execute();
+    }
+
+    /**
+     * Lista una carpeta: primero las subcarpetas y luego los archivos soportados, en orden
+     */
+    private List<FileNode> listDirectory(Path directory, SwingWorker<?, ?> worker) throws IOException {
+        List<Path> directories = new ArrayList<>();
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path entry : stream) {
+                if (worker.isCancelled()) {
+                    throw new CancellationException();
+                }
+                if (Files.isDirectory(entry)) {
+                    directories.add(entry);
+                } else if (isSupportedFile(entry.getFileName().toString())) {
+                    files.add(entry);
+                }
+            }
+        }
+        Collections.sort(directories);
+        Collections.sort(files);
 
-        // Luego agregar archivos
-        Arrays.stream(files)
-                .filter(file -> !file.isDirectory())
-                .filter(this::isSupportedFile)
-                .sorted()
-                .forEach(file -> {
-                    String filePath = file.getAbsolutePath();
-                    boolean isSelected = selectedFiles.getOrDefault(filePath, false);
-
-                    FileNode fileNode = new FileNode(file.getName(), false, filePath);
-                    fileNode.setSelected(isSelected);
-                    selectedFiles.put(filePath, isSelected);
-
-                    DefaultMutableTreeNode fileTreeNode = new DefaultMutableTreeNode(fileNode);
-                    parentNode.add(fileTreeNode);
+        List<FileNode> children = new ArrayList<>(directories.size() + files.size());
+        for (Path entry : directories) {
+            children.add(new FileNode(entry.getFileName().toString(), true, entry.toAbsolutePath().toString()));
+        }
+        for (Path entry : files) {
+            children.add(new FileNode(entry.getFileName().toString(), false, entry.toAbsolutePath().toString()));
+        }
+        return children;
+    }
+
+    /**
+     * Añade los nodos hijos y después quita el provisional, para que la carpeta no
+     * quede vacía (y se pliegue) entre ambos cambios. Una carpeta vacía conserva el
+     * provisional con otro texto, de modo que sigue expandida.
+     */
+    private void addChildren(DefaultMutableTreeNode node, List<FileNode> children) {
+        if (children.isEmpty()) {
+            setPlaceholderText(node, PLACEHOLDER_EMPTY);
+            return;
+        }
+        DefaultMutableTreeNode placeholder = (DefaultMutableTreeNode) node.getFirstChild();
+
+        int[] indices = new int[children.size()];
+        for (int i = 0; i < children.size(); i++) {
+            FileNode child = children.get(i);
+            if (child.isDirectory()) {
+                node.add(createDirectoryNode(child));
+            } else {
+                child.setSelected(selectedFiles.getOrDefault(child.getFilePath(), false));
+                node.add(new DefaultMutableTreeNode(child));
+            }
+            indices[i] = i + 1;
+        }
+        if (indices.length > 0) {
+            treeModel.nodesWereInserted(node, indices);
+        }
+
+        node.remove(0);
+        treeModel.nodesWereRemoved(node, new int[]{0}, new Object[]{placeholder});
+    }
+
+    /**
+     * Cancela la carga de una carpeta y la deja como no cargada
+     */
+    private void cancelLoad(DefaultMutableTreeNode node) {
+        SwingWorker<List<FileNode>, Void> worker = pendingLoads.remove(node);
+        if (worker != null) {
+            worker.cancel(true);
+            deferredChanges.remove(node);
+            rescanAfterLoad.remove(node);
+            if (node.getUserObject() instanceof FileNode && !((FileNode) node.getUserObject()).isLoaded()) {
+                unwatch(node);
+                setPlaceholderText(node, PLACEHOLDER_CANCELLED);
+            }
+        }
+    }
+
+    /**
+     * Descarga una carpeta plegada: cancela las cargas y la vigilancia de ella y de
+     * sus subcarpetas y vuelve a dejar el hijo provisional
+     */
+    private void unloadDirectory(DefaultMutableTreeNode node) {
+        if (!(node.getUserObject() instanceof FileNode) || node.isRoot()) {
+            return;
+        }
+        FileNode directory = (FileNode) node.getUserObject();
+        if (!directory.isLoaded() && !pendingLoads.containsKey(node)) {
+            return;
+        }
+
+        forgetSubtree(node);
+        directory.setLoaded(false);
+        node.removeAllChildren();
+        node.add(new DefaultMutableTreeNode(""));
+        treeModel.nodeStructureChanged(node);
+    }
+
+    /**
+     * Cancela las cargas y la vigilancia de un nodo y de todos sus descendientes
+     */
+    private void forgetSubtree(DefaultMutableTreeNode node) {
+        Enumeration<TreeNode> nodes = node.depthFirstEnumeration();
+        while (nodes.hasMoreElements()) {
+            DefaultMutableTreeNode descendant = (DefaultMutableTreeNode) nodes.nextElement();
+            SwingWorker<List<FileNode>, Void> worker = pendingLoads.remove(descendant);
+            if (worker != null) {
+                worker.cancel(true);
+            }
+            deferredChanges.remove(descendant);
+            rescanAfterLoad.remove(descendant);
+            unwatch(descendant);
+        }
+    }
+
+    /**
+     * Cancela todas las cargas en curso, plegando sus carpetas si se indica
+     */
+    private void cancelAllLoads(boolean collapse) {
+        for (DefaultMutableTreeNode node : new ArrayList<>(pendingLoads.keySet())) {
+            cancelLoad(node);
+            if (collapse && !node.isRoot()) {
+                fileTree.collapsePath(new TreePath(node.getPath()));
+            }
+        }
+    }
+
+    private void setPlaceholderText(DefaultMutableTreeNode node, String text) {
+        if (node.getChildCount() == 0) {
+            return;
+        }
+        DefaultMutableTreeNode placeholder = (DefaultMutableTreeNode) node.getFirstChild();
+        if (!(placeholder.getUserObject() instanceof FileNode)) {
+            placeholder.setUserObject(text);
+            treeModel.nodeChanged(placeholder);
+        }
+    }
+
+    /**
+     * Cambio de una entrada de una carpeta vigilada, con el estado que tenía en disco
+     * al leer el evento
+     */
+    private static final class EntryChange {
+        final Path path;
+        final boolean exists;
+        final boolean isDirectory;
+        final boolean modified;
+
+        EntryChange(Path path, boolean exists, boolean isDirectory, boolean modified) {
+            this.path = path;
+            this.exists = exists;
+            this.isDirectory = isDirectory;
+            this.modified = modified;
+        }
+    }
+
+    /**
+     * Empieza a vigilar la carpeta de un nodo (desde el hilo de la carga)
+     */
+    private void watch(DefaultMutableTreeNode node, Path directory, SwingWorker<?, ?> worker) {
+        WatchService service = getWatchService();
+        if (service == null) {
+            return;
+        }
+        try {
+            WatchKey key = directory.register(service,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            watchedNodes.put(key, node);
+            watchKeys.put(node, key);
+
+            // Si la carga se canceló mientras se registraba, nadie más la quitará
+            if (worker.isCancelled()) {
+                unwatch(node);
+            }
+        } catch (IOException e) {
+            logger.warn("No se puede vigilar la carpeta {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private void unwatch(DefaultMutableTreeNode node) {
+        WatchKey key = watchKeys.remove(node);
+        if (key != null) {
+            key.cancel();
+            watchedNodes.remove(key);
+        }
+    }
+
+    private void unwatchAll() {
+        for (DefaultMutableTreeNode node : new ArrayList<>(watchKeys.keySet())) {
+            unwatch(node);
+        }
+        deferredChanges.clear();
+        rescanAfterLoad.clear();
+    }
+
+    /**
+     * Crea el WatchService y su hilo la primera vez que se necesita
+     */
+    private synchronized WatchService getWatchService() {
+        if (watchService == null) {
+            try {
+                watchService = FileSystems.getDefault().newWatchService();
+            } catch (IOException | UnsupportedOperationException e) {
+                logger.warn("No se pueden vigilar los cambios de las carpetas: {}", e.getMessage());
+                return null;
+            }
+            Thread watcher = new Thread(() -> watchLoop(watchService), "file-explorer-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+        return watchService;
+    }
+
+    /**
+     * Espera eventos de las carpetas vigiladas, comprueba el estado actual de cada
+     * entrada afectada (fuera del EDT) y entrega los cambios al EDT
+     */
+    private void watchLoop(WatchService service) {
+        while (true) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            Path directory = (Path) key.watchable();
+            List<EntryChange> changes = new ArrayList<>();
+            boolean overflow = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    overflow = true;
+                    continue;
+                }
+                Path path = directory.resolve((Path) event.context()).toAbsolutePath();
+                boolean isDirectory = Files.isDirectory(path);
+                boolean exists = isDirectory || Files.exists(path);
+                changes.add(new EntryChange(path, exists, isDirectory,
+                        event.kind() == StandardWatchEventKinds.ENTRY_MODIFY));
+            }
+            // Si la carpeta ya no existe, el evento de borrado de su padre quita el nodo
+            key.reset();
+
+            boolean rescan = overflow;
+            SwingUtilities.invokeLater(() -> applyChanges(key, changes, rescan));
+        }
+    }
+
+    /**
+     * Aplica en el EDT los cambios de una carpeta vigilada
+     */
+    private void applyChanges(WatchKey key, List<EntryChange> changes, boolean rescan) {
+        DefaultMutableTreeNode node = watchedNodes.get(key);
+        if (node == null) {
+            return;
+        }
+
+        // Mientras se lista la carpeta, los cambios esperan a que termine
+        if (pendingLoads.containsKey(node)) {
+            if (rescan) {
+                rescanAfterLoad.add(node);
+            }
+            deferredChanges.computeIfAbsent(node, n -> new ArrayList<>()).addAll(changes);
+            return;
+        }
+
+        if (!((FileNode) node.getUserObject()).isLoaded()) {
+            return;
+        }
+        if (rescan) {
+            reloadDirectory(node);
+            return;
+        }
+        for (EntryChange change : changes) {
+            applyChange(node, change);
+        }
+    }
+
+    /**
+     * Inserta, elimina o actualiza el nodo hijo de una entrada según su estado.
+     * En una carpeta vacía, el provisional se quita después de insertar el primer
+     * hijo y se repone antes de quitar el último, para que no se pliegue.
+     */
+    private void applyChange(DefaultMutableTreeNode parent, EntryChange change) {
+        boolean empty = hasOnlyPlaceholder(parent);
+        int index = empty ? -1 : findChild(parent, change.path);
+        boolean shown = change.exists &&
+                (change.isDirectory || isSupportedFile(change.path.getFileName().toString()));
+
+        if (index >= 0) {
+            DefaultMutableTreeNode child = (DefaultMutableTreeNode) parent.getChildAt(index);
+            FileNode fileNode = (FileNode) child.getUserObject();
+            if (shown && fileNode.isDirectory() == change.isDirectory) {
+                if (change.modified) {
+                    treeModel.nodeChanged(child);
+                }
+                return;
+            }
+
+            // Borrada, o sustituida por una entrada de otro tipo
+            forgetSubtree(child);
+            if (parent.getChildCount() == 1 && !shown) {
+                treeModel.insertNodeInto(new DefaultMutableTreeNode(PLACEHOLDER_EMPTY), parent, 1);
+            }
+            treeModel.removeNodeFromParent(child);
+        }
+
+        if (shown) {
+            FileNode fileNode = new FileNode(change.path.getFileName().toString(), change.isDirectory,
+                    change.path.toString());
+            DefaultMutableTreeNode child;
+            if (change.isDirectory) {
+                child = createDirectoryNode(fileNode);
+            } else {
+                fileNode.setSelected(selectedFiles.getOrDefault(fileNode.getFilePath(), false));
+                child = new DefaultMutableTreeNode(fileNode);
+            }
+            if (empty) {
+                treeModel.insertNodeInto(child, parent, 1);
+                treeModel.removeNodeFromParent((DefaultMutableTreeNode) parent.getFirstChild());
+            } else {
+                treeModel.insertNodeInto(child, parent, insertionIndex(parent, change.path, change.isDirectory));
+            }
+        }
+    }
+
+    /**
+     * Indica si el único hijo del nodo es el provisional (carpeta vacía o sin cargar)
+     */
+    private static boolean hasOnlyPlaceholder(DefaultMutableTreeNode parent) {
+        return parent.getChildCount() == 1 &&
+                !(((DefaultMutableTreeNode) parent.getFirstChild()).getUserObject() instanceof FileNode);
+    }
+
+    /**
+     * Aplica las diferencias entre los hijos actuales y un listado nuevo de la carpeta
+     */
+    private void reconcileChildren(DefaultMutableTreeNode node, List<FileNode> children) {
+        Set<String> listed = new HashSet<>();
+        for (FileNode child : children) {
+            listed.add(child.getFilePath());
+        }
+        for (int i = node.getChildCount() - 1; i >= 0; i--) {
+            Object userObject = ((DefaultMutableTreeNode) node.getChildAt(i)).getUserObject();
+            if (!(userObject instanceof FileNode)) {
+                continue;
+            }
+            FileNode fileNode = (FileNode) userObject;
+            if (!listed.contains(fileNode.getFilePath())) {
+                applyChange(node, new EntryChange(Paths.get(fileNode.getFilePath()), false, false, false));
+            }
+        }
+        for (FileNode child : children) {
+            applyChange(node, new EntryChange(Paths.get(child.getFilePath()), true, child.isDirectory(), false));
+        }
+    }
+
+    /**
+     * Busca el hijo de una ruta. Los hijos están ordenados (carpetas primero y después
+     * archivos), así que basta una búsqueda binaria en cada grupo.
+     */
+    private int findChild(DefaultMutableTreeNode parent, Path path) {
+        int directories = countDirectoryChildren(parent);
+        int index = searchChildren(parent, 0, directories, path);
+        if (index >= 0) {
+            return index;
+        }
+        index = searchChildren(parent, directories, parent.getChildCount(), path);
+        return index >= 0 ? index : -1;
+    }
+
+    private int insertionIndex(DefaultMutableTreeNode parent, Path path, boolean isDirectory) {
+        int directories = countDirectoryChildren(parent);
+        int index = isDirectory
+                ? searchChildren(parent, 0, directories, path)
+                : searchChildren(parent, directories, parent.getChildCount(), path);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Número de carpetas al principio de los hijos
+     */
+    private int countDirectoryChildren(DefaultMutableTreeNode parent) {
+        int low = 0;
+        int high = parent.getChildCount();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (childNode(parent, mid).isDirectory()) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Búsqueda binaria en [from, to); devuelve el índice o -(punto de inserción) - 1
+     */
+    private int searchChildren(DefaultMutableTreeNode parent, int from, int to, Path path) {
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = Paths.get(childNode(parent, mid).getFilePath()).compareTo(path);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static FileNode childNode(DefaultMutableTreeNode parent, int index) {
+        return (FileNode) ((DefaultMutableTreeNode) parent.getChildAt(index)).getUserObject();
+    }
+
+    /**
+     * Selecciona todos los archivos soportados de la carpeta y sus subcarpetas. Recorre
+     * el disco en segundo plano sin crear nodos; las carpetas ocultas (como .git) se
+     * omiten. Si ya hay una selección en curso, la detiene.
+     */
+    private void selectAllSupportedFiles() {
+        if (selectAllWorker != null) {
+            selectAllWorker.cancel(true);
+            return;
+        }
+        if (rootFolder == null || !rootFolder.isDirectory()) {
+            return;
+        }
+
+        Path root = rootFolder.toPath().toAbsolutePath();
+        selectAllButton.setText("Detener Selección");
+
+        selectAllWorker = new SwingWorker<>() {
+            private int selectedCount = 0;
+
+            @Override
+            protected Integer doInBackground() throws Exception {
+                int[] found = {0};
+                SwingWorker<?, ?> worker = this;
+                Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                        if (worker.isCancelled()) {
+                            return FileVisitResult.TERMINATE;
+                        }
+                        boolean hidden = dir.getFileName() != null && dir.getFileName().toString().startsWith(".");
+                        return hidden && !dir.equals(root) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (worker.isCancelled()) {
+                            return FileVisitResult.TERMINATE;
+                        }
+                        if (attrs.isRegularFile() && isSupportedFile(file.getFileName().toString())) {
+                            publish(file.toAbsolutePath().toString());
+                            found[0]++;
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        logger.debug("No se pudo acceder a {}: {}", file, e.getMessage());
+                        return FileVisitResult.CONTINUE;
+                    }
                 });
+                return found[0];
+            }
+
+            @Override
+            protected void process(List<String> paths) {
+                // Tras detener o limpiar la selección se descartan los pendientes
+                if (isCancelled()) {
+                    return;
+                }
+                for (String path : paths) {
+                    selectedFiles.put(path, true);
+                }
+                selectedCount += paths.size();
+                selectAllButton.setText("Detener Selección (" + selectedCount + ")");
+            }
+
+            @Override
+            protected void done() {
+                selectAllWorker = null;
+                selectAllButton.setText("Seleccionar Todos");
+                try {
+                    logger.info("Seleccionados {} archivos soportados en {}", get(), root);
+                } catch (CancellationException | InterruptedException e) {
+                    logger.info("Selección de archivos detenida tras {} archivos", selectedCount);
+                } catch (ExecutionException e) {
+                    logger.error("Error al seleccionar los archivos de {}", root, e.getCause());
+                }
+                updateLoadedSelection();
+            }
+        };
+        selectAllWorker.execute();
+    }
+
+    /**
+     * Sincroniza las casillas de los nodos ya cargados con la selección
+     */
+    private void updateLoadedSelection() {
+        DefaultMutableTreeNode root = (DefaultMutableTreeNode) treeModel.getRoot();
+        Enumeration<TreeNode> nodes = root.depthFirstEnumeration();
+        while (nodes.hasMoreElements()) {
+            Object userObject = ((DefaultMutableTreeNode) nodes.nextElement()).getUserObject();
+            if (userObject instanceof FileNode && !((FileNode) userObject).isDirectory()) {
+                FileNode fileNode = (FileNode) userObject;
+                fileNode.setSelected(selectedFiles.getOrDefault(fileNode.getFilePath(), false));
+            }
+        }
+        fileTree.repaint();
     }
 
     /**
      * Verifica si un archivo es de un tipo soportado
      */
-    private boolean isSupportedFile(File file) {
-        String fileName = file.getName();
+    private boolean isSupportedFile(String fileName) {
         int lastDotIndex = fileName.lastIndexOf('.');
 
         if (lastDotIndex > 0 && lastDotIndex < fileName.length() - 1) {
@@ -268,8 +940,11 @@ public class FileExplorerPanel extends JPanel {
      * Limpia todas las selecciones de archivos
      */
     private void clearSelection() {
+        if (selectAllWorker != null) {
+            selectAllWorker.cancel(true);
+        }
         selectedFiles.clear();
-        refreshTree();
+        updateLoadedSelection();
     }
 
     /**
@@ -339,6 +1014,7 @@ public class FileExplorerPanel extends JPanel {
         private final boolean isDirectory;
         private final String filePath;
         private boolean selected;
+        private boolean loaded;
 
         public FileNode(String name, boolean isDirectory, String filePath) {
             this.name = name;
@@ -367,6 +1043,14 @@ public class FileExplorerPanel extends JPanel {
             this.selected = selected;
         }
 
+        public boolean isLoaded() {
+            return loaded;
+        }
+
+        public void setLoaded(boolean loaded) {
+            this.loaded = loaded;
+        }
+
         @Override
         public String toString() {
             return name;
@@ -463,7 +1147,7 @@ public class FileExplorerPanel extends JPanel {
         }
 
         /**
-         * Carga el contenido del archivo
+         * Carga el contenido del archivo (texto, PDF o DOCX) con el límite de caracteres por archivo
          */
         public void loadContent() throws IOException {
             if (isImage) {
@@ -471,7 +1155,7 @@ public class FileExplorerPanel extends JPanel {
                 return;
             }
 
-            content = new String(Files.readAllBytes(Paths.get(path)));
+            content = FileContentExtractor.getInstance().extract(new File(path), extension);
         }
 
         @Override
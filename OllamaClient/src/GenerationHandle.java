@@ -0,0 +1,92 @@
+package OllamaClient.src;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Control de una generación en curso que permite cancelarla desde otro hilo
+ *
+ * Al cancelar se aborta la petición pendiente y se cierra el flujo de la
+ * respuesta. El cliente HTTP no devuelve al pool una conexión cuyo cuerpo no
+ * se ha leído por completo, así que el socket se cierra y Ollama detiene la
+ * generación y libera el modelo para la siguiente petición.
+ */
+public class GenerationHandle {
+    private static final Logger logger = LoggerFactory.getLogger(GenerationHandle.class);
+
+    private volatile boolean cancelled = false;
+    private CompletableFuture<?> pendingRequest;
+    private InputStream responseStream;
+
+    /**
+     * Registra la petición en espera de cabeceras. Si ya se había cancelado, se aborta inmediatamente.
+     */
+    public void attach(CompletableFuture<?> request) {
+        boolean abort;
+        synchronized (this) {
+            pendingRequest = request;
+            abort = cancelled;
+        }
+        if (abort) {
+            request.cancel(true);
+        }
+    }
+
+    /**
+     * Registra el flujo de la respuesta. Si ya se había cancelado, se cierra inmediatamente.
+     */
+    public void attach(InputStream stream) {
+        boolean abort;
+        synchronized (this) {
+            pendingRequest = null;
+            responseStream = stream;
+            abort = cancelled;
+        }
+        if (abort) {
+            closeQuietly(stream);
+        }
+    }
+
+    /**
+     * Cancela la generación. Puede llamarse desde cualquier hilo y más de una vez.
+     */
+    public void cancel() {
+        CompletableFuture<?> request;
+        InputStream stream;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            request = pendingRequest;
+            stream = responseStream;
+        }
+
+        logger.info("Cancelando generación en curso");
+        if (request != null) {
+            request.cancel(true);
+        }
+        if (stream != null) {
+            closeQuietly(stream);
+        }
+    }
+
+    /**
+     * Indica si la generación ha sido cancelada
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private void closeQuietly(InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            logger.debug("Error al cerrar el flujo de la respuesta cancelada", e);
+        }
+    }
+}
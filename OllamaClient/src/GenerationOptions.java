@@ -0,0 +1,299 @@
+package OllamaClient.src;
+
+import org.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Opciones de generación de Ollama
+ *
+ * Ollama solo aplica los parámetros de muestreo y de ejecución cuando van dentro
+ * del objeto "options" de la petición; en el nivel superior se ignoran. Esta clase
+ * agrupa esos parámetros con su tipo y los serializa en el lugar correcto, salvo
+ * keep_alive, que sí es un campo del nivel superior.
+ *
+ * Un valor null significa "no enviar" y deja que el servidor use su valor por
+ * defecto (o el del Modelfile). Las claves desconocidas se conservan tal cual
+ * para poder usar opciones que no tienen campo propio (stop, mirostat, ...).
+ */
+public class GenerationOptions {
+
+    // Muestreo
+    private Float temperature;
+    private Float topP;
+    private Integer topK;
+    private Float repeatPenalty;
+    private Integer seed;
+
+    // Ejecución (memoria, longitud de salida y rendimiento)
+    private Integer numCtx;
+    private Integer numPredict;
+    private Integer numBatch;
+    private Integer numThread;
+    private Integer numGpu;
+
+    // Tiempo que el modelo permanece cargado tras la petición
+    private String keepAlive;
+
+    // Opciones sin campo propio
+    private final Map<String, Object> extra = new LinkedHashMap<>();
+
+    public Float getTemperature() {
+        return temperature;
+    }
+
+    public void setTemperature(Float temperature) {
+        this.temperature = temperature;
+    }
+
+    public Float getTopP() {
+        return topP;
+    }
+
+    public void setTopP(Float topP) {
+        this.topP = topP;
+    }
+
+    public Integer getTopK() {
+        return topK;
+    }
+
+    public void setTopK(Integer topK) {
+        this.topK = topK;
+    }
+
+    public Float getRepeatPenalty() {
+        return repeatPenalty;
+    }
+
+    public void setRepeatPenalty(Float repeatPenalty) {
+        this.repeatPenalty = repeatPenalty;
+    }
+
+    public Integer getSeed() {
+        return seed;
+    }
+
+    public void setSeed(Integer seed) {
+        this.seed = seed;
+    }
+
+    public Integer getNumCtx() {
+        return numCtx;
+    }
+
+    public void setNumCtx(Integer numCtx) {
+        this.numCtx = numCtx;
+    }
+
+    public Integer getNumPredict() {
+        return numPredict;
+    }
+
+    public void setNumPredict(Integer numPredict) {
+        this.numPredict = numPredict;
+    }
+
+    public Integer getNumBatch() {
+        return numBatch;
+    }
+
+    public void setNumBatch(Integer numBatch) {
+        this.numBatch = numBatch;
+    }
+
+    public Integer getNumThread() {
+        return numThread;
+    }
+
+    public void setNumThread(Integer numThread) {
+        this.numThread = numThread;
+    }
+
+    public Integer getNumGpu() {
+        return numGpu;
+    }
+
+    public void setNumGpu(Integer numGpu) {
+        this.numGpu = numGpu;
+    }
+
+    public String getKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(String keepAlive) {
+        this.keepAlive = (keepAlive == null || keepAlive.trim().isEmpty()) ? null : keepAlive.trim();
+    }
+
+    /**
+     * Indica si no hay ninguna opción establecida
+     */
+    public boolean isEmpty() {
+        return toJson().length() == 0;
+    }
+
+    /**
+     * Obtiene el perfil guardado para un modelo (vacío si no tiene)
+     */
+    public static GenerationOptions forModel(String model) {
+        return fromJson(ConfigManager.getInstance().getModelProfile(model));
+    }
+
+    /**
+     * Obtiene las opciones de una petición al modelo: su perfil, con los valores
+     * establecidos en overrides por encima. Si ninguno fija keep_alive se aplica
+     * el de la política de precarga.
+     */
+    public static GenerationOptions forModel(String model, GenerationOptions overrides) {
+        GenerationOptions options = forModel(model).overriddenBy(overrides);
+        if (options.getKeepAlive() == null) {
+            options.setKeepAlive(ModelPreloader.getInstance().keepAliveFor(model));
+        }
+        return options;
+    }
+
+    /**
+     * Guarda estas opciones como perfil del modelo
+     */
+    public void saveAsProfile(String model) {
+        ConfigManager.getInstance().setModelProfile(model, toJson());
+    }
+
+    /**
+     * Crea las opciones a partir de un objeto con las claves de la API de Ollama.
+     * Acepta también keep_alive, de modo que sirve tanto para perfiles como para
+     * el objeto "options" de un registro de entrada.
+     */
+    public static GenerationOptions fromJson(JSONObject json) {
+        GenerationOptions options = new GenerationOptions();
+        if (json == null) {
+            return options;
+        }
+
+        for (Object rawKey : json.keySet()) {
+            String key = (String) rawKey;
+            Object value = json.get(key);
+            if (value == JSONObject.NULL) {
+                continue;
+            }
+
+            switch (key) {
+                case "temperature":
+                    options.temperature = (float) json.getDouble(key);
+                    break;
+                case "top_p":
+                    options.topP = (float) json.getDouble(key);
+                    break;
+                case "top_k":
+                    options.topK = json.getInt(key);
+                    break;
+                case "repeat_penalty":
+                    options.repeatPenalty = (float) json.getDouble(key);
+                    break;
+                case "seed":
+                    options.seed = json.getInt(key);
+                    break;
+                case "num_ctx":
+                    options.numCtx = json.getInt(key);
+                    break;
+                case "num_predict":
+                    options.numPredict = json.getInt(key);
+                    break;
+                case "num_batch":
+                    options.numBatch = json.getInt(key);
+                    break;
+                case "num_thread":
+                    options.numThread = json.getInt(key);
+                    break;
+                case "num_gpu":
+                    options.numGpu = json.getInt(key);
+                    break;
+                case "keep_alive":
+                    options.setKeepAlive(String.valueOf(value));
+                    break;
+                default:
+                    options.extra.put(key, value);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Devuelve unas opciones nuevas en las que los valores establecidos en
+     * overrides sustituyen a los de estas
+     */
+    public GenerationOptions overriddenBy(GenerationOptions overrides) {
+        JSONObject merged = toJson();
+        if (overrides != null) {
+            JSONObject values = overrides.toJson();
+            for (Object key : values.keySet()) {
+                merged.put((String) key, values.get((String) key));
+            }
+        }
+        return fromJson(merged);
+    }
+
+    /**
+     * Serializa todas las opciones establecidas, keep_alive incluido (formato de perfil)
+     */
+    public JSONObject toJson() {
+        JSONObject json = toOptionsJson();
+        if (keepAlive != null) {
+            json.put("keep_alive", keepAlive);
+        }
+        return json;
+    }
+
+    /**
+     * Serializa el contenido del objeto "options" de la petición
+     */
+    public JSONObject toOptionsJson() {
+        JSONObject json = new JSONObject();
+        for (Map.Entry<String, Object> entry : extra.entrySet()) {
+            json.put(entry.getKey(), entry.getValue());
+        }
+        putIfSet(json, "temperature", temperature);
+        putIfSet(json, "top_p", topP);
+        putIfSet(json, "top_k", topK);
+        putIfSet(json, "repeat_penalty", repeatPenalty);
+        putIfSet(json, "seed", seed);
+        putIfSet(json, "num_ctx", numCtx);
+        putIfSet(json, "num_predict", numPredict);
+        putIfSet(json, "num_batch", numBatch);
+        putIfSet(json, "num_thread", numThread);
+        putIfSet(json, "num_gpu", numGpu);
+        return json;
+    }
+
+    /**
+     * Añade las opciones a una petición de /api/generate o /api/chat
+     */
+    public void applyTo(JSONObject request) {
+        JSONObject options = toOptionsJson();
+        if (options.length() > 0) {
+            request.put("options", options);
+        }
+
+        // Ollama interpreta un número como segundos (-1 = indefinido) y un texto como duración ("5m")
+        if (keepAlive != null) {
+            if (keepAlive.matches("-?\\d+")) {
+                request.put("keep_alive", Long.parseLong(keepAlive));
+            } else {
+                request.put("keep_alive", keepAlive);
+            }
+        }
+    }
+
+    private static void putIfSet(JSONObject json, String key, Object value) {
+        if (value != null) {
+            json.put(key, value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return toJson().toString();
+    }
+}
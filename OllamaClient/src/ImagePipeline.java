@@ -0,0 +1,388 @@
+package OllamaClient.src;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Preparación de imágenes para los modelos de visión
+ *
+ * Si el formato de la imagen lo acepta Ollama (JPEG o PNG) y no supera la
+ * resolución máxima configurada, se envían los bytes originales sin decodificar
+ * ni recodificar. En otro caso la imagen se convierte y, si está habilitado
+ * (imageMaxDimension > 0), se reduce en segundo plano a la resolución útil del
+ * modelo. El resultado se guarda por hash SHA-256 del contenido, en memoria y
+ * en disco, de modo que volver a enviar la misma imagen no cuesta nada.
+ */
+public class ImagePipeline {
+    private static final Logger logger = LoggerFactory.getLogger(ImagePipeline.class);
+
+    // Formatos que se envían tal cual (nombres de formato de ImageIO en minúsculas)
+    private static final Set<String> PASSTHROUGH_FORMATS = new HashSet<>(Arrays.asList("jpeg", "png"));
+
+    // Subdirectorio de la caché de imágenes procesadas dentro del directorio de configuración
+    private static final String CACHE_DIR_NAME = "cache" + File.separator + "images";
+
+    public static final int DEFAULT_CACHE_ENTRIES = 64;
+    public static final int DEFAULT_CACHE_MAX_MB = 256;
+
+    /**
+     * Imagen lista para enviar: el archivo con los bytes que se codificarán en base64
+     * (el original o la versión procesada de la caché) y sus datos
+     */
+    public static final class PreparedImage {
+        private final File payload;
+        private final String mimeType;
+        private final String sha256;
+        private final int width;
+        private final int height;
+        private final int payloadWidth;
+        private final int payloadHeight;
+        private final boolean passthrough;
+
+        PreparedImage(File payload, String mimeType, String sha256, int width, int height,
+                      int payloadWidth, int payloadHeight, boolean passthrough) {
+            this.payload = payload;
+            this.mimeType = mimeType;
+            this.sha256 = sha256;
+            this.width = width;
+            this.height = height;
+            this.payloadWidth = payloadWidth;
+            this.payloadHeight = payloadHeight;
+            this.passthrough = passthrough;
+        }
+
+        public File getPayload() {
+            return payload;
+        }
+
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public int getPayloadWidth() {
+            return payloadWidth;
+        }
+
+        public int getPayloadHeight() {
+            return payloadHeight;
+        }
+
+        /**
+         * Indica si se envían los bytes originales del archivo
+         */
+        public boolean isPassthrough() {
+            return passthrough;
+        }
+    }
+
+    private static ImagePipeline instance;
+
+    private final ConfigManager configManager;
+    private final File cacheDir;
+    private final ExecutorService executor;
+
+    // Imágenes preparadas por hash y resolución máxima (LRU)
+    private final Map<String, PreparedImage> prepared;
+
+    // Hash del contenido por ruta, tamaño y fecha de modificación, para no volver a leer el archivo
+    private final Map<String, String> hashes;
+
+    private final Map<String, CompletableFuture<PreparedImage>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor privado para Singleton
+     */
+    private ImagePipeline() {
+        this.configManager = ConfigManager.getInstance();
+        this.cacheDir = new File(configManager.getConfigDir(), CACHE_DIR_NAME);
+
+        int maxEntries = Math.max(1, configManager.getMainConfig("imageCacheEntries", DEFAULT_CACHE_ENTRIES));
+        this.prepared = Collections.synchronizedMap(new LinkedHashMap<String, PreparedImage>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedImage> eldest) {
+                return size() > maxEntries;
+            }
+        });
+        this.hashes = Collections.synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxEntries * 4;
+            }
+        });
+
+        // Hilos daemon para no impedir la finalización de la aplicación
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "image-pipeline-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Obtiene la instancia única del procesador de imágenes
+     */
+    public static synchronized ImagePipeline getInstance() {
+        if (instance == null) {
+            instance = new ImagePipeline();
+        }
+        return instance;
+    }
+
+    /**
+     * Prepara la imagen en segundo plano. Las llamadas concurrentes para el mismo
+     * archivo comparten la misma operación.
+     */
+    public CompletableFuture<PreparedImage> prepareAsync(File source) {
+        String identity = identityOf(source);
+        CompletableFuture<PreparedImage> task = new CompletableFuture<>();
+        CompletableFuture<PreparedImage> existing = pending.putIfAbsent(identity, task);
+        if (existing != null) {
+            return existing;
+        }
+
+        executor.execute(() -> {
+            try {
+                task.complete(prepareNow(source));
+            } catch (Throwable e) {
+                task.completeExceptionally(e);
+            } finally {
+                pending.remove(identity, task);
+            }
+        });
+        return task;
+    }
+
+    /**
+     * Prepara la imagen y espera el resultado. Si ya se está preparando en segundo
+     * plano (por ejemplo, desde que se cargó) se espera a esa misma operación.
+     */
+    public PreparedImage prepare(File source) throws IOException {
+        try {
+            return prepareAsync(source).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Error al preparar la imagen: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Prepara la imagen para enviarla, usando la caché si ya se procesó
+     */
+    private PreparedImage prepareNow(File source) throws IOException {
+        int maxDimension = Math.max(0, configManager.getMainConfig("imageMaxDimension", 0));
+        String sha256 = hashOf(source);
+        String cacheKey = sha256 + "-" + maxDimension;
+
+        PreparedImage cached = prepared.get(cacheKey);
+        if (cached != null && cached.getPayload().isFile()
+                && (!cached.isPassthrough() || cached.getPayload().equals(source))) {
+            return cached;
+        }
+
+        long start = System.nanoTime();
+        PreparedImage result = process(source, sha256, cacheKey, maxDimension);
+        prepared.put(cacheKey, result);
+
+        logger.info("Imagen preparada: {} ({}x{} -> {}x{}, {}) en {} ms", source.getName(),
+                result.getWidth(), result.getHeight(), result.getPayloadWidth(), result.getPayloadHeight(),
+                result.isPassthrough() ? "original" : result.getMimeType(), (System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+
+    /**
+     * Lee una versión reducida de la imagen para la vista previa. Se usa submuestreo
+     * del lector, de modo que una foto grande no se decodifica a resolución completa.
+     */
+    public static BufferedImage readPreview(File source, int maxDimension) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(source)) {
+            return readPreview(input, source.getPath(), maxDimension);
+        }
+    }
+
+    /**
+     * Lee una versión reducida de la imagen desde un flujo (por ejemplo, una descarga)
+     */
+    static BufferedImage readPreview(ImageInputStream input, String name, int maxDimension) throws IOException {
+        ImageReader reader = readerFor(input, name);
+        try {
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            int step = Math.max(1, Math.max(width, height) / Math.max(1, maxDimension));
+
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(step, step, 0, 0);
+            return reader.read(0, param);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Decide si la imagen se envía tal cual o se convierte, y genera la versión procesada si hace falta
+     */
+    private PreparedImage process(File source, String sha256, String cacheKey, int maxDimension) throws IOException {
+        String format;
+        int width;
+        int height;
+        boolean hasAlpha;
+        try (ImageInputStream input = ImageIO.createImageInputStream(source)) {
+            ImageReader reader = readerFor(input, source.getPath());
+            try {
+                format = reader.getFormatName().toLowerCase(Locale.ROOT);
+                width = reader.getWidth(0);
+                height = reader.getHeight(0);
+                hasAlpha = hasAlpha(reader);
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        boolean fits = maxDimension == 0 || Math.max(width, height) <= maxDimension;
+        if (PASSTHROUGH_FORMATS.contains(format) && fits) {
+            return new PreparedImage(source, "image/" + format, sha256, width, height, width, height, true);
+        }
+
+        // Conversión (formato no aceptado) y/o reducción; el resultado se reutiliza desde disco
+        String outputFormat = hasAlpha || "png".equals(format) ? "png" : "jpeg";
+        File payload = new File(cacheDir, cacheKey + ("png".equals(outputFormat) ? ".png" : ".jpg"));
+
+        int payloadWidth = width;
+        int payloadHeight = height;
+        if (!fits) {
+            double ratio = (double) maxDimension / Math.max(width, height);
+            payloadWidth = Math.max(1, (int) Math.round(width * ratio));
+            payloadHeight = Math.max(1, (int) Math.round(height * ratio));
+        }
+
+        if (payload.isFile()) {
+            // Ya procesada (en otra sesión o antes de salir de la caché en memoria): sin decodificar
+            payload.setLastModified(System.currentTimeMillis());
+        } else {
+            BufferedImage image = fits ? ImageIO.read(source) : readPreview(source, maxDimension * 2);
+            if (image == null) {
+                throw new IOException("Formato de imagen no soportado: " + source.getName());
+            }
+            BufferedImage output = scale(image, payloadWidth, payloadHeight, hasAlpha);
+            writeToCache(output, outputFormat, payload);
+        }
+
+        return new PreparedImage(payload, "image/" + outputFormat, sha256, width, height,
+                payloadWidth, payloadHeight, false);
+    }
+
+    /**
+     * Indica, a partir de los metadatos del lector, si la imagen tiene transparencia
+     */
+    private static boolean hasAlpha(ImageReader reader) throws IOException {
+        ImageTypeSpecifier type = reader.getRawImageType(0);
+        if (type == null) {
+            Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+            type = types.hasNext() ? types.next() : null;
+        }
+        return type != null && type.getColorModel().hasAlpha();
+    }
+
+    /**
+     * Escala la imagen al tamaño indicado (y la convierte a RGB si no tiene transparencia)
+     */
+    private static BufferedImage scale(BufferedImage image, int width, int height, boolean hasAlpha) {
+        BufferedImage output = new BufferedImage(width, height,
+                hasAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = output.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return output;
+    }
+
+    /**
+     * Guarda la imagen procesada en la caché de disco y elimina las más antiguas si se supera el tamaño máximo
+     */
+    private void writeToCache(BufferedImage image, String format, File payload) throws IOException {
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            throw new IOException("No se pudo crear el directorio de caché: " + cacheDir.getPath());
+        }
+
+        // Escribir en un temporal y renombrar para no dejar un archivo a medias
+        File tempFile = new File(payload.getPath() + ".tmp");
+        if (!ImageIO.write(image, format, tempFile)) {
+            Files.deleteIfExists(tempFile.toPath());
+            throw new IOException("No hay codificador para el formato: " + format);
+        }
+        Files.move(tempFile.toPath(), payload.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        CacheFiles.trim(cacheDir, configManager.getMainConfig("imageCacheMaxMb", DEFAULT_CACHE_MAX_MB) * 1024L * 1024L, payload);
+    }
+
+    /**
+     * Calcula el SHA-256 del contenido, reutilizando el último cálculo si el archivo no ha cambiado
+     */
+    private String hashOf(File source) throws IOException {
+        String identity = identityOf(source);
+        String cached = hashes.get(identity);
+        if (cached != null) {
+            return cached;
+        }
+
+        String sha256 = CacheFiles.sha256Hex(source);
+        hashes.put(identity, sha256);
+        return sha256;
+    }
+
+    private static String identityOf(File source) {
+        return source.getAbsolutePath() + '|' + source.length() + '|' + source.lastModified();
+    }
+
+    private static ImageReader readerFor(ImageInputStream input, String name) throws IOException {
+        if (input == null) {
+            throw new IOException("No se puede leer la imagen: " + name);
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            throw new IOException("Formato de imagen no soportado: " + name);
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(input, true, true);
+        return reader;
+    }
+}
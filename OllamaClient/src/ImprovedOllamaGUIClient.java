@@ -1,10 +1,5 @@
 package OllamaClient.src;
 
-import org.apache.pdfbox.Loader;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
-import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
@@ -15,20 +10,23 @@ import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.text.BadLocationException;
-import javax.swing.text.Style;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.StyleConstants;
 import javax.swing.text.StyledDocument;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -41,14 +39,12 @@ import java.util.regex.Pattern;
  * y una interfaz gráfica mejorada.
  */
 public class ImprovedOllamaGUIClient extends JFrame {
-    // URLs de la API
-    private static final String OLLAMA_API_URL = "http://localhost:11434/api/generate";
-    private static final String OLLAMA_CHAT_API_URL = "http://localhost:11434/api/chat";
-    private static final String OLLAMA_MODELS_URL = "http://localhost:11434/api/tags";
-
     // Tipos de archivos de imagen soportados
     private static final String[] IMAGE_EXTENSIONS = {"jpg", "jpeg", "png", "gif", "bmp"};
 
+    // Tamaño máximo de la imagen decodificada para las vistas previas
+    private static final int IMAGE_PREVIEW_MAX_DIMENSION = 800;
+
     // Logger para registro de errores y eventos
     private static final Logger logger = LoggerFactory.getLogger(ImprovedOllamaGUIClient.class);
 
@@ -57,6 +53,7 @@ public class ImprovedOllamaGUIClient extends JFrame {
 
     // Componentes de la interfaz gráfica
     private JComboBox<String> modelComboBox;
+    private JLabel modelStateLabel;
     private JTextField temperatureField;
     private JTextField topPField;
     private JTextField maxTokensField;
@@ -69,12 +66,17 @@ public class ImprovedOllamaGUIClient extends JFrame {
     private JTextPane responseTextPane;
     private JLabel responseImageLabel;
     private JButton sendButton;
+    private JButton stopButton;
     private JButton saveResponseButton;
     private JButton viewFileButton;
     private JProgressBar progressBar;
     private JLabel statusLabel;
     private JCheckBox multimodalCheckBox;
+    private JCheckBox conversationCheckBox;
+    private JButton newConversationButton;
     private JCheckBox webSearchCheckBox;
+    private JCheckBox mapReduceCheckBox;
+    private JCheckBox retrievalCheckBox;
     private JTextField webSearchQueryField;
     private JPanel imagePreviewPanel;
     private JLabel imagePreviewLabel;
@@ -85,6 +87,15 @@ public class ImprovedOllamaGUIClient extends JFrame {
     private MainMenuBar mainMenuBar;
     private boolean darkModeEnabled = false;
 
+    // Resaltado de sintaxis de la respuesta
+    private SyntaxHighlighter responseHighlighter;
+
+    // Vista paginada para respuestas que superan el límite del documento
+    private PagedTextView pagedResponseView;
+    private CardLayout responseTextCardLayout;
+    private JPanel responseTextCards;
+    private boolean responsePaged = false;
+
     // Contenedores de estados
     private CardLayout viewCardLayout;
     private JPanel viewContainer;
@@ -94,10 +105,13 @@ public class ImprovedOllamaGUIClient extends JFrame {
     // Estado de la aplicación
     private String fileContent = "";
     private String loadedFilePath = "";
-    private String currentResponse = "";
+    private ResponseTextStore responseStore = null;
     private boolean isRequestInProgress = false;
+    private boolean populatingModels = false;
+    private GenerationHandle currentGeneration = null;
+    private ConversationSession conversationSession = null;
     private BufferedImage loadedImage = null;
-    private String imageBase64 = "";
+    private CompletableFuture<ImagePipeline.PreparedImage> loadedImagePreparation = null;
     private BufferedImage responseImage = null;
     private List<FileExplorerPanel.FileInfo> selectedFiles = new ArrayList<>();
 
@@ -106,6 +120,11 @@ public class ImprovedOllamaGUIClient extends JFrame {
     private final ConfigManager configManager;
     private final ErrorManager errorManager;
     private final ThemeManager themeManager;
+    private final OllamaHttpTransport transport;
+    private final ModelPreloader modelPreloader;
+    private final ImagePipeline imagePipeline;
+    private final FileContentExtractor fileContentExtractor;
+    private final ModelCatalog modelCatalog;
 
     /**
      * Constructor principal
@@ -124,6 +143,17 @@ public class ImprovedOllamaGUIClient extends JFrame {
         // Inicializar gestor de temas
         themeManager = ThemeManager.getInstance();
 
+        // Inicializar transporte HTTP compartido con la configuración del usuario
+        transport = OllamaHttpTransport.getInstance(configManager);
+
+        // Inicializar precarga de modelos
+        modelPreloader = ModelPreloader.getInstance();
+        imagePipeline = ImagePipeline.getInstance();
+        fileContentExtractor = FileContentExtractor.getInstance();
+
+        // Inicializar catálogo de modelos (incluye la caché en disco)
+        modelCatalog = ModelCatalog.getInstance();
+
         // Inicializar servicio de búsqueda web
         webSearchService = new WebSearchService();
 
@@ -157,6 +187,11 @@ public class ImprovedOllamaGUIClient extends JFrame {
             @Override
             public void windowClosing(WindowEvent e) {
                 saveWindowSettings();
+
+                // No dejar al servidor generando una respuesta que nadie va a leer
+                if (currentGeneration != null) {
+                    currentGeneration.cancel();
+                }
             }
         });
     }
@@ -168,6 +203,8 @@ public class ImprovedOllamaGUIClient extends JFrame {
         // Modelos
         modelComboBox = new JComboBox<>();
         modelComboBox.setToolTipText("Selecciona un modelo de Ollama");
+        modelStateLabel = new JLabel();
+        modelStateLabel.setToolTipText("Estado de carga del modelo en Ollama");
 
         // Parámetros
         temperatureField = new JTextField("0.9", 5);
@@ -181,10 +218,24 @@ public class ImprovedOllamaGUIClient extends JFrame {
         multimodalCheckBox = new JCheckBox("Modo multimodal");
         multimodalCheckBox.setToolTipText("Habilitar para usar modelos que soporten imágenes como gemma:27b");
 
+        // Conversación de varios turnos
+        conversationCheckBox = new JCheckBox("Conversación");
+        conversationCheckBox.setToolTipText("Continuar la conversación: las preguntas de seguimiento solo envían el nuevo texto");
+        newConversationButton = new JButton("Nueva conversación");
+        newConversationButton.setToolTipText("Empezar una conversación nueva descartando el contexto anterior");
+
         // Búsqueda web
         webSearchCheckBox = new JCheckBox("Búsqueda web");
         webSearchCheckBox.setToolTipText("Habilitar para enriquecer las consultas con resultados de búsqueda web");
 
+        // Análisis por partes de los archivos que no caben en el contexto
+        mapReduceCheckBox = new JCheckBox("Por partes");
+        mapReduceCheckBox.setToolTipText("Analizar por partes (map-reduce) los archivos que no caben en el contexto del modelo");
+
+        // Envío de solo los fragmentos relevantes de los archivos
+        retrievalCheckBox = new JCheckBox("Fragmentos");
+        retrievalCheckBox.setToolTipText("Enviar solo los fragmentos de los archivos más relacionados con la consulta (índice local de embeddings)");
+
         webSearchQueryField = new JTextField("", 15);
         webSearchQueryField.setToolTipText("Consulta personalizada para búsqueda web (opcional)");
         webSearchQueryField.setEnabled(false);
@@ -224,6 +275,11 @@ public class ImprovedOllamaGUIClient extends JFrame {
         responseTextPane.setEditable(false);
         responseTextPane.setContentType("text/plain");
 
+        // Vista de las respuestas demasiado largas para el documento
+        pagedResponseView = new PagedTextView();
+        responseStore = createResponseStore();
+        pagedResponseView.setStore(responseStore);
+
         // Área para mostrar imágenes en la respuesta
         responseImageLabel = new JLabel();
         responseImageLabel.setHorizontalAlignment(JLabel.CENTER);
@@ -232,6 +288,9 @@ public class ImprovedOllamaGUIClient extends JFrame {
         // Botones de acción
         sendButton = new JButton("Enviar consulta");
         sendButton.setToolTipText("Enviar la consulta a Ollama");
+        stopButton = new JButton("Detener");
+        stopButton.setToolTipText("Detener la generación en curso conservando la respuesta parcial");
+        stopButton.setEnabled(false);
         saveResponseButton = new JButton("Guardar respuesta");
         saveResponseButton.setToolTipText("Guardar la respuesta en un archivo");
         saveResponseButton.setEnabled(false);
@@ -280,8 +339,12 @@ public class ImprovedOllamaGUIClient extends JFrame {
         modelPanel.add(modelComboBox, BorderLayout.CENTER);
 
         JPanel checkboxesPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
+        checkboxesPanel.add(modelStateLabel);
+        checkboxesPanel.add(conversationCheckBox);
         checkboxesPanel.add(multimodalCheckBox);
         checkboxesPanel.add(webSearchCheckBox);
+        checkboxesPanel.add(mapReduceCheckBox);
+        checkboxesPanel.add(retrievalCheckBox);
         modelPanel.add(checkboxesPanel, BorderLayout.EAST);
 
         topPanel.add(modelPanel, BorderLayout.NORTH);
@@ -337,7 +400,11 @@ public class ImprovedOllamaGUIClient extends JFrame {
 
         // Configurar panel de respuesta para la vista de respuesta
         JPanel responseContentPanel = new JPanel(new BorderLayout());
-        responseContentPanel.add(new JScrollPane(responseTextPane), BorderLayout.CENTER);
+        responseTextCardLayout = new CardLayout();
+        responseTextCards = new JPanel(responseTextCardLayout);
+        responseTextCards.add(new JScrollPane(responseTextPane), "document");
+        responseTextCards.add(new JScrollPane(pagedResponseView), "paged");
+        responseContentPanel.add(responseTextCards, BorderLayout.CENTER);
         responseContentPanel.add(responseImageLabel, BorderLayout.SOUTH);
 
         responsePanel.add(new JLabel("Respuesta:"), BorderLayout.NORTH);
@@ -380,6 +447,8 @@ public class ImprovedOllamaGUIClient extends JFrame {
 
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 0));
         buttonPanel.add(sendButton);
+        buttonPanel.add(stopButton);
+        buttonPanel.add(newConversationButton);
         buttonPanel.add(saveResponseButton);
         bottomPanel.add(buttonPanel, BorderLayout.WEST);
 
@@ -410,6 +479,9 @@ public class ImprovedOllamaGUIClient extends JFrame {
         // Botón de enviar consulta
         sendButton.addActionListener(e -> sendQuery());
 
+        // Botón de detener generación
+        stopButton.addActionListener(e -> stopQuery());
+
         // Botón de guardar respuesta
         saveResponseButton.addActionListener(e -> saveResponse());
 
@@ -420,6 +492,33 @@ public class ImprovedOllamaGUIClient extends JFrame {
             configManager.setMainConfig("multimodalEnabled", isMultimodal);
         });
 
+        // Checkbox de conversación
+        conversationCheckBox.addActionListener(e -> {
+            configManager.setMainConfig("conversationEnabled", conversationCheckBox.isSelected());
+            if (!conversationCheckBox.isSelected()) {
+                resetConversation();
+            }
+        });
+
+        // Botón de nueva conversación
+        newConversationButton.addActionListener(e -> {
+            // La respuesta en curso sigue escribiendo en el almacén actual
+            if (isRequestInProgress) {
+                return;
+            }
+            resetConversation();
+            resetResponseView();
+            setStatus("Nueva conversación", false);
+        });
+
+        // Checkbox de análisis por partes
+        mapReduceCheckBox.addActionListener(e ->
+                configManager.setMainConfig("mapReduceEnabled", mapReduceCheckBox.isSelected()));
+
+        // Checkbox de fragmentos relevantes
+        retrievalCheckBox.addActionListener(e ->
+                configManager.setMainConfig("retrievalEnabled", retrievalCheckBox.isSelected()));
+
         // Checkbox de búsqueda web
         webSearchCheckBox.addActionListener(e -> {
             boolean isWebSearchEnabled = webSearchCheckBox.isSelected();
@@ -457,14 +556,27 @@ public class ImprovedOllamaGUIClient extends JFrame {
         topPField.addFocusListener(paramChangeFocusAdapter);
         maxTokensField.addFocusListener(paramChangeFocusAdapter);
 
-        // Guardar el modelo seleccionado cuando cambie
+        // Guardar el modelo seleccionado cuando cambie y precargarlo
+        // (se ignoran los eventos generados al rellenar la lista de modelos)
         modelComboBox.addActionListener(e -> {
+            if (populatingModels) {
+                return;
+            }
             String selectedModel = (String) modelComboBox.getSelectedItem();
             if (selectedModel != null) {
                 configManager.setMainConfig("lastUsedModel", selectedModel);
+                loadModelParameters(selectedModel);
+                preloadSelectedModel();
             }
         });
 
+        // Actualizar el indicador cuando cambie el estado de carga del modelo seleccionado
+        modelPreloader.addListener((model, state) -> SwingUtilities.invokeLater(() -> {
+            if (model.equals(modelComboBox.getSelectedItem())) {
+                updateModelStateLabel();
+            }
+        }));
+
         // Manejar cambios de la posición del divisor
         mainSplitPane.addPropertyChangeListener(JSplitPane.DIVIDER_LOCATION_PROPERTY,
                 evt -> configManager.setMainConfig("splitterPosition", mainSplitPane.getDividerLocation()));
@@ -510,6 +622,14 @@ public class ImprovedOllamaGUIClient extends JFrame {
                     clearCache();
                     break;
 
+                case "compareModels":
+                    showModelComparison();
+                    break;
+
+                case "modelProfile":
+                    showModelProfile();
+                    break;
+
                 case "settingsReset":
                     reloadSettings();
                     break;
@@ -620,6 +740,19 @@ public class ImprovedOllamaGUIClient extends JFrame {
         logger.info("Configuración de ventana guardada: {}x{}", getWidth(), getHeight());
     }
 
+    /**
+     * Muestra los parámetros del perfil del modelo; los que no tenga se toman de la configuración general
+     */
+    private void loadModelParameters(String model) {
+        GenerationOptions profile = GenerationOptions.forModel(model);
+        temperatureField.setText(String.valueOf(profile.getTemperature() != null ?
+                profile.getTemperature() : configManager.getMainConfig("temperature", 0.9f)));
+        topPField.setText(String.valueOf(profile.getTopP() != null ?
+                profile.getTopP() : configManager.getMainConfig("topP", 0.9f)));
+        maxTokensField.setText(String.valueOf(profile.getNumPredict() != null ?
+                profile.getNumPredict() : configManager.getMainConfig("maxTokens", 10000)));
+    }
+
     /**
      * Guarda los parámetros del modelo
      */
@@ -644,6 +777,16 @@ public class ImprovedOllamaGUIClient extends JFrame {
             configManager.setMainConfig("topP", topP);
             configManager.setMainConfig("maxTokens", maxTokens);
 
+            // Guardar también en el perfil del modelo seleccionado
+            String model = (String) modelComboBox.getSelectedItem();
+            if (model != null && !populatingModels) {
+                GenerationOptions profile = GenerationOptions.forModel(model);
+                profile.setTemperature(temperature);
+                profile.setTopP(topP);
+                profile.setNumPredict(maxTokens);
+                profile.saveAsProfile(model);
+            }
+
         } catch (NumberFormatException e) {
             // Restaurar valores anteriores
             temperatureField.setText(String.valueOf(configManager.getMainConfig("temperature", 0.9f)));
@@ -667,8 +810,8 @@ public class ImprovedOllamaGUIClient extends JFrame {
         // Limpiar caché de imágenes, archivos temporales, etc.
         try {
             // Limpiar caché de imágenes en memoria
-            imageBase64 = "";
             loadedImage = null;
+            loadedImagePreparation = null;
             responseImage = null;
 
             // Actualizar interfaz
@@ -731,6 +874,9 @@ public class ImprovedOllamaGUIClient extends JFrame {
         // Actualizar opciones
         multimodalCheckBox.setSelected(configManager.getMainConfig("multimodalEnabled", false));
         loadImageButton.setEnabled(multimodalCheckBox.isSelected());
+        conversationCheckBox.setSelected(configManager.getMainConfig("conversationEnabled", false));
+        mapReduceCheckBox.setSelected(configManager.getMainConfig("mapReduceEnabled", false));
+        retrievalCheckBox.setSelected(configManager.getMainConfig("retrievalEnabled", false));
 
         // Actualizar configuración de búsqueda
         updateSearchSettings();
@@ -824,94 +970,182 @@ public class ImprovedOllamaGUIClient extends JFrame {
      * Método para mostrar una vista previa de un archivo de imagen
      */
     private void previewImageFile(FileExplorerPanel.FileInfo imageFile) {
-        try {
-            File file = new File(imageFile.getPath());
-            loadedImage = ImageIO.read(file);
-            loadedFilePath = imageFile.getPath();
-
-            // Convertir a base64
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            String extension = imageFile.getExtension();
-            ImageIO.write(loadedImage, extension, baos);
-            imageBase64 = Base64.getEncoder().encodeToString(baos.toByteArray());
-
-            // Mostrar vista previa
-            displayImagePreview(loadedImage);
-
-            // Añadir a archivos recientes
-            configManager.addRecentFile(imageFile.getPath());
-            mainMenuBar.refreshRecentFilesMenu();
-
-            // Activar multimodal si hay una imagen
-            if (!multimodalCheckBox.isSelected()) {
-                multimodalCheckBox.setSelected(true);
-                // Guardar en configuración
-                configManager.setMainConfig("multimodalEnabled", true);
+        File file = new File(imageFile.getPath());
+
+        SwingWorker<BufferedImage, Void> worker = new SwingWorker<>() {
+            @Override
+            protected BufferedImage doInBackground() throws Exception {
+                return ImagePipeline.readPreview(file, IMAGE_PREVIEW_MAX_DIMENSION);
             }
 
-        } catch (Exception e) {
-            errorManager.handleException(
-                    ErrorManager.ErrorCategory.FILE_SYSTEM,
-                    "Error al previsualizar imagen",
-                    e,
-                    true
-            );
-        }
+            @Override
+            protected void done() {
+                try {
+                    loadedImage = get();
+                    loadedFilePath = imageFile.getPath();
+                    loadedImagePreparation = imagePipeline.prepareAsync(file);
+
+                    // Mostrar vista previa
+                    displayImagePreview(loadedImage);
+
+                    // Añadir a archivos recientes
+                    configManager.addRecentFile(imageFile.getPath());
+                    mainMenuBar.refreshRecentFilesMenu();
+
+                    // Activar multimodal si hay una imagen
+                    if (!multimodalCheckBox.isSelected()) {
+                        multimodalCheckBox.setSelected(true);
+                        // Guardar en configuración
+                        configManager.setMainConfig("multimodalEnabled", true);
+                    }
+
+                } catch (Exception e) {
+                    errorManager.handleException(
+                            ErrorManager.ErrorCategory.FILE_SYSTEM,
+                            "Error al previsualizar imagen",
+                            e.getCause() != null ? e.getCause() : e,
+                            true
+                    );
+                }
+            }
+        };
+
+        worker.execute();
     }
 
     /**
-     * Prepara el contenido de múltiples archivos para enviar al modelo
+     * Obtiene la sesión de conversación para la nueva consulta. Si el modo conversación
+     * está desactivado devuelve null; si ha cambiado el modelo, el tipo de consulta o los
+     * adjuntos se empieza una sesión nueva.
      */
-    private String prepareMultiFileContent() {
-        if (selectedFiles.isEmpty()) {
-            return fileContent; // Usar el contenido de archivo único si no hay selección múltiple
+    private ConversationSession prepareConversation(String model, List<File> queryImages) {
+        if (!conversationCheckBox.isSelected()) {
+            conversationSession = null;
+            return null;
+        }
+
+        // Los archivos se identifican por ruta y fecha de modificación para no tener que volver a leerlos
+        StringBuilder files = new StringBuilder();
+        for (FileExplorerPanel.FileInfo file : selectedFiles) {
+            File f = new File(file.getPath());
+            files.append(file.getPath()).append('|').append(f.length()).append('|').append(f.lastModified()).append('\n');
+        }
+
+        ConversationSession.Mode mode = queryImages.isEmpty() ? ConversationSession.Mode.GENERATE : ConversationSession.Mode.CHAT;
+        StringBuilder images = new StringBuilder();
+        for (File imageFile : queryImages) {
+            images.append(imageFile.getPath()).append('|').append(imageFile.length()).append('|')
+                    .append(imageFile.lastModified()).append('\n');
         }
+        // Cambiar entre archivos completos, fragmentos o análisis por partes cambia lo que hay en el contexto
+        String fileModes = "fragmentos=" + retrievalCheckBox.isSelected() + "|partes=" + mapReduceCheckBox.isSelected();
+        String key = ConversationSession.keyFor(fileContent, files.toString(), images.toString(), fileModes);
 
-        StringBuilder content = new StringBuilder();
-        content.append("# ARCHIVOS SELECCIONADOS\n\n");
+        if (conversationSession == null || !conversationSession.isCompatible(model, mode, key)) {
+            if (conversationSession != null) {
+                logger.info("Los adjuntos, el modelo, el tipo de consulta o el modo de los archivos han cambiado; se inicia una nueva conversación");
+            }
+            conversationSession = new ConversationSession(model, mode, key);
+        }
+        return conversationSession;
+    }
 
+    /**
+     * Obtiene las imágenes de una consulta multimodal: la imagen cargada y las demás
+     * imágenes seleccionadas en el explorador, sin repetir ninguna
+     */
+    private List<File> collectQueryImages() {
+        Map<String, File> images = new LinkedHashMap<>();
+        if (loadedImage != null && !loadedFilePath.isEmpty()) {
+            images.put(loadedFilePath, new File(loadedFilePath));
+        }
         for (FileExplorerPanel.FileInfo file : selectedFiles) {
-            if (!file.isImage()) {
-                try {
-                    file.loadContent();
-                    content.append("## ARCHIVO: ").append(file.getName())
-                            .append(" (").append(file.getPath()).append(")\n\n");
-                    content.append("```").append(file.getExtension()).append("\n");
-                    content.append(file.getContent()).append("\n");
-                    content.append("```\n\n");
-                } catch (IOException e) {
-                    logger.error("Error al cargar contenido del archivo: " + file.getPath(), e);
-                    content.append("## ERROR al cargar ").append(file.getName())
-                            .append(": ").append(e.getMessage()).append("\n\n");
-                }
-            } else {
-                content.append("## IMAGEN: ").append(file.getName())
-                        .append(" (no se muestra contenido binario)\n\n");
+            if (file.isImage()) {
+                images.putIfAbsent(file.getPath(), new File(file.getPath()));
+            }
+        }
+        return new ArrayList<>(images.values());
+    }
+
+    /**
+     * Descarta la conversación actual; la siguiente consulta vuelve a enviar los adjuntos
+     */
+    private void resetConversation() {
+        conversationSession = null;
+    }
+
+    /**
+     * Prepara el contenido de múltiples archivos para enviar al modelo. Los archivos se
+     * extraen en paralelo (ver FileContentExtractor) y se notifica el progreso de cada
+     * uno; se ejecuta fuera del EDT. Con forMapReduce el texto no se recorta con los
+     * límites por archivo del prompt, ya que el análisis por partes lo divide después.
+     */
+    private String prepareMultiFileContent(List<FileExplorerPanel.FileInfo> files, String singleFileContent,
+                                           String singleFilePath, boolean forMapReduce,
+                                           FileContentExtractor.ProgressListener listener,
+                                           BooleanSupplier cancelled) throws InterruptedException, IOException {
+        if (files.isEmpty()) {
+            // El archivo único se cargó con el límite de los archivos de texto; se vuelve a leer entero
+            if (forMapReduce && !singleFileContent.isEmpty() && !singleFilePath.isEmpty()) {
+                return fileContentExtractor.extractForMapReduce(new File(singleFilePath));
             }
+            return singleFileContent; // Usar el contenido de archivo único si no hay selección múltiple
         }
+        return fileContentExtractor.extractAll(files, forMapReduce, listener, cancelled);
+    }
 
-        return content.toString();
+    /**
+     * Archivos que se indexan para enviar solo sus fragmentos relevantes: los de la
+     * selección múltiple o, si no hay, el archivo cargado
+     */
+    private List<File> collectRetrievalFiles() {
+        List<File> files = new ArrayList<>();
+        if (!selectedFiles.isEmpty()) {
+            for (FileExplorerPanel.FileInfo file : selectedFiles) {
+                if (!file.isImage()) {
+                    files.add(new File(file.getPath()));
+                }
+            }
+        } else if (!fileContent.isEmpty() && !loadedFilePath.isEmpty()) {
+            files.add(new File(loadedFilePath));
+        }
+        return files;
     }
 
     /**
-     * Carga la lista de modelos disponibles
+     * Carga la lista de modelos disponibles. Los modelos guardados en la caché del
+     * catálogo se muestran al instante y la lista se actualiza al responder el servidor.
      */
     private void loadModels() {
-        setStatus("Cargando modelos...", true);
+        List<String> cachedModels = ModelCatalog.namesOf(modelCatalog.getCachedModels());
+        if (!cachedModels.isEmpty()) {
+            populateModelComboBox(cachedModels);
+            setStatus("Actualizando lista de modelos...", true);
+        } else {
+            setStatus("Cargando modelos...", true);
+        }
 
         SwingWorker<List<String>, Void> worker = new SwingWorker<>() {
             @Override
             protected List<String> doInBackground() throws Exception {
-                return getAvailableModels();
+                List<String> models = ModelCatalog.namesOf(modelCatalog.refresh());
+
+                // Consultar qué modelos están ya cargados en el servidor
+                try {
+                    modelPreloader.refreshLoadedModels();
+                } catch (Exception e) {
+                    logger.warn("No se pudo consultar los modelos cargados: {}", e.getMessage());
+                }
+                return models;
             }
 
             @Override
             protected void done() {
                 try {
                     List<String> models = get();
-                    modelComboBox.removeAllItems();
 
                     if (models.isEmpty()) {
+                        modelComboBox.removeAllItems();
                         setStatus("No se encontraron modelos en Ollama", false);
                         errorManager.handleError(
                                 ErrorManager.ErrorCategory.OLLAMA_API,
@@ -921,41 +1155,20 @@ public class ImprovedOllamaGUIClient extends JFrame {
                                 true
                         );
                     } else {
-                        // Agregar todos los modelos
-                        for (String model : models) {
-                            modelComboBox.addItem(model);
-                        }
-
-                        // Obtener modelo usado anteriormente
-                        String lastUsedModel = configManager.getMainConfig("lastUsedModel", "");
-
-                        // Si existe en la lista, seleccionarlo
-                        if (!lastUsedModel.isEmpty()) {
-                            for (int i = 0; i < modelComboBox.getItemCount(); i++) {
-                                if (modelComboBox.getItemAt(i).equals(lastUsedModel)) {
-                                    modelComboBox.setSelectedIndex(i);
-                                    break;
-                                }
-                            }
-                        }
-
-                        // Si no hay modelo previo, buscar un modelo compatible con nuestras características
-                        if (lastUsedModel.isEmpty()) {
-                            // Preseleccionar gemma3:27b si está disponible (compatible con multimodal)
-                            for (int i = 0; i < modelComboBox.getItemCount(); i++) {
-                                String model = modelComboBox.getItemAt(i);
-                                if (model.contains("gemma3") && model.contains("27b")) {
-                                    modelComboBox.setSelectedIndex(i);
-                                    multimodalCheckBox.setSelected(true);
-                                    configManager.setMainConfig("multimodalEnabled", true);
-                                    break;
-                                }
-                            }
+                        // Solo se rehace la lista si ha cambiado respecto a la mostrada desde la caché
+                        if (!models.equals(cachedModels)) {
+                            populateModelComboBox(models);
                         }
-
                         setStatus("Modelos cargados: " + models.size(), false);
                     }
                 } catch (Exception e) {
+                    if (!cachedModels.isEmpty()) {
+                        // Se mantiene la lista de la caché; los errores se verán al enviar
+                        logger.warn("No se pudo actualizar la lista de modelos: {}", e.getMessage());
+                        setStatus("Usando la lista de modelos en caché", false);
+                        return;
+                    }
+
                     modelComboBox.removeAllItems();
                     setStatus("Error al cargar modelos", false);
 
@@ -972,6 +1185,52 @@ public class ImprovedOllamaGUIClient extends JFrame {
         worker.execute();
     }
 
+    /**
+     * Rellena el selector de modelos y selecciona el último modelo usado
+     */
+    private void populateModelComboBox(List<String> models) {
+        populatingModels = true;
+        modelComboBox.removeAllItems();
+
+        // Agregar todos los modelos
+        for (String model : models) {
+            modelComboBox.addItem(model);
+        }
+
+        // Obtener modelo usado anteriormente
+        String lastUsedModel = configManager.getMainConfig("lastUsedModel", "");
+
+        // Si existe en la lista, seleccionarlo
+        if (!lastUsedModel.isEmpty()) {
+            for (int i = 0; i < modelComboBox.getItemCount(); i++) {
+                if (modelComboBox.getItemAt(i).equals(lastUsedModel)) {
+                    modelComboBox.setSelectedIndex(i);
+                    break;
+                }
+            }
+        }
+
+        // Si no hay modelo previo, buscar un modelo compatible con nuestras características
+        if (lastUsedModel.isEmpty()) {
+            // Preseleccionar gemma3:27b si está disponible (compatible con multimodal)
+            for (int i = 0; i < modelComboBox.getItemCount(); i++) {
+                String model = modelComboBox.getItemAt(i);
+                if (model.contains("gemma3") && model.contains("27b")) {
+                    modelComboBox.setSelectedIndex(i);
+                    multimodalCheckBox.setSelected(true);
+                    configManager.setMainConfig("multimodalEnabled", true);
+                    break;
+                }
+            }
+        }
+
+        populatingModels = false;
+        if (modelComboBox.getSelectedItem() != null) {
+            loadModelParameters((String) modelComboBox.getSelectedItem());
+        }
+        preloadSelectedModel();
+    }
+
     /**
      * Carga un archivo utilizando un selector de archivos
      */
@@ -994,7 +1253,7 @@ public class ImprovedOllamaGUIClient extends JFrame {
 
             // Reiniciar el estado de la imagen
             loadedImage = null;
-            imageBase64 = "";
+            loadedImagePreparation = null;
             imagePreviewPanel.setVisible(false);
             imagePreviewLabel.setIcon(null);
 
@@ -1066,29 +1325,28 @@ public class ImprovedOllamaGUIClient extends JFrame {
             SwingWorker<BufferedImage, Void> worker = new SwingWorker<>() {
                 @Override
                 protected BufferedImage doInBackground() throws Exception {
-                    // Leer la imagen
-                    BufferedImage img = ImageIO.read(selectedFile);
-
-                    // Convertir a base64
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    String extension = getFileExtension(loadedFilePath);
-                    ImageIO.write(img, extension, baos);
-                    byte[] imageBytes = baos.toByteArray();
-                    imageBase64 = Base64.getEncoder().encodeToString(imageBytes);
-
-                    return img;
+                    // Leer solo una versión reducida para la vista previa; la imagen que se
+                    // envía la prepara el pipeline en segundo plano
+                    return ImagePipeline.readPreview(selectedFile, IMAGE_PREVIEW_MAX_DIMENSION);
                 }
 
                 @Override
                 protected void done() {
                     try {
                         loadedImage = get();
+                        loadedImagePreparation = imagePipeline.prepareAsync(selectedFile);
 
                         // Mostrar vista previa
                         displayImagePreview(loadedImage);
 
-                        fileNameLabel.setText(selectedFile.getName() + " (" +
-                                loadedImage.getWidth() + "x" + loadedImage.getHeight() + ")");
+                        // Las dimensiones reales se conocen cuando el pipeline termina
+                        fileNameLabel.setText(selectedFile.getName());
+                        loadedImagePreparation.thenAccept(prepared -> SwingUtilities.invokeLater(() -> {
+                            if (selectedFile.getAbsolutePath().equals(loadedFilePath)) {
+                                fileNameLabel.setText(selectedFile.getName() + " (" +
+                                        prepared.getWidth() + "x" + prepared.getHeight() + ")");
+                            }
+                        }));
                         clearFileButton.setEnabled(true);
                         viewFileButton.setEnabled(true);
                         setStatus("Imagen cargada: " + selectedFile.getName(), false);
@@ -1099,7 +1357,7 @@ public class ImprovedOllamaGUIClient extends JFrame {
 
                     } catch (Exception e) {
                         loadedImage = null;
-                        imageBase64 = "";
+                        loadedImagePreparation = null;
                         loadedFilePath = "";
                         fileNameLabel.setText("Sin archivo cargado");
                         clearFileButton.setEnabled(false);
@@ -1154,7 +1412,7 @@ public class ImprovedOllamaGUIClient extends JFrame {
     private void clearFile() {
         fileContent = "";
         loadedImage = null;
-        imageBase64 = "";
+        loadedImagePreparation = null;
         loadedFilePath = "";
         fileNameLabel.setText("Sin archivo cargado");
         clearFileButton.setEnabled(false);
@@ -1198,9 +1456,19 @@ public class ImprovedOllamaGUIClient extends JFrame {
             JScrollPane scrollPane = new JScrollPane(imageLabel);
             dialog.add(scrollPane, BorderLayout.CENTER);
 
-            // Mostrar información de la imagen
+            // Mostrar información de la imagen (la vista previa está reducida; las dimensiones vienen del pipeline)
             JPanel infoPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
-            infoPanel.add(new JLabel("Dimensiones: " + loadedImage.getWidth() + " x " + loadedImage.getHeight()));
+            ImagePipeline.PreparedImage prepared = loadedImagePreparation != null ?
+                    loadedImagePreparation.getNow(null) : null;
+            if (prepared != null) {
+                infoPanel.add(new JLabel("Dimensiones: " + prepared.getWidth() + " x " + prepared.getHeight()));
+                if (!prepared.isPassthrough()) {
+                    infoPanel.add(new JLabel(" | Se envía: " + prepared.getPayloadWidth() + " x " +
+                            prepared.getPayloadHeight() + " (" + prepared.getMimeType() + ")"));
+                }
+            } else {
+                infoPanel.add(new JLabel("Preparando imagen..."));
+            }
             infoPanel.add(new JLabel(" | Formato: " + getFileExtension(loadedFilePath).toUpperCase()));
             dialog.add(infoPanel, BorderLayout.NORTH);
         } else {
@@ -1211,8 +1479,7 @@ public class ImprovedOllamaGUIClient extends JFrame {
 
             // Detectar el tipo de archivo y aplicar coloreado de sintaxis
             String extension = getFileExtension(loadedFilePath).toLowerCase();
-            if (extension.equals("java") || extension.equals("py") || extension.equals("js") ||
-                    extension.equals("html") || extension.equals("css") || extension.equals("xml")) {
+            if (SyntaxLexer.Language.forExtension(extension) != null) {
                 applySyntaxHighlighting(textPane, fileContent, extension);
             }
 
@@ -1267,32 +1534,14 @@ public class ImprovedOllamaGUIClient extends JFrame {
             return;
         }
 
-        Map<String, Float> parameters = new HashMap<>();
-        try {
-            float temperature = Float.parseFloat(temperatureField.getText());
-            float topP = Float.parseFloat(topPField.getText());
-            float maxTokens = Float.parseFloat(maxTokensField.getText());
-
-            parameters.put("temperature", temperature);
-            parameters.put("top_p", topP);
-            parameters.put("max_tokens", maxTokens);
-
-            // Guardar parámetros para uso futuro
-            saveModelParameters();
-
-        } catch (NumberFormatException e) {
-            errorManager.handleError(
-                    ErrorManager.ErrorCategory.CONFIGURATION,
-                    ErrorManager.ErrorSeverity.WARNING,
-                    "Error en parámetros",
-                    "Los parámetros deben ser números válidos",
-                    true
-            );
+        GenerationOptions parameters = readParameters();
+        if (parameters == null) {
             return;
         }
 
         // Determinar el tipo de consulta (texto, multimodal, con búsqueda web)
-        final boolean isMultimodalQuery = multimodalCheckBox.isSelected() && loadedImage != null;
+        final List<File> queryImages = multimodalCheckBox.isSelected() ? collectQueryImages() : new ArrayList<>();
+        final boolean isMultimodalQuery = !queryImages.isEmpty();
         final boolean isWebSearchEnabled = webSearchCheckBox.isSelected();
 
         // Verificar búsqueda web
@@ -1305,14 +1554,25 @@ public class ImprovedOllamaGUIClient extends JFrame {
             }
         }
 
-        // Configurar prompt final
-        final String multiFileContent = prepareMultiFileContent();
-        final String basePrompt = (fileContent.isEmpty() && selectedFiles.isEmpty()) ?
-                prompt :
-                "Archivos:\n\n" + multiFileContent + "\n\nPrompt:\n\n" + prompt;
+        // Continuar la conversación si el modelo, el tipo de consulta y los adjuntos no han cambiado
+        final ConversationSession session = prepareConversation(model, queryImages);
+        final boolean isFollowUp = session != null && session.isFollowUp();
+
+        // Los archivos se extraen en el worker (en un seguimiento ya están en el contexto del
+        // servidor y las consultas multimodales no los envían). Con fragmentos se buscan en
+        // cada turno los relacionados con la nueva pregunta.
+        final List<File> retrievalFiles = retrievalCheckBox.isSelected() && !isMultimodalQuery
+                ? collectRetrievalFiles() : new ArrayList<>();
+        final boolean retrieveFragments = !retrievalFiles.isEmpty();
+        final boolean includeFiles = retrieveFragments || (!isFollowUp && !isMultimodalQuery
+                && !(fileContent.isEmpty() && selectedFiles.isEmpty()));
+        final List<FileExplorerPanel.FileInfo> queryFiles = new ArrayList<>(selectedFiles);
+        final String singleFileContent = fileContent;
+        final String singleFilePath = loadedFilePath;
+        final boolean isMapReduceEnabled = mapReduceCheckBox.isSelected();
 
         // Variable para el prompt final (se modificará si la búsqueda web está habilitada)
-        final String[] finalTextPrompt = {basePrompt};
+        final String[] finalTextPrompt = {prompt};
 
         // Capturar el valor final de prompt en una variable final para uso en el SwingWorker
         final String finalPrompt = prompt;
@@ -1322,21 +1582,74 @@ public class ImprovedOllamaGUIClient extends JFrame {
 
         // Enviar consulta
         isRequestInProgress = true;
-        setStatus("Enviando consulta a Ollama (" + model + ")...", true);
+        setStatus(isFollowUp ?
+                "Continuando conversación con " + model + " (turno " + (session.getTurnCount() + 1) + ")..." :
+                "Enviando consulta a Ollama (" + model + ")...", true);
         sendButton.setEnabled(false);
+        newConversationButton.setEnabled(false);
         saveResponseButton.setEnabled(false);
 
+        // Control de cancelación de esta generación
+        final GenerationHandle generation = new GenerationHandle();
+        currentGeneration = generation;
+        stopButton.setEnabled(true);
+
         // Ocultar imagen de respuesta anterior si la hay
         responseImageLabel.setVisible(false);
         responseImageLabel.setIcon(null);
         responseImage = null;
 
         // Limpiar área de respuesta
-        responseTextPane.setText("");
+        resetResponseView();
+
+        // Los tokens se añaden al documento a medida que llegan, agrupados por fotograma;
+        // el resaltador solo vuelve a analizar las líneas nuevas. Todo el texto se guarda
+        // en el almacén paginado y, si supera el límite, se muestra en la vista paginada
+        installResponseHighlighter();
+        final ResponseTextStore store = responseStore;
+        final StreamingTextAppender streamAppender = new StreamingTextAppender(responseTextPane);
+        int documentLimitKb = configManager.getMainConfig("responseDocumentLimitKb", 512);
+        streamAppender.setPagedOutput(pagedResponseView, documentLimitKb * 1024, this::showPagedResponse);
 
         SwingWorker<Map<String, Object>, String> worker = new SwingWorker<>() {
             @Override
             protected Map<String, Object> doInBackground() throws Exception {
+                // Configurar prompt final con el contenido de los archivos
+                if (retrieveFragments) {
+                    // Solo los fragmentos más relacionados con la consulta
+                    String relevantContent;
+                    try {
+                        relevantContent = retrieveRelevantContent(retrievalFiles, finalPrompt);
+                    } catch (CancellationException e) {
+                        return new HashMap<>();
+                    }
+                    finalTextPrompt[0] = "Archivos:\n\n" + relevantContent + "\n\nPrompt:\n\n" + finalPrompt;
+                } else if (includeFiles) {
+                    if (!queryFiles.isEmpty()) {
+                        publish("Extrayendo archivos: 0/" + queryFiles.size() + "...");
+                    }
+                    String filesContent;
+                    try {
+                        filesContent = prepareMultiFileContent(queryFiles, singleFileContent,
+                                singleFilePath, isMapReduceEnabled, (completed, total, file) -> publish("Extrayendo archivos: " + completed + "/" + total
+                                        + " (" + file.getName() + ")"),
+                                generation::isCancelled);
+                    } catch (CancellationException e) {
+                        return new HashMap<>();
+                    }
+
+                    // Si los archivos no caben en el contexto, analizarlos por partes
+                    if (isMapReduceEnabled) {
+                        MapReduceAnalyzer analyzer = new MapReduceAnalyzer(model, parameters);
+                        if (analyzer.needsMapReduce(filesContent)) {
+                            analyzeByParts(analyzer, filesContent, finalPrompt);
+                            return new HashMap<>();
+                        }
+                    }
+                    finalTextPrompt[0] = "Archivos:\n\n" + filesContent + "\n\nPrompt:\n\n" + finalPrompt;
+                }
+                final String basePrompt = finalTextPrompt[0];
+
                 // Si la búsqueda web está habilitada, realizar búsqueda
                 if (isWebSearchEnabled && !isMultimodalQuery) {
                     publish("Realizando búsqueda web...");
@@ -1383,49 +1696,91 @@ public class ImprovedOllamaGUIClient extends JFrame {
                 }
 
                 // Enviar el prompt a Ollama
+                publish("Generando respuesta (" + model + ")...");
                 if (isMultimodalQuery) {
-                    return sendMultimodalPromptToOllama(model, finalPrompt, imageBase64, parameters);
+                    return sendMultimodalPromptToOllama(model, finalPrompt, queryImages, parameters, session,
+                            streamAppender::append, generation);
                 } else {
-                    Map<String, Object> result = new HashMap<>();
-                    result.put("text", sendPromptToOllama(model, finalTextPrompt[0], parameters));
-                    return result;
+                    sendPromptToOllama(model, finalTextPrompt[0], parameters, session,
+                            streamAppender::append, generation);
+                    return new HashMap<>();
+                }
+            }
+
+            /**
+             * Indexa los archivos que han cambiado y devuelve el bloque con los fragmentos
+             * más parecidos a la consulta
+             */
+            private String retrieveRelevantContent(List<File> files, String question) throws IOException {
+                EmbeddingIndex index = EmbeddingIndex.getInstance();
+                publish("Indexando archivos: 0/" + files.size() + " (" + index.getModel() + ")...");
+                index.update(files, (completed, total, file) -> publish("Indexando archivos: " + completed + "/" + total
+                        + " (" + file.getName() + ")"), generation::isCancelled);
+
+                publish("Buscando fragmentos relevantes...");
+                int topK = configManager.getMainConfig("retrievalTopK", EmbeddingIndex.DEFAULT_TOP_K);
+                List<EmbeddingIndex.Match> matches = index.search(question, files, topK);
+                String content = EmbeddingIndex.formatMatches(matches);
+                logger.info("Fragmentos relevantes: {} de {} archivos ({} caracteres)",
+                        matches.size(), files.size(), content.length());
+                return content;
+            }
+
+            /**
+             * Analiza los archivos por partes; la respuesta final llega por el appender
+             */
+            private void analyzeByParts(MapReduceAnalyzer analyzer, String filesContent, String instruction)
+                    throws IOException, InterruptedException {
+                publish("Analizando por partes (" + model + ")...");
+                try {
+                    analyzer.run(filesContent, instruction, new MapReduceAnalyzer.ProgressListener() {
+                        @Override
+                        public void chunkDone(int completed, int total, boolean restored) {
+                            publish("Analizando por partes: " + completed + "/" + total
+                                    + (restored ? " (recuperadas de un análisis anterior)" : ""));
+                        }
+
+                        @Override
+                        public void reduceStarted(int partials, boolean finalStep) {
+                            publish(finalStep
+                                    ? "Generando respuesta final a partir de " + partials + " respuestas parciales (" + model + ")..."
+                                    : "Combinando " + partials + " respuestas parciales...");
+                        }
+                    }, streamAppender::append, generation);
+                } catch (CancellationException e) {
+                    logger.info("Análisis por partes cancelado por el usuario");
                 }
             }
 
             @Override
             protected void process(List<String> chunks) {
-                // Actualizar el área de respuesta con la respuesta parcial
+                // Los mensajes intermedios son de estado; el texto de la respuesta llega por el appender
                 String lastChunk = chunks.get(chunks.size() - 1);
-                responseTextPane.setText(lastChunk);
-                responseTextPane.setCaretPosition(lastChunk.length());
+                setStatus(lastChunk, true);
             }
 
             @Override
             protected void done() {
+                // Volcar los últimos tokens pendientes antes de procesar el resultado
+                streamAppender.finish();
+
                 try {
                     Map<String, Object> result = get();
 
-                    // Procesar respuesta de texto
-                    if (result.containsKey("text")) {
-                        currentResponse = (String) result.get("text");
-
-                        // Verificar si la respuesta está vacía
-                        if (currentResponse == null || currentResponse.trim().isEmpty()) {
-                            currentResponse = "[El modelo no generó una respuesta textual. Esto puede ocurrir con algunos modelos de menor tamaño en modo multimodal.]";
+                    // El texto recibido ya está en el documento (o en la vista paginada) con su
+                    // resaltado; solo se sustituye si está vacío
+                    if (store.isBlank()) {
+                        String emptyMessage;
+                        if (generation.isCancelled()) {
+                            emptyMessage = "[Generación detenida antes de recibir texto.]";
+                        } else {
+                            emptyMessage = "[El modelo no generó una respuesta textual. Esto puede ocurrir con algunos modelos de menor tamaño en modo multimodal.]";
                             logger.warn("Se recibió una respuesta vacía del modelo {}", model);
                         }
-
-                        responseTextPane.setText(currentResponse);
-
-                        // Aplicar coloreado de sintaxis
-                        highlightCodeBlocks(responseTextPane, currentResponse);
-                    } else {
-                        // Si no hay texto en la respuesta, mostrar mensaje informativo
-                        String noTextMessage = "[No se recibió texto en la respuesta del modelo.]";
-                        responseTextPane.setText(noTextMessage);
-                        currentResponse = noTextMessage;
-                        logger.warn("La respuesta no contiene texto para el modelo {}", model);
+                        store.append(emptyMessage);
+                        responseTextPane.setText(emptyMessage);
                     }
+                    applyResponseTheme(responseTextPane);
 
                     // Procesar respuesta de imagen
                     if (result.containsKey("image")) {
@@ -1433,7 +1788,13 @@ public class ImprovedOllamaGUIClient extends JFrame {
                         displayResponseImage(responseImage);
                     }
 
-                    setStatus("Respuesta recibida", false);
+                    if (generation.isCancelled()) {
+                        setStatus("Generación detenida", false);
+                    } else if (session != null && session.getTurnCount() > 0) {
+                        setStatus("Respuesta recibida (conversación: " + session.getTurnCount() + " turnos)", false);
+                    } else {
+                        setStatus("Respuesta recibida", false);
+                    }
                     saveResponseButton.setEnabled(true);
                 } catch (Exception e) {
                     logger.error("Error al procesar la consulta", e);
@@ -1447,7 +1808,10 @@ public class ImprovedOllamaGUIClient extends JFrame {
                     );
                 } finally {
                     isRequestInProgress = false;
+                    currentGeneration = null;
                     sendButton.setEnabled(true);
+                    newConversationButton.setEnabled(true);
+                    stopButton.setEnabled(false);
                 }
             }
         };
@@ -1455,6 +1819,138 @@ public class ImprovedOllamaGUIClient extends JFrame {
         worker.execute();
     }
 
+    /**
+     * Precarga en segundo plano el modelo seleccionado y actualiza su indicador de estado
+     */
+    private void preloadSelectedModel() {
+        String model = (String) modelComboBox.getSelectedItem();
+        if (model != null && modelPreloader.isPreloadOnSelectEnabled()) {
+            modelPreloader.preload(model);
+        }
+        updateModelStateLabel();
+    }
+
+    /**
+     * Muestra el estado de carga del modelo seleccionado
+     */
+    private void updateModelStateLabel() {
+        String model = (String) modelComboBox.getSelectedItem();
+        if (model == null) {
+            modelStateLabel.setText("");
+            return;
+        }
+
+        switch (modelPreloader.getState(model)) {
+            case LOADING:
+                modelStateLabel.setText("Cargando modelo...");
+                break;
+            case LOADED:
+                modelStateLabel.setText("Modelo cargado (" + modelPreloader.keepAliveFor(model) + ")");
+                break;
+            case FAILED:
+                modelStateLabel.setText("Error al cargar modelo");
+                break;
+            default:
+                modelStateLabel.setText("Modelo no cargado");
+        }
+    }
+
+    /**
+     * Lee los parámetros de generación de la interfaz y los guarda para el modelo actual.
+     * Devuelve null (tras avisar al usuario) si algún valor no es un número válido.
+     */
+    private GenerationOptions readParameters() {
+        GenerationOptions parameters = new GenerationOptions();
+        try {
+            float temperature = Float.parseFloat(temperatureField.getText());
+            float topP = Float.parseFloat(topPField.getText());
+            int maxTokens = Integer.parseInt(maxTokensField.getText().trim());
+
+            parameters.setTemperature(temperature);
+            parameters.setTopP(topP);
+            parameters.setNumPredict(maxTokens);
+
+            // Guardar parámetros para uso futuro
+            saveModelParameters();
+
+        } catch (NumberFormatException e) {
+            errorManager.handleError(
+                    ErrorManager.ErrorCategory.CONFIGURATION,
+                    ErrorManager.ErrorSeverity.WARNING,
+                    "Error en parámetros",
+                    "Los parámetros deben ser números válidos",
+                    true
+            );
+            return null;
+        }
+        return parameters;
+    }
+
+    /**
+     * Abre el diálogo para comparar varios modelos con el prompt actual
+     */
+    private void showModelComparison() {
+        List<String> models = new ArrayList<>();
+        for (int i = 0; i < modelComboBox.getItemCount(); i++) {
+            models.add(modelComboBox.getItemAt(i));
+        }
+
+        if (models.isEmpty()) {
+            errorManager.handleError(
+                    ErrorManager.ErrorCategory.OLLAMA_API,
+                    ErrorManager.ErrorSeverity.WARNING,
+                    "Sin modelos",
+                    "No hay modelos disponibles para comparar",
+                    true
+            );
+            return;
+        }
+
+        GenerationOptions parameters = readParameters();
+        if (parameters == null) {
+            return;
+        }
+
+        ModelComparisonDialog.showDialog(this, models, promptTextArea.getText().trim(), parameters);
+    }
+
+    /**
+     * Abre el editor del perfil de opciones del modelo seleccionado
+     */
+    private void showModelProfile() {
+        String model = (String) modelComboBox.getSelectedItem();
+        if (model == null || model.isEmpty()) {
+            errorManager.handleError(
+                    ErrorManager.ErrorCategory.OLLAMA_API,
+                    ErrorManager.ErrorSeverity.WARNING,
+                    "Sin modelo",
+                    "Selecciona un modelo para editar su perfil",
+                    true
+            );
+            return;
+        }
+
+        // Guardar antes los valores de la ventana principal para no perderlos al recargar
+        saveModelParameters();
+        if (ModelProfileDialog.showDialog(this, model)) {
+            loadModelParameters(model);
+            setStatus("Perfil de " + model + " guardado", false);
+        }
+    }
+
+    /**
+     * Detiene la generación en curso. La respuesta parcial recibida se conserva.
+     */
+    private void stopQuery() {
+        if (currentGeneration == null) {
+            return;
+        }
+
+        setStatus("Deteniendo generación...", true);
+        stopButton.setEnabled(false);
+        currentGeneration.cancel();
+    }
+
     /**
      * Muestra una imagen en el área de respuesta
      */
@@ -1481,16 +1977,24 @@ public class ImprovedOllamaGUIClient extends JFrame {
         responseImageLabel.setIcon(icon);
         responseImageLabel.setVisible(true);
 
-        // Añadir información sobre la imagen
-        responseTextPane.setText(responseTextPane.getText() +
-                "\n\n[Imagen generada: " + image.getWidth() + "x" + image.getHeight() + " píxeles]");
+        // Añadir información sobre la imagen al final, sin reemplazar el texto resaltado
+        if (responsePaged) {
+            return;
+        }
+        StyledDocument doc = responseTextPane.getStyledDocument();
+        try {
+            doc.insertString(doc.getLength(),
+                    "\n\n[Imagen generada: " + image.getWidth() + "x" + image.getHeight() + " píxeles]", null);
+        } catch (BadLocationException e) {
+            logger.error("Error al añadir la información de la imagen", e);
+        }
     }
 
     /**
      * Guarda la respuesta en un archivo (texto o imagen)
      */
     private void saveResponse() {
-        if (currentResponse.isEmpty() && responseImage == null) {
+        if (responseStore.length() == 0 && responseImage == null) {
             return;
         }
 
@@ -1532,17 +2036,17 @@ public class ImprovedOllamaGUIClient extends JFrame {
                     ImageIO.write(responseImage, extension, selectedFile);
 
                     // Si también hay texto, guardarlo en un archivo adicional
-                    if (!currentResponse.isEmpty()) {
+                    if (responseStore.length() > 0) {
                         File textFile = new File(selectedFile.getParent(),
                                 "texto_" + selectedFile.getName().replace("." + extension, ".txt"));
                         try (FileWriter writer = new FileWriter(textFile)) {
-                            writer.write(currentResponse);
+                            responseStore.writeTo(writer);
                         }
                     }
                 } else {
-                    // Guardar solo texto
+                    // Guardar solo texto, directamente desde el almacén paginado
                     try (FileWriter writer = new FileWriter(selectedFile)) {
-                        writer.write(currentResponse);
+                        responseStore.writeTo(writer);
                     }
                 }
                 setStatus("Respuesta guardada en: " + selectedFile.getName(), false);
@@ -1591,6 +2095,7 @@ public class ImprovedOllamaGUIClient extends JFrame {
                 case "html":
                 case "css":
                 case "xml":
+                case "json":
                     return readTextFile(file);
                 case "pdf":
                     return readPdfFile(file);
@@ -1599,7 +2104,7 @@ public class ImprovedOllamaGUIClient extends JFrame {
                 default:
                     logger.warn("Formato no soportado: {}", extension);
                     throw new UnsupportedOperationException("Formato de archivo no soportado: " + extension +
-                            ". Los formatos soportados son: txt, pdf, docx, java, py, js, html, css, xml");
+                            ". Los formatos soportados son: txt, pdf, docx, java, py, js, html, css, xml, json");
             }
         } catch (Exception e) {
             logger.error("Error al leer archivo", e);
@@ -1622,342 +2127,210 @@ public class ImprovedOllamaGUIClient extends JFrame {
      * Lee un archivo de texto
      */
     private String readTextFile(File file) throws IOException {
-        StringBuilder content = new StringBuilder();
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                content.append(line).append("\n");
-            }
-        }
-
-        return content.toString();
+        return fileContentExtractor.readText(file);
     }
 
     /**
      * Lee un archivo PDF
      */
     private String readPdfFile(File file) throws IOException {
-        try (PDDocument document = Loader.loadPDF(file)) {
-            PDFTextStripper stripper = new PDFTextStripper();
-            return stripper.getText(document);
-        } catch (NoClassDefFoundError e) {
-            logger.error("Dependencia faltante: PDFBox", e);
-            throw new IOException("Error al leer PDF: Falta la dependencia de PDFBox. " +
-                    "Añade 'org.apache.pdfbox:pdfbox:2.0.27' a tu proyecto.");
-        }
+        return fileContentExtractor.readDocument(file, "pdf");
     }
 
     /**
      * Lee un archivo DOCX
      */
     private String readDocxFile(File file) throws IOException {
-        try (FileInputStream fis = new FileInputStream(file);
-             XWPFDocument document = new XWPFDocument(fis)) {
-
-            XWPFWordExtractor extractor = new XWPFWordExtractor(document);
-            String text = extractor.getText();
-            extractor.close();
-            return text;
-
-        } catch (NoClassDefFoundError e) {
-            logger.error("Dependencia faltante: Apache POI", e);
-            throw new IOException("Error al leer DOCX: Falta la dependencia de Apache POI. " +
-                    "Añade 'org.apache.poi:poi-ooxml:5.2.3' a tu proyecto.");
-        }
-    }
-
-    /**
-     * Obtiene la lista de modelos disponibles en Ollama
-     */
-    private List<String> getAvailableModels() throws IOException {
-        List<String> models = new ArrayList<>();
-        logger.info("Obteniendo lista de modelos disponibles");
-
-        // Crear conexión HTTP
-        URL url = new URL(OLLAMA_MODELS_URL);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("GET");
-        connection.setConnectTimeout(5000);
-        connection.setReadTimeout(5000);
-
-        // Leer respuesta
-        try (Scanner scanner = new Scanner(connection.getInputStream(), StandardCharsets.UTF_8.name())) {
-            StringBuilder response = new StringBuilder();
-            while (scanner.hasNextLine()) {
-                response.append(scanner.nextLine());
-            }
-
-            // Extraer nombres de modelos del JSON
-            Pattern pattern = Pattern.compile("\"name\":\"([^\"]+)\"");
-            Matcher matcher = pattern.matcher(response.toString());
-
-            while (matcher.find()) {
-                String modelName = matcher.group(1);
-                models.add(modelName);
-            }
-
-            logger.info("Modelos encontrados: {}", models.size());
-        } catch (Exception e) {
-            logger.error("Error al obtener modelos", e);
-            throw new IOException("Error al obtener la lista de modelos: " + e.getMessage(), e);
-        } finally {
-            connection.disconnect();
-        }
-
-        return models;
+        return fileContentExtractor.readDocument(file, "docx");
     }
 
     /**
-     * Envía un prompt a Ollama y procesa la respuesta (solo texto)
+     * Envía un prompt a Ollama y procesa la respuesta (solo texto).
+     * Cada fragmento recibido se entrega a onToken en cuanto llega, que es el único
+     * destino del texto; si la generación se cancela se conserva lo recibido hasta ese
+     * momento. Si hay una sesión de conversación se envía su contexto y se guarda el
+     * nuevo al terminar.
      */
-    private String sendPromptToOllama(String model, String prompt, Map<String, Float> parameters) throws IOException {
+    private void sendPromptToOllama(String model, String prompt, GenerationOptions parameters,
+                                      ConversationSession session,
+                                      Consumer<String> onToken, GenerationHandle generation) throws IOException {
         logger.info("Enviando prompt de texto al modelo: {}", model);
 
-        // Crear conexión HTTP
-        URL url = new URL(OLLAMA_API_URL);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("POST");
-        connection.setRequestProperty("Content-Type", "application/json");
-        connection.setConnectTimeout(30000);
-        connection.setReadTimeout(30000);
-        connection.setDoOutput(true);
-
-        // Construir el JSON de forma segura usando JSONObject
-        JSONObject jsonRequest = new JSONObject();
-        jsonRequest.put("model", model);
-        jsonRequest.put("prompt", prompt);
-        for (Map.Entry<String, Float> param : parameters.entrySet()) {
-            jsonRequest.put(param.getKey(), param.getValue());
-        }
-        jsonRequest.put("stream", true);
-
-        // Enviar petición
-        try (OutputStream os = connection.getOutputStream()) {
-            byte[] input = jsonRequest.toString().getBytes(StandardCharsets.UTF_8);
-            os.write(input, 0, input.length);
-        }
-
-        // Procesar respuesta
-        StringBuilder fullResponse = new StringBuilder();
-        try (Scanner responseScanner = new Scanner(connection.getInputStream(), StandardCharsets.UTF_8.name())) {
-            while (responseScanner.hasNextLine()) {
-                String line = responseScanner.nextLine();
-
-                // Utilizar JSONObject para procesar correctamente la respuesta JSON
-                try {
-                    JSONObject jsonResponse = new JSONObject(line);
-                    if (jsonResponse.has("response")) {
-                        // Esto automáticamente descodifica los caracteres escapados en JSON
-                        String responsePart = jsonResponse.getString("response");
-                        fullResponse.append(responsePart);
+        // El contexto de la sesión se añade a la petición si hay conversación
+        StreamingJsonBody body = OllamaRequestBuilder.generate(model)
+                .prompt(prompt)
+                .options(GenerationOptions.forModel(model, parameters))
+                .session(session)
+                .build();
+        modelPreloader.recordUse(model);
+
+        long receivedChars = 0;
+        int[] lastContext = null;
+        try {
+            // Enviar petición
+            InputStream responseStream = transport.postJson(OllamaHttpTransport.Endpoint.GENERATE, body, generation);
+
+            // Procesar respuesta con el decodificador incremental (sin un JSONObject por línea)
+            try (OllamaStreamDecoder decoder = new OllamaStreamDecoder(responseStream)) {
+                OllamaStreamDecoder.Chunk chunk = new OllamaStreamDecoder.Chunk();
+                boolean firstChunk = true;
+                while (decoder.next(chunk)) {
+                    if (chunk.hasError()) {
+                        throw new IOException("Error de Ollama: " + chunk.getError());
+                    }
+                    if (firstChunk) {
+                        // El servidor ya responde con el modelo: está cargado
+                        modelPreloader.markLoaded(model);
+                        firstChunk = false;
+                    }
+                    if (chunk.hasText()) {
+                        String responsePart = chunk.getText().toString();
+                        receivedChars += responsePart.length();
+                        onToken.accept(responsePart);
+                    }
+                    if (chunk.hasContext()) {
+                        lastContext = chunk.getContext();
+                    }
+                    if (chunk.isDone()) {
+                        logger.info("Tokens de prompt evaluados: {}", chunk.getPromptEvalCount());
                     }
-                } catch (Exception e) {
-                    // Algunas líneas pueden no ser JSON válido, ignorarlas
-                    logger.warn("Error al parsear respuesta JSON: {}", line);
                 }
             }
-        } finally {
-            connection.disconnect();
+        } catch (IOException e) {
+            // Al cancelar se cierra el flujo bajo el decodificador; no es un error
+            if (!generation.isCancelled()) {
+                throw e;
+            }
+            logger.info("Generación cancelada por el usuario tras {} caracteres", receivedChars);
+        }
+
+        // Una generación detenida no devuelve contexto; la conversación sigue en el turno anterior
+        if (session != null && !generation.isCancelled()) {
+            session.recordGenerateTurn(lastContext);
         }
 
-        logger.info("Respuesta recibida: {} caracteres", fullResponse.length());
-        return fullResponse.toString();
+        logger.info("Respuesta recibida: {} caracteres", receivedChars);
     }
 
     /**
-     * Envía un prompt multimodal (texto + imagen) a Ollama y procesa la respuesta
+     * Envía un prompt multimodal (texto + imágenes) a Ollama y procesa la respuesta.
+     * Cada fragmento de texto recibido se entrega a onToken en cuanto llega; si la
+     * generación se cancela se conserva el texto recibido hasta ese momento. Si hay una
+     * sesión de conversación se envía el historial con las imágenes en su primer mensaje,
+     * y solo entonces se reúne el texto completo, que forma parte de ese historial.
+     * Las imágenes van en el campo "images" del mensaje y se codifican en base64 mientras
+     * se envía, leyendo directamente de cada archivo.
      */
-    private Map<String, Object> sendMultimodalPromptToOllama(String model, String prompt, String imageBase64,
-                                                             Map<String, Float> parameters) throws IOException {
-        logger.info("Enviando prompt multimodal al modelo: {}", model);
-
-        // Crear conexión HTTP
-        URL url = new URL(OLLAMA_CHAT_API_URL);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("POST");
-        connection.setRequestProperty("Content-Type", "application/json");
-        connection.setConnectTimeout(60000); // Aumentado a 60 segundos
-        connection.setReadTimeout(60000);    // Aumentado a 60 segundos
-        connection.setDoOutput(true);
-
-        // Determinar el tipo MIME según la extensión
-        String extension = getFileExtension(loadedFilePath).toLowerCase();
-        String mimeType;
-        switch (extension) {
-            case "jpg":
-            case "jpeg":
-                mimeType = "image/jpeg";
-                break;
-            case "png":
-                mimeType = "image/png";
-                break;
-            case "gif":
-                mimeType = "image/gif";
-                break;
-            case "bmp":
-                mimeType = "image/bmp";
-                break;
-            default:
-                mimeType = "image/jpeg";  // Por defecto
+    private Map<String, Object> sendMultimodalPromptToOllama(String model, String prompt, List<File> imageFiles,
+                                                             GenerationOptions parameters,
+                                                             ConversationSession session,
+                                                             Consumer<String> onToken,
+                                                             GenerationHandle generation) throws IOException {
+        logger.info("Enviando prompt multimodal al modelo: {} ({} imágenes)", model, imageFiles.size());
+
+        // Bytes originales si el formato es aceptado, o la versión convertida/reducida de la caché
+        List<File> payloads = new ArrayList<>();
+        for (File imageFile : imageFiles) {
+            payloads.add(imagePipeline.prepare(imageFile).getPayload());
         }
 
-        // Base64 debe incluir el prefijo de datos URI
-        String base64WithPrefix = "data:" + mimeType + ";base64," + imageBase64;
+        OllamaRequestBuilder request = OllamaRequestBuilder.chat(model)
+                .prompt(prompt)
+                .images(payloads)
+                .options(GenerationOptions.forModel(model, parameters))
+                .session(session);
+        StreamingJsonBody body = request.build();
+        JSONObject userMessage = request.getUserMessage();
+        modelPreloader.recordUse(model);
 
-        // Construir el mensaje multimodal según el formato actualizado de Ollama
-        JSONArray messages = new JSONArray();
-        JSONObject userMessage = new JSONObject();
-        userMessage.put("role", "user");
+        // Primero registramos el JSON enviado para depuración (las imágenes aparecen solo como marcador)
+        logger.info("Enviando solicitud JSON: {}", body.toLogString());
 
-        // Formato de contenido para modelos multimodal
-        // Primero el texto, luego la imagen separados con newlines y formato específico
-        String multimodalContent = prompt + "\n\n![image](" + base64WithPrefix + ")";
-        userMessage.put("content", multimodalContent);
-
-        messages.put(userMessage);
-
-        // Construir el JSON principal
-        JSONObject jsonRequest = new JSONObject();
-        jsonRequest.put("model", model);
-        jsonRequest.put("messages", messages);
-        for (Map.Entry<String, Float> param : parameters.entrySet()) {
-            jsonRequest.put(param.getKey(), param.getValue());
-        }
-        jsonRequest.put("stream", true);
+        StringBuilder textResponse = session != null ? new StringBuilder() : null;
+        long receivedChars = 0;
+        String imageDataResponse = null;
 
         try {
-            // Primero registramos el JSON enviado para depuración (omitimos la imagen para no sobrecargar los logs)
-            JSONObject logJsonRequest = new JSONObject(jsonRequest.toString());
-            JSONArray logMessages = logJsonRequest.getJSONArray("messages");
-            JSONObject logUserMessage = logMessages.getJSONObject(0);
-            logUserMessage.put("content", prompt + "\n\n[IMAGEN BASE64 OMITIDA EN LOGS]");
-            logger.info("Enviando solicitud JSON: {}", logJsonRequest.toString());
-
-            // Enviar petición
-            try (OutputStream os = connection.getOutputStream()) {
-                byte[] input = jsonRequest.toString().getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
-            }
-
-            // Comprobar si hay error en la respuesta
-            int responseCode = connection.getResponseCode();
-            if (responseCode != 200) {
-                // Leer mensaje de error
-                StringBuilder errorResponse = new StringBuilder();
-                try (Scanner scanner = new Scanner(connection.getErrorStream(), StandardCharsets.UTF_8.name())) {
-                    while (scanner.hasNextLine()) {
-                        errorResponse.append(scanner.nextLine());
+            // Enviar petición (los códigos de error se convierten en IOException con el mensaje del servidor)
+            InputStream responseStream = transport.postJson(OllamaHttpTransport.Endpoint.CHAT, body, generation);
+
+            // El decodificador extrae "message.content" (o "delta.content") de cada línea
+            try (OllamaStreamDecoder decoder = new OllamaStreamDecoder(responseStream)) {
+                OllamaStreamDecoder.Chunk chunk = new OllamaStreamDecoder.Chunk();
+                boolean firstChunk = true;
+                while (decoder.next(chunk)) {
+                    if (chunk.hasError()) {
+                        throw new IOException("Error de Ollama: " + chunk.getError());
+                    }
+                    if (firstChunk) {
+                        // El servidor ya responde con el modelo: está cargado
+                        modelPreloader.markLoaded(model);
+                        firstChunk = false;
+                    }
+                    if (!chunk.hasText()) {
+                        continue;
                     }
-                }
-
-                logger.error("Error del servidor: {} - {}", responseCode, errorResponse.toString());
-                throw new IOException("Error del servidor: " + responseCode + " - " + errorResponse.toString());
-            }
-
-            // Procesar respuesta exitosa
-            StringBuilder textResponse = new StringBuilder();
-            String imageDataResponse = null;
-
-            try (Scanner responseScanner = new Scanner(connection.getInputStream(), StandardCharsets.UTF_8.name())) {
-                while (responseScanner.hasNextLine()) {
-                    String line = responseScanner.nextLine();
-                    logger.debug("Línea de respuesta: {}", line);
-
-                    try {
-                        JSONObject jsonResponse = new JSONObject(line);
-
-                        // Procesar mensaje completo
-                        if (jsonResponse.has("message")) {
-                            JSONObject message = jsonResponse.getJSONObject("message");
 
-                            if (message.has("content")) {
-                                String content = message.getString("content");
-                                textResponse.append(content);
+                    String content = chunk.getText().toString();
+                    receivedChars += content.length();
+                    if (textResponse != null) {
+                        textResponse.append(content);
+                    }
+                    onToken.accept(content);
 
-                                // Buscar imágenes en formato de datos URI
-                                extractImagesFromMarkdown(content, textResponse);
+                    // Buscar imágenes en formato de datos URI
+                    extractImagesFromMarkdown(content);
 
-                                // Registrar que recibimos contenido
-                                if (!content.trim().isEmpty()) {
-                                    logger.info("Contenido recibido del modelo: {} caracteres", content.length());
-                                }
-                            } else {
-                                logger.warn("El mensaje no tiene campo 'content'");
-                            }
-                        }
-                        // Procesar delta en streaming
-                        else if (jsonResponse.has("delta")) {
-                            if (jsonResponse.has("delta") && !jsonResponse.isNull("delta")) {
-                                Object deltaObj = jsonResponse.get("delta");
-                                if (deltaObj instanceof JSONObject) {
-                                    JSONObject delta = (JSONObject) deltaObj;
-                                    if (delta.has("content") && !delta.isNull("content")) {
-                                        String content = delta.getString("content");
-                                        textResponse.append(content);
-
-                                        // Buscar imágenes en el contenido delta
-                                        extractImagesFromMarkdown(content, textResponse);
-
-                                        // Registrar que recibimos delta
-                                        if (!content.trim().isEmpty()) {
-                                            logger.debug("Delta recibido: {} caracteres", content.length());
-                                        }
-                                    } else {
-                                        logger.debug("Delta sin contenido o con contenido nulo");
-                                    }
-                                } else {
-                                    logger.debug("Delta no es un objeto JSON: {}", deltaObj);
-                                }
-                            } else {
-                                logger.debug("Delta nulo o no presente");
-                            }
-                        } else {
-                            logger.debug("Respuesta sin mensaje ni delta reconocibles: {}", line);
-                        }
-                    } catch (Exception e) {
-                        // Algunas líneas pueden no ser JSON válido
-                        logger.warn("Error al parsear respuesta JSON: {}", e.getMessage());
+                    // Registrar que recibimos contenido
+                    if (!content.trim().isEmpty()) {
+                        logger.debug("Contenido recibido del modelo: {} caracteres", content.length());
                     }
                 }
             }
+        } catch (IOException e) {
+            // Al cancelar se cierra el flujo bajo el decodificador; no es un error
+            if (!generation.isCancelled()) {
+                throw e;
+            }
+            logger.info("Generación multimodal cancelada por el usuario tras {} caracteres", receivedChars);
+        }
 
-            logger.info("Respuesta de texto recibida: {} caracteres", textResponse.length());
-            logger.info("¿Se recibió una imagen?: {}", imageDataResponse != null);
+        if (session != null && !generation.isCancelled()) {
+            session.recordChatTurn(userMessage, textResponse.toString());
+        }
 
-            // Preparar resultado
-            Map<String, Object> result = new HashMap<>();
-            result.put("text", textResponse.toString());
+        logger.info("Respuesta de texto recibida: {} caracteres", receivedChars);
+        logger.info("¿Se recibió una imagen?: {}", imageDataResponse != null);
 
-            // Procesar imagen si se recibió
-            if (imageDataResponse != null) {
-                try {
-                    // Primero eliminar el prefijo de data URI si existe
-                    String base64Data = imageDataResponse;
-                    if (base64Data.contains(";base64,")) {
-                        base64Data = base64Data.substring(base64Data.indexOf(";base64,") + 8);
-                    }
+        // Preparar resultado (el texto ya se ha entregado a onToken)
+        Map<String, Object> result = new HashMap<>();
 
-                    byte[] imageBytes = Base64.getDecoder().decode(base64Data);
-                    ByteArrayInputStream bis = new ByteArrayInputStream(imageBytes);
-                    BufferedImage image = ImageIO.read(bis);
-                    result.put("image", image);
-                } catch (Exception e) {
-                    logger.error("Error al decodificar imagen de respuesta", e);
+        // Procesar imagen si se recibió
+        if (imageDataResponse != null) {
+            try {
+                // Primero eliminar el prefijo de data URI si existe
+                String base64Data = imageDataResponse;
+                if (base64Data.contains(";base64,")) {
+                    base64Data = base64Data.substring(base64Data.indexOf(";base64,") + 8);
                 }
-            }
 
-            return result;
-        } finally {
-            connection.disconnect();
+                byte[] imageBytes = Base64.getDecoder().decode(base64Data);
+                ByteArrayInputStream bis = new ByteArrayInputStream(imageBytes);
+                BufferedImage image = ImageIO.read(bis);
+                result.put("image", image);
+            } catch (Exception e) {
+                logger.error("Error al decodificar imagen de respuesta", e);
+            }
         }
+
+        return result;
     }
 
     /**
      * Extrae imágenes de respuesta en formato markdown
      * Busca patrones como ![image](data:image/png;base64,...)
      */
-    private void extractImagesFromMarkdown(String content, StringBuilder textResponse) {
+    private void extractImagesFromMarkdown(String content) {
         // Buscar patrones de imágenes en markdown con data URI
         Pattern pattern = Pattern.compile("!\\[.*?\\]\\((data:image\\/[^;]+;base64,[^\\)]+)\\)");
         Matcher matcher = pattern.matcher(content);
@@ -1997,50 +2370,68 @@ public class ImprovedOllamaGUIClient extends JFrame {
     }
 
     /**
-     * Aplica coloreado de sintaxis a los bloques de código en la respuesta.
-     * Busca bloques delimitados por "```" y les aplica un estilo monoespaciado con fondo claro.
+     * Sustituye el resaltador de la respuesta por uno nuevo para el documento actual
      */
-    private void highlightCodeBlocks(JTextPane textPane, String text) {
-        // Obtener el documento actual del JTextPane
-        StyledDocument doc = textPane.getStyledDocument();
-        try {
-            // Limpiar el documento e insertar el texto completo
-            doc.remove(0, doc.getLength());
-            doc.insertString(0, text, null);
-        } catch (BadLocationException e) {
-            logger.error("Error al insertar texto en el documento", e);
+    private void installResponseHighlighter() {
+        if (responseHighlighter != null) {
+            responseHighlighter.uninstall();
         }
+        responseHighlighter = new SyntaxHighlighter(responseTextPane.getStyledDocument(), null, null, createCodeStyle());
+        responseHighlighter.install();
+    }
 
-        // Definir estilos
-        Style defaultStyle = textPane.getStyle("default");
-        if (defaultStyle == null) {
-            defaultStyle = textPane.addStyle("default", null);
-            StyleConstants.setForeground(defaultStyle, Color.BLACK);
-            StyleConstants.setFontFamily(defaultStyle, "SansSerif");
-        }
+    /**
+     * Vacía la respuesta mostrada y libera su almacén (incluido el archivo temporal)
+     */
+    private void resetResponseView() {
+        responseStore.close();
+        responseStore = createResponseStore();
+        pagedResponseView.setStore(responseStore);
+        responsePaged = false;
+        responseTextPane.setText("");
+        responseTextCardLayout.show(responseTextCards, "document");
+    }
 
-        Style codeStyle = textPane.getStyle("code");
-        if (codeStyle == null) {
-            codeStyle = textPane.addStyle("code", null);
-            StyleConstants.setForeground(codeStyle, Color.DARK_GRAY);
-            StyleConstants.setBackground(codeStyle, themeManager.getCodeBackgroundColor());
-            StyleConstants.setFontFamily(codeStyle, themeManager.getCodeFont().getFamily());
-            StyleConstants.setFontSize(codeStyle, themeManager.getCodeFont().getSize());
+    /**
+     * Pasa la respuesta en curso a la vista paginada: el documento se vacía para no
+     * duplicar en memoria un texto que ya está en el almacén
+     */
+    private void showPagedResponse() {
+        logger.info("Respuesta de más de {} caracteres: se muestra en la vista paginada", responseStore.length());
+        responsePaged = true;
+        if (responseHighlighter != null) {
+            responseHighlighter.uninstall();
+            responseHighlighter = null;
         }
+        responseTextPane.setText("");
 
-        // Buscar bloques de código delimitados por triple backticks
-        Pattern pattern = Pattern.compile("```(.*?)```", Pattern.DOTALL);
-        Matcher matcher = pattern.matcher(text);
-        while (matcher.find()) {
-            int start = matcher.start() + 3; // omitir los backticks iniciales
-            int end = matcher.end() - 3;     // omitir los backticks finales
-            int length = end - start;
-            if (length > 0) {
-                doc.setCharacterAttributes(start, length, codeStyle, true);
-            }
-        }
+        applyResponseTheme(responseTextPane);
+        pagedResponseView.setFont(themeManager.getCodeFont());
+        pagedResponseView.setBackground(responseTextPane.getBackground());
+        pagedResponseView.setForeground(responseTextPane.getForeground());
+        responseTextCardLayout.show(responseTextCards, "paged");
+    }
 
-        // Verificar si está habilitado el tema oscuro
+    private ResponseTextStore createResponseStore() {
+        return new ResponseTextStore(configManager.getMainConfig("responseStoreMemoryMb", ResponseTextStore.DEFAULT_MEMORY_MB));
+    }
+
+    /**
+     * Crea el estilo de los bloques de código según el tema actual
+     */
+    private SimpleAttributeSet createCodeStyle() {
+        SimpleAttributeSet codeStyle = new SimpleAttributeSet();
+        StyleConstants.setForeground(codeStyle, Color.DARK_GRAY);
+        StyleConstants.setBackground(codeStyle, themeManager.getCodeBackgroundColor());
+        StyleConstants.setFontFamily(codeStyle, themeManager.getCodeFont().getFamily());
+        StyleConstants.setFontSize(codeStyle, themeManager.getCodeFont().getSize());
+        return codeStyle;
+    }
+
+    /**
+     * Aplica los colores del tema oscuro al panel de respuesta si está habilitado
+     */
+    private void applyResponseTheme(JTextPane textPane) {
         darkModeEnabled = configManager.getThemeConfig("enableDarkMode", false);
         if (darkModeEnabled) {
             textPane.setBackground(themeManager.getBackgroundColor());
@@ -2049,12 +2440,41 @@ public class ImprovedOllamaGUIClient extends JFrame {
     }
 
     /**
-     * Aplica coloreado de sintaxis básico para archivos de código.
-     * Para este ejemplo, se establece la fuente a monoespaciada.
-     * Se puede ampliar para resaltar palabras clave según el lenguaje.
+     * Aplica coloreado de sintaxis a un archivo de código según su extensión. El texto
+     * se muestra al instante y el documento resaltado se construye en segundo plano.
      */
     private void applySyntaxHighlighting(JTextPane textPane, String code, String extension) {
         textPane.setFont(themeManager.getCodeFont());
+
+        SyntaxLexer.Language language = SyntaxLexer.Language.forExtension(extension);
+        if (language == null) {
+            return;
+        }
+
+        SwingWorker<SyntaxHighlighter, Void> worker = new SwingWorker<>() {
+            private final DefaultStyledDocument doc = new DefaultStyledDocument();
+
+            @Override
+            protected SyntaxHighlighter doInBackground() throws Exception {
+                doc.insertString(0, code, null);
+                SyntaxHighlighter highlighter = new SyntaxHighlighter(doc, language, null, null);
+                highlighter.highlightAll();
+                return highlighter;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    SyntaxHighlighter highlighter = get();
+                    textPane.setStyledDocument(doc);
+                    textPane.setCaretPosition(0);
+                    highlighter.listen();
+                } catch (Exception e) {
+                    logger.error("Error al resaltar la sintaxis del archivo", e);
+                }
+            }
+        };
+        worker.execute();
     }
 
     /**
@@ -2080,8 +2500,9 @@ public class ImprovedOllamaGUIClient extends JFrame {
         private void updateUI() {
             // Actualizar elementos de la interfaz que necesiten refrescarse periódicamente
             if (webSearchCheckBox.isSelected()) {
-                // Actualizar panel de resultados de búsqueda
-                searchResultsPanel.refreshResults();
+                // Cargar las miniaturas visibles pendientes sin reconstruir el panel
+                // (reconstruirlo volvía a la primera posición de desplazamiento)
+                searchResultsPanel.updateVisibleThumbnails();
             }
         }
     }
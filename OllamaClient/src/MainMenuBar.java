@@ -298,6 +298,20 @@ public class MainMenuBar extends JMenuBar {
             }
         });
 
+        JMenuItem compareModelsItem = new JMenuItem("Comparar modelos...");
+        compareModelsItem.addActionListener(e -> {
+            ActionEvent newEvent = new ActionEvent(
+                    this, ActionEvent.ACTION_PERFORMED, "compareModels");
+            fireActionPerformed(newEvent);
+        });
+
+        JMenuItem modelProfileItem = new JMenuItem("Perfil del modelo...");
+        modelProfileItem.addActionListener(e -> {
+            ActionEvent newEvent = new ActionEvent(
+                    this, ActionEvent.ACTION_PERFORMED, "modelProfile");
+            fireActionPerformed(newEvent);
+        });
+
         JMenuItem clearCacheItem = new JMenuItem("Limpiar caché");
         clearCacheItem.addActionListener(e -> {
             int option = JOptionPane.showConfirmDialog(
@@ -345,6 +359,8 @@ public class MainMenuBar extends JMenuBar {
             }
         });
 
+        toolsMenu.add(compareModelsItem);
+        toolsMenu.add(modelProfileItem);
         toolsMenu.add(errorLogItem);
         toolsMenu.addSeparator();
         toolsMenu.add(clearCacheItem);
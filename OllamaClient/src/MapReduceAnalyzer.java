@@ -0,0 +1,557 @@
+package OllamaClient.src;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Análisis por partes (map-reduce) de contenidos que no caben en el contexto del modelo
+ *
+ * El contenido se divide en partes solapadas del tamaño que admite el contexto
+ * (num_ctx del perfil o de los parámetros, o mapReduceChunkChars). Cada parte se
+ * envía con la instrucción del usuario en una petición independiente, con como
+ * mucho mapReduceConcurrency peticiones a la vez (fase map), y las respuestas
+ * parciales se combinan en una respuesta final (fase reduce), que es la única
+ * que se muestra en streaming. Si las respuestas parciales tampoco caben en el
+ * contexto, se combinan antes por grupos.
+ *
+ * Cada respuesta parcial se guarda al terminar en un archivo de control en el
+ * directorio de configuración, identificado por el modelo, las opciones, la
+ * instrucción y el contenido. Si falla alguna parte o se detiene el análisis,
+ * volver a enviar la misma consulta solo procesa las partes que faltan. El
+ * archivo se borra al terminar la respuesta final.
+ */
+public class MapReduceAnalyzer {
+    private static final Logger logger = LoggerFactory.getLogger(MapReduceAnalyzer.class);
+
+    public static final int DEFAULT_CONCURRENCY = 2;
+    public static final int DEFAULT_OVERLAP_CHARS = 400;
+
+    // Contexto por defecto de Ollama si ni el perfil ni los parámetros indican num_ctx
+    static final int DEFAULT_NUM_CTX = 2048;
+
+    // Tokens reservados para las instrucciones y la respuesta de cada petición
+    private static final int RESERVED_TOKENS = 768;
+
+    // Estimación prudente de caracteres por token (el texto con código o no inglés usa más tokens)
+    private static final int CHARS_PER_TOKEN = 3;
+    private static final int MIN_CHUNK_CHARS = 1000;
+
+    // Subdirectorio de los archivos de control dentro del directorio de configuración
+    private static final String CHECKPOINT_DIR_NAME = "cache" + File.separator + "mapreduce";
+    private static final long CHECKPOINT_MAX_BYTES = 64L * 1024 * 1024;
+
+    // Intervalo con el que se comprueba la cancelación mientras se espera a las partes
+    private static final long CANCEL_POLL_MS = 100;
+
+    /**
+     * Notificación del progreso del análisis
+     */
+    public interface ProgressListener {
+        /**
+         * Se llama cada vez que termina una parte; restored indica que su respuesta se
+         * ha recuperado del archivo de control de un análisis anterior
+         */
+        void chunkDone(int completed, int total, boolean restored);
+
+        /**
+         * Se llama antes de combinar las respuestas parciales (finalStep indica que es
+         * la combinación que da la respuesta final)
+         */
+        void reduceStarted(int partials, boolean finalStep);
+    }
+
+    private final String model;
+    private final GenerationOptions options;
+    private final int concurrency;
+    private final int chunkChars;
+    private final int overlapChars;
+    private final OllamaHttpTransport transport;
+    private final File checkpointDir;
+
+    // Peticiones de la fase map en curso, para poder cancelarlas
+    private final Set<GenerationHandle> activeRequests = ConcurrentHashMap.newKeySet();
+
+    private Writer checkpoint;
+
+    /**
+     * Prepara un análisis con el perfil del modelo y los parámetros indicados por encima
+     */
+    public MapReduceAnalyzer(String model, GenerationOptions parameters) {
+        ConfigManager configManager = ConfigManager.getInstance();
+        this.model = model;
+        this.options = GenerationOptions.forModel(model, parameters);
+        this.concurrency = Math.max(1, configManager.getMainConfig("mapReduceConcurrency", DEFAULT_CONCURRENCY));
+
+        int configuredChunkChars = configManager.getMainConfig("mapReduceChunkChars", 0);
+        this.chunkChars = configuredChunkChars > 0 ? configuredChunkChars : chunkCharsFor(options);
+        int overlap = configManager.getMainConfig("mapReduceOverlapChars", DEFAULT_OVERLAP_CHARS);
+        this.overlapChars = Math.max(0, Math.min(overlap, chunkChars / 4));
+
+        this.transport = OllamaHttpTransport.getInstance(configManager);
+        this.checkpointDir = new File(configManager.getConfigDir(), CHECKPOINT_DIR_NAME);
+    }
+
+    /**
+     * Caracteres por parte que caben en el contexto de las opciones
+     */
+    static int chunkCharsFor(GenerationOptions options) {
+        int numCtx = options.getNumCtx() != null ? options.getNumCtx() : DEFAULT_NUM_CTX;
+        return Math.max(MIN_CHUNK_CHARS, (numCtx - RESERVED_TOKENS) * CHARS_PER_TOKEN);
+    }
+
+    public int getChunkChars() {
+        return chunkChars;
+    }
+
+    /**
+     * Indica si el contenido no cabe en una sola petición
+     */
+    public boolean needsMapReduce(String content) {
+        return content.length() > chunkChars;
+    }
+
+    /**
+     * Analiza el contenido por partes y entrega la respuesta final a onToken a medida
+     * que llega. Lanza CancellationException si se cancela la generación antes de la
+     * respuesta final, e IOException si falla alguna parte (tras guardar las demás).
+     */
+    public void run(String content, String instruction, ProgressListener listener,
+                    Consumer<String> onToken, GenerationHandle generation) throws IOException, InterruptedException {
+        List<String> chunks = split(content, chunkChars, overlapChars);
+        int total = chunks.size();
+        logger.info("Map-reduce con {}: {} caracteres en {} partes de hasta {} (solapamiento {}, {} simultáneas)",
+                model, content.length(), total, chunkChars, overlapChars, concurrency);
+
+        File checkpointFile = new File(checkpointDir, checkpointKey(content, instruction) + ".jsonl");
+        Map<Integer, String> partials = loadCheckpoint(checkpointFile, total);
+        if (!partials.isEmpty()) {
+            logger.info("Reanudando map-reduce: {} de {} partes ya completadas", partials.size(), total);
+            listener.chunkDone(partials.size(), total, true);
+        }
+
+        openCheckpoint(checkpointFile);
+        try {
+            mapChunks(chunks, instruction, partials, listener, generation);
+        } finally {
+            closeCheckpoint();
+        }
+
+        List<String> answers = new ArrayList<>(partials.values());
+        reduce(answers, instruction, listener, onToken, generation);
+
+        // Una respuesta final detenida puede repetirse sin volver a procesar las partes
+        if (!generation.isCancelled()) {
+            Files.deleteIfExists(checkpointFile.toPath());
+        }
+    }
+
+    /**
+     * Fase map: procesa las partes que faltan con un número acotado de peticiones simultáneas
+     */
+    private void mapChunks(List<String> chunks, String instruction, Map<Integer, String> partials,
+                           ProgressListener listener, GenerationHandle generation)
+            throws IOException, InterruptedException {
+        int total = chunks.size();
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "map-reduce-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletionService<Integer> completionService = new ExecutorCompletionService<>(executor);
+
+        // Partes que faltan, calculadas antes de que las tareas empiecen a escribir en partials
+        List<Integer> pending = new ArrayList<>();
+        synchronized (partials) {
+            for (int i = 0; i < total; i++) {
+                if (!partials.containsKey(i)) {
+                    pending.add(i);
+                }
+            }
+        }
+
+        int submitted = 0;
+        try {
+            for (int index : pending) {
+                completionService.submit(() -> {
+                    String answer = generate(mapPrompt(instruction, chunks.get(index), index, total), null, null);
+                    synchronized (partials) {
+                        partials.put(index, answer);
+                    }
+                    writeCheckpoint(index, answer);
+                    return index;
+                });
+                submitted++;
+            }
+
+            int failures = 0;
+            Throwable firstFailure = null;
+            for (int done = 0; done < submitted; ) {
+                if (generation.isCancelled()) {
+                    for (GenerationHandle request : activeRequests) {
+                        request.cancel();
+                    }
+                    executor.shutdownNow();
+                    throw new CancellationException("Análisis por partes cancelado");
+                }
+                Future<Integer> future = completionService.poll(CANCEL_POLL_MS, TimeUnit.MILLISECONDS);
+                if (future == null) {
+                    continue;
+                }
+                done++;
+                try {
+                    future.get();
+                    int completed;
+                    synchronized (partials) {
+                        completed = partials.size();
+                    }
+                    listener.chunkDone(completed, total, false);
+                } catch (ExecutionException e) {
+                    // Las demás partes siguen: las que terminen quedan guardadas para reanudar
+                    failures++;
+                    if (firstFailure == null) {
+                        firstFailure = e.getCause();
+                    }
+                    logger.error("Error en una parte del map-reduce", e.getCause());
+                }
+            }
+
+            if (failures > 0) {
+                throw new IOException(failures + " de " + total + " partes fallaron (" + firstFailure.getMessage()
+                        + "). Las partes completadas se han guardado: vuelve a enviar la consulta para continuar.",
+                        firstFailure);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Fase reduce: combina las respuestas parciales por grupos hasta que caben en una
+     * petición, y hace la combinación final en streaming
+     */
+    private void reduce(List<String> answers, String instruction, ProgressListener listener,
+                        Consumer<String> onToken, GenerationHandle generation) throws IOException {
+        while (answers.size() > 1 && reducePrompt(instruction, answers).length() > chunkChars) {
+            listener.reduceStarted(answers.size(), false);
+            List<String> combined = new ArrayList<>();
+            int start = 0;
+            while (start < answers.size()) {
+                // Al menos dos respuestas por grupo para que el número de respuestas siempre baje
+                int end = start + 1;
+                while (end < answers.size()
+                        && (end - start < 2 || reducePrompt(instruction, answers.subList(start, end + 1)).length() <= chunkChars)) {
+                    end++;
+                }
+                // Con la generación principal, detenerla corta también esta petición
+                combined.add(end - start == 1 ? answers.get(start)
+                        : generate(reducePrompt(instruction, answers.subList(start, end)), null, generation));
+                if (generation.isCancelled()) {
+                    throw new CancellationException("Análisis por partes cancelado");
+                }
+                start = end;
+            }
+            answers = combined;
+        }
+
+        listener.reduceStarted(answers.size(), true);
+        if (generation.isCancelled()) {
+            throw new CancellationException("Análisis por partes cancelado");
+        }
+        generate(reducePrompt(instruction, answers), onToken, generation);
+    }
+
+    /**
+     * Envía un prompt y devuelve la respuesta completa. Con onToken, cada fragmento se
+     * entrega además en cuanto llega. Sin generation, la petición se registra para
+     * poder cancelarla y, si se cancela, lanza CancellationException; con generation,
+     * al cancelarla se devuelve lo recibido hasta entonces.
+     */
+    private String generate(String prompt, Consumer<String> onToken, GenerationHandle generation) throws IOException {
+        GenerationHandle handle = generation != null ? generation : new GenerationHandle();
+        if (generation == null) {
+            activeRequests.add(handle);
+        }
+
+        StreamingJsonBody body = OllamaRequestBuilder.generate(model)
+                .prompt(prompt)
+                .options(options)
+                .build();
+        StringBuilder response = new StringBuilder();
+        try {
+            InputStream responseStream = transport.postJson(OllamaHttpTransport.Endpoint.GENERATE, body, handle);
+            try (OllamaStreamDecoder decoder = new OllamaStreamDecoder(responseStream)) {
+                OllamaStreamDecoder.Chunk chunk = new OllamaStreamDecoder.Chunk();
+                boolean firstChunk = true;
+                while (decoder.next(chunk)) {
+                    if (chunk.hasError()) {
+                        throw new IOException("Error de Ollama: " + chunk.getError());
+                    }
+                    if (firstChunk) {
+                        // El servidor ya responde con el modelo: está cargado
+                        ModelPreloader.getInstance().markLoaded(model);
+                        firstChunk = false;
+                    }
+                    if (chunk.hasText()) {
+                        String text = chunk.getText().toString();
+                        response.append(text);
+                        if (onToken != null) {
+                            onToken.accept(text);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Al cancelar se cierra el flujo bajo el decodificador; no es un error
+            if (!handle.isCancelled()) {
+                throw e;
+            }
+        } finally {
+            activeRequests.remove(handle);
+        }
+
+        // Una respuesta parcial cortada no debe guardarse como completa
+        if (generation == null && handle.isCancelled()) {
+            throw new CancellationException("Petición cancelada");
+        }
+        return response.toString();
+    }
+
+    private static String mapPrompt(String instruction, String chunk, int index, int total) {
+        return "Estás analizando por partes un documento demasiado largo para leerlo de una vez. "
+                + "Esta es la parte " + (index + 1) + " de " + total + ".\n"
+                + "Responde a la instrucción usando solo el texto de esta parte. Si no contiene información "
+                + "relevante para la instrucción, responde únicamente \"Sin información relevante\".\n\n"
+                + "Instrucción:\n\n" + instruction + "\n\n"
+                + "Parte " + (index + 1) + " de " + total + ":\n\n" + chunk;
+    }
+
+    private static String reducePrompt(String instruction, List<String> answers) {
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("Las siguientes respuestas parciales se obtuvieron analizando por partes, en orden, ")
+                .append("un documento demasiado largo para leerlo de una vez. Combínalas en una única respuesta ")
+                .append("completa y coherente a la instrucción, sin repeticiones y descartando las partes sin ")
+                .append("información relevante.\n\n")
+                .append("Instrucción:\n\n").append(instruction).append("\n\n");
+        for (int i = 0; i < answers.size(); i++) {
+            prompt.append("### Respuesta parcial ").append(i + 1).append("\n\n")
+                    .append(answers.get(i).trim()).append("\n\n");
+        }
+        return prompt.toString();
+    }
+
+    /**
+     * Divide el texto en partes de como mucho chunkChars caracteres que se solapan
+     * overlapChars, cortando preferentemente en un salto de línea o un espacio
+     */
+    static List<String> split(String text, int chunkChars, int overlapChars) {
+        List<int[]> ranges = splitRanges(text, chunkChars, overlapChars);
+        List<String> chunks = new ArrayList<>(ranges.size());
+        for (int[] range : ranges) {
+            chunks.add(text.substring(range[0], range[1]));
+        }
+        return chunks;
+    }
+
+    /**
+     * Posiciones [inicio, fin) de las partes en que split divide el texto
+     */
+    static List<int[]> splitRanges(String text, int chunkChars, int overlapChars) {
+        List<int[]> chunks = new ArrayList<>();
+        splitRanges(text, 0, chunkChars, overlapChars, true, chunks);
+        return chunks;
+    }
+
+    /**
+     * Añade a ranges las partes del texto desde start y devuelve dónde empieza la
+     * siguiente. Con complete a false el texto aún puede crecer (por ejemplo, un PDF
+     * que llega por páginas): se detiene antes de la parte que podría cambiar, de modo
+     * que las partes añadidas son las mismas que daría el texto completo.
+     */
+    static int splitRanges(CharSequence text, int start, int chunkChars, int overlapChars,
+                           boolean complete, List<int[]> ranges) {
+        int length = text.length();
+        while (start < length) {
+            if (!complete && start + chunkChars >= length) {
+                break;
+            }
+            int end = Math.min(length, start + chunkChars);
+            if (end < length) {
+                end = breakPoint(text, start + chunkChars / 2, end);
+            }
+            ranges.add(new int[]{start, end});
+            if (end >= length) {
+                return length;
+            }
+
+            // La parte siguiente empieza overlapChars antes, al principio de una línea si la hay
+            int next = end - overlapChars;
+            if (overlapChars > 0) {
+                int lineStart = indexOf(text, '\n', Math.max(0, next), end - 1);
+                if (lineStart >= 0) {
+                    next = lineStart + 1;
+                }
+            }
+            start = Math.max(start + 1, next);
+        }
+        return start;
+    }
+
+    /**
+     * Posición de corte en (min, max]: tras el último salto de línea, si no tras el
+     * último espacio, y si no max
+     */
+    private static int breakPoint(CharSequence text, int min, int max) {
+        int newline = lastIndexOf(text, '\n', min, max);
+        if (newline >= 0) {
+            return newline + 1;
+        }
+        int space = lastIndexOf(text, ' ', min, max);
+        if (space >= 0) {
+            return space + 1;
+        }
+        return max;
+    }
+
+    /**
+     * Primera posición de c en [from, to), o -1
+     */
+    private static int indexOf(CharSequence text, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Última posición de c en [from, to), o -1
+     */
+    private static int lastIndexOf(CharSequence text, char c, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Identifica el análisis por modelo, opciones, tamaño de parte, instrucción y contenido
+     */
+    private String checkpointKey(String content, String instruction) {
+        MessageDigest digest = CacheFiles.sha256();
+        String header = model + '|' + options.toOptionsJson() + '|' + chunkChars + '|' + overlapChars + '|';
+        digest.update(header.getBytes(StandardCharsets.UTF_8));
+        digest.update(instruction.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(content.getBytes(StandardCharsets.UTF_8));
+        return CacheFiles.toHex(digest.digest());
+    }
+
+    /**
+     * Lee las respuestas parciales de un análisis anterior (en orden de parte)
+     */
+    private Map<Integer, String> loadCheckpoint(File checkpointFile, int total) throws IOException {
+        Map<Integer, String> partials = new TreeMap<>();
+        if (!checkpointFile.isFile()) {
+            return partials;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(checkpointFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    JSONObject entry = new JSONObject(line);
+                    int index = entry.getInt("index");
+                    if (index >= 0 && index < total) {
+                        partials.put(index, entry.getString("response"));
+                    }
+                } catch (JSONException e) {
+                    // Línea truncada por un análisis interrumpido
+                    logger.warn("Se ignora una línea no válida del archivo de control: {}", e.getMessage());
+                }
+            }
+        }
+        return partials;
+    }
+
+    /**
+     * Abre el archivo de control en modo append, empezando en una línea nueva si el
+     * análisis anterior se interrumpió a mitad de escritura
+     */
+    private void openCheckpoint(File checkpointFile) throws IOException {
+        if (!checkpointDir.isDirectory() && !checkpointDir.mkdirs()) {
+            throw new IOException("No se pudo crear el directorio de control: " + checkpointDir.getPath());
+        }
+        CacheFiles.trim(checkpointDir, CHECKPOINT_MAX_BYTES, checkpointFile);
+
+        boolean needsNewLine = false;
+        if (checkpointFile.length() > 0) {
+            try (RandomAccessFile file = new RandomAccessFile(checkpointFile, "r")) {
+                file.seek(file.length() - 1);
+                needsNewLine = file.read() != '\n';
+            }
+        }
+
+        checkpoint = Files.newBufferedWriter(checkpointFile.toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        if (needsNewLine) {
+            checkpoint.write('\n');
+        }
+    }
+
+    /**
+     * Añade una respuesta parcial al archivo de control y la vuelca a disco
+     */
+    private synchronized void writeCheckpoint(int index, String answer) {
+        JSONObject entry = new JSONObject();
+        entry.put("index", index);
+        entry.put("response", answer);
+        try {
+            checkpoint.write(entry.toString());
+            checkpoint.write('\n');
+            checkpoint.flush();
+        } catch (IOException e) {
+            // La respuesta sigue en memoria; solo se pierde la posibilidad de reanudar desde ella
+            logger.warn("No se pudo guardar la parte {} en el archivo de control: {}", index, e.getMessage());
+        }
+    }
+
+    /**
+     * Cierra el archivo de control; una parte cancelada que termine después ya no se guarda
+     */
+    private synchronized void closeCheckpoint() throws IOException {
+        checkpoint.close();
+    }
+}
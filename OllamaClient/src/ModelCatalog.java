@@ -0,0 +1,310 @@
+package OllamaClient.src;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Catálogo compartido de los modelos disponibles en Ollama
+ *
+ * Analiza la respuesta completa de /api/tags (nombre, tamaño, digest y fecha
+ * de modificación) y la guarda en memoria con un tiempo de vida configurable.
+ * Cuando los datos caducan se devuelven igualmente y se refrescan en segundo
+ * plano. El catálogo se guarda también en disco para que la lista de modelos
+ * esté disponible al instante en el siguiente arranque.
+ */
+public class ModelCatalog {
+    private static final Logger logger = LoggerFactory.getLogger(ModelCatalog.class);
+
+    // Archivo de caché dentro del directorio de configuración
+    private static final String CACHE_FILE_NAME = "models_cache.json";
+
+    public static final long DEFAULT_TTL_MS = 60000;
+
+    /**
+     * Información de un modelo instalado en Ollama
+     */
+    public static final class ModelInfo {
+        private final String name;
+        private final long size;
+        private final String digest;
+        private final String modifiedAt;
+
+        public ModelInfo(String name, long size, String digest, String modifiedAt) {
+            this.name = name;
+            this.size = size;
+            this.digest = digest;
+            this.modifiedAt = modifiedAt;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getDigest() {
+            return digest;
+        }
+
+        public String getModifiedAt() {
+            return modifiedAt;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    private static ModelCatalog instance;
+
+    private final ConfigManager configManager;
+    private final OllamaHttpTransport transport;
+    private final File cacheFile;
+    private final List<Consumer<List<ModelInfo>>> listeners = new CopyOnWriteArrayList<>();
+
+    // Estado del catálogo (lista inmutable y momento de la última actualización)
+    private volatile List<ModelInfo> models = Collections.emptyList();
+    private volatile long fetchedAt = 0;
+    private CompletableFuture<List<ModelInfo>> pendingRefresh;
+
+    /**
+     * Constructor privado para Singleton
+     */
+    private ModelCatalog() {
+        this.configManager = ConfigManager.getInstance();
+        this.transport = OllamaHttpTransport.getInstance(configManager);
+        this.cacheFile = new File(configManager.getConfigDir(), CACHE_FILE_NAME);
+        loadFromDisk();
+    }
+
+    /**
+     * Obtiene la instancia única del catálogo
+     */
+    public static synchronized ModelCatalog getInstance() {
+        if (instance == null) {
+            instance = new ModelCatalog();
+        }
+        return instance;
+    }
+
+    /**
+     * Registra un listener que recibe la nueva lista tras cada actualización desde el servidor.
+     * Se invoca desde un hilo en segundo plano.
+     */
+    public void addListener(Consumer<List<ModelInfo>> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<List<ModelInfo>> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Devuelve los modelos en caché (de memoria o del disco) sin hacer peticiones
+     */
+    public List<ModelInfo> getCachedModels() {
+        return models;
+    }
+
+    /**
+     * Devuelve los modelos disponibles. Si no hay datos se consultan al servidor;
+     * si los datos han caducado se devuelven y se lanza un refresco en segundo plano.
+     */
+    public List<ModelInfo> getModels() throws IOException {
+        if (fetchedAt == 0 && models.isEmpty()) {
+            return refresh();
+        }
+        if (isStale()) {
+            refreshAsync();
+        }
+        return models;
+    }
+
+    /**
+     * Devuelve solo los nombres de los modelos disponibles
+     */
+    public List<String> getModelNames() throws IOException {
+        return namesOf(getModels());
+    }
+
+    /**
+     * Indica si los datos en memoria han superado el tiempo de vida
+     */
+    public boolean isStale() {
+        long ttl = configManager.getMainConfig("modelCatalogTtl", (int) DEFAULT_TTL_MS);
+        return System.currentTimeMillis() - fetchedAt > ttl;
+    }
+
+    /**
+     * Consulta el servidor y actualiza el catálogo, esperando el resultado
+     */
+    public List<ModelInfo> refresh() throws IOException {
+        try {
+            return refreshAsync().join();
+        } catch (CompletionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Error al obtener la lista de modelos: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Consulta el servidor en segundo plano. Las llamadas concurrentes comparten la misma petición.
+     */
+    public synchronized CompletableFuture<List<ModelInfo>> refreshAsync() {
+        if (pendingRefresh != null) {
+            return pendingRefresh;
+        }
+
+        CompletableFuture<List<ModelInfo>> refresh = CompletableFuture.supplyAsync(() -> {
+            try {
+                logger.info("Obteniendo lista de modelos disponibles");
+                List<ModelInfo> fetched = parseTags(transport.get(OllamaHttpTransport.Endpoint.TAGS));
+                logger.info("Modelos encontrados: {}", fetched.size());
+                return fetched;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).handle((fetched, error) -> {
+            synchronized (this) {
+                pendingRefresh = null;
+            }
+            if (error != null) {
+                Throwable cause = unwrap(error);
+                logger.error("Error al obtener modelos", cause);
+                throw new CompletionException(cause);
+            }
+
+            models = Collections.unmodifiableList(fetched);
+            fetchedAt = System.currentTimeMillis();
+            saveToDisk(fetched);
+            for (Consumer<List<ModelInfo>> listener : listeners) {
+                listener.accept(models);
+            }
+            return models;
+        });
+
+        // Si ya ha terminado (en este mismo hilo) no queda nada pendiente que compartir
+        if (!refresh.isDone()) {
+            pendingRefresh = refresh;
+        }
+        return refresh;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof UncheckedIOException)
+                && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    /**
+     * Marca el catálogo como caducado para que la siguiente consulta lo refresque
+     */
+    public void invalidate() {
+        fetchedAt = 0;
+    }
+
+    /**
+     * Extrae los nombres de una lista de modelos
+     */
+    public static List<String> namesOf(List<ModelInfo> models) {
+        List<String> names = new ArrayList<>(models.size());
+        for (ModelInfo model : models) {
+            names.add(model.getName());
+        }
+        return names;
+    }
+
+    /**
+     * Analiza la respuesta de /api/tags
+     */
+    private static List<ModelInfo> parseTags(String json) throws IOException {
+        try {
+            JSONArray array = new JSONObject(json).optJSONArray("models");
+            List<ModelInfo> result = new ArrayList<>();
+            if (array == null) {
+                return result;
+            }
+
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject model = array.getJSONObject(i);
+                result.add(new ModelInfo(
+                        model.getString("name"),
+                        model.optLong("size", 0),
+                        model.optString("digest", ""),
+                        model.optString("modified_at", "")));
+            }
+            return result;
+        } catch (JSONException e) {
+            throw new IOException("Respuesta no válida de /api/tags: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Carga el catálogo guardado en el último arranque. No se considera fresco,
+     * de modo que la primera consulta lanza un refresco en segundo plano.
+     */
+    private void loadFromDisk() {
+        if (!cacheFile.exists()) {
+            return;
+        }
+
+        try {
+            String content = new String(Files.readAllBytes(cacheFile.toPath()), StandardCharsets.UTF_8);
+            models = Collections.unmodifiableList(parseTags(content));
+            logger.info("Catálogo de modelos cargado desde caché: {} modelos", models.size());
+        } catch (IOException e) {
+            logger.warn("No se pudo leer la caché de modelos: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Guarda el catálogo en disco con el mismo formato que /api/tags
+     */
+    private void saveToDisk(List<ModelInfo> fetched) {
+        JSONArray array = new JSONArray();
+        for (ModelInfo model : fetched) {
+            JSONObject entry = new JSONObject();
+            entry.put("name", model.getName());
+            entry.put("size", model.getSize());
+            entry.put("digest", model.getDigest());
+            entry.put("modified_at", model.getModifiedAt());
+            array.put(entry);
+        }
+        JSONObject root = new JSONObject();
+        root.put("models", array);
+
+        // Escribir en un temporal y renombrar para no dejar un archivo a medias
+        File tempFile = new File(cacheFile.getPath() + ".tmp");
+        try {
+            Files.write(tempFile.toPath(), root.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            logger.warn("No se pudo guardar la caché de modelos: {}", e.getMessage());
+        }
+    }
+}
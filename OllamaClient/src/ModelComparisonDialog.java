@@ -0,0 +1,396 @@
+package OllamaClient.src;
+
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Diálogo para comparar varios modelos con el mismo prompt
+ *
+ * Envía el prompt a todos los modelos seleccionados en paralelo, con un
+ * límite de peticiones simultáneas para no saturar la instancia local de
+ * Ollama. Cada modelo tiene su propio panel con la respuesta en streaming y
+ * las métricas de tiempo hasta el primer token, tokens por segundo y
+ * latencia total.
+ */
+public class ModelComparisonDialog extends JDialog {
+    private static final Logger logger = LoggerFactory.getLogger(ModelComparisonDialog.class);
+
+    // Frecuencia de refresco de las métricas
+    private static final int METRICS_REFRESH_MS = 250;
+
+    // Límite superior de peticiones simultáneas seleccionables
+    private static final int MAX_CONCURRENCY = 16;
+
+    private final List<String> availableModels;
+    private final GenerationOptions parameters;
+    private final ConfigManager configManager;
+    private final OllamaHttpTransport transport;
+
+    // UI Components
+    private JList<String> modelList;
+    private JTextArea promptTextArea;
+    private JSpinner concurrencySpinner;
+    private JButton runButton;
+    private JButton stopButton;
+    private JPanel resultsPanel;
+    private JLabel statusLabel;
+
+    // Estado de la comparación en curso
+    private final List<ModelRun> runs = new ArrayList<>();
+    private final Timer metricsTimer;
+
+    /**
+     * Constructor principal
+     */
+    public ModelComparisonDialog(Window owner, List<String> availableModels, String prompt,
+                                 GenerationOptions parameters) {
+        super(owner, "Comparar modelos", ModalityType.MODELESS);
+        this.availableModels = availableModels;
+        this.parameters = parameters;
+        this.configManager = ConfigManager.getInstance();
+        this.transport = OllamaHttpTransport.getInstance(configManager);
+        this.metricsTimer = new Timer(METRICS_REFRESH_MS, e -> refreshMetrics());
+
+        setSize(1000, 700);
+        setLocationRelativeTo(owner);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+
+        initComponents(prompt);
+        setupLayout();
+        setupEventHandlers();
+    }
+
+    /**
+     * Inicializa los componentes de la interfaz
+     */
+    private void initComponents(String prompt) {
+        modelList = new JList<>(availableModels.toArray(new String[0]));
+        modelList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        modelList.setVisibleRowCount(6);
+        modelList.setToolTipText("Selecciona los modelos a comparar (Ctrl/Mayús para selección múltiple)");
+
+        promptTextArea = new JTextArea(prompt, 5, 40);
+        promptTextArea.setLineWrap(true);
+        promptTextArea.setWrapStyleWord(true);
+
+        int concurrency = configManager.getMainConfig("fanOutConcurrency", 2);
+        concurrencySpinner = new JSpinner(new SpinnerNumberModel(
+                Math.max(1, Math.min(concurrency, MAX_CONCURRENCY)), 1, MAX_CONCURRENCY, 1));
+        concurrencySpinner.setToolTipText("Número máximo de peticiones que Ollama atenderá a la vez");
+
+        runButton = new JButton("Ejecutar");
+        stopButton = new JButton("Detener");
+        stopButton.setEnabled(false);
+
+        resultsPanel = new JPanel();
+        statusLabel = new JLabel("Selecciona al menos un modelo");
+    }
+
+    /**
+     * Configura el layout del diálogo
+     */
+    private void setupLayout() {
+        JPanel mainPanel = new JPanel(new BorderLayout(10, 10));
+        mainPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
+
+        // Panel superior: modelos, prompt y opciones
+        JPanel topPanel = new JPanel(new BorderLayout(10, 0));
+
+        JScrollPane modelScroll = new JScrollPane(modelList);
+        modelScroll.setBorder(BorderFactory.createTitledBorder("Modelos"));
+        modelScroll.setPreferredSize(new Dimension(220, 120));
+        topPanel.add(modelScroll, BorderLayout.WEST);
+
+        JScrollPane promptScroll = new JScrollPane(promptTextArea);
+        promptScroll.setBorder(BorderFactory.createTitledBorder("Prompt"));
+        topPanel.add(promptScroll, BorderLayout.CENTER);
+
+        JPanel optionsPanel = new JPanel(new GridLayout(4, 1, 0, 5));
+        JPanel concurrencyPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        concurrencyPanel.add(new JLabel("Simultáneas:"));
+        concurrencyPanel.add(concurrencySpinner);
+        optionsPanel.add(concurrencyPanel);
+        optionsPanel.add(runButton);
+        optionsPanel.add(stopButton);
+        topPanel.add(optionsPanel, BorderLayout.EAST);
+
+        mainPanel.add(topPanel, BorderLayout.NORTH);
+
+        // Panel central: un panel de respuesta por modelo
+        mainPanel.add(resultsPanel, BorderLayout.CENTER);
+
+        mainPanel.add(statusLabel, BorderLayout.SOUTH);
+
+        setContentPane(mainPanel);
+    }
+
+    /**
+     * Configura los manejadores de eventos
+     */
+    private void setupEventHandlers() {
+        runButton.addActionListener(e -> startComparison());
+        stopButton.addActionListener(e -> stopComparison());
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                stopComparison();
+                metricsTimer.stop();
+            }
+        });
+    }
+
+    /**
+     * Lanza el prompt contra todos los modelos seleccionados
+     */
+    private void startComparison() {
+        List<String> models = modelList.getSelectedValuesList();
+        String prompt = promptTextArea.getText().trim();
+
+        if (models.isEmpty()) {
+            statusLabel.setText("Selecciona al menos un modelo");
+            return;
+        }
+        if (prompt.isEmpty()) {
+            statusLabel.setText("El prompt no puede estar vacío");
+            return;
+        }
+
+        int concurrency = (Integer) concurrencySpinner.getValue();
+        configManager.setMainConfig("fanOutConcurrency", concurrency);
+
+        // Un panel por modelo en una rejilla de hasta tres columnas
+        runs.clear();
+        resultsPanel.removeAll();
+        int columns = Math.min(models.size(), 3);
+        resultsPanel.setLayout(new GridLayout(0, columns, 5, 5));
+        for (String model : models) {
+            ModelRun run = new ModelRun(model);
+            runs.add(run);
+            resultsPanel.add(run.panel);
+        }
+        resultsPanel.revalidate();
+        resultsPanel.repaint();
+
+        // Los modelos que superan el límite esperan en la cola del pool
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "ollama-compare-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        AtomicInteger remaining = new AtomicInteger(runs.size());
+        for (ModelRun run : runs) {
+            executor.execute(() -> {
+                try {
+                    run.execute(prompt);
+                } finally {
+                    // Un fallo inesperado de un modelo no debe dejar la comparación sin terminar
+                    if (remaining.decrementAndGet() == 0) {
+                        SwingUtilities.invokeLater(this::comparisonFinished);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+
+        logger.info("Comparando {} modelos con {} peticiones simultáneas", runs.size(), concurrency);
+        statusLabel.setText("Comparando " + runs.size() + " modelos (" + concurrency + " simultáneos)...");
+        runButton.setEnabled(false);
+        stopButton.setEnabled(true);
+        metricsTimer.start();
+    }
+
+    /**
+     * Cancela las generaciones pendientes y en curso; las terminadas conservan sus métricas
+     */
+    private void stopComparison() {
+        // Las peticiones en cola ya canceladas terminan en cuanto el pool las ejecuta
+        for (ModelRun run : runs) {
+            if (run.endNanos == 0) {
+                run.generation.cancel();
+            }
+        }
+    }
+
+    /**
+     * Se ejecuta en el EDT cuando terminan todas las peticiones
+     */
+    private void comparisonFinished() {
+        metricsTimer.stop();
+        refreshMetrics();
+        for (ModelRun run : runs) {
+            run.appender.finish();
+        }
+
+        runButton.setEnabled(true);
+        stopButton.setEnabled(false);
+        statusLabel.setText("Comparación finalizada");
+    }
+
+    /**
+     * Actualiza las métricas de todos los paneles (en el EDT)
+     */
+    private void refreshMetrics() {
+        for (ModelRun run : runs) {
+            run.metricsLabel.setText(run.describeMetrics());
+        }
+    }
+
+    /**
+     * Estado y panel de la generación de un modelo
+     */
+    private class ModelRun {
+        final String model;
+        final GenerationHandle generation = new GenerationHandle();
+        final JPanel panel;
+        final JTextPane textPane;
+        final JLabel metricsLabel;
+        final StreamingTextAppender appender;
+
+        // Escritos desde el hilo de la petición y leídos por el temporizador del EDT
+        volatile long startNanos;
+        volatile long firstTokenNanos;
+        volatile long endNanos;
+        volatile int chunkCount;
+        volatile long evalCount;
+        volatile long evalDurationNanos;
+        volatile String error;
+
+        ModelRun(String model) {
+            this.model = model;
+
+            textPane = new JTextPane();
+            textPane.setEditable(false);
+            appender = new StreamingTextAppender(textPane);
+
+            metricsLabel = new JLabel("En cola");
+
+            panel = new JPanel(new BorderLayout(0, 5));
+            panel.setBorder(BorderFactory.createTitledBorder(model));
+            panel.add(new JScrollPane(textPane), BorderLayout.CENTER);
+            panel.add(metricsLabel, BorderLayout.SOUTH);
+        }
+
+        /**
+         * Envía el prompt al modelo y va volcando la respuesta en su panel
+         */
+        void execute(String prompt) {
+            if (generation.isCancelled()) {
+                return;
+            }
+
+            JSONObject jsonRequest = new JSONObject();
+            jsonRequest.put("model", model);
+            jsonRequest.put("prompt", prompt);
+            // Cada modelo usa su propio perfil con los parámetros de la ventana principal por encima
+            GenerationOptions.forModel(model, parameters).applyTo(jsonRequest);
+            jsonRequest.put("stream", true);
+
+            startNanos = System.nanoTime();
+            try {
+                InputStream responseStream = transport.postJson(OllamaHttpTransport.Endpoint.GENERATE,
+                        jsonRequest.toString(), generation);
+
+                try (OllamaStreamDecoder decoder = new OllamaStreamDecoder(responseStream)) {
+                    OllamaStreamDecoder.Chunk chunk = new OllamaStreamDecoder.Chunk();
+                    while (decoder.next(chunk)) {
+                        if (chunk.hasError()) {
+                            throw new IOException("Error de Ollama: " + chunk.getError());
+                        }
+                        if (chunk.hasText()) {
+                            if (firstTokenNanos == 0) {
+                                firstTokenNanos = System.nanoTime();
+                            }
+                            chunkCount++;
+                            appender.append(chunk.getText().toString());
+                        }
+                        if (chunk.isDone()) {
+                            evalCount = chunk.getEvalCount();
+                            evalDurationNanos = chunk.getEvalDuration();
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                if (!generation.isCancelled()) {
+                    logger.error("Error al generar con el modelo {}", model, e);
+                    error = e.getMessage();
+                }
+            } catch (RuntimeException e) {
+                // Por ejemplo, una respuesta con JSON no válido
+                logger.error("Error inesperado al generar con el modelo {}", model, e);
+                error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            } finally {
+                endNanos = System.nanoTime();
+            }
+
+            logger.info("Modelo {}: {}", model, describeMetrics());
+        }
+
+        /**
+         * Describe las métricas actuales de la generación
+         */
+        String describeMetrics() {
+            long start = startNanos;
+            if (start == 0) {
+                return generation.isCancelled() ? "Cancelado" : "En cola";
+            }
+
+            long end = endNanos;
+            long now = end != 0 ? end : System.nanoTime();
+            long firstToken = firstTokenNanos;
+
+            StringBuilder sb = new StringBuilder();
+            sb.append("TTFT: ").append(firstToken != 0 ? formatMillis(firstToken - start) : "-");
+
+            // Se prefieren las cifras del servidor; durante el streaming se estima con los fragmentos recibidos
+            double tokensPerSecond;
+            if (evalCount > 0 && evalDurationNanos > 0) {
+                tokensPerSecond = evalCount * 1_000_000_000.0 / evalDurationNanos;
+            } else if (firstToken != 0 && now > firstToken) {
+                tokensPerSecond = chunkCount * 1_000_000_000.0 / (now - firstToken);
+            } else {
+                tokensPerSecond = 0;
+            }
+            sb.append(" | ").append(String.format("%.1f tok/s", tokensPerSecond));
+            sb.append(" | Total: ").append(formatMillis(now - start));
+
+            if (error != null) {
+                sb.append(" | Error: ").append(error);
+            } else if (end == 0) {
+                sb.append(" | Generando...");
+            } else if (generation.isCancelled()) {
+                sb.append(" | Cancelado");
+            }
+            return sb.toString();
+        }
+
+        private String formatMillis(long nanos) {
+            return (nanos / 1_000_000) + " ms";
+        }
+    }
+
+    /**
+     * Muestra el diálogo de comparación
+     */
+    public static void showDialog(Window owner, List<String> availableModels, String prompt,
+                                  GenerationOptions parameters) {
+        ModelComparisonDialog dialog = new ModelComparisonDialog(owner, availableModels, prompt, parameters);
+        dialog.setVisible(true);
+    }
+}
@@ -0,0 +1,246 @@
+package OllamaClient.src;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Precarga de modelos y política de keep_alive
+ *
+ * Al seleccionar un modelo se envía en segundo plano una petición de generación
+ * vacía para que Ollama lo cargue en memoria antes del primer prompt. Cada
+ * petición lleva un keep_alive según la frecuencia de uso del modelo: los más
+ * usados se mantienen cargados durante más tiempo y el resto se descarga con el
+ * tiempo por defecto, liberando memoria.
+ */
+public class ModelPreloader {
+    private static final Logger logger = LoggerFactory.getLogger(ModelPreloader.class);
+
+    // Estados de carga de un modelo en el servidor
+    public enum LoadState {
+        UNKNOWN,
+        LOADING,
+        LOADED,
+        FAILED
+    }
+
+    /**
+     * Recibe los cambios de estado de carga. Se invoca desde hilos en segundo plano.
+     */
+    public interface LoadStateListener {
+        void loadStateChanged(String model, LoadState state);
+    }
+
+    private static ModelPreloader instance;
+
+    private final ConfigManager configManager;
+    private final OllamaHttpTransport transport;
+    private final Map<String, LoadState> states = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Void>> pendingLoads = new ConcurrentHashMap<>();
+    private final List<LoadStateListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Usos de cada modelo; se cuentan en memoria y se guardan en la configuración en cada uso
+    private final Map<String, Integer> usageCounts = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor privado para Singleton
+     */
+    private ModelPreloader() {
+        this.configManager = ConfigManager.getInstance();
+        this.transport = OllamaHttpTransport.getInstance(configManager);
+
+        JSONObject usage = configManager.getMainConfigObject("modelUsageCounts");
+        for (Object key : usage.keySet()) {
+            usageCounts.put((String) key, usage.optInt((String) key, 0));
+        }
+    }
+
+    /**
+     * Obtiene la instancia única del precargador
+     */
+    public static synchronized ModelPreloader getInstance() {
+        if (instance == null) {
+            instance = new ModelPreloader();
+        }
+        return instance;
+    }
+
+    public void addListener(LoadStateListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(LoadStateListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Obtiene el último estado de carga conocido de un modelo
+     */
+    public LoadState getState(String model) {
+        return states.getOrDefault(model, LoadState.UNKNOWN);
+    }
+
+    /**
+     * Indica si la precarga al seleccionar un modelo está habilitada
+     */
+    public boolean isPreloadOnSelectEnabled() {
+        return configManager.getMainConfig("preloadOnSelect", true);
+    }
+
+    /**
+     * Carga el modelo en segundo plano. Si ya hay una carga en curso para el
+     * mismo modelo se devuelve esa misma operación.
+     */
+    public CompletableFuture<Void> preload(String model) {
+        if (model == null || model.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<Void> load = new CompletableFuture<>();
+        CompletableFuture<Void> existing = pendingLoads.putIfAbsent(model, load);
+        if (existing != null) {
+            return existing;
+        }
+
+        setState(model, LoadState.LOADING);
+
+        // Una generación sin prompt solo carga el modelo y aplica el keep_alive.
+        // Se envían las opciones del perfil (num_ctx, num_gpu...) para que la primera
+        // consulta real no obligue a recargar el modelo con otra configuración.
+        String keepAlive = keepAliveFor(model);
+        GenerationOptions options = GenerationOptions.forModel(model);
+        options.setKeepAlive(keepAlive);
+        JSONObject jsonRequest = new JSONObject();
+        jsonRequest.put("model", model);
+        options.applyTo(jsonRequest);
+        jsonRequest.put("stream", false);
+
+        Duration timeout = Duration.ofMillis(configManager.getMainConfig("preloadTimeout", 120000));
+        long start = System.nanoTime();
+
+        logger.info("Precargando modelo {} (keep_alive: {})", model, keepAlive);
+        transport.postJsonAsync(OllamaHttpTransport.Endpoint.GENERATE, jsonRequest.toString(), timeout)
+                .thenAccept(response -> {
+                    try (InputStream body = transport.checkStatus(response)) {
+                        body.readAllBytes();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .whenComplete((result, error) -> {
+                    pendingLoads.remove(model, load);
+                    if (error != null) {
+                        logger.warn("No se pudo precargar el modelo {}: {}", model, error.getMessage());
+                        setState(model, LoadState.FAILED);
+                        load.completeExceptionally(error);
+                    } else {
+                        logger.info("Modelo {} cargado en {} ms", model, (System.nanoTime() - start) / 1_000_000);
+                        setState(model, LoadState.LOADED);
+                        load.complete(null);
+                    }
+                });
+        return load;
+    }
+
+    /**
+     * Consulta qué modelos tiene cargados el servidor y actualiza los estados.
+     * Los modelos que ya no aparecen (descargados al expirar su keep_alive) pasan a UNKNOWN.
+     */
+    public void refreshLoadedModels() throws IOException {
+        String response = transport.get(OllamaHttpTransport.Endpoint.PS);
+        JSONArray models = new JSONObject(response).optJSONArray("models");
+
+        Set<String> loaded = new HashSet<>();
+        if (models != null) {
+            for (int i = 0; i < models.length(); i++) {
+                loaded.add(models.getJSONObject(i).optString("name"));
+            }
+        }
+
+        for (String model : loaded) {
+            if (getState(model) != LoadState.LOADING) {
+                setState(model, LoadState.LOADED);
+            }
+        }
+        for (String model : new ArrayList<>(states.keySet())) {
+            if (!loaded.contains(model) && getState(model) == LoadState.LOADED) {
+                setState(model, LoadState.UNKNOWN);
+            }
+        }
+    }
+
+    /**
+     * Registra un uso del modelo para la política de keep_alive. Puede llamarse desde
+     * cualquier hilo: el recuento se incrementa en memoria y se guarda en el momento,
+     * de modo que no se pierde aunque el programa termine justo después.
+     */
+    public void recordUse(String model) {
+        usageCounts.merge(model, 1, Integer::sum);
+        saveUsageCounts();
+    }
+
+    /**
+     * Indica que el servidor ha empezado a responder con el modelo, que por tanto ya
+     * está cargado. Se llama al recibir el primer fragmento de una respuesta.
+     */
+    public void markLoaded(String model) {
+        if (getState(model) != LoadState.LOADED) {
+            setState(model, LoadState.LOADED);
+        }
+    }
+
+    private synchronized void saveUsageCounts() {
+        JSONObject usage = new JSONObject();
+        for (Map.Entry<String, Integer> entry : usageCounts.entrySet()) {
+            usage.put(entry.getKey(), entry.getValue().intValue());
+        }
+        configManager.setMainConfig("modelUsageCounts", usage);
+    }
+
+    /**
+     * Devuelve el keep_alive que corresponde al modelo: el de su perfil si lo
+     * tiene, largo para los modelos más usados y el valor por defecto para el resto
+     */
+    public String keepAliveFor(String model) {
+        String profileKeepAlive = GenerationOptions.forModel(model).getKeepAlive();
+        if (profileKeepAlive != null) {
+            return profileKeepAlive;
+        }
+
+        String frequent = configManager.getMainConfig("keepAliveFrequent", "30m");
+        String standard = configManager.getMainConfig("keepAliveDefault", "5m");
+        int frequentCount = configManager.getMainConfig("keepAliveFrequentModels", 2);
+
+        return getFrequentModels(frequentCount).contains(model) ? frequent : standard;
+    }
+
+    /**
+     * Obtiene los modelos más usados según el recuento de usos
+     */
+    private Set<String> getFrequentModels(int count) {
+        Map<String, Integer> usage = new HashMap<>(usageCounts);
+        List<String> models = new ArrayList<>(usage.keySet());
+        models.sort((a, b) -> Integer.compare(usage.get(b), usage.get(a)));
+
+        return new HashSet<>(models.subList(0, Math.min(count, models.size())));
+    }
+
+    private void setState(String model, LoadState state) {
+        LoadState previous = states.put(model, state);
+        if (previous != state) {
+            for (LoadStateListener listener : listeners) {
+                listener.loadStateChanged(model, state);
+            }
+        }
+    }
+}
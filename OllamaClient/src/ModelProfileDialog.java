@@ -0,0 +1,206 @@
+package OllamaClient.src;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.border.TitledBorder;
+import java.awt.*;
+import java.awt.event.KeyEvent;
+
+/**
+ * Diálogo para editar el perfil de opciones de generación de un modelo
+ *
+ * Permite limitar la memoria de contexto (num_ctx), la longitud de la salida
+ * (num_predict) y los recursos de ejecución de cada modelo, además de su
+ * keep_alive. Los campos vacíos no se envían y el servidor usa su valor por
+ * defecto. Temperatura y Top P se editan en la ventana principal.
+ */
+public class ModelProfileDialog extends JDialog {
+    private static final Logger logger = LoggerFactory.getLogger(ModelProfileDialog.class);
+
+    private final String model;
+    private final GenerationOptions profile;
+
+    // UI Components
+    private JTextField numCtxField;
+    private JTextField numPredictField;
+    private JTextField numBatchField;
+    private JTextField numThreadField;
+    private JTextField numGpuField;
+    private JTextField topKField;
+    private JTextField repeatPenaltyField;
+    private JTextField seedField;
+    private JTextField keepAliveField;
+
+    // Resultado tras aceptar
+    private boolean accepted = false;
+
+    /**
+     * Constructor principal
+     */
+    public ModelProfileDialog(Window owner, String model) {
+        super(owner, "Perfil del modelo: " + model, ModalityType.APPLICATION_MODAL);
+        this.model = model;
+        this.profile = GenerationOptions.forModel(model);
+
+        setSize(450, 480);
+        setLocationRelativeTo(owner);
+        setResizable(true);
+
+        initComponents();
+        setupLayout();
+    }
+
+    /**
+     * Inicializa los componentes de la interfaz con los valores del perfil
+     */
+    private void initComponents() {
+        numCtxField = createField(profile.getNumCtx());
+        numPredictField = createField(profile.getNumPredict());
+        numBatchField = createField(profile.getNumBatch());
+        numThreadField = createField(profile.getNumThread());
+        numGpuField = createField(profile.getNumGpu());
+        topKField = createField(profile.getTopK());
+        repeatPenaltyField = createField(profile.getRepeatPenalty());
+        seedField = createField(profile.getSeed());
+        keepAliveField = createField(profile.getKeepAlive());
+    }
+
+    private JTextField createField(Object value) {
+        return new JTextField(value != null ? String.valueOf(value) : "", 10);
+    }
+
+    /**
+     * Configura el layout de los componentes
+     */
+    private void setupLayout() {
+        JPanel mainPanel = new JPanel(new BorderLayout(10, 10));
+        mainPanel.setBorder(new EmptyBorder(10, 10, 10, 10));
+        setContentPane(mainPanel);
+
+        JPanel executionPanel = new JPanel(new GridBagLayout());
+        executionPanel.setBorder(new TitledBorder("Ejecución"));
+        addRow(executionPanel, 0, "Contexto (num_ctx):", numCtxField);
+        addRow(executionPanel, 1, "Tokens máximos (num_predict):", numPredictField);
+        addRow(executionPanel, 2, "Lote (num_batch):", numBatchField);
+        addRow(executionPanel, 3, "Hilos (num_thread):", numThreadField);
+        addRow(executionPanel, 4, "Capas en GPU (num_gpu):", numGpuField);
+        addRow(executionPanel, 5, "Mantener cargado (keep_alive):", keepAliveField);
+
+        JPanel samplingPanel = new JPanel(new GridBagLayout());
+        samplingPanel.setBorder(new TitledBorder("Muestreo"));
+        addRow(samplingPanel, 0, "Top K:", topKField);
+        addRow(samplingPanel, 1, "Penalización de repetición:", repeatPenaltyField);
+        addRow(samplingPanel, 2, "Semilla:", seedField);
+
+        JLabel helpLabel = new JLabel("<html><small>Deja un campo vacío para usar el valor por defecto del servidor. " +
+                "keep_alive admite duraciones (\"5m\", \"1h\") o segundos (-1 = indefinido).</small></html>");
+        helpLabel.setForeground(Color.GRAY);
+
+        JPanel optionsPanel = new JPanel();
+        optionsPanel.setLayout(new BoxLayout(optionsPanel, BoxLayout.Y_AXIS));
+        optionsPanel.add(executionPanel);
+        optionsPanel.add(Box.createVerticalStrut(10));
+        optionsPanel.add(samplingPanel);
+        optionsPanel.add(Box.createVerticalStrut(10));
+        optionsPanel.add(helpLabel);
+        mainPanel.add(optionsPanel, BorderLayout.CENTER);
+
+        // Botones de acción
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        JButton applyButton = new JButton("Aplicar");
+        JButton cancelButton = new JButton("Cancelar");
+        buttonPanel.add(applyButton);
+        buttonPanel.add(cancelButton);
+        mainPanel.add(buttonPanel, BorderLayout.SOUTH);
+
+        getRootPane().setDefaultButton(applyButton);
+        getRootPane().registerKeyboardAction(
+                e -> cancelButton.doClick(),
+                KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0),
+                JComponent.WHEN_IN_FOCUSED_WINDOW
+        );
+
+        applyButton.addActionListener(e -> {
+            if (saveProfile()) {
+                accepted = true;
+                dispose();
+            }
+        });
+
+        cancelButton.addActionListener(e -> dispose());
+    }
+
+    private void addRow(JPanel panel, int row, String label, JComponent field) {
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.gridx = 0;
+        gbc.gridy = row;
+        gbc.anchor = GridBagConstraints.WEST;
+        gbc.insets = new Insets(5, 5, 5, 5);
+        panel.add(new JLabel(label), gbc);
+
+        gbc.gridx = 1;
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.weightx = 1.0;
+        panel.add(field, gbc);
+    }
+
+    /**
+     * Guarda el perfil. Devuelve false (tras avisar al usuario) si algún valor no es válido.
+     */
+    private boolean saveProfile() {
+        try {
+            profile.setNumCtx(parseInteger(numCtxField));
+            profile.setNumPredict(parseInteger(numPredictField));
+            profile.setNumBatch(parseInteger(numBatchField));
+            profile.setNumThread(parseInteger(numThreadField));
+            profile.setNumGpu(parseInteger(numGpuField));
+            profile.setTopK(parseInteger(topKField));
+            profile.setRepeatPenalty(parseFloat(repeatPenaltyField));
+            profile.setSeed(parseInteger(seedField));
+            profile.setKeepAlive(keepAliveField.getText());
+        } catch (NumberFormatException e) {
+            ErrorManager.getInstance().handleError(
+                    ErrorManager.ErrorCategory.CONFIGURATION,
+                    ErrorManager.ErrorSeverity.WARNING,
+                    "Error en parámetros",
+                    "Los parámetros deben ser números válidos",
+                    true
+            );
+            return false;
+        }
+
+        profile.saveAsProfile(model);
+        logger.info("Perfil del modelo {} guardado: {}", model, profile);
+        return true;
+    }
+
+    private static Integer parseInteger(JTextField field) {
+        String text = field.getText().trim();
+        return text.isEmpty() ? null : Integer.valueOf(text);
+    }
+
+    private static Float parseFloat(JTextField field) {
+        String text = field.getText().trim();
+        return text.isEmpty() ? null : Float.valueOf(text);
+    }
+
+    /**
+     * Verifica si el usuario aceptó los cambios
+     */
+    public boolean isAccepted() {
+        return accepted;
+    }
+
+    /**
+     * Método estático para mostrar el diálogo
+     * @return true si el usuario aplicó cambios, false si canceló
+     */
+    public static boolean showDialog(Window owner, String model) {
+        ModelProfileDialog dialog = new ModelProfileDialog(owner, model);
+        dialog.setVisible(true);
+        return dialog.isAccepted();
+    }
+}
@@ -0,0 +1,375 @@
+package OllamaClient.src;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ejecución por lotes (sin interfaz) de prompts leídos de un archivo JSONL
+ *
+ * Cada línea de entrada es un objeto {"id", "model", "prompt", "options", "files"}
+ * donde solo "prompt" es obligatorio. Los registros se procesan con un número
+ * acotado de peticiones simultáneas y cada resultado se añade al archivo de
+ * salida en cuanto termina, con el índice de la línea de entrada. Al volver a
+ * ejecutar con el mismo archivo de salida se omiten los registros que ya
+ * terminaron correctamente, de modo que una ejecución interrumpida se reanuda
+ * donde se quedó. Al final se muestran el rendimiento y los percentiles de latencia.
+ *
+ * Uso: OllamaBatchRunner entrada.jsonl salida.jsonl [--concurrency N] [--model nombre]
+ */
+public class OllamaBatchRunner {
+    private static final Logger logger = LoggerFactory.getLogger(OllamaBatchRunner.class);
+
+    public static final int DEFAULT_CONCURRENCY = 2;
+
+    private final Path inputFile;
+    private final Path outputFile;
+    private final int concurrency;
+    private final String defaultModel;
+    private final OllamaHttpTransport transport;
+
+    // Métricas de la ejecución
+    private final List<Long> latenciesMs = Collections.synchronizedList(new ArrayList<>());
+    private final List<Long> firstTokenMs = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong generatedTokens = new AtomicLong();
+
+    private Writer output;
+
+    public OllamaBatchRunner(Path inputFile, Path outputFile, int concurrency, String defaultModel) {
+        this.inputFile = inputFile;
+        this.outputFile = outputFile;
+        this.concurrency = Math.max(1, concurrency);
+        this.defaultModel = defaultModel;
+        this.transport = OllamaHttpTransport.getInstance(ConfigManager.getInstance());
+    }
+
+    /**
+     * Procesa todo el archivo de entrada y muestra el resumen al terminar
+     */
+    public void run() throws IOException, InterruptedException {
+        Set<Integer> completed = loadCompletedIndexes();
+        if (!completed.isEmpty()) {
+            System.out.println("Reanudando: " + completed.size() + " registros ya completados en " + outputFile);
+        }
+
+        prepareOutput();
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "ollama-batch-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Limita los registros leídos y pendientes para no cargar todo el archivo en memoria
+        Semaphore inFlight = new Semaphore(concurrency * 2);
+
+        long start = System.nanoTime();
+        int submitted = 0;
+        int skipped = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(inputFile, StandardCharsets.UTF_8)) {
+            String line;
+            int index = -1;
+            while ((line = reader.readLine()) != null) {
+                index++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                if (completed.contains(index)) {
+                    skipped++;
+                    continue;
+                }
+
+                final int recordIndex = index;
+                final String recordLine = line;
+                inFlight.acquire();
+                executor.execute(() -> {
+                    try {
+                        processRecord(recordIndex, recordLine);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+                submitted++;
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            output.close();
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        printSummary(submitted, skipped, elapsedNanos);
+    }
+
+    /**
+     * Lee el archivo de salida existente y devuelve los índices terminados correctamente
+     */
+    private Set<Integer> loadCompletedIndexes() throws IOException {
+        Set<Integer> completed = new HashSet<>();
+        if (!Files.exists(outputFile)) {
+            return completed;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(outputFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    JSONObject result = new JSONObject(line);
+                    if ("ok".equals(result.optString("status"))) {
+                        completed.add(result.getInt("index"));
+                    }
+                } catch (JSONException e) {
+                    // Línea truncada por una ejecución interrumpida
+                    logger.warn("Se ignora una línea no válida en el archivo de salida: {}", e.getMessage());
+                }
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Abre el archivo de salida en modo append, empezando en una línea nueva
+     * si la ejecución anterior se interrumpió a mitad de escritura
+     */
+    private void prepareOutput() throws IOException {
+        boolean needsNewLine = false;
+        if (Files.exists(outputFile) && Files.size(outputFile) > 0) {
+            try (RandomAccessFile file = new RandomAccessFile(outputFile.toFile(), "r")) {
+                file.seek(file.length() - 1);
+                needsNewLine = file.read() != '\n';
+            }
+        }
+
+        output = Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        if (needsNewLine) {
+            output.write('\n');
+        }
+    }
+
+    /**
+     * Ejecuta un registro y escribe su resultado
+     */
+    private void processRecord(int index, String line) {
+        JSONObject result = new JSONObject();
+        result.put("index", index);
+
+        long start = System.nanoTime();
+        try {
+            JSONObject record = new JSONObject(line);
+            if (record.has("id")) {
+                result.put("id", record.get("id"));
+            }
+
+            String model = record.optString("model", defaultModel);
+            if (model == null || model.isEmpty()) {
+                throw new IllegalArgumentException("El registro no indica modelo y no hay modelo por defecto");
+            }
+            result.put("model", model);
+
+            JSONObject jsonRequest = new JSONObject();
+            jsonRequest.put("model", model);
+            jsonRequest.put("prompt", buildPrompt(record));
+            // Perfil del modelo con las opciones del registro por encima (keep_alive pasa al nivel superior)
+            GenerationOptions.forModel(model, GenerationOptions.fromJson(record.optJSONObject("options")))
+                    .applyTo(jsonRequest);
+            jsonRequest.put("stream", true);
+
+            InputStream responseStream = transport.postJson(OllamaHttpTransport.Endpoint.GENERATE, jsonRequest.toString());
+
+            StringBuilder response = new StringBuilder();
+            long firstToken = 0;
+            long evalCount = 0;
+            try (OllamaStreamDecoder decoder = new OllamaStreamDecoder(responseStream)) {
+                OllamaStreamDecoder.Chunk chunk = new OllamaStreamDecoder.Chunk();
+                while (decoder.next(chunk)) {
+                    if (chunk.hasError()) {
+                        throw new IOException("Error de Ollama: " + chunk.getError());
+                    }
+                    if (chunk.hasText()) {
+                        if (firstToken == 0) {
+                            firstToken = System.nanoTime();
+                        }
+                        response.append(chunk.getText());
+                    }
+                    if (chunk.isDone()) {
+                        evalCount = chunk.getEvalCount();
+                    }
+                }
+            }
+
+            long latencyMs = (System.nanoTime() - start) / 1_000_000;
+            latenciesMs.add(latencyMs);
+            if (firstToken != 0) {
+                long ttftMs = (firstToken - start) / 1_000_000;
+                firstTokenMs.add(ttftMs);
+                result.put("ttft_ms", ttftMs);
+            }
+            generatedTokens.addAndGet(evalCount);
+            succeeded.incrementAndGet();
+
+            result.put("status", "ok");
+            result.put("response", response.toString());
+            result.put("latency_ms", latencyMs);
+            result.put("eval_count", evalCount);
+        } catch (Exception e) {
+            logger.error("Error en el registro {} del lote", index, e);
+            failed.incrementAndGet();
+            result.put("status", "error");
+            result.put("error", e.getMessage());
+            result.put("latency_ms", (System.nanoTime() - start) / 1_000_000);
+        }
+
+        writeResult(result);
+    }
+
+    /**
+     * Construye el prompt final añadiendo el contenido de los archivos del registro
+     */
+    private String buildPrompt(JSONObject record) throws IOException {
+        String prompt = record.getString("prompt");
+        if (!record.has("files") || record.getJSONArray("files").length() == 0) {
+            return prompt;
+        }
+
+        StringBuilder content = new StringBuilder();
+        content.append("# ARCHIVOS SELECCIONADOS\n\n");
+        JSONArray files = record.getJSONArray("files");
+        for (int i = 0; i < files.length(); i++) {
+            String path = files.getString(i);
+            File file = new File(path);
+            content.append("## ARCHIVO: ").append(file.getName())
+                    .append(" (").append(path).append(")\n\n");
+            content.append("```\n");
+            content.append(OllamaClient.readFileContent(path)).append("\n");
+            content.append("```\n\n");
+        }
+
+        return "Archivos:\n\n" + content + "\n\nPrompt:\n\n" + prompt;
+    }
+
+    /**
+     * Añade un resultado al archivo de salida y lo vuelca a disco
+     */
+    private synchronized void writeResult(JSONObject result) {
+        try {
+            output.write(result.toString());
+            output.write('\n');
+            output.flush();
+        } catch (IOException e) {
+            logger.error("Error al escribir el resultado {}", result.opt("index"), e);
+        }
+
+        int done = succeeded.get() + failed.get();
+        System.out.print("\rProcesados: " + done + " (errores: " + failed.get() + ")");
+    }
+
+    /**
+     * Muestra el rendimiento y los percentiles de latencia
+     */
+    private void printSummary(int submitted, int skipped, long elapsedNanos) {
+        double elapsedSeconds = elapsedNanos / 1_000_000_000.0;
+
+        System.out.println();
+        System.out.println("========================");
+        System.out.println("Registros procesados: " + submitted + " (correctos: " + succeeded.get()
+                + ", errores: " + failed.get() + ", omitidos: " + skipped + ")");
+        System.out.printf("Tiempo total: %.1f s%n", elapsedSeconds);
+        if (elapsedSeconds > 0) {
+            System.out.printf("Rendimiento: %.2f registros/s, %.1f tokens/s%n",
+                    submitted / elapsedSeconds, generatedTokens.get() / elapsedSeconds);
+        }
+        printPercentiles("Latencia total", latenciesMs);
+        printPercentiles("Tiempo hasta el primer token", firstTokenMs);
+        System.out.println("Resultados en: " + outputFile.toAbsolutePath());
+    }
+
+    private static void printPercentiles(String label, List<Long> values) {
+        List<Long> sorted;
+        synchronized (values) {
+            sorted = new ArrayList<>(values);
+        }
+        if (sorted.isEmpty()) {
+            return;
+        }
+        Collections.sort(sorted);
+        System.out.println(label + " (ms): p50=" + percentile(sorted, 50) + " p90=" + percentile(sorted, 90)
+                + " p99=" + percentile(sorted, 99) + " max=" + sorted.get(sorted.size() - 1));
+    }
+
+    private static long percentile(List<Long> sorted, int percentile) {
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.size());
+        return sorted.get(Math.max(0, rank - 1));
+    }
+
+    /**
+     * Punto de entrada del modo por lotes
+     */
+    public static void main(String[] args) {
+        String input = null;
+        String outputPath = null;
+        int concurrency = ConfigManager.getInstance().getMainConfig("batchConcurrency", DEFAULT_CONCURRENCY);
+        String model = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--concurrency":
+                        concurrency = Integer.parseInt(args[++i]);
+                        break;
+                    case "--model":
+                        model = args[++i];
+                        break;
+                    default:
+                        if (input == null) {
+                            input = args[i];
+                        } else if (outputPath == null) {
+                            outputPath = args[i];
+                        } else {
+                            throw new IllegalArgumentException("Argumento no reconocido: " + args[i]);
+                        }
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Argumentos no válidos: " + e.getMessage());
+            input = null;
+        }
+
+        if (input == null || outputPath == null) {
+            System.err.println("Uso: OllamaBatchRunner entrada.jsonl salida.jsonl [--concurrency N] [--model nombre]");
+            System.exit(2);
+        }
+
+        try {
+            new OllamaBatchRunner(Paths.get(input), Paths.get(outputPath), concurrency, model).run();
+        } catch (IOException e) {
+            logger.error("Error en la ejecución por lotes", e);
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Ejecución por lotes interrumpida");
+            System.exit(1);
+        }
+    }
+}
@@ -1,22 +1,15 @@
 package OllamaClient.src;
 
-import org.apache.pdfbox.Loader;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
-import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import sun.misc.Signal;
+import sun.misc.SignalHandler;
 
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.CancellationException;
 
 /**
  * Cliente Java para interactuar con la API de Ollama
@@ -26,19 +19,13 @@ import java.util.regex.Pattern;
  * archivos en varios formatos.
  */
 public class OllamaClient {
-    // URLs de la API
-    private static final String OLLAMA_API_URL = "http://localhost:11434/api/generate";
-    private static final String OLLAMA_MODELS_URL = "http://localhost:11434/api/tags";
+    // Transporte HTTP compartido (conexiones persistentes)
+    private static final OllamaHttpTransport transport = OllamaHttpTransport.getInstance();
 
-    // Configuración por defecto
-    private static final Map<String, Float> DEFAULT_PARAMETERS = new HashMap<String, Float>() {{
-        put("temperature", 0.9f);
-        put("top_p", 0.9f);
-        put("max_tokens", 1000000f);
-    }};
+    // Configuración por defecto (se aplica sobre el perfil del modelo)
+    private static final float DEFAULT_TEMPERATURE = 0.9f;
+    private static final float DEFAULT_TOP_P = 0.9f;
 
-    // Cache de modelos
-    private static final Map<String, String> modelCache = new ConcurrentHashMap<>();
 
     // Logger para registro de errores y eventos
     private static final Logger logger = LoggerFactory.getLogger(OllamaClient.class);
@@ -46,6 +33,9 @@ public class OllamaClient {
     // Historial de conversaciones
     private static final List<Map<String, String>> conversationHistory = new ArrayList<>();
 
+    // Ruta del archivo cargado en la consulta actual (vacía si no hay ninguno)
+    private static String loadedFilePath = "";
+
     public static void ejecutar() {
         logger.info("Iniciando Cliente Java para Ollama");
 
@@ -117,8 +107,11 @@ public class OllamaClient {
             return;
         }
 
+        // Cargar el modelo en segundo plano mientras se configuran parámetros y prompt
+        ModelPreloader.getInstance().preload(model);
+
         // Configuración de parámetros
-        Map<String, Float> parameters = configureParameters(scanner);
+        GenerationOptions parameters = configureParameters(scanner, model);
 
         // Cargar archivo (opcional)
         String fileContent = handleFileLoading(scanner);
@@ -134,8 +127,17 @@ public class OllamaClient {
         // Combinar contenido y enviar prompt
         String finalPrompt = combinePrompt(fileContent, textPrompt);
 
-        // Enviar el prompt a Ollama
-        String response = sendPromptToOllama(model, finalPrompt, parameters);
+        // Si el archivo no cabe en el contexto del modelo, ofrecer analizarlo por partes
+        String response;
+        MapReduceAnalyzer analyzer = new MapReduceAnalyzer(model, parameters);
+        if (analyzer.needsMapReduce(fileContent) && confirmMapReduce(scanner, fileContent, analyzer)) {
+            // El archivo se cargó con el límite de los archivos de texto; por partes se analiza entero
+            String fullContent = FileContentExtractor.getInstance().extractForMapReduce(new File(loadedFilePath));
+            response = analyzeWithMapReduce(analyzer, model, fullContent, textPrompt);
+        } else {
+            // Enviar el prompt a Ollama
+            response = sendPromptToOllama(model, finalPrompt, parameters);
+        }
 
         // Guardar en el historial
         saveToHistory(model, finalPrompt, response);
@@ -169,47 +171,75 @@ public class OllamaClient {
     }
 
     /**
-     * Configura los parámetros para la generación
+     * Configura los parámetros para la generación partiendo del perfil guardado del modelo
      */
-    private static Map<String, Float> configureParameters(Scanner scanner) {
-        Map<String, Float> parameters = new HashMap<>(DEFAULT_PARAMETERS);
+    private static GenerationOptions configureParameters(Scanner scanner, String model) {
+        GenerationOptions profile = GenerationOptions.forModel(model);
+        GenerationOptions parameters = GenerationOptions.forModel(model);
+        if (parameters.getTemperature() == null) {
+            parameters.setTemperature(DEFAULT_TEMPERATURE);
+        }
+        if (parameters.getTopP() == null) {
+            parameters.setTopP(DEFAULT_TOP_P);
+        }
 
         System.out.println("\n¿Deseas configurar parámetros avanzados? (s/n): ");
         String configOption = scanner.nextLine().trim().toLowerCase();
 
         if (configOption.equals("s") || configOption.equals("si") || configOption.equals("sí")) {
             try {
-                System.out.print("Temperatura (0.0-1.0, default 0.9): ");
+                System.out.print("Temperatura (0.0-1.0, actual " + parameters.getTemperature() + "): ");
                 String tempInput = scanner.nextLine().trim();
                 if (!tempInput.isEmpty()) {
-                    parameters.put("temperature", Float.parseFloat(tempInput));
+                    parameters.setTemperature(Float.parseFloat(tempInput));
                 }
 
-                System.out.print("Top P (0.0-1.0, default 0.9): ");
+                System.out.print("Top P (0.0-1.0, actual " + parameters.getTopP() + "): ");
                 String topPInput = scanner.nextLine().trim();
                 if (!topPInput.isEmpty()) {
-                    parameters.put("top_p", Float.parseFloat(topPInput));
+                    parameters.setTopP(Float.parseFloat(topPInput));
                 }
 
-                System.out.print("Tokens máximos (default 1000000): ");
+                System.out.print("Tokens máximos (num_predict, actual " + describe(parameters.getNumPredict()) + "): ");
                 String maxTokensInput = scanner.nextLine().trim();
                 if (!maxTokensInput.isEmpty()) {
-                    parameters.put("max_tokens", Float.parseFloat(maxTokensInput));
+                    parameters.setNumPredict(Integer.parseInt(maxTokensInput));
+                }
+
+                System.out.print("Tamaño de contexto (num_ctx, actual " + describe(parameters.getNumCtx()) + "): ");
+                String numCtxInput = scanner.nextLine().trim();
+                if (!numCtxInput.isEmpty()) {
+                    parameters.setNumCtx(Integer.parseInt(numCtxInput));
+                }
+
+                System.out.print("¿Guardar como perfil de " + model + "? (s/n): ");
+                String saveOption = scanner.nextLine().trim().toLowerCase();
+                if (saveOption.equals("s") || saveOption.equals("si") || saveOption.equals("sí")) {
+                    parameters.saveAsProfile(model);
+                    System.out.println("Perfil guardado.");
                 }
             } catch (NumberFormatException e) {
                 logger.warn("Error al parsear parámetros", e);
-                System.out.println("Error en formato de número, usando valores por defecto.");
-                return DEFAULT_PARAMETERS;
+                System.out.println("Error en formato de número, usando el perfil del modelo.");
+                return profile;
             }
         }
 
         return parameters;
     }
 
+    /**
+     * Describe un parámetro opcional para mostrarlo en la consola
+     */
+    private static String describe(Integer value) {
+        return value != null ? String.valueOf(value) : "por defecto del servidor";
+    }
+
     /**
      * Maneja la carga de archivos
      */
     private static String handleFileLoading(Scanner scanner) {
+        loadedFilePath = "";
         System.out.println("\n¿Deseas cargar un archivo? (s/n): ");
         String loadFileOption = scanner.nextLine().trim().toLowerCase();
 
@@ -220,6 +250,7 @@ public class OllamaClient {
 
             try {
                 String fileContent = readFileContent(filePath);
+                loadedFilePath = filePath;
                 System.out.println("Archivo cargado: " + filePath);
                 System.out.println("Tamaño: " + fileContent.length() + " caracteres");
 
@@ -254,6 +285,72 @@ public class OllamaClient {
         }
     }
 
+    /**
+     * Pregunta si se analiza por partes un archivo que no cabe en el contexto del modelo
+     */
+    private static boolean confirmMapReduce(Scanner scanner, String fileContent, MapReduceAnalyzer analyzer) {
+        System.out.println("\nEl archivo (" + fileContent.length() + " caracteres) no cabe en el contexto del modelo "
+                + "(unos " + analyzer.getChunkChars() + " caracteres por consulta).");
+        System.out.print("¿Analizarlo por partes (map-reduce)? (s/n): ");
+        return scanner.nextLine().trim().equalsIgnoreCase("s");
+    }
+
+    /**
+     * Analiza el archivo por partes y muestra la respuesta final a medida que se genera
+     */
+    private static String analyzeWithMapReduce(MapReduceAnalyzer analyzer, String model,
+                                               String fileContent, String textPrompt) throws IOException {
+        logger.info("Análisis por partes con el modelo: {}", model);
+        ModelPreloader.getInstance().recordUse(model);
+
+        // Ctrl-C cancela el análisis; las partes terminadas se conservan para la siguiente vez
+        GenerationHandle generation = new GenerationHandle();
+        SignalHandler previousHandler = installInterruptHandler(generation);
+        System.out.println("\n(Pulsa Ctrl-C para detener el análisis)");
+
+        StringBuilder fullResponse = new StringBuilder();
+        try {
+            analyzer.run(fileContent, textPrompt, new MapReduceAnalyzer.ProgressListener() {
+                @Override
+                public void chunkDone(int completed, int total, boolean restored) {
+                    System.out.print("\rPartes analizadas: " + completed + "/" + total
+                            + (restored ? " (recuperadas de un análisis anterior)" : ""));
+                }
+
+                @Override
+                public void reduceStarted(int partials, boolean finalStep) {
+                    System.out.println();
+                    if (finalStep) {
+                        System.out.println("\nRespuesta de Ollama (modelo: " + model + ", "
+                                + partials + " respuestas parciales):");
+                        System.out.println("--------------------");
+                    } else {
+                        System.out.print("Combinando " + partials + " respuestas parciales...");
+                    }
+                }
+            }, token -> {
+                System.out.print(token);
+                fullResponse.append(token);
+            }, generation);
+        } catch (CancellationException e) {
+            // Cancelado durante el análisis de las partes: no hay respuesta final
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Análisis por partes interrumpido", e);
+        } finally {
+            restoreInterruptHandler(previousHandler);
+        }
+
+        System.out.println("\n");
+        if (generation.isCancelled()) {
+            System.out.println("Análisis detenido. Vuelve a enviar la misma consulta para continuar donde se quedó.");
+            logger.info("Análisis por partes cancelado por el usuario tras {} caracteres", fullResponse.length());
+        } else {
+            System.out.println("Respuesta completa recibida.");
+        }
+        return fullResponse.toString();
+    }
+
     /**
      * Guarda la conversación en el historial
      */
@@ -302,7 +399,7 @@ public class OllamaClient {
     /**
      * Lee el contenido de un archivo según su extensión
      */
-    private static String readFileContent(String filePath) throws IOException {
+    static String readFileContent(String filePath) throws IOException {
         File file = new File(filePath);
 
         if (!file.exists()) {
@@ -347,163 +444,100 @@ public class OllamaClient {
      * Lee un archivo de texto
      */
     private static String readTextFile(File file) throws IOException {
-        StringBuilder content = new StringBuilder();
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                content.append(line).append("\n");
-            }
-        }
-
-        return content.toString();
+        return FileContentExtractor.getInstance().readText(file);
     }
 
     /**
      * Lee un archivo PDF
      */
     private static String readPdfFile(File file) throws IOException {
-        try (PDDocument document = Loader.loadPDF(file)) {
-            PDFTextStripper stripper = new PDFTextStripper();
-            return stripper.getText(document);
-        } catch (NoClassDefFoundError e) {
-            logger.error("Dependencia faltante: PDFBox", e);
-            throw new IOException("Error al leer PDF: Falta la dependencia de PDFBox. " +
-                    "Añade 'org.apache.pdfbox:pdfbox:2.0.27' a tu proyecto.");
-        }
+        return FileContentExtractor.getInstance().readDocument(file, "pdf");
     }
 
     /**
      * Lee un archivo DOCX
      */
     private static String readDocxFile(File file) throws IOException {
-        try (FileInputStream fis = new FileInputStream(file);
-             XWPFDocument document = new XWPFDocument(fis)) {
-
-            XWPFWordExtractor extractor = new XWPFWordExtractor(document);
-            String text = extractor.getText();
-            extractor.close();
-            return text;
-
-        } catch (NoClassDefFoundError e) {
-            logger.error("Dependencia faltante: Apache POI", e);
-            throw new IOException("Error al leer DOCX: Falta la dependencia de Apache POI. " +
-                    "Añade 'org.apache.poi:poi-ooxml:5.2.3' a tu proyecto.");
-        }
+        return FileContentExtractor.getInstance().readDocument(file, "docx");
     }
 
     /**
      * Obtiene la lista de modelos disponibles en Ollama
      */
     private static List<String> getAvailableModels() throws IOException {
-        // Verificar si los modelos están en caché
-        if (!modelCache.isEmpty()) {
-            return new ArrayList<>(modelCache.keySet());
-        }
-
-        List<String> models = new ArrayList<>();
-        logger.info("Obteniendo lista de modelos disponibles");
-
-        // Crear conexión HTTP
-        URL url = new URL(OLLAMA_MODELS_URL);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("GET");
-        connection.setConnectTimeout(5000);
-        connection.setReadTimeout(5000);
-
-        // Leer respuesta
-        try (Scanner scanner = new Scanner(connection.getInputStream(), StandardCharsets.UTF_8.name())) {
-            StringBuilder response = new StringBuilder();
-            while (scanner.hasNextLine()) {
-                response.append(scanner.nextLine());
-            }
-
-            // Extraer nombres de modelos del JSON
-            Pattern pattern = Pattern.compile("\"name\":\"([^\"]+)\"");
-            Matcher matcher = pattern.matcher(response.toString());
-
-            while (matcher.find()) {
-                String modelName = matcher.group(1);
-                models.add(modelName);
-                modelCache.put(modelName, modelName);  // Añadir a caché
-            }
-
-            logger.info("Modelos encontrados: {}", models.size());
-        } catch (Exception e) {
-            logger.error("Error al obtener modelos", e);
-            throw new IOException("Error al obtener la lista de modelos: " + e.getMessage(), e);
-        } finally {
-            connection.disconnect();
-        }
-
-        return models;
+        // El catálogo compartido caduca según modelCatalogTtl y se refresca en segundo plano
+        return ModelCatalog.getInstance().getModelNames();
     }
 
     /**
-     * Envía un prompt a Ollama y procesa la respuesta
+     * Envía un prompt a Ollama y procesa la respuesta.
+     * Durante la generación, Ctrl-C la detiene y se conserva la respuesta parcial.
      */
-    private static String sendPromptToOllama(String model, String prompt, Map<String, Float> parameters) throws IOException {
+    private static String sendPromptToOllama(String model, String prompt, GenerationOptions parameters) throws IOException {
         logger.info("Enviando prompt al modelo: {}", model);
 
-        // Crear conexión HTTP
-        URL url = new URL(OLLAMA_API_URL);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("POST");
-        connection.setRequestProperty("Content-Type", "application/json");
-        connection.setConnectTimeout(30000);
-        connection.setReadTimeout(30000);
-        connection.setDoOutput(true);
-
         // Construir el JSON de forma segura sin escapar manualmente
         JSONObject jsonRequest = new JSONObject();
         jsonRequest.put("model", model);
         jsonRequest.put("prompt", prompt);
-        for (Map.Entry<String, Float> param : parameters.entrySet()) {
-            jsonRequest.put(param.getKey(), param.getValue());
-        }
+        GenerationOptions.forModel(model, parameters).applyTo(jsonRequest);
         jsonRequest.put("stream", true);
+        ModelPreloader.getInstance().recordUse(model);
 
-        // Enviar petición
-        try (OutputStream os = connection.getOutputStream()) {
-            byte[] input = jsonRequest.toString().getBytes(StandardCharsets.UTF_8);
-            os.write(input, 0, input.length);
-        }
-
-        // Procesar respuesta
-        System.out.println("\nRespuesta de Ollama (modelo: " + model + "):");
-        System.out.println("--------------------");
+        // Ctrl-C cancela la generación en lugar de terminar el programa
+        GenerationHandle generation = new GenerationHandle();
+        SignalHandler previousHandler = installInterruptHandler(generation);
 
-        Thread progressThread = startProgressIndicator();
+        Thread progressThread = null;
         StringBuilder fullResponse = new StringBuilder();
-        try (Scanner responseScanner = new Scanner(connection.getInputStream(), StandardCharsets.UTF_8.name())) {
-            while (responseScanner.hasNextLine()) {
-                String line = responseScanner.nextLine();
-                if (line.contains("\"response\":")) {
-                    try {
-                        int start = line.indexOf("\"response\":\"") + 12;
-                        int end = line.indexOf("\"", start);
-                        if (end > start) {
-                            String responsePart = line.substring(start, end);
-                            // Se convierten los caracteres escapados a sus representaciones reales
-                            responsePart = responsePart
-                                    .replace("\\n", "\n")
-                                    .replace("\\r", "\r")
-                                    .replace("\\t", "\t")
-                                    .replace("\\\"", "\"")
-                                    .replace("\\\\", "\\");
-                            System.out.print(responsePart);
-                            fullResponse.append(responsePart);
-                        }
-                    } catch (StringIndexOutOfBoundsException e) {
-                        logger.warn("Error al parsear respuesta", e);
+        try {
+            // Enviar petición
+            InputStream responseStream = transport.postJson(OllamaHttpTransport.Endpoint.GENERATE,
+                    jsonRequest.toString(), generation);
+
+            // Procesar respuesta
+            System.out.println("\nRespuesta de Ollama (modelo: " + model + "):");
+            System.out.println("--------------------");
+            System.out.println("(Pulsa Ctrl-C para detener la generación)");
+
+            progressThread = startProgressIndicator();
+            try (OllamaStreamDecoder decoder = new OllamaStreamDecoder(responseStream)) {
+                // El decodificador resuelve todos los escapes JSON (secuencias unicode, comillas escapadas, etc.)
+                OllamaStreamDecoder.Chunk chunk = new OllamaStreamDecoder.Chunk();
+                boolean firstChunk = true;
+                while (decoder.next(chunk)) {
+                    if (chunk.hasError()) {
+                        throw new IOException("Error de Ollama: " + chunk.getError());
+                    }
+                    if (firstChunk) {
+                        // El servidor ya responde con el modelo: está cargado
+                        ModelPreloader.getInstance().markLoaded(model);
+                        firstChunk = false;
+                    }
+                    if (chunk.hasText()) {
+                        System.out.print(chunk.getText());
+                        fullResponse.append(chunk.getText());
                     }
                 }
             }
-            System.out.println("\n");
-            System.out.println("Respuesta completa recibida.");
+        } catch (IOException e) {
+            // Al cancelar se cierra el flujo bajo el decodificador; no es un error
+            if (!generation.isCancelled()) {
+                throw e;
+            }
         } finally {
-            progressThread.interrupt();
-            connection.disconnect();
+            if (progressThread != null) {
+                progressThread.interrupt();
+            }
+            restoreInterruptHandler(previousHandler);
+        }
+
+        System.out.println("\n");
+        if (generation.isCancelled()) {
+            System.out.println("Generación detenida. Se conserva la respuesta parcial.");
+            logger.info("Generación cancelada por el usuario tras {} caracteres", fullResponse.length());
+        } else {
+            System.out.println("Respuesta completa recibida.");
         }
 
         logger.info("Respuesta recibida: {} caracteres", fullResponse.length());
@@ -511,6 +545,30 @@ public class OllamaClient {
     }
 
 
+    /**
+     * Instala, solo mientras dura la generación, un manejador de SIGINT que la cancela
+     * sin terminar el programa. Devuelve el manejador anterior, o null si la plataforma
+     * no permite capturar la señal.
+     */
+    private static SignalHandler installInterruptHandler(GenerationHandle generation) {
+        try {
+            return Signal.handle(new Signal("INT"), signal -> generation.cancel());
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+            logger.warn("No se puede capturar Ctrl-C en esta plataforma: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Restaura el manejador de SIGINT previo a la generación, de modo que fuera de ella
+     * Ctrl-C vuelve a terminar el programa
+     */
+    private static void restoreInterruptHandler(SignalHandler previousHandler) {
+        if (previousHandler != null) {
+            Signal.handle(new Signal("INT"), previousHandler);
+        }
+    }
+
     /**
      * Muestra un indicador de progreso mientras se espera la respuesta
      */
@@ -1,10 +1,5 @@
 package OllamaClient.src;
 
-import org.apache.pdfbox.Loader;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
-import org.apache.poi.xwpf.extractor.XWPFWordExtractor;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
@@ -15,7 +10,7 @@ import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.text.BadLocationException;
-import javax.swing.text.Style;
+import javax.swing.text.SimpleAttributeSet;
 import javax.swing.text.StyleConstants;
 import javax.swing.text.StyledDocument;
 import java.awt.*;
@@ -23,12 +18,9 @@ import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.image.BufferedImage;
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -41,10 +33,8 @@ import java.util.regex.Pattern;
  * archivos en varios formatos, imágenes y una interfaz gráfica de usuario.
  */
 public class OllamaGUIClient extends JFrame {
-    // URLs de la API
-    private static final String OLLAMA_API_URL = "http://localhost:11434/api/generate";
-    private static final String OLLAMA_CHAT_API_URL = "http://localhost:11434/api/chat";
-    private static final String OLLAMA_MODELS_URL = "http://localhost:11434/api/tags";
+    // Transporte HTTP compartido (conexiones persistentes)
+    private static final OllamaHttpTransport transport = OllamaHttpTransport.getInstance();
 
     // Configuración por defecto
     private static final Map<String, Float> DEFAULT_PARAMETERS = new HashMap<String, Float>() {{
@@ -56,8 +46,6 @@ public class OllamaGUIClient extends JFrame {
     // Tipos de archivos de imagen soportados
     private static final String[] IMAGE_EXTENSIONS = {"jpg", "jpeg", "png", "gif", "bmp"};
 
-    // Cache de modelos
-    private static final Map<String, String> modelCache = new ConcurrentHashMap<>();
 
     // Logger para registro de errores y eventos
     private static final Logger logger = LoggerFactory.getLogger(OllamaClient.class);
@@ -103,7 +91,6 @@ public class OllamaGUIClient extends JFrame {
     private String currentResponse = "";
     private boolean isRequestInProgress = false;
     private BufferedImage loadedImage = null;
-    private String imageBase64 = "";
     private BufferedImage responseImage = null;
     private String imageDataResponse = null;
 
@@ -201,6 +188,7 @@ public class OllamaGUIClient extends JFrame {
         responseTextPane = new JTextPane();
         responseTextPane.setEditable(false);
         responseTextPane.setContentType("text/plain");
+        installResponseHighlighter();
 
         // Área para mostrar imágenes en la respuesta
         responseImageLabel = new JLabel();
@@ -496,12 +484,6 @@ public class OllamaGUIClient extends JFrame {
             loadedImage = ImageIO.read(file);
             loadedFilePath = imageFile.getPath();
 
-            // Convertir a base64
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            String extension = imageFile.getExtension();
-            ImageIO.write(loadedImage, extension, baos);
-            imageBase64 = Base64.getEncoder().encodeToString(baos.toByteArray());
-
             // Mostrar vista previa
             displayImagePreview(loadedImage);
 
@@ -617,7 +599,6 @@ public class OllamaGUIClient extends JFrame {
 
             // Reiniciar el estado de la imagen
             loadedImage = null;
-            imageBase64 = "";
             imagePreviewPanel.setVisible(false);
             imagePreviewLabel.setIcon(null);
 
@@ -679,17 +660,8 @@ public class OllamaGUIClient extends JFrame {
             SwingWorker<BufferedImage, Void> worker = new SwingWorker<>() {
                 @Override
                 protected BufferedImage doInBackground() throws Exception {
-                    // Leer la imagen
-                    BufferedImage img = ImageIO.read(selectedFile);
-
-                    // Convertir a base64
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    String extension = getFileExtension(loadedFilePath);
-                    ImageIO.write(img, extension, baos);
-                    byte[] imageBytes = baos.toByteArray();
-                    imageBase64 = Base64.getEncoder().encodeToString(imageBytes);
-
-                    return img;
+                    // Leer la imagen (se codifica desde el archivo al enviarla)
+                    return ImageIO.read(selectedFile);
                 }
 
                 @Override
@@ -708,7 +680,6 @@ public class OllamaGUIClient extends JFrame {
                     } catch (InterruptedException | ExecutionException e) {
                         logger.error("Error al cargar imagen", e);
                         loadedImage = null;
-                        imageBase64 = "";
                         loadedFilePath = "";
                         fileNameLabel.setText("Error al cargar imagen");
                         clearFileButton.setEnabled(false);
@@ -757,7 +728,6 @@ public class OllamaGUIClient extends JFrame {
     private void clearFile() {
         fileContent = "";
         loadedImage = null;
-        imageBase64 = "";
         loadedFilePath = "";
         fileNameLabel.setText("Sin archivo cargado");
         clearFileButton.setEnabled(false);
@@ -858,15 +828,15 @@ public class OllamaGUIClient extends JFrame {
             return;
         }
 
-        Map<String, Float> parameters = new HashMap<>();
+        GenerationOptions parameters = new GenerationOptions();
         try {
             float temperature = Float.parseFloat(temperatureField.getText());
             float topP = Float.parseFloat(topPField.getText());
-            float maxTokens = Float.parseFloat(maxTokensField.getText());
+            int maxTokens = Integer.parseInt(maxTokensField.getText().trim());
 
-            parameters.put("temperature", temperature);
-            parameters.put("top_p", topP);
-            parameters.put("max_tokens", maxTokens);
+            parameters.setTemperature(temperature);
+            parameters.setTopP(topP);
+            parameters.setNumPredict(maxTokens);
         } catch (NumberFormatException e) {
             showError("Error en parámetros", "Los parámetros deben ser números válidos");
             return;
@@ -951,7 +921,7 @@ public class OllamaGUIClient extends JFrame {
 
                 // Enviar el prompt a Ollama
                 if (isMultimodalQuery) {
-                    return sendMultimodalPromptToOllama(model, finalPrompt, imageBase64, parameters);
+                    return sendMultimodalPromptToOllama(model, finalPrompt, new File(loadedFilePath), parameters);
                 } else {
                     Map<String, Object> result = new HashMap<>();
                     result.put("text", sendPromptToOllama(model, finalTextPrompt[0], parameters));
@@ -963,7 +933,7 @@ public class OllamaGUIClient extends JFrame {
             protected void process(List<String> chunks) {
                 // Actualizar el área de respuesta con la respuesta parcial
                 String lastChunk = chunks.get(chunks.size() - 1);
-                responseTextPane.setText(lastChunk);
+                showResponseText(lastChunk);
                 responseTextPane.setCaretPosition(lastChunk.length());
             }
 
@@ -982,10 +952,8 @@ public class OllamaGUIClient extends JFrame {
                             logger.warn("Se recibió una respuesta vacía del modelo {}", model);
                         }
 
-                        responseTextPane.setText(currentResponse);
-
-                        // Aplicar coloreado de sintaxis
-                        highlightCodeBlocks(responseTextPane, currentResponse);
+                        // El coloreado de los bloques de código lo aplica el resaltador del documento
+                        showResponseText(currentResponse);
                     } else {
                         // Si no hay texto en la respuesta, mostrar mensaje informativo
                         String noTextMessage = "[No se recibió texto en la respuesta del modelo.]";
@@ -1195,149 +1163,57 @@ public class OllamaGUIClient extends JFrame {
      * Lee un archivo de texto
      */
     private String readTextFile(File file) throws IOException {
-        StringBuilder content = new StringBuilder();
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                content.append(line).append("\n");
-            }
-        }
-
-        return content.toString();
+        return FileContentExtractor.getInstance().readText(file);
     }
 
     /**
      * Lee un archivo PDF
      */
     private String readPdfFile(File file) throws IOException {
-        try (PDDocument document = Loader.loadPDF(file)) {
-            PDFTextStripper stripper = new PDFTextStripper();
-            return stripper.getText(document);
-        } catch (NoClassDefFoundError e) {
-            logger.error("Dependencia faltante: PDFBox", e);
-            throw new IOException("Error al leer PDF: Falta la dependencia de PDFBox. " +
-                    "Añade 'org.apache.pdfbox:pdfbox:2.0.27' a tu proyecto.");
-        }
+        return FileContentExtractor.getInstance().readDocument(file, "pdf");
     }
 
     /**
      * Lee un archivo DOCX
      */
     private String readDocxFile(File file) throws IOException {
-        try (FileInputStream fis = new FileInputStream(file);
-             XWPFDocument document = new XWPFDocument(fis)) {
-
-            XWPFWordExtractor extractor = new XWPFWordExtractor(document);
-            String text = extractor.getText();
-            extractor.close();
-            return text;
-
-        } catch (NoClassDefFoundError e) {
-            logger.error("Dependencia faltante: Apache POI", e);
-            throw new IOException("Error al leer DOCX: Falta la dependencia de Apache POI. " +
-                    "Añade 'org.apache.poi:poi-ooxml:5.2.3' a tu proyecto.");
-        }
+        return FileContentExtractor.getInstance().readDocument(file, "docx");
     }
 
     /**
      * Obtiene la lista de modelos disponibles en Ollama
      */
     private List<String> getAvailableModels() throws IOException {
-        // Verificar si los modelos están en caché
-        if (!modelCache.isEmpty()) {
-            return new ArrayList<>(modelCache.keySet());
-        }
-
-        List<String> models = new ArrayList<>();
-        logger.info("Obteniendo lista de modelos disponibles");
-
-        // Crear conexión HTTP
-        URL url = new URL(OLLAMA_MODELS_URL);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("GET");
-        connection.setConnectTimeout(5000);
-        connection.setReadTimeout(5000);
-
-        // Leer respuesta
-        try (Scanner scanner = new Scanner(connection.getInputStream(), StandardCharsets.UTF_8.name())) {
-            StringBuilder response = new StringBuilder();
-            while (scanner.hasNextLine()) {
-                response.append(scanner.nextLine());
-            }
-
-            // Extraer nombres de modelos del JSON
-            Pattern pattern = Pattern.compile("\"name\":\"([^\"]+)\"");
-            Matcher matcher = pattern.matcher(response.toString());
-
-            while (matcher.find()) {
-                String modelName = matcher.group(1);
-                models.add(modelName);
-                modelCache.put(modelName, modelName);  // Añadir a caché
-            }
-
-            logger.info("Modelos encontrados: {}", models.size());
-        } catch (Exception e) {
-            logger.error("Error al obtener modelos", e);
-            throw new IOException("Error al obtener la lista de modelos: " + e.getMessage(), e);
-        } finally {
-            connection.disconnect();
-        }
-
-        return models;
+        // El catálogo compartido caduca según modelCatalogTtl y se refresca en segundo plano
+        return ModelCatalog.getInstance().getModelNames();
     }
 
     /**
      * Envía un prompt a Ollama y procesa la respuesta (solo texto)
      */
-    private String sendPromptToOllama(String model, String prompt, Map<String, Float> parameters) throws IOException {
+    private String sendPromptToOllama(String model, String prompt, GenerationOptions parameters) throws IOException {
         logger.info("Enviando prompt de texto al modelo: {}", model);
 
-        // Crear conexión HTTP
-        URL url = new URL(OLLAMA_API_URL);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("POST");
-        connection.setRequestProperty("Content-Type", "application/json");
-        connection.setConnectTimeout(30000);
-        connection.setReadTimeout(30000);
-        connection.setDoOutput(true);
-
         // Construir el JSON de forma segura usando JSONObject
         JSONObject jsonRequest = new JSONObject();
         jsonRequest.put("model", model);
         jsonRequest.put("prompt", prompt);
-        for (Map.Entry<String, Float> param : parameters.entrySet()) {
-            jsonRequest.put(param.getKey(), param.getValue());
-        }
+        GenerationOptions.forModel(model, parameters).applyTo(jsonRequest);
         jsonRequest.put("stream", true);
 
         // Enviar petición
-        try (OutputStream os = connection.getOutputStream()) {
-            byte[] input = jsonRequest.toString().getBytes(StandardCharsets.UTF_8);
-            os.write(input, 0, input.length);
-        }
+        InputStream responseStream = transport.postJson(OllamaHttpTransport.Endpoint.GENERATE, jsonRequest.toString());
 
-        // Procesar respuesta
+        // Procesar respuesta con el decodificador incremental (sin un JSONObject por línea)
         StringBuilder fullResponse = new StringBuilder();
-        try (Scanner responseScanner = new Scanner(connection.getInputStream(), StandardCharsets.UTF_8.name())) {
-            while (responseScanner.hasNextLine()) {
-                String line = responseScanner.nextLine();
-
-                // Utilizar JSONObject para procesar correctamente la respuesta JSON
-                try {
-                    JSONObject jsonResponse = new JSONObject(line);
-                    if (jsonResponse.has("response")) {
-                        // Esto automáticamente descodifica los caracteres escapados en JSON
-                        String responsePart = jsonResponse.getString("response");
-                        fullResponse.append(responsePart);
-                    }
-                } catch (Exception e) {
-                    // Algunas líneas pueden no ser JSON válido, ignorarlas
-                    logger.warn("Error al parsear respuesta JSON: {}", line);
+        try (OllamaStreamDecoder decoder = new OllamaStreamDecoder(responseStream)) {
+            OllamaStreamDecoder.Chunk chunk = new OllamaStreamDecoder.Chunk();
+            while (decoder.next(chunk)) {
+                if (chunk.hasError()) {
+                    throw new IOException("Error de Ollama: " + chunk.getError());
                 }
+                fullResponse.append(chunk.getText());
             }
-        } finally {
-            connection.disconnect();
         }
 
         logger.info("Respuesta recibida: {} caracteres", fullResponse.length());
@@ -1345,191 +1221,74 @@ public class OllamaGUIClient extends JFrame {
     }
 
     /**
-     * Envía un prompt multimodal (texto + imagen) a Ollama y procesa la respuesta
+     * Envía un prompt multimodal (texto + imagen) a Ollama y procesa la respuesta.
+     * La imagen va en el campo "images" del mensaje, codificada desde el archivo al enviar.
      */
-    private Map<String, Object> sendMultimodalPromptToOllama(String model, String prompt, String imageBase64,
-                                                             Map<String, Float> parameters) throws IOException {
+    private Map<String, Object> sendMultimodalPromptToOllama(String model, String prompt, File imageFile,
+                                                             GenerationOptions parameters) throws IOException {
         logger.info("Enviando prompt multimodal al modelo: {}", model);
 
-        // Crear conexión HTTP
-        URL url = new URL(OLLAMA_CHAT_API_URL);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("POST");
-        connection.setRequestProperty("Content-Type", "application/json");
-        connection.setConnectTimeout(60000); // Aumentado a 60 segundos
-        connection.setReadTimeout(60000);    // Aumentado a 60 segundos
-        connection.setDoOutput(true);
-
-        // Determinar el tipo MIME según la extensión
-        String extension = getFileExtension(loadedFilePath).toLowerCase();
-        String mimeType;
-        switch (extension) {
-            case "jpg":
-            case "jpeg":
-                mimeType = "image/jpeg";
-                break;
-            case "png":
-                mimeType = "image/png";
-                break;
-            case "gif":
-                mimeType = "image/gif";
-                break;
-            case "bmp":
-                mimeType = "image/bmp";
-                break;
-            default:
-                mimeType = "image/jpeg";  // Por defecto
-        }
-
-        // Base64 debe incluir el prefijo de datos URI
-        String base64WithPrefix = "data:" + mimeType + ";base64," + imageBase64;
+        StreamingJsonBody body = OllamaRequestBuilder.chat(model)
+                .prompt(prompt)
+                .image(imageFile)
+                .options(GenerationOptions.forModel(model, parameters))
+                .build();
 
-        // Construir el mensaje multimodal según el formato actualizado de Ollama
-        JSONArray messages = new JSONArray();
-        JSONObject userMessage = new JSONObject();
-        userMessage.put("role", "user");
+        // Primero registramos el JSON enviado para depuración (la imagen aparece solo como marcador)
+        logger.info("Enviando solicitud JSON: {}", body.toLogString());
 
-        // Formato de contenido para gemma
-        // Primero el texto, luego la imagen separados con newlines y formato específico
-        String multimodalContent = prompt + "\n\n![image](" + base64WithPrefix + ")";
-        userMessage.put("content", multimodalContent);
+        // Enviar petición (los códigos de error se convierten en IOException con el mensaje del servidor)
+        InputStream responseStream = transport.postJson(OllamaHttpTransport.Endpoint.CHAT, body, new GenerationHandle());
 
-        messages.put(userMessage);
+        // Procesar respuesta exitosa
+        StringBuilder textResponse = new StringBuilder();
+        String imageDataResponse = null;
 
-        // Construir el JSON principal
-        JSONObject jsonRequest = new JSONObject();
-        jsonRequest.put("model", model);
-        jsonRequest.put("messages", messages);
-        for (Map.Entry<String, Float> param : parameters.entrySet()) {
-            jsonRequest.put(param.getKey(), param.getValue());
-        }
-        jsonRequest.put("stream", true);
-
-        try {
-            // Primero registramos el JSON enviado para depuración (omitimos la imagen para no sobrecargar los logs)
-            JSONObject logJsonRequest = new JSONObject(jsonRequest.toString());
-            JSONArray logMessages = logJsonRequest.getJSONArray("messages");
-            JSONObject logUserMessage = logMessages.getJSONObject(0);
-            logUserMessage.put("content", prompt + "\n\n[IMAGEN BASE64 OMITIDA EN LOGS]");
-            logger.info("Enviando solicitud JSON: {}", logJsonRequest.toString());
-
-            // Enviar petición
-            try (OutputStream os = connection.getOutputStream()) {
-                byte[] input = jsonRequest.toString().getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
-            }
-
-            // Comprobar si hay error en la respuesta
-            int responseCode = connection.getResponseCode();
-            if (responseCode != 200) {
-                // Leer mensaje de error
-                StringBuilder errorResponse = new StringBuilder();
-                try (Scanner scanner = new Scanner(connection.getErrorStream(), StandardCharsets.UTF_8.name())) {
-                    while (scanner.hasNextLine()) {
-                        errorResponse.append(scanner.nextLine());
-                    }
+        // El decodificador extrae "message.content" (o "delta.content") de cada línea
+        try (OllamaStreamDecoder decoder = new OllamaStreamDecoder(responseStream)) {
+            OllamaStreamDecoder.Chunk chunk = new OllamaStreamDecoder.Chunk();
+            while (decoder.next(chunk)) {
+                if (chunk.hasError()) {
+                    throw new IOException("Error de Ollama: " + chunk.getError());
+                }
+                if (!chunk.hasText()) {
+                    continue;
                 }
 
-                logger.error("Error del servidor: {} - {}", responseCode, errorResponse.toString());
-                throw new IOException("Error del servidor: " + responseCode + " - " + errorResponse.toString());
-            }
-
-            // Procesar respuesta exitosa
-            StringBuilder textResponse = new StringBuilder();
-            String imageDataResponse = null;
-
-            try (Scanner responseScanner = new Scanner(connection.getInputStream(), StandardCharsets.UTF_8.name())) {
-                while (responseScanner.hasNextLine()) {
-                    String line = responseScanner.nextLine();
-                    logger.debug("Línea de respuesta: {}", line);
+                String content = chunk.getText().toString();
+                textResponse.append(content);
 
-                    try {
-                        JSONObject jsonResponse = new JSONObject(line);
-
-                        // Procesar mensaje completo
-                        if (jsonResponse.has("message")) {
-                            JSONObject message = jsonResponse.getJSONObject("message");
-
-                            if (message.has("content")) {
-                                String content = message.getString("content");
-                                textResponse.append(content);
-
-                                // Buscar imágenes en formato de datos URI
-                                extractImagesFromMarkdown(content, textResponse);
-
-                                // Registrar que recibimos contenido
-                                if (!content.trim().isEmpty()) {
-                                    logger.info("Contenido recibido del modelo: {} caracteres", content.length());
-                                }
-                            } else {
-                                logger.warn("El mensaje no tiene campo 'content'");
-                            }
-                        }
-                        // Procesar delta en streaming
-                        else if (jsonResponse.has("delta")) {
-                            if (jsonResponse.has("delta") && !jsonResponse.isNull("delta")) {
-                                Object deltaObj = jsonResponse.get("delta");
-                                if (deltaObj instanceof JSONObject) {
-                                    JSONObject delta = (JSONObject) deltaObj;
-                                    if (delta.has("content") && !delta.isNull("content")) {
-                                        String content = delta.getString("content");
-                                        textResponse.append(content);
-
-                                        // Buscar imágenes en el contenido delta
-                                        extractImagesFromMarkdown(content, textResponse);
-
-                                        // Registrar que recibimos delta
-                                        if (!content.trim().isEmpty()) {
-                                            logger.debug("Delta recibido: {} caracteres", content.length());
-                                        }
-                                    } else {
-                                        logger.debug("Delta sin contenido o con contenido nulo");
-                                    }
-                                } else {
-                                    logger.debug("Delta no es un objeto JSON: {}", deltaObj);
-                                }
-                            } else {
-                                logger.debug("Delta nulo o no presente");
-                            }
-                        } else {
-                            logger.debug("Respuesta sin mensaje ni delta reconocibles: {}", line);
-                        }
-                    } catch (Exception e) {
-                        // Algunas líneas pueden no ser JSON válido
-                        logger.warn("Error al parsear respuesta JSON: {}", e.getMessage());
-                    }
-                }
+                // Buscar imágenes en formato de datos URI
+                extractImagesFromMarkdown(content, textResponse);
             }
+        }
 
-            logger.info("Respuesta de texto recibida: {} caracteres", textResponse.length());
-            logger.info("¿Se recibió una imagen?: {}", imageDataResponse != null);
-
-            // Preparar resultado
-            Map<String, Object> result = new HashMap<>();
-            result.put("text", textResponse.toString());
+        logger.info("Respuesta de texto recibida: {} caracteres", textResponse.length());
+        logger.info("¿Se recibió una imagen?: {}", imageDataResponse != null);
 
-            // Procesar imagen si se recibió
-            if (imageDataResponse != null) {
-                try {
-                    // Primero eliminar el prefijo de data URI si existe
-                    String base64Data = imageDataResponse;
-                    if (base64Data.contains(";base64,")) {
-                        base64Data = base64Data.substring(base64Data.indexOf(";base64,") + 8);
-                    }
+        // Preparar resultado
+        Map<String, Object> result = new HashMap<>();
+        result.put("text", textResponse.toString());
 
-                    byte[] imageBytes = Base64.getDecoder().decode(base64Data);
-                    ByteArrayInputStream bis = new ByteArrayInputStream(imageBytes);
-                    BufferedImage image = ImageIO.read(bis);
-                    result.put("image", image);
-                } catch (Exception e) {
-                    logger.error("Error al decodificar imagen de respuesta", e);
+        // Procesar imagen si se recibió
+        if (imageDataResponse != null) {
+            try {
+                // Primero eliminar el prefijo de data URI si existe
+                String base64Data = imageDataResponse;
+                if (base64Data.contains(";base64,")) {
+                    base64Data = base64Data.substring(base64Data.indexOf(";base64,") + 8);
                 }
-            }
 
-            return result;
-        } finally {
-            connection.disconnect();
+                byte[] imageBytes = Base64.getDecoder().decode(base64Data);
+                ByteArrayInputStream bis = new ByteArrayInputStream(imageBytes);
+                BufferedImage image = ImageIO.read(bis);
+                result.put("image", image);
+            } catch (Exception e) {
+                logger.error("Error al decodificar imagen de respuesta", e);
+            }
         }
+
+        return result;
     }
 
     /**
@@ -1563,46 +1322,34 @@ public class OllamaGUIClient extends JFrame {
     }
 
     /**
-     * Aplica coloreado de sintaxis a los bloques de código en la respuesta.
-     * Busca bloques delimitados por "```" y les aplica un estilo monoespaciado con fondo claro.
+     * Resalta los bloques de código de la respuesta con SyntaxHighlighter en modo
+     * respuesta. Sigue los cambios del documento, así que cada actualización solo
+     * vuelve a analizar las líneas afectadas.
      */
-    private void highlightCodeBlocks(JTextPane textPane, String text) {
-        // Obtener el documento actual del JTextPane
-        StyledDocument doc = textPane.getStyledDocument();
+    private void installResponseHighlighter() {
+        SimpleAttributeSet codeStyle = new SimpleAttributeSet();
+        StyleConstants.setForeground(codeStyle, Color.DARK_GRAY);
+        StyleConstants.setBackground(codeStyle, new Color(230, 230, 230));
+        StyleConstants.setFontFamily(codeStyle, "Monospaced");
+        new SyntaxHighlighter(responseTextPane.getStyledDocument(), null, null, codeStyle).install();
+    }
+
+    /**
+     * Muestra el texto de la respuesta. Si amplía el texto actual (streaming) solo
+     * se añade lo nuevo, para no reemplazar ni volver a resaltar todo el documento.
+     */
+    private void showResponseText(String text) {
+        StyledDocument doc = responseTextPane.getStyledDocument();
         try {
-            // Limpiar el documento e insertar el texto completo
-            doc.remove(0, doc.getLength());
-            doc.insertString(0, text, null);
+            int length = doc.getLength();
+            if (text.length() >= length && text.startsWith(doc.getText(0, length))) {
+                doc.insertString(length, text.substring(length), null);
+                return;
+            }
         } catch (BadLocationException e) {
             logger.error("Error al insertar texto en el documento", e);
         }
-
-        // Definir estilos
-        Style defaultStyle = textPane.getStyle("default");
-        if (defaultStyle == null) {
-            defaultStyle = textPane.addStyle("default", null);
-            StyleConstants.setForeground(defaultStyle, Color.BLACK);
-            StyleConstants.setFontFamily(defaultStyle, "SansSerif");
-        }
-        Style codeStyle = textPane.getStyle("code");
-        if (codeStyle == null) {
-            codeStyle = textPane.addStyle("code", null);
-            StyleConstants.setForeground(codeStyle, Color.DARK_GRAY);
-            StyleConstants.setBackground(codeStyle, new Color(230, 230, 230));
-            StyleConstants.setFontFamily(codeStyle, "Monospaced");
-        }
-
-        // Buscar bloques de código delimitados por triple backticks
-        Pattern pattern = Pattern.compile("```(.*?)```", Pattern.DOTALL);
-        Matcher matcher = pattern.matcher(text);
-        while (matcher.find()) {
-            int start = matcher.start() + 3; // omitir los backticks iniciales
-            int end = matcher.end() - 3;     // omitir los backticks finales
-            int length = end - start;
-            if (length > 0) {
-                doc.setCharacterAttributes(start, length, codeStyle, true);
-            }
-        }
+        responseTextPane.setText(text);
     }
 
     /**
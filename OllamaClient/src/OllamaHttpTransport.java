@@ -0,0 +1,309 @@
+package OllamaClient.src;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Transporte HTTP compartido para todas las llamadas a la API de Ollama
+ *
+ * Mantiene un único HttpClient con conexiones persistentes (keep-alive),
+ * de forma que los prompts consecutivos, las consultas de modelos y las
+ * peticiones paralelas reutilizan los sockets abiertos en lugar de pagar
+ * el establecimiento de una conexión TCP nueva en cada llamada.
+ */
+public class OllamaHttpTransport {
+    private static final Logger logger = LoggerFactory.getLogger(OllamaHttpTransport.class);
+
+    // URL base de la API
+    public static final String DEFAULT_BASE_URL = "http://localhost:11434";
+
+    // Valores por defecto del transporte
+    public static final int DEFAULT_POOL_SIZE = 8;
+    public static final int DEFAULT_CONNECT_TIMEOUT_MS = 5000;
+
+    // Endpoints de la API con su timeout por defecto (tiempo máximo hasta recibir las cabeceras)
+    public enum Endpoint {
+        GENERATE("/api/generate", 30000),
+        CHAT("/api/chat", 60000),
+        TAGS("/api/tags", 5000),
+        PS("/api/ps", 5000),
+        EMBED("/api/embed", 60000);
+
+        private final String path;
+        private final int defaultTimeoutMs;
+
+        Endpoint(String path, int defaultTimeoutMs) {
+            this.path = path;
+            this.defaultTimeoutMs = defaultTimeoutMs;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public int getDefaultTimeoutMs() {
+            return defaultTimeoutMs;
+        }
+    }
+
+    private static OllamaHttpTransport instance;
+
+    // Parámetros de creación (solo tienen efecto antes de crear la instancia)
+    private static int configuredPoolSize = DEFAULT_POOL_SIZE;
+    private static int configuredConnectTimeoutMs = DEFAULT_CONNECT_TIMEOUT_MS;
+
+    private final String baseUrl;
+    private final HttpClient httpClient;
+    private final ExecutorService executor;
+    private final Map<Endpoint, Duration> timeouts = Collections.synchronizedMap(new EnumMap<>(Endpoint.class));
+
+    /**
+     * Constructor privado para Singleton
+     */
+    private OllamaHttpTransport(String baseUrl, int poolSize, int connectTimeoutMs) {
+        this.baseUrl = baseUrl;
+
+        // El pool de conexiones del JDK se dimensiona con esta propiedad y se lee al crear el primer cliente
+        if (poolSize > 0 && System.getProperty("jdk.httpclient.connectionPoolSize") == null) {
+            System.setProperty("jdk.httpclient.connectionPoolSize", String.valueOf(poolSize));
+        }
+
+        // Hilos daemon para no impedir la finalización de la aplicación de consola
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "ollama-http-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Ollama habla HTTP/1.1; forzarlo evita el intento de upgrade a HTTP/2 en cada conexión
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .executor(executor)
+                .build();
+
+        for (Endpoint endpoint : Endpoint.values()) {
+            timeouts.put(endpoint, Duration.ofMillis(endpoint.getDefaultTimeoutMs()));
+        }
+
+        logger.info("Transporte HTTP para Ollama inicializado: {} (pool: {}, connect timeout: {} ms)",
+                baseUrl, poolSize, connectTimeoutMs);
+    }
+
+    /**
+     * Obtiene la instancia única del transporte
+     */
+    public static synchronized OllamaHttpTransport getInstance() {
+        if (instance == null) {
+            instance = new OllamaHttpTransport(DEFAULT_BASE_URL, configuredPoolSize, configuredConnectTimeoutMs);
+        }
+        return instance;
+    }
+
+    /**
+     * Configura el tamaño del pool de conexiones y el timeout de conexión.
+     * Debe llamarse antes del primer uso del transporte; después solo se registra un aviso.
+     */
+    public static synchronized void configure(int poolSize, int connectTimeoutMs) {
+        if (instance != null) {
+            logger.warn("El transporte HTTP ya está inicializado, se ignora la nueva configuración del pool");
+            return;
+        }
+        configuredPoolSize = Math.max(1, poolSize);
+        configuredConnectTimeoutMs = Math.max(100, connectTimeoutMs);
+    }
+
+    /**
+     * Obtiene la instancia aplicando la configuración guardada del usuario
+     * (tamaño del pool, timeout de conexión y timeouts por endpoint)
+     */
+    public static synchronized OllamaHttpTransport getInstance(ConfigManager configManager) {
+        if (instance == null) {
+            configure(configManager.getMainConfig("httpPoolSize", DEFAULT_POOL_SIZE),
+                    configManager.getMainConfig("httpConnectTimeout", DEFAULT_CONNECT_TIMEOUT_MS));
+        }
+
+        OllamaHttpTransport transport = getInstance();
+        transport.setTimeout(Endpoint.GENERATE, configManager.getMainConfig("generateTimeout", Endpoint.GENERATE.getDefaultTimeoutMs()));
+        transport.setTimeout(Endpoint.CHAT, configManager.getMainConfig("chatTimeout", Endpoint.CHAT.getDefaultTimeoutMs()));
+        transport.setTimeout(Endpoint.TAGS, configManager.getMainConfig("tagsTimeout", Endpoint.TAGS.getDefaultTimeoutMs()));
+        transport.setTimeout(Endpoint.EMBED, configManager.getMainConfig("embedTimeout", Endpoint.EMBED.getDefaultTimeoutMs()));
+        return transport;
+    }
+
+    /**
+     * Establece el timeout de un endpoint concreto
+     */
+    public void setTimeout(Endpoint endpoint, int timeoutMs) {
+        timeouts.put(endpoint, Duration.ofMillis(Math.max(100, timeoutMs)));
+    }
+
+    /**
+     * Obtiene el timeout configurado para un endpoint
+     */
+    public Duration getTimeout(Endpoint endpoint) {
+        return timeouts.get(endpoint);
+    }
+
+    /**
+     * Obtiene la URI completa de un endpoint
+     */
+    public URI uriFor(Endpoint endpoint) {
+        return URI.create(baseUrl + endpoint.getPath());
+    }
+
+    /**
+     * Realiza una petición GET y devuelve el cuerpo como texto
+     */
+    public String get(Endpoint endpoint) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(uriFor(endpoint))
+                .timeout(getTimeout(endpoint))
+                .GET()
+                .build();
+
+        HttpResponse<String> response = await(httpClient.sendAsync(request,
+                HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)));
+
+        if (response.statusCode() != 200) {
+            logger.error("Error del servidor: {} - {}", response.statusCode(), response.body());
+            throw new IOException("Error del servidor: " + response.statusCode() + " - " + response.body());
+        }
+
+        return response.body();
+    }
+
+    /**
+     * Envía un cuerpo JSON por POST y devuelve la respuesta como flujo para leerla en streaming.
+     * Si el servidor responde con un código distinto de 200 se lanza una IOException con el mensaje de error.
+     */
+    public InputStream postJson(Endpoint endpoint, String jsonBody) throws IOException {
+        HttpResponse<InputStream> response = await(postJsonAsync(endpoint, jsonBody));
+        return checkStatus(response);
+    }
+
+    /**
+     * Envía un cuerpo JSON por POST asociando la petición a un control de cancelación.
+     * Si se cancela antes de recibir las cabeceras se lanza una IOException; si se cancela
+     * durante la lectura, el flujo devuelto se cierra y la conexión se descarta.
+     */
+    public InputStream postJson(Endpoint endpoint, String jsonBody, GenerationHandle handle) throws IOException {
+        return postJson(endpoint, HttpRequest.BodyPublishers.ofString(jsonBody, StandardCharsets.UTF_8), handle);
+    }
+
+    /**
+     * Envía por POST un cuerpo JSON con adjuntos que se codifican en streaming,
+     * asociando la petición a un control de cancelación
+     */
+    public InputStream postJson(Endpoint endpoint, StreamingJsonBody body, GenerationHandle handle) throws IOException {
+        return postJson(endpoint, body.publisher(), handle);
+    }
+
+    private InputStream postJson(Endpoint endpoint, HttpRequest.BodyPublisher requestBody, GenerationHandle handle) throws IOException {
+        CompletableFuture<HttpResponse<InputStream>> request = postAsync(endpoint, requestBody, getTimeout(endpoint));
+        handle.attach(request);
+
+        HttpResponse<InputStream> response;
+        try {
+            response = await(request);
+        } catch (java.util.concurrent.CancellationException e) {
+            throw new IOException("Generación cancelada", e);
+        }
+
+        InputStream body = checkStatus(response);
+        handle.attach(body);
+        return body;
+    }
+
+    /**
+     * Envía un cuerpo JSON por POST de forma asíncrona
+     */
+    public CompletableFuture<HttpResponse<InputStream>> postJsonAsync(Endpoint endpoint, String jsonBody) {
+        return postJsonAsync(endpoint, jsonBody, getTimeout(endpoint));
+    }
+
+    /**
+     * Envía un cuerpo JSON por POST de forma asíncrona con un timeout distinto del configurado para el endpoint
+     */
+    public CompletableFuture<HttpResponse<InputStream>> postJsonAsync(Endpoint endpoint, String jsonBody, Duration timeout) {
+        return postAsync(endpoint, HttpRequest.BodyPublishers.ofString(jsonBody, StandardCharsets.UTF_8), timeout);
+    }
+
+    private CompletableFuture<HttpResponse<InputStream>> postAsync(Endpoint endpoint, HttpRequest.BodyPublisher body,
+                                                                  Duration timeout) {
+        HttpRequest request = HttpRequest.newBuilder(uriFor(endpoint))
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(body)
+                .build();
+
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    /**
+     * Comprueba el código de estado y devuelve el flujo del cuerpo.
+     * En caso de error lee el cuerpo, cierra el flujo y lanza una IOException.
+     */
+    public InputStream checkStatus(HttpResponse<InputStream> response) throws IOException {
+        InputStream body = response.body();
+        if (response.statusCode() == 200) {
+            return body;
+        }
+
+        String errorResponse;
+        try (InputStream errorStream = body) {
+            errorResponse = new String(errorStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        logger.error("Error del servidor: {} - {}", response.statusCode(), errorResponse);
+        throw new IOException("Error del servidor: " + response.statusCode() + " - " + errorResponse);
+    }
+
+    /**
+     * Comprueba si el servidor de Ollama responde
+     */
+    public boolean isServerAvailable() {
+        try {
+            get(Endpoint.TAGS);
+            return true;
+        } catch (IOException e) {
+            logger.error("Error al verificar si Ollama está en ejecución", e);
+            return false;
+        }
+    }
+
+    /**
+     * Espera el resultado de una petición asíncrona traduciendo las excepciones a IOException
+     */
+    private <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Petición a Ollama interrumpida", e);
+        } catch (java.util.concurrent.ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Error en la petición a Ollama: " + cause.getMessage(), cause);
+        }
+    }
+}
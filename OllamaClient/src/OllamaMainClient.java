@@ -7,6 +7,7 @@ import javax.swing.*;
 import java.awt.*;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -23,6 +24,12 @@ public class OllamaMainClient {
         // Configurar el sistema de logs
         setupLogging();
 
+        // Modo por lotes sin interfaz: --batch entrada.jsonl salida.jsonl [opciones]
+        if (args.length > 0 && args[0].equals("--batch")) {
+            OllamaBatchRunner.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         // Verificar si Ollama está en ejecución
         if (!checkOllamaRunning()) {
             showOllamaNotRunningDialog();
@@ -88,23 +95,8 @@ public class OllamaMainClient {
      * Verifica si Ollama está en ejecución
      */
     private static boolean checkOllamaRunning() {
-        try {
-            // Intentar conectar con la API de Ollama
-            java.net.URL url = new java.net.URL("http://localhost:11434/api/tags");
-            java.net.HttpURLConnection connection = (java.net.HttpURLConnection) url.openConnection();
-            connection.setConnectTimeout(2000);
-            connection.setReadTimeout(2000);
-            connection.setRequestMethod("GET");
-
-            int responseCode = connection.getResponseCode();
-            connection.disconnect();
-
-            return responseCode == 200;
-
-        } catch (Exception e) {
-            logger.error("Error al verificar si Ollama está en ejecución", e);
-            return false;
-        }
+        // Usar el transporte compartido para que la conexión quede abierta para la aplicación
+        return OllamaHttpTransport.getInstance(ConfigManager.getInstance()).isServerAvailable();
     }
 
     /**
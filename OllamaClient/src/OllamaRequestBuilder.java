@@ -0,0 +1,160 @@
+package OllamaClient.src;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Construye las peticiones de /api/generate y /api/chat
+ *
+ * Las imágenes se envían en el campo nativo "images" (base64 sin prefijo de
+ * datos URI), en el nivel superior para /api/generate y dentro del mensaje del
+ * usuario para /api/chat. Así el servidor las pasa directamente al codificador
+ * de visión en lugar de recibirlas como texto del prompt.
+ *
+ * Las imágenes de archivo se añaden al cuerpo como marcadores de
+ * StreamingJsonBody y se codifican mientras se envía la petición.
+ *
+ * Con una sesión de conversación, /api/generate envía el contexto y solo adjunta
+ * las imágenes en el primer turno; /api/chat envía el historial completo, por lo
+ * que las imágenes del primer mensaje se vuelven a registrar en cada cuerpo.
+ */
+public class OllamaRequestBuilder {
+
+    private final OllamaHttpTransport.Endpoint endpoint;
+    private final String model;
+    private String prompt = "";
+    private final List<File> imageFiles = new ArrayList<>();
+    private GenerationOptions options;
+    private ConversationSession session;
+    private boolean stream = true;
+
+    // Mensaje del usuario del último cuerpo construido (solo /api/chat)
+    private JSONObject userMessage;
+
+    private OllamaRequestBuilder(OllamaHttpTransport.Endpoint endpoint, String model) {
+        this.endpoint = endpoint;
+        this.model = model;
+    }
+
+    /**
+     * Petición a /api/generate
+     */
+    public static OllamaRequestBuilder generate(String model) {
+        return new OllamaRequestBuilder(OllamaHttpTransport.Endpoint.GENERATE, model);
+    }
+
+    /**
+     * Petición a /api/chat
+     */
+    public static OllamaRequestBuilder chat(String model) {
+        return new OllamaRequestBuilder(OllamaHttpTransport.Endpoint.CHAT, model);
+    }
+
+    public OllamaRequestBuilder prompt(String prompt) {
+        this.prompt = prompt != null ? prompt : "";
+        return this;
+    }
+
+    /**
+     * Adjunta una imagen que se codificará desde el archivo al enviar
+     */
+    public OllamaRequestBuilder image(File imageFile) {
+        imageFiles.add(imageFile);
+        return this;
+    }
+
+    /**
+     * Adjunta varias imágenes, en el orden dado
+     */
+    public OllamaRequestBuilder images(List<File> files) {
+        imageFiles.addAll(files);
+        return this;
+    }
+
+    public OllamaRequestBuilder options(GenerationOptions options) {
+        this.options = options;
+        return this;
+    }
+
+    public OllamaRequestBuilder session(ConversationSession session) {
+        this.session = session;
+        return this;
+    }
+
+    public OllamaRequestBuilder stream(boolean stream) {
+        this.stream = stream;
+        return this;
+    }
+
+    public OllamaHttpTransport.Endpoint getEndpoint() {
+        return endpoint;
+    }
+
+    public int getImageCount() {
+        return imageFiles.size();
+    }
+
+    /**
+     * Devuelve el mensaje del usuario del último cuerpo construido, que es el que
+     * hay que registrar en la sesión al terminar el turno (solo /api/chat)
+     */
+    public JSONObject getUserMessage() {
+        return userMessage;
+    }
+
+    /**
+     * Construye el cuerpo de la petición
+     */
+    public StreamingJsonBody build() {
+        StreamingJsonBody body = new StreamingJsonBody();
+        boolean isFollowUp = session != null && session.isFollowUp();
+
+        // El marcador de cada archivo es estable, de modo que el historial de /api/chat
+        // puede referirse a imágenes registradas en un cuerpo anterior
+        JSONArray images = new JSONArray();
+        for (File imageFile : imageFiles) {
+            images.put(body.base64(imageFile));
+        }
+
+        JSONObject request = new JSONObject();
+        request.put("model", model);
+
+        if (endpoint == OllamaHttpTransport.Endpoint.CHAT) {
+            userMessage = new JSONObject();
+            userMessage.put("role", "user");
+            userMessage.put("content", prompt);
+            // En un seguimiento las imágenes ya van en el primer mensaje del historial
+            if (!isFollowUp && images.length() > 0) {
+                userMessage.put("images", images);
+            }
+            request.put("messages", session != null ? session.messagesWith(userMessage) : singleMessage(userMessage));
+        } else {
+            request.put("prompt", prompt);
+            // En un seguimiento las imágenes ya están en el contexto del servidor
+            if (!isFollowUp && images.length() > 0) {
+                request.put("images", images);
+            }
+            if (session != null) {
+                session.applyContext(request);
+            }
+        }
+
+        if (options != null) {
+            options.applyTo(request);
+        }
+        request.put("stream", stream);
+
+        body.setRequest(request);
+        return body;
+    }
+
+    private static JSONArray singleMessage(JSONObject message) {
+        JSONArray messages = new JSONArray();
+        messages.put(message);
+        return messages;
+    }
+}
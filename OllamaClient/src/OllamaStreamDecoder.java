@@ -0,0 +1,666 @@
+package OllamaClient.src;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Decodificador incremental de respuestas NDJSON de /api/generate y /api/chat
+ *
+ * Lee el flujo de la respuesta sobre un buffer de bytes reutilizable y extrae
+ * únicamente los campos que necesita el cliente: el texto generado
+ * ("response" o "message.content"), "done", "error" y los tiempos de
+ * generación. El resto de campos se salta sin crear objetos intermedios.
+ * Todos los escapes JSON (incluidos \\uXXXX y pares sustitutos) se decodifican
+ * correctamente, y el texto UTF-8 se decodifica directamente desde los bytes.
+ */
+public class OllamaStreamDecoder implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(OllamaStreamDecoder.class);
+
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+
+    private final InputStream input;
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    private int start = 0;   // inicio de la línea pendiente de procesar
+    private int limit = 0;   // fin de los datos válidos del buffer
+    private int scanFrom = 0; // posición desde la que seguir buscando el salto de línea
+    private boolean endOfStream = false;
+
+    // Posición de lectura del analizador dentro de la línea actual
+    private int pos;
+    private int lineEnd;
+
+    /**
+     * Fragmento decodificado de la respuesta. La misma instancia se reutiliza en cada llamada a next().
+     */
+    public static final class Chunk {
+        private final StringBuilder text = new StringBuilder();
+        private final StringBuilder error = new StringBuilder();
+        private boolean done;
+        private boolean hasError;
+        private long totalDuration;
+        private long loadDuration;
+        private long promptEvalCount;
+        private long promptEvalDuration;
+        private long evalCount;
+        private long evalDuration;
+        private int[] context = new int[0];
+        private int contextLength;
+
+        void reset() {
+            text.setLength(0);
+            error.setLength(0);
+            done = false;
+            hasError = false;
+            totalDuration = 0;
+            loadDuration = 0;
+            promptEvalCount = 0;
+            promptEvalDuration = 0;
+            evalCount = 0;
+            evalDuration = 0;
+            contextLength = 0;
+        }
+
+        /**
+         * Texto generado en este fragmento ("response" o "message.content")
+         */
+        public CharSequence getText() {
+            return text;
+        }
+
+        public boolean hasText() {
+            return text.length() > 0;
+        }
+
+        public boolean isDone() {
+            return done;
+        }
+
+        public boolean hasError() {
+            return hasError;
+        }
+
+        public String getError() {
+            return error.toString();
+        }
+
+        public long getTotalDuration() {
+            return totalDuration;
+        }
+
+        public long getLoadDuration() {
+            return loadDuration;
+        }
+
+        public long getPromptEvalCount() {
+            return promptEvalCount;
+        }
+
+        public long getPromptEvalDuration() {
+            return promptEvalDuration;
+        }
+
+        public long getEvalCount() {
+            return evalCount;
+        }
+
+        public long getEvalDuration() {
+            return evalDuration;
+        }
+
+        /**
+         * Indica si el fragmento incluye el "context" de /api/generate (solo en el último)
+         */
+        public boolean hasContext() {
+            return contextLength > 0;
+        }
+
+        /**
+         * Copia del "context" de /api/generate para continuar la conversación
+         */
+        public int[] getContext() {
+            return Arrays.copyOf(context, contextLength);
+        }
+
+        void addContextToken(int token) {
+            if (contextLength == context.length) {
+                context = Arrays.copyOf(context, Math.max(256, context.length * 2));
+            }
+            context[contextLength++] = token;
+        }
+    }
+
+    /**
+     * Crea un decodificador sobre el flujo de la respuesta
+     */
+    public OllamaStreamDecoder(InputStream input) {
+        this.input = input;
+    }
+
+    /**
+     * Decodifica la siguiente línea del flujo en el fragmento indicado.
+     * Las líneas vacías se omiten y las que no son JSON válido se registran y se omiten.
+     *
+     * @return false cuando se ha alcanzado el final del flujo
+     * @throws IOException si falla la lectura del flujo
+     */
+    public boolean next(Chunk chunk) throws IOException {
+        while (true) {
+            int newline = findNewline();
+            if (newline < 0) {
+                if (endOfStream) {
+                    if (start >= limit) {
+                        return false;
+                    }
+                    // Última línea sin salto de línea final
+                    newline = limit;
+                } else {
+                    fill();
+                    continue;
+                }
+            }
+
+            int lineStart = start;
+            start = Math.min(newline + 1, limit);
+            scanFrom = start;
+
+            int end = newline;
+            if (end > lineStart && buffer[end - 1] == '\r') {
+                end--;
+            }
+            if (isBlank(lineStart, end)) {
+                continue;
+            }
+
+            chunk.reset();
+            try {
+                parseLine(lineStart, end, chunk);
+                return true;
+            } catch (MalformedLineException e) {
+                // Algunas líneas pueden no ser JSON válido, ignorarlas
+                logger.warn("Error al parsear respuesta JSON: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    // Gestión del buffer
+
+    private int findNewline() {
+        for (int i = scanFrom; i < limit; i++) {
+            if (buffer[i] == '\n') {
+                return i;
+            }
+        }
+        scanFrom = limit;
+        return -1;
+    }
+
+    private void fill() throws IOException {
+        // Compactar: mover la línea pendiente al principio del buffer
+        if (start > 0) {
+            int remaining = limit - start;
+            System.arraycopy(buffer, start, buffer, 0, remaining);
+            scanFrom -= start;
+            limit = remaining;
+            start = 0;
+        }
+
+        // Ampliar si una sola línea ocupa todo el buffer
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+
+        int read = input.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            endOfStream = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    private boolean isBlank(int from, int to) {
+        for (int i = from; i < to; i++) {
+            byte b = buffer[i];
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Analizador JSON mínimo
+
+    private void parseLine(int from, int to, Chunk chunk) throws IOException {
+        pos = from;
+        lineEnd = to;
+
+        skipWhitespace();
+        expect('{');
+        skipWhitespace();
+        if (peek() == '}') {
+            return;
+        }
+
+        while (true) {
+            skipWhitespace();
+            int keyStart = pos + 1;
+            skipString();
+            int keyEnd = pos - 1;
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+
+            if (keyEquals(keyStart, keyEnd, "response")) {
+                readStringValue(chunk.text);
+            } else if (keyEquals(keyStart, keyEnd, "message") || keyEquals(keyStart, keyEnd, "delta")) {
+                readMessageObject(chunk);
+            } else if (keyEquals(keyStart, keyEnd, "done")) {
+                chunk.done = readBoolean();
+            } else if (keyEquals(keyStart, keyEnd, "error")) {
+                chunk.hasError = true;
+                readStringValue(chunk.error);
+            } else if (keyEquals(keyStart, keyEnd, "total_duration")) {
+                chunk.totalDuration = readLong();
+            } else if (keyEquals(keyStart, keyEnd, "load_duration")) {
+                chunk.loadDuration = readLong();
+            } else if (keyEquals(keyStart, keyEnd, "prompt_eval_count")) {
+                chunk.promptEvalCount = readLong();
+            } else if (keyEquals(keyStart, keyEnd, "prompt_eval_duration")) {
+                chunk.promptEvalDuration = readLong();
+            } else if (keyEquals(keyStart, keyEnd, "eval_count")) {
+                chunk.evalCount = readLong();
+            } else if (keyEquals(keyStart, keyEnd, "eval_duration")) {
+                chunk.evalDuration = readLong();
+            } else if (keyEquals(keyStart, keyEnd, "context")) {
+                readContextArray(chunk);
+            } else {
+                skipValue();
+            }
+
+            skipWhitespace();
+            byte b = next();
+            if (b == '}') {
+                return;
+            }
+            if (b != ',') {
+                throw syntaxError("se esperaba ',' o '}'");
+            }
+        }
+    }
+
+    /**
+     * Lee el objeto "message" de /api/chat y extrae solo "content"
+     */
+    private void readMessageObject(Chunk chunk) throws IOException {
+        if (peek() == 'n') {
+            skipValue();
+            return;
+        }
+
+        expect('{');
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return;
+        }
+
+        while (true) {
+            skipWhitespace();
+            int keyStart = pos + 1;
+            skipString();
+            int keyEnd = pos - 1;
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+
+            if (keyEquals(keyStart, keyEnd, "content") && peek() == '"') {
+                readStringValue(chunk.text);
+            } else {
+                skipValue();
+            }
+
+            skipWhitespace();
+            byte b = next();
+            if (b == '}') {
+                return;
+            }
+            if (b != ',') {
+                throw syntaxError("se esperaba ',' o '}' en el mensaje");
+            }
+        }
+    }
+
+    /**
+     * Decodifica una cadena JSON (UTF-8 y escapes) añadiéndola al destino
+     */
+    private void readStringValue(StringBuilder target) throws IOException {
+        if (peek() == 'n') {
+            skipValue();
+            return;
+        }
+
+        expect('"');
+        while (pos < lineEnd) {
+            int b = buffer[pos++] & 0xFF;
+
+            if (b == '"') {
+                return;
+            }
+
+            if (b == '\\') {
+                readEscape(target);
+            } else if (b < 0x80) {
+                target.append((char) b);
+            } else {
+                readUtf8(b, target);
+            }
+        }
+        throw syntaxError("cadena sin terminar");
+    }
+
+    private void readEscape(StringBuilder target) throws IOException {
+        if (pos >= lineEnd) {
+            throw syntaxError("escape incompleto");
+        }
+
+        byte e = buffer[pos++];
+        switch (e) {
+            case '"':
+                target.append('"');
+                break;
+            case '\\':
+                target.append('\\');
+                break;
+            case '/':
+                target.append('/');
+                break;
+            case 'b':
+                target.append('\b');
+                break;
+            case 'f':
+                target.append('\f');
+                break;
+            case 'n':
+                target.append('\n');
+                break;
+            case 'r':
+                target.append('\r');
+                break;
+            case 't':
+                target.append('\t');
+                break;
+            case 'u':
+                // Los pares sustitutos llegan como dos escapes consecutivos y se añaden tal cual
+                target.append((char) readHex4());
+                break;
+            default:
+                throw syntaxError("escape no válido: \\" + (char) e);
+        }
+    }
+
+    private int readHex4() throws IOException {
+        if (pos + 4 > lineEnd) {
+            throw syntaxError("escape \\u incompleto");
+        }
+
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(buffer[pos++], 16);
+            if (digit < 0) {
+                throw syntaxError("dígito hexadecimal no válido");
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    private void readUtf8(int first, StringBuilder target) throws IOException {
+        int codePoint;
+        int extra;
+
+        if ((first & 0xE0) == 0xC0) {
+            codePoint = first & 0x1F;
+            extra = 1;
+        } else if ((first & 0xF0) == 0xE0) {
+            codePoint = first & 0x0F;
+            extra = 2;
+        } else if ((first & 0xF8) == 0xF0) {
+            codePoint = first & 0x07;
+            extra = 3;
+        } else {
+            target.append('\uFFFD');
+            return;
+        }
+
+        if (pos + extra > lineEnd) {
+            throw syntaxError("secuencia UTF-8 incompleta");
+        }
+
+        for (int i = 0; i < extra; i++) {
+            int b = buffer[pos++] & 0xFF;
+            if ((b & 0xC0) != 0x80) {
+                target.append('\uFFFD');
+                pos--;
+                return;
+            }
+            codePoint = (codePoint << 6) | (b & 0x3F);
+        }
+
+        target.appendCodePoint(codePoint);
+    }
+
+    /**
+     * Lee el array de enteros "context" sin crear objetos intermedios
+     */
+    private void readContextArray(Chunk chunk) throws IOException {
+        if (peek() == 'n') {
+            skipValue();
+            return;
+        }
+
+        expect('[');
+        skipWhitespace();
+        if (peek() == ']') {
+            pos++;
+            return;
+        }
+
+        while (true) {
+            skipWhitespace();
+            chunk.addContextToken((int) readLong());
+            skipWhitespace();
+            byte b = next();
+            if (b == ']') {
+                return;
+            }
+            if (b != ',') {
+                throw syntaxError("se esperaba ',' o ']'");
+            }
+        }
+    }
+
+    private boolean readBoolean() throws IOException {
+        if (matchLiteral("true")) {
+            return true;
+        }
+        if (matchLiteral("false") || matchLiteral("null")) {
+            return false;
+        }
+        throw syntaxError("se esperaba un booleano");
+    }
+
+    private long readLong() throws IOException {
+        if (peek() == 'n') {
+            skipValue();
+            return 0;
+        }
+
+        boolean negative = false;
+        if (peek() == '-') {
+            negative = true;
+            pos++;
+        }
+
+        long value = 0;
+        int digits = 0;
+        while (pos < lineEnd && buffer[pos] >= '0' && buffer[pos] <= '9') {
+            value = value * 10 + (buffer[pos++] - '0');
+            digits++;
+        }
+        if (digits == 0) {
+            throw syntaxError("se esperaba un número");
+        }
+
+        // Ignorar una posible parte decimal o exponente
+        while (pos < lineEnd && isNumberPart(buffer[pos])) {
+            pos++;
+        }
+
+        return negative ? -value : value;
+    }
+
+    private void skipValue() throws IOException {
+        byte b = peek();
+        switch (b) {
+            case '"':
+                skipString();
+                break;
+            case '{':
+            case '[':
+                skipContainer();
+                break;
+            case 't':
+            case 'f':
+            case 'n':
+                if (!matchLiteral("true") && !matchLiteral("false") && !matchLiteral("null")) {
+                    throw syntaxError("literal no válido");
+                }
+                break;
+            default:
+                if (b == '-' || (b >= '0' && b <= '9')) {
+                    while (pos < lineEnd && isNumberPart(buffer[pos])) {
+                        pos++;
+                    }
+                } else {
+                    throw syntaxError("valor no válido");
+                }
+        }
+    }
+
+    private void skipString() throws IOException {
+        expect('"');
+        while (pos < lineEnd) {
+            byte b = buffer[pos++];
+            if (b == '\\') {
+                pos++;
+            } else if (b == '"') {
+                return;
+            }
+        }
+        throw syntaxError("cadena sin terminar");
+    }
+
+    private void skipContainer() throws IOException {
+        int depth = 0;
+        while (pos < lineEnd) {
+            byte b = buffer[pos];
+            if (b == '"') {
+                skipString();
+                continue;
+            }
+            pos++;
+            if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                depth--;
+                if (depth == 0) {
+                    return;
+                }
+            }
+        }
+        throw syntaxError("objeto sin terminar");
+    }
+
+    private boolean matchLiteral(String literal) {
+        int length = literal.length();
+        if (pos + length > lineEnd) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer[pos + i] != literal.charAt(i)) {
+                return false;
+            }
+        }
+        pos += length;
+        return true;
+    }
+
+    private boolean keyEquals(int from, int to, String key) {
+        int length = key.length();
+        if (to - from != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer[from + i] != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isNumberPart(byte b) {
+        return (b >= '0' && b <= '9') || b == '.' || b == 'e' || b == 'E' || b == '+' || b == '-';
+    }
+
+    private void skipWhitespace() {
+        while (pos < lineEnd) {
+            byte b = buffer[pos];
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private byte peek() throws IOException {
+        if (pos >= lineEnd) {
+            throw syntaxError("fin de línea inesperado");
+        }
+        return buffer[pos];
+    }
+
+    private byte next() throws IOException {
+        byte b = peek();
+        pos++;
+        return b;
+    }
+
+    private void expect(char expected) throws IOException {
+        if (next() != expected) {
+            pos--;
+            throw syntaxError("se esperaba '" + expected + "'");
+        }
+    }
+
+    private MalformedLineException syntaxError(String message) {
+        return new MalformedLineException("Respuesta JSON no válida de Ollama: " + message);
+    }
+
+    /**
+     * Error de formato en una línea concreta; el flujo puede seguir leyéndose
+     */
+    private static class MalformedLineException extends IOException {
+        MalformedLineException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package OllamaClient.src;
+
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+
+/**
+ * Banco de pruebas del decodificador NDJSON frente a los métodos anteriores
+ *
+ * Genera una respuesta sintética de /api/generate con muchos fragmentos
+ * (por defecto 20.000, con escapes y texto no ASCII) y mide tiempo por
+ * fragmento y bytes asignados para tres variantes: Scanner + JSONObject
+ * (clientes GUI), indexOf + replace (cliente de consola) y OllamaStreamDecoder.
+ *
+ * Uso: java OllamaClient.src.OllamaStreamDecoderBenchmark [fragmentos] [iteraciones]
+ */
+public class OllamaStreamDecoderBenchmark {
+    private static final int WARMUP_ITERATIONS = 5;
+
+    // Fragmentos de ejemplo representativos de la salida de un modelo
+    private static final String[] TOKENS = {
+            "Hola", " mundo", ",", " esto", " es", " una", " prueba", ".\n",
+            "```java\n", "String s = \"texto\";", "\n```", " año", " niño", " 😀",
+            "\t", "ruta\\archivo", " él", " </html>", " 100%", " ñandú", " \u2013 ", "\u0001"
+    };
+
+    public static void main(String[] args) throws Exception {
+        int chunks = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        byte[] payload = buildPayload(chunks);
+        System.out.println("Respuesta sintética: " + chunks + " fragmentos, " + payload.length + " bytes");
+
+        // Comprobar que el decodificador produce el mismo texto que JSONObject
+        String expected = decodeWithJsonObject(payload);
+        String actual = decodeWithStreamDecoder(payload);
+        System.out.println("Resultado idéntico a JSONObject: " + expected.equals(actual));
+        System.out.println("Resultado idéntico con indexOf/replace: " + expected.equals(decodeWithIndexOf(payload)));
+        System.out.println();
+
+        run("Scanner + JSONObject", payload, chunks, iterations, OllamaStreamDecoderBenchmark::decodeWithJsonObject);
+        run("indexOf + replace", payload, chunks, iterations, OllamaStreamDecoderBenchmark::decodeWithIndexOf);
+        run("OllamaStreamDecoder", payload, chunks, iterations, OllamaStreamDecoderBenchmark::decodeWithStreamDecoder);
+    }
+
+    private interface Decoder {
+        String decode(byte[] payload) throws IOException;
+    }
+
+    private static void run(String name, byte[] payload, int chunks, int iterations, Decoder decoder) throws IOException {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            decoder.decode(payload);
+        }
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        int checksum = 0;
+        for (int i = 0; i < iterations; i++) {
+            checksum += decoder.decode(payload).length();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        long totalChunks = (long) chunks * iterations;
+        System.out.printf("%-22s %8.1f ns/fragmento %10.1f bytes/fragmento (checksum %d)%n",
+                name, (double) elapsed / totalChunks, (double) allocated / totalChunks, checksum);
+    }
+
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /**
+     * Construye una respuesta NDJSON equivalente a la de /api/generate
+     */
+    private static byte[] buildPayload(int chunks) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < chunks; i++) {
+            JSONObject line = new JSONObject();
+            line.put("model", "llama3:8b");
+            line.put("created_at", "2024-01-01T00:00:00.000000Z");
+            line.put("response", TOKENS[i % TOKENS.length]);
+            line.put("done", false);
+            sb.append(line).append('\n');
+        }
+
+        JSONObject last = new JSONObject();
+        last.put("model", "llama3:8b");
+        last.put("created_at", "2024-01-01T00:00:00.000000Z");
+        last.put("response", "");
+        last.put("done", true);
+        last.put("total_duration", 5_000_000_000L);
+        last.put("load_duration", 1_000_000L);
+        last.put("prompt_eval_count", 26);
+        last.put("prompt_eval_duration", 130_000_000L);
+        last.put("eval_count", chunks);
+        last.put("eval_duration", 4_800_000_000L);
+        sb.append(last).append('\n');
+
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String decodeWithJsonObject(byte[] payload) {
+        StringBuilder fullResponse = new StringBuilder();
+        try (Scanner scanner = new Scanner(new ByteArrayInputStream(payload), StandardCharsets.UTF_8.name())) {
+            while (scanner.hasNextLine()) {
+                JSONObject json = new JSONObject(scanner.nextLine());
+                if (json.has("response")) {
+                    fullResponse.append(json.getString("response"));
+                }
+            }
+        }
+        return fullResponse.toString();
+    }
+
+    private static String decodeWithIndexOf(byte[] payload) {
+        StringBuilder fullResponse = new StringBuilder();
+        try (Scanner scanner = new Scanner(new ByteArrayInputStream(payload), StandardCharsets.UTF_8.name())) {
+            while (scanner.hasNextLine()) {
+                String line = scanner.nextLine();
+                if (line.contains("\"response\":")) {
+                    int start = line.indexOf("\"response\":\"") + 12;
+                    int end = line.indexOf("\"", start);
+                    if (end > start) {
+                        fullResponse.append(line.substring(start, end)
+                                .replace("\\n", "\n")
+                                .replace("\\r", "\r")
+                                .replace("\\t", "\t")
+                                .replace("\\\"", "\"")
+                                .replace("\\\\", "\\"));
+                    }
+                }
+            }
+        }
+        return fullResponse.toString();
+    }
+
+    private static String decodeWithStreamDecoder(byte[] payload) throws IOException {
+        StringBuilder fullResponse = new StringBuilder();
+        InputStream input = new ByteArrayInputStream(payload);
+        try (OllamaStreamDecoder decoder = new OllamaStreamDecoder(input)) {
+            OllamaStreamDecoder.Chunk chunk = new OllamaStreamDecoder.Chunk();
+            while (decoder.next(chunk)) {
+                fullResponse.append(chunk.getText());
+            }
+        }
+        return fullResponse.toString();
+    }
+}
@@ -0,0 +1,214 @@
+package OllamaClient.src;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Insets;
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Vista de solo lectura de un ResponseTextStore que pinta únicamente las filas visibles
+ *
+ * Usa una fuente monoespaciada y ajusta las líneas largas al ancho disponible
+ * por número de columnas, de modo que el número de filas de cada línea se deduce
+ * de su longitud sin medir ni cargar el texto. Solo se guarda la primera fila de
+ * cada línea; al añadir texto se recalculan únicamente las líneas nuevas (y la
+ * última, que puede haber crecido), y al cambiar el ancho se recalcula el índice
+ * completo, que solo depende de las longitudes de línea.
+ */
+public class PagedTextView extends JComponent implements Scrollable {
+    private static final Logger logger = LoggerFactory.getLogger(PagedTextView.class);
+
+    private ResponseTextStore store;
+
+    // Primera fila visual de cada línea indexada
+    private int[] rowStarts = new int[1024];
+    private int indexedLines = 0;
+    private int totalRows = 0;
+    private int columns = -1;
+
+    public PagedTextView() {
+        setOpaque(true);
+        setFont(new Font(Font.MONOSPACED, Font.PLAIN, 13));
+        setBorder(BorderFactory.createEmptyBorder(4, 6, 4, 6));
+    }
+
+    /**
+     * Muestra el texto del almacén (null para vaciar la vista)
+     */
+    public void setStore(ResponseTextStore store) {
+        this.store = store;
+        indexedLines = 0;
+        totalRows = 0;
+        revalidate();
+        repaint();
+    }
+
+    public ResponseTextStore getStore() {
+        return store;
+    }
+
+    /**
+     * Actualiza la vista tras añadir texto al almacén. Debe llamarse desde el EDT.
+     */
+    public void textAppended(boolean scrollToEnd) {
+        updateIndex();
+        revalidate();
+        repaint();
+        if (scrollToEnd) {
+            // El tamaño nuevo se aplica en la validación; desplazar después
+            SwingUtilities.invokeLater(() -> scrollRectToVisible(
+                    new Rectangle(0, Math.max(0, getPreferredSize().height - 1), 1, 1)));
+        }
+    }
+
+    @Override
+    public void setFont(Font font) {
+        super.setFont(font);
+        columns = -1;
+        revalidate();
+        repaint();
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        Insets insets = getInsets();
+        int width = getParent() instanceof JViewport ? getParent().getWidth() : getWidth();
+        updateColumns(width);
+        return new Dimension(Math.max(width, insets.left + insets.right + getCharWidth()),
+                insets.top + insets.bottom + totalRows * getLineHeight());
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        g.setColor(getBackground());
+        g.fillRect(0, 0, getWidth(), getHeight());
+        if (store == null || totalRows == 0) {
+            return;
+        }
+
+        updateColumns(getWidth());
+        Insets insets = getInsets();
+        FontMetrics metrics = g.getFontMetrics(getFont());
+        int lineHeight = getLineHeight();
+        Rectangle clip = g.getClipBounds();
+        int firstRow = Math.max(0, (clip.y - insets.top) / lineHeight);
+        int lastRow = Math.min(totalRows - 1, (clip.y + clip.height - insets.top) / lineHeight);
+
+        g.setColor(getForeground());
+        g.setFont(getFont());
+        try {
+            int line = lineForRow(firstRow);
+            for (int row = firstRow; row <= lastRow; row++) {
+                while (line + 1 < indexedLines && rowStarts[line + 1] <= row) {
+                    line++;
+                }
+                int offset = (row - rowStarts[line]) * columns;
+                int count = Math.min(columns, store.getLineLength(line) - offset);
+                if (count <= 0) {
+                    continue;
+                }
+                String text = store.getText(store.getLineStart(line) + offset, count)
+                        .replace('\t', ' ').replace('\r', ' ');
+                g.drawString(text, insets.left, insets.top + row * lineHeight + metrics.getAscent());
+            }
+        } catch (IOException e) {
+            logger.error("Error al leer el texto de la respuesta", e);
+        }
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? getLineHeight() : getCharWidth();
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL
+                ? Math.max(getLineHeight(), visibleRect.height - getLineHeight())
+                : visibleRect.width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        // Las líneas se ajustan al ancho: nunca hay desplazamiento horizontal
+        return true;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return getParent() instanceof JViewport && getParent().getHeight() > getPreferredSize().height;
+    }
+
+    /**
+     * Recalcula las columnas para el ancho dado y, si cambian, el índice completo
+     */
+    private void updateColumns(int width) {
+        Insets insets = getInsets();
+        int newColumns = Math.max(1, (width - insets.left - insets.right) / getCharWidth());
+        if (newColumns != columns) {
+            columns = newColumns;
+            indexedLines = 0;
+            totalRows = 0;
+            updateIndex();
+        }
+    }
+
+    /**
+     * Añade al índice las líneas nuevas del almacén y recalcula la última indexada
+     */
+    private void updateIndex() {
+        if (store == null || columns <= 0) {
+            return;
+        }
+        int lines = store.getLineCount();
+        if (rowStarts.length < lines) {
+            rowStarts = Arrays.copyOf(rowStarts, Math.max(lines, rowStarts.length * 2));
+        }
+
+        int line = Math.max(0, indexedLines - 1);
+        int row = line == 0 ? 0 : rowStarts[line];
+        for (; line < lines; line++) {
+            rowStarts[line] = row;
+            row += rowsOf(store.getLineLength(line));
+        }
+        indexedLines = lines;
+        totalRows = row;
+    }
+
+    private int rowsOf(int lineLength) {
+        return Math.max(1, (lineLength + columns - 1) / columns);
+    }
+
+    /**
+     * Busca la línea que contiene la fila visual
+     */
+    private int lineForRow(int row) {
+        int index = Arrays.binarySearch(rowStarts, 0, indexedLines, row);
+        if (index >= 0) {
+            // Varias líneas no pueden empezar en la misma fila; basta el resultado
+            return index;
+        }
+        return Math.max(0, -index - 2);
+    }
+
+    private int getLineHeight() {
+        return Math.max(1, getFontMetrics(getFont()).getHeight());
+    }
+
+    private int getCharWidth() {
+        return Math.max(1, getFontMetrics(getFont()).charWidth('m'));
+    }
+}
@@ -0,0 +1,204 @@
+package OllamaClient.src;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Extracción del texto de un PDF por páginas en paralelo
+ *
+ * El documento se divide en rangos de páginas que se procesan en un
+ * ForkJoinPool; cada tarea abre su propia copia del documento con su propio
+ * PDFTextStripper, ya que ninguno de los dos admite uso concurrente. Cada
+ * página se publica en cuanto están terminadas ella y todas las anteriores,
+ * de modo que quien consume el texto puede empezar antes de que acabe la
+ * última. Los documentos pequeños se procesan en el hilo que llama.
+ */
+public class PdfTextExtractor {
+    private static final Logger logger = LoggerFactory.getLogger(PdfTextExtractor.class);
+
+    // Páginas mínimas por tarea: por debajo, abrir otra copia del documento cuesta más que lo que se gana
+    static final int MIN_PAGES_PER_TASK = 8;
+
+    private static PdfTextExtractor instance;
+
+    private final ForkJoinPool pool;
+    private final int parallelism;
+
+    /**
+     * Recibe el texto de cada página en orden. Se llama desde los hilos de extracción,
+     * de una en una.
+     */
+    public interface PageListener {
+        void pageReady(int pageIndex, int pageCount, String text);
+    }
+
+    /**
+     * Constructor privado para Singleton
+     */
+    private PdfTextExtractor() {
+        int configuredThreads = ConfigManager.getInstance().getMainConfig("extractionThreads", 0);
+        this.parallelism = configuredThreads > 0 ? configuredThreads : Runtime.getRuntime().availableProcessors();
+
+        // Los hilos del ForkJoinPool son daemon; solo se les da nombre
+        this.pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("pdf-extractor-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Obtiene la instancia única del extractor de PDF
+     */
+    public static synchronized PdfTextExtractor getInstance() {
+        if (instance == null) {
+            instance = new PdfTextExtractor();
+        }
+        return instance;
+    }
+
+    /**
+     * Número de hilos del pool
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Extrae el texto de todo el documento. Si listener no es null, recibe cada página
+     * en orden a medida que se completa.
+     */
+    public String extract(File file, PageListener listener) throws IOException {
+        try {
+            return extractPages(file, listener);
+        } catch (NoClassDefFoundError e) {
+            logger.error("Dependencia faltante: PDFBox", e);
+            throw new IOException("Error al leer PDF: Falta la dependencia de PDFBox. " +
+                    "Añade 'org.apache.pdfbox:pdfbox:2.0.27' a tu proyecto.");
+        }
+    }
+
+    private String extractPages(File file, PageListener listener) throws IOException {
+        long start = System.nanoTime();
+        OrderedPages pages;
+        try (PDDocument document = Loader.loadPDF(file)) {
+            int pageCount = document.getNumberOfPages();
+            pages = new OrderedPages(pageCount, listener);
+            if (parallelism == 1 || pageCount < 2 * MIN_PAGES_PER_TASK) {
+                stripPages(document, 0, pageCount, pages);
+                return pages.join();
+            }
+        }
+
+        // Unas dos tareas por hilo para repartir la carga si unas páginas cuestan más que otras
+        int pageCount = pages.size();
+        int pagesPerTask = Math.max(MIN_PAGES_PER_TASK, (pageCount + parallelism * 2 - 1) / (parallelism * 2));
+        try {
+            pool.invoke(new PageRangeTask(file, 0, pageCount, pagesPerTask, pages));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        logger.info("PDF {}: {} páginas extraídas en {} ms con {} hilos", file.getName(), pageCount,
+                (System.nanoTime() - start) / 1_000_000, parallelism);
+        return pages.join();
+    }
+
+    /**
+     * Extrae las páginas [from, to) de un documento, una a una
+     */
+    private static void stripPages(PDDocument document, int from, int to, OrderedPages pages) throws IOException {
+        PDFTextStripper stripper = new PDFTextStripper();
+        for (int page = from; page < to; page++) {
+            stripper.setStartPage(page + 1);
+            stripper.setEndPage(page + 1);
+            pages.complete(page, stripper.getText(document));
+        }
+    }
+
+    /**
+     * Tarea que divide un rango de páginas hasta pagesPerTask y extrae cada parte
+     * con su propia copia del documento
+     */
+    private static final class PageRangeTask extends RecursiveAction {
+        private final File file;
+        private final int from;
+        private final int to;
+        private final int pagesPerTask;
+        private final OrderedPages pages;
+
+        PageRangeTask(File file, int from, int to, int pagesPerTask, OrderedPages pages) {
+            this.file = file;
+            this.from = from;
+            this.to = to;
+            this.pagesPerTask = pagesPerTask;
+            this.pages = pages;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > pagesPerTask) {
+                // La primera mitad se procesa en este hilo, de modo que las primeras páginas salen antes
+                int middle = (from + to) >>> 1;
+                invokeAll(new PageRangeTask(file, from, middle, pagesPerTask, pages),
+                        new PageRangeTask(file, middle, to, pagesPerTask, pages));
+                return;
+            }
+            try (PDDocument document = Loader.loadPDF(file)) {
+                stripPages(document, from, to, pages);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Texto de las páginas, que se entrega al listener en orden según se completa
+     */
+    private static final class OrderedPages {
+        private final String[] texts;
+        private final PageListener listener;
+        private int published = 0;
+
+        OrderedPages(int pageCount, PageListener listener) {
+            this.texts = new String[pageCount];
+            this.listener = listener;
+        }
+
+        int size() {
+            return texts.length;
+        }
+
+        synchronized void complete(int page, String text) {
+            texts[page] = text;
+            while (published < texts.length && texts[published] != null) {
+                if (listener != null) {
+                    listener.pageReady(published, texts.length, texts[published]);
+                }
+                published++;
+            }
+        }
+
+        synchronized String join() {
+            int length = 0;
+            for (String text : texts) {
+                length += text.length();
+            }
+            StringBuilder result = new StringBuilder(length);
+            for (String text : texts) {
+                result.append(text);
+            }
+            return result.toString();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package OllamaClient.src;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Banco de pruebas de la extracción de texto de PDF por páginas en paralelo
+ *
+ * Genera un PDF sintético (por defecto 500 páginas de 50 líneas) y compara una
+ * única llamada a PDFTextStripper.getText sobre todo el documento con
+ * PdfTextExtractor, indicando también cuándo se publica la primera página.
+ *
+ * Uso: java OllamaClient.src.PdfTextExtractorBenchmark [páginas] [iteraciones]
+ */
+public class PdfTextExtractorBenchmark {
+    private static final int WARMUP_ITERATIONS = 2;
+    private static final int LINES_PER_PAGE = 50;
+
+    public static void main(String[] args) throws Exception {
+        int pages = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        File pdf = File.createTempFile("ollama-benchmark-", ".pdf");
+        pdf.deleteOnExit();
+        buildPdf(pdf, pages);
+        PdfTextExtractor extractor = PdfTextExtractor.getInstance();
+        System.out.println("PDF sintético: " + pages + " páginas, " + pdf.length() + " bytes, "
+                + extractor.getParallelism() + " hilos");
+
+        String expected = extractSequential(pdf);
+        System.out.println("Resultado idéntico a getText: " + expected.equals(extractor.extract(pdf, null)));
+        System.out.println();
+
+        run("getText (secuencial)", pdf, iterations, () -> extractSequential(pdf));
+        run("PdfTextExtractor", pdf, iterations, () -> extractor.extract(pdf, null));
+
+        // Tiempo hasta la primera página publicada
+        long start = System.nanoTime();
+        long[] firstPage = {0};
+        extractor.extract(pdf, (pageIndex, pageCount, text) -> {
+            if (pageIndex == 0) {
+                firstPage[0] = System.nanoTime() - start;
+            }
+        });
+        System.out.printf("Primera página publicada en %.1f ms (total %.1f ms)%n",
+                firstPage[0] / 1e6, (System.nanoTime() - start) / 1e6);
+    }
+
+    private interface Extraction {
+        String extract() throws IOException;
+    }
+
+    private static void run(String name, File pdf, int iterations, Extraction extraction) throws IOException {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            extraction.extract();
+        }
+
+        long start = System.nanoTime();
+        int checksum = 0;
+        for (int i = 0; i < iterations; i++) {
+            checksum += extraction.extract().length();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-22s %10.1f ms/documento (checksum %d)%n",
+                name, elapsed / 1e6 / iterations, checksum);
+    }
+
+    private static String extractSequential(File pdf) throws IOException {
+        try (PDDocument document = Loader.loadPDF(pdf)) {
+            return new PDFTextStripper().getText(document);
+        }
+    }
+
+    private static void buildPdf(File pdf, int pages) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            for (int p = 0; p < pages; p++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(font, 10);
+                    content.newLineAtOffset(40, 750);
+                    for (int line = 0; line < LINES_PER_PAGE; line++) {
+                        content.showText("Pagina " + (p + 1) + ", linea " + (line + 1)
+                                + ": texto de ejemplo para medir la extraccion de PDF.");
+                        content.newLineAtOffset(0, -14);
+                    }
+                    content.endText();
+                }
+            }
+            document.save(pdf);
+        }
+    }
+}
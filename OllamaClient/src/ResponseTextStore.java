@@ -0,0 +1,286 @@
+package OllamaClient.src;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Almacén de texto de solo añadir, dividido en páginas de tamaño fijo
+ *
+ * Pensado para respuestas muy largas: solo se mantiene en memoria un número
+ * limitado de páginas (la última, donde se sigue escribiendo, y las leídas más
+ * recientemente); el resto se vuelca a un archivo temporal, donde cada página
+ * ocupa una posición fija y puede volver a leerse sin recorrer las anteriores.
+ * Un índice de inicios de línea permite a la vista pedir solo las líneas
+ * visibles. El archivo temporal se crea al volcar la primera página y se borra
+ * con close().
+ *
+ * Todos los métodos están sincronizados: el texto se añade desde el hilo de la
+ * petición mientras el EDT lo lee para pintarlo.
+ */
+public class ResponseTextStore implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ResponseTextStore.class);
+
+    // Caracteres por página (128 KB en UTF-16)
+    static final int PAGE_CHARS = 64 * 1024;
+    private static final int PAGE_BYTES = PAGE_CHARS * 2;
+
+    public static final int DEFAULT_MEMORY_MB = 8;
+
+    private final int maxResidentPages;
+
+    // Páginas completas en memoria, en orden de uso (la última no está aquí)
+    private final LinkedHashMap<Integer, char[]> resident = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Páginas que ya están escritas en el archivo temporal
+    private final BitSet spilled = new BitSet();
+
+    // Página en la que se está escribiendo
+    private char[] tail = new char[PAGE_CHARS];
+    private int tailIndex = 0;
+    private int tailLength = 0;
+
+    private int length = 0;
+
+    // Posición de inicio de cada línea
+    private int[] lineStarts = new int[1024];
+    private int lineCount = 1;
+
+    private File spillFile;
+    private FileChannel spillChannel;
+    private boolean closed = false;
+
+    /**
+     * Crea un almacén con el límite de memoria por defecto
+     */
+    public ResponseTextStore() {
+        this(DEFAULT_MEMORY_MB);
+    }
+
+    /**
+     * Crea un almacén que mantiene en memoria como mucho memoryMb megabytes de texto
+     */
+    public ResponseTextStore(int memoryMb) {
+        this.maxResidentPages = Math.max(1, (int) ((long) memoryMb * 1024 * 1024 / PAGE_BYTES) - 1);
+    }
+
+    /**
+     * Añade texto al final
+     */
+    public synchronized void append(CharSequence text) {
+        if (closed) {
+            throw new IllegalStateException("El almacén de texto está cerrado");
+        }
+        int n = text.length();
+        if ((long) length + n > Integer.MAX_VALUE) {
+            throw new IllegalStateException("La respuesta supera el tamaño máximo admitido");
+        }
+
+        for (int i = 0; i < n; i++) {
+            char c = text.charAt(i);
+            if (tailLength == PAGE_CHARS) {
+                closeTailPage();
+            }
+            tail[tailLength++] = c;
+            length++;
+            if (c == '\n') {
+                addLineStart(length);
+            }
+        }
+    }
+
+    /**
+     * Número total de caracteres
+     */
+    public synchronized int length() {
+        return length;
+    }
+
+    /**
+     * Número de líneas (al menos una, aunque esté vacía)
+     */
+    public synchronized int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Posición del primer carácter de la línea
+     */
+    public synchronized int getLineStart(int line) {
+        return lineStarts[line];
+    }
+
+    /**
+     * Longitud de la línea sin el salto de línea final
+     */
+    public synchronized int getLineLength(int line) {
+        int end = line + 1 < lineCount ? lineStarts[line + 1] - 1 : length;
+        return end - lineStarts[line];
+    }
+
+    /**
+     * Devuelve el texto de [start, start + count)
+     */
+    public synchronized String getText(int start, int count) throws IOException {
+        if (start < 0 || count < 0 || start + count > length) {
+            throw new IndexOutOfBoundsException("Rango fuera del texto: " + start + "+" + count + " de " + length);
+        }
+        char[] result = new char[count];
+        int copied = 0;
+        while (copied < count) {
+            int position = start + copied;
+            int pageIndex = position / PAGE_CHARS;
+            int offset = position % PAGE_CHARS;
+            int n = Math.min(count - copied, PAGE_CHARS - offset);
+            System.arraycopy(page(pageIndex), offset, result, copied, n);
+            copied += n;
+        }
+        return new String(result);
+    }
+
+    /**
+     * Indica si el texto está vacío o solo contiene espacios en blanco
+     */
+    public synchronized boolean isBlank() throws IOException {
+        for (int pageIndex = 0; pageIndex <= tailIndex; pageIndex++) {
+            char[] page = page(pageIndex);
+            int pageLength = pageIndex == tailIndex ? tailLength : PAGE_CHARS;
+            for (int i = 0; i < pageLength; i++) {
+                if (!Character.isWhitespace(page[i])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Escribe todo el texto página a página, sin reunirlo en memoria
+     */
+    public synchronized void writeTo(Writer writer) throws IOException {
+        for (int pageIndex = 0; pageIndex <= tailIndex; pageIndex++) {
+            writer.write(page(pageIndex), 0, pageIndex == tailIndex ? tailLength : PAGE_CHARS);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Libera la memoria y borra el archivo temporal
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        resident.clear();
+        tail = new char[0];
+        tailLength = 0;
+        try {
+            if (spillChannel != null) {
+                spillChannel.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Error al cerrar el archivo temporal de la respuesta: {}", e.getMessage());
+        }
+        if (spillFile != null && !spillFile.delete()) {
+            logger.warn("No se pudo borrar el archivo temporal de la respuesta: {}", spillFile.getPath());
+        }
+    }
+
+    private void addLineStart(int start) {
+        if (lineCount == lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, lineStarts.length * 2);
+        }
+        lineStarts[lineCount++] = start;
+    }
+
+    /**
+     * Pasa la página llena a las residentes y empieza una nueva
+     */
+    private void closeTailPage() {
+        resident.put(tailIndex, tail);
+        tailIndex++;
+        tail = new char[PAGE_CHARS];
+        tailLength = 0;
+        evictPages();
+    }
+
+    /**
+     * Devuelve una página, leyéndola del archivo temporal si no está en memoria
+     */
+    private char[] page(int pageIndex) throws IOException {
+        if (pageIndex == tailIndex) {
+            return tail;
+        }
+        char[] page = resident.get(pageIndex);
+        if (page != null) {
+            return page;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(PAGE_BYTES);
+        long position = (long) pageIndex * PAGE_BYTES;
+        while (buffer.hasRemaining()) {
+            if (spillChannel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Archivo temporal de la respuesta incompleto");
+            }
+        }
+        buffer.flip();
+        page = new char[PAGE_CHARS];
+        buffer.asCharBuffer().get(page);
+
+        resident.put(pageIndex, page);
+        evictPages();
+        return page;
+    }
+
+    /**
+     * Descarta las páginas menos usadas por encima del límite, escribiendo antes
+     * las que aún no están en el archivo temporal
+     */
+    private void evictPages() {
+        Iterator<Map.Entry<Integer, char[]>> iterator = resident.entrySet().iterator();
+        while (resident.size() > maxResidentPages && iterator.hasNext()) {
+            Map.Entry<Integer, char[]> eldest = iterator.next();
+            int pageIndex = eldest.getKey();
+            try {
+                if (!spilled.get(pageIndex)) {
+                    writePage(pageIndex, eldest.getValue());
+                    spilled.set(pageIndex);
+                }
+                iterator.remove();
+            } catch (IOException e) {
+                // Sin archivo temporal la página se queda en memoria
+                logger.error("No se pudo volcar la respuesta al archivo temporal", e);
+                return;
+            }
+        }
+    }
+
+    private void writePage(int pageIndex, char[] page) throws IOException {
+        if (spillChannel == null) {
+            spillFile = File.createTempFile("ollama-response-", ".tmp");
+            spillFile.deleteOnExit();
+            spillChannel = new RandomAccessFile(spillFile, "rw").getChannel();
+            logger.info("Respuesta larga: volcando páginas a {}", spillFile.getPath());
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(PAGE_BYTES);
+        buffer.asCharBuffer().put(page);
+        long position = (long) pageIndex * PAGE_BYTES;
+        while (buffer.hasRemaining()) {
+            spillChannel.write(buffer, position + buffer.position());
+        }
+    }
+}
@@ -3,20 +3,20 @@ package OllamaClient.src;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import javax.swing.event.HyperlinkEvent;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
-import java.io.IOException;
 import java.net.URI;
-import java.net.URL;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Panel para mostrar resultados de búsqueda en diferentes formatos
@@ -76,8 +76,9 @@ public class SearchResultsPanel extends JPanel {
     private final List<SearchResultItem> filteredResults = new ArrayList<>();
     private int zoomLevel = 100;
 
-    // Servicio para cargar imágenes en segundo plano
-    private final ExecutorService imageLoaderService = Executors.newFixedThreadPool(3);
+    // Miniaturas de los resultados (memoria y disco); solo se cargan las visibles
+    private final ThumbnailCache thumbnailCache = ThumbnailCache.getInstance();
+    private final Map<JLabel, ThumbnailSlot> thumbnailSlots = new IdentityHashMap<>();
 
     // Callback para añadir resultados al prompt
     private Runnable onAddToPromptCallback;
@@ -170,6 +171,9 @@ public class SearchResultsPanel extends JPanel {
         resultsContainer = new JPanel();
         scrollPane = new JScrollPane(resultsContainer);
         scrollPane.getVerticalScrollBar().setUnitIncrement(16);
+
+        // Al desplazar se cargan las miniaturas que entran en pantalla y se cancelan las que salen
+        scrollPane.getViewport().addChangeListener(e -> updateVisibleThumbnails());
     }
 
     /**
@@ -239,6 +243,8 @@ public class SearchResultsPanel extends JPanel {
      * Actualiza el layout de los resultados según el modo de visualización
      */
     private void updateResultsLayout() {
+        // Las miniaturas del layout anterior dejan de estar visibles
+        cancelThumbnailLoads();
         resultsContainer.removeAll();
 
         switch (currentDisplayMode) {
@@ -271,6 +277,9 @@ public class SearchResultsPanel extends JPanel {
         resultsContainer.revalidate();
         resultsContainer.repaint();
 
+        // Las posiciones de las miniaturas solo se conocen tras el layout
+        SwingUtilities.invokeLater(this::updateVisibleThumbnails);
+
         // Actualizar etiqueta de estado
         updateStatusLabel();
     }
@@ -557,7 +566,23 @@ public class SearchResultsPanel extends JPanel {
     }
 
     /**
-     * Carga una imagen de forma asíncrona
+     * Miniatura pendiente de una etiqueta del layout actual
+     */
+    private static final class ThumbnailSlot {
+        private final String imageUrl;
+        private final int maxSize;
+        private CompletableFuture<BufferedImage> load;
+        private boolean finished;
+
+        ThumbnailSlot(String imageUrl, int maxSize) {
+            this.imageUrl = imageUrl;
+            this.maxSize = maxSize;
+        }
+    }
+
+    /**
+     * Carga una imagen de forma asíncrona. Si la miniatura está en memoria se muestra
+     * al instante; si no, se carga cuando la etiqueta entra en la zona visible.
      */
     private void loadImageAsync(String imageUrl, JLabel imageLabel, int maxSize) {
         if (imageUrl == null || imageUrl.isEmpty()) {
@@ -565,48 +590,81 @@ public class SearchResultsPanel extends JPanel {
             return;
         }
 
-        imageLoaderService.submit(() -> {
-            try {
-                URL url = new URL(imageUrl);
-                BufferedImage image = ImageIO.read(url);
-
-                if (image != null) {
-                    // Redimensionar la imagen manteniendo la proporción
-                    double scale = Math.min(
-                            (double) maxSize / image.getWidth(),
-                            (double) maxSize / image.getHeight()
-                    );
-
-                    int width = (int) (image.getWidth() * scale);
-                    int height = (int) (image.getHeight() * scale);
-
-                    BufferedImage resizedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-                    Graphics2D g = resizedImage.createGraphics();
-                    g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-                    g.drawImage(image, 0, 0, width, height, null);
-                    g.dispose();
-
-                    ImageIcon icon = new ImageIcon(resizedImage);
-
-                    // Actualizar la UI en el hilo de eventos
-                    SwingUtilities.invokeLater(() -> {
-                        imageLabel.setIcon(icon);
-                        imageLabel.setText("");
-                    });
-                } else {
-                    SwingUtilities.invokeLater(() -> {
-                        imageLabel.setIcon(getPlaceholderIcon(ContentType.IMAGE, 48));
-                        imageLabel.setText("No se pudo cargar");
-                    });
-                }
-            } catch (IOException e) {
-                logger.error("Error al cargar imagen desde URL: " + imageUrl, e);
-                SwingUtilities.invokeLater(() -> {
-                    imageLabel.setIcon(getPlaceholderIcon(ContentType.IMAGE, 48));
-                    imageLabel.setText("Error al cargar");
-                });
+        BufferedImage cached = thumbnailCache.getIfPresent(imageUrl, maxSize);
+        if (cached != null) {
+            imageLabel.setIcon(new ImageIcon(cached));
+            imageLabel.setText("");
+            return;
+        }
+
+        thumbnailSlots.put(imageLabel, new ThumbnailSlot(imageUrl, maxSize));
+    }
+
+    /**
+     * Inicia la carga de las miniaturas visibles (con un margen de una pantalla) y
+     * cancela las que ya no lo están; al volver a verse se piden de nuevo
+     */
+    public void updateVisibleThumbnails() {
+        if (thumbnailSlots.isEmpty()) {
+            return;
+        }
+
+        Rectangle visible = scrollPane.getViewport().getViewRect();
+        visible.grow(0, visible.height);
+        boolean showing = resultsContainer.isShowing();
+
+        for (Map.Entry<JLabel, ThumbnailSlot> entry : thumbnailSlots.entrySet()) {
+            JLabel imageLabel = entry.getKey();
+            ThumbnailSlot slot = entry.getValue();
+            if (slot.finished) {
+                continue;
             }
-        });
+
+            boolean isVisible = showing && imageLabel.getParent() != null && visible.intersects(
+                    SwingUtilities.convertRectangle(imageLabel.getParent(), imageLabel.getBounds(), resultsContainer));
+
+            if (isVisible && slot.load == null) {
+                startThumbnailLoad(imageLabel, slot);
+            } else if (!isVisible && slot.load != null) {
+                slot.load.cancel(false);
+                slot.load = null;
+            }
+        }
+    }
+
+    private void startThumbnailLoad(JLabel imageLabel, ThumbnailSlot slot) {
+        CompletableFuture<BufferedImage> load = thumbnailCache.load(slot.imageUrl, slot.maxSize);
+        slot.load = load;
+
+        load.whenComplete((image, error) -> SwingUtilities.invokeLater(() -> {
+            // Ignorar cargas canceladas o de un layout anterior
+            if (slot.load != load || thumbnailSlots.get(imageLabel) != slot) {
+                return;
+            }
+            slot.finished = true;
+
+            if (error == null) {
+                imageLabel.setIcon(new ImageIcon(image));
+                imageLabel.setText("");
+            } else if (!(error instanceof CancellationException)) {
+                Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                logger.error("Error al cargar imagen desde URL: " + slot.imageUrl, cause);
+                imageLabel.setIcon(getPlaceholderIcon(ContentType.IMAGE, 48));
+                imageLabel.setText("Error al cargar");
+            }
+        }));
+    }
+
+    /**
+     * Cancela las cargas de miniaturas pendientes del layout actual
+     */
+    private void cancelThumbnailLoads() {
+        for (ThumbnailSlot slot : thumbnailSlots.values()) {
+            if (slot.load != null) {
+                slot.load.cancel(false);
+            }
+        }
+        thumbnailSlots.clear();
     }
 
     /**
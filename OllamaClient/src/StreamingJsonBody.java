@@ -0,0 +1,245 @@
+package OllamaClient.src;
+
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cuerpo JSON de una petición que incluye archivos codificados en base64
+ *
+ * La estructura de la petición se construye con JSONObject como siempre, pero en
+ * lugar del base64 de cada archivo se coloca un marcador corto. Al enviar, el
+ * cuerpo se escribe en streaming (transferencia chunked): los fragmentos de JSON
+ * se copian tal cual y cada marcador se sustituye por el base64 del archivo,
+ * codificado por bloques directamente desde el FileChannel. Así una imagen de
+ * 10 MB no genera varias copias en memoria en forma de String.
+ *
+ * El resumen para el log usa la misma plantilla con los marcadores sustituidos
+ * por el tamaño del adjunto, sin copiar el contenido.
+ */
+public class StreamingJsonBody {
+
+    // Prefijo de los marcadores; el sufijo aleatorio evita coincidencias con texto del usuario
+    private static final String TOKEN_PREFIX = "@@ollama-base64-" + Long.toHexString(new SecureRandom().nextLong()) + "-";
+    private static final String TOKEN_SUFFIX = "@@";
+
+    // Tamaño del bloque leído del archivo (múltiplo de 3 para que el base64 no lleve relleno intermedio)
+    private static final int READ_BLOCK_SIZE = 3 * 16 * 1024;
+
+    private final Map<String, File> attachments = new LinkedHashMap<>();
+    private String template;
+
+    /**
+     * Registra un archivo y devuelve el marcador que debe colocarse en el JSON donde
+     * iría su contenido en base64. El mismo archivo devuelve siempre el mismo marcador,
+     * de modo que un historial de conversación puede volver a usarlo en otra petición.
+     */
+    public String base64(File file) {
+        String identity = file.getAbsolutePath() + '|' + file.length() + '|' + file.lastModified();
+        String token = TOKEN_PREFIX + Integer.toHexString(identity.hashCode()) + TOKEN_SUFFIX;
+        attachments.put(token, file);
+        return token;
+    }
+
+    /**
+     * Establece la petición ya construida (con los marcadores en lugar del base64)
+     */
+    public void setRequest(JSONObject request) {
+        this.template = request.toString();
+    }
+
+    /**
+     * Devuelve el publicador del cuerpo para HttpClient. Con adjuntos la longitud es
+     * desconocida, por lo que se envía con transferencia chunked.
+     */
+    public HttpRequest.BodyPublisher publisher() throws IOException {
+        if (attachments.isEmpty()) {
+            if (template == null) {
+                throw new IllegalStateException("No se ha establecido la petición");
+            }
+            return HttpRequest.BodyPublishers.ofString(template, StandardCharsets.UTF_8);
+        }
+        List<Object> parts = split();
+        return HttpRequest.BodyPublishers.ofInputStream(() -> new PartsInputStream(parts));
+    }
+
+    /**
+     * Devuelve el JSON de la petición con los adjuntos sustituidos por su tamaño, para el log
+     */
+    public String toLogString() {
+        String result = template;
+        for (Map.Entry<String, File> attachment : attachments.entrySet()) {
+            result = result.replace(attachment.getKey(),
+                    "[BASE64 OMITIDO: " + attachment.getValue().getName() + ", " + attachment.getValue().length() + " bytes]");
+        }
+        return result;
+    }
+
+    /**
+     * Divide la plantilla en fragmentos de texto (byte[]) y adjuntos (File)
+     */
+    private List<Object> split() throws IOException {
+        if (template == null) {
+            throw new IllegalStateException("No se ha establecido la petición");
+        }
+
+        List<Object> parts = new ArrayList<>();
+        int position = 0;
+        int tokenStart;
+        while ((tokenStart = template.indexOf(TOKEN_PREFIX, position)) >= 0) {
+            int tokenEnd = template.indexOf(TOKEN_SUFFIX, tokenStart + TOKEN_PREFIX.length());
+            if (tokenEnd < 0) {
+                break;
+            }
+            tokenEnd += TOKEN_SUFFIX.length();
+
+            File file = attachments.get(template.substring(tokenStart, tokenEnd));
+            if (file == null) {
+                throw new IOException("Adjunto no disponible para la petición");
+            }
+            if (!file.canRead()) {
+                throw new IOException("No se puede leer el adjunto: " + file.getPath());
+            }
+
+            parts.add(template.substring(position, tokenStart).getBytes(StandardCharsets.UTF_8));
+            parts.add(file);
+            position = tokenEnd;
+        }
+        parts.add(template.substring(position).getBytes(StandardCharsets.UTF_8));
+        return parts;
+    }
+
+    /**
+     * Flujo que concatena los fragmentos de JSON y el base64 de los adjuntos,
+     * abriendo cada archivo solo cuando se llega a él
+     */
+    private static final class PartsInputStream extends InputStream {
+        private final List<Object> parts;
+        private int index = 0;
+        private InputStream current;
+
+        PartsInputStream(List<Object> parts) {
+            this.parts = parts;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int n = read(single, 0, 1);
+            return n < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            while (true) {
+                if (current == null) {
+                    if (index >= parts.size()) {
+                        return -1;
+                    }
+                    Object part = parts.get(index++);
+                    current = (part instanceof File) ?
+                            new Base64FileInputStream((File) part) :
+                            new ByteArrayInputStream((byte[]) part);
+                }
+
+                int n = current.read(buffer, offset, length);
+                if (n >= 0) {
+                    return n;
+                }
+                current.close();
+                current = null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+            index = parts.size();
+        }
+    }
+
+    /**
+     * Codifica un archivo en base64 por bloques leyendo desde su FileChannel
+     */
+    private static final class Base64FileInputStream extends InputStream {
+        private final FileChannel channel;
+        private final ByteBuffer input = ByteBuffer.allocate(READ_BLOCK_SIZE);
+        private final Base64.Encoder encoder = Base64.getEncoder();
+        private final byte[] encoded = new byte[READ_BLOCK_SIZE / 3 * 4];
+        private int encodedLength = 0;
+        private int encodedPosition = 0;
+        private boolean eof = false;
+
+        Base64FileInputStream(File file) throws IOException {
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int n = read(single, 0, 1);
+            return n < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (encodedPosition >= encodedLength && !fill()) {
+                return -1;
+            }
+            int n = Math.min(length, encodedLength - encodedPosition);
+            System.arraycopy(encoded, encodedPosition, buffer, offset, n);
+            encodedPosition += n;
+            return n;
+        }
+
+        /**
+         * Lee el siguiente bloque completo (o el resto del archivo) y lo codifica
+         */
+        private boolean fill() throws IOException {
+            if (eof) {
+                return false;
+            }
+
+            input.clear();
+            while (input.hasRemaining()) {
+                if (channel.read(input) < 0) {
+                    eof = true;
+                    break;
+                }
+            }
+            int read = input.position();
+            if (read == 0) {
+                return false;
+            }
+
+            // Solo el último bloque (incompleto) necesita una copia del tamaño exacto
+            byte[] block = read == READ_BLOCK_SIZE ? input.array() : Arrays.copyOf(input.array(), read);
+            encodedLength = encoder.encode(block, encoded);
+            encodedPosition = 0;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
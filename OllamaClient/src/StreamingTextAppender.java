@@ -0,0 +1,164 @@
+package OllamaClient.src;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.StyledDocument;
+
+/**
+ * Añade texto en streaming a un JTextPane a una frecuencia de refresco fija
+ *
+ * Los tokens pueden llegar desde cualquier hilo; se acumulan en un buffer y
+ * un temporizador de Swing los vuelca al StyledDocument en bloques, de forma
+ * que el EDT recibe como mucho un evento por fotograma en lugar de uno por token.
+ * El primer token se vuelca inmediatamente para que el tiempo hasta el primer
+ * texto visible coincida con el del servidor.
+ *
+ * Con una salida paginada, el texto se guarda además en un ResponseTextStore y,
+ * cuando supera el límite del documento, deja de insertarse en el panel: desde
+ * ese momento se muestra en una PagedTextView que solo pinta las filas visibles.
+ */
+public class StreamingTextAppender {
+    private static final Logger logger = LoggerFactory.getLogger(StreamingTextAppender.class);
+
+    // Frecuencia de refresco por defecto (~30 fotogramas por segundo)
+    public static final int DEFAULT_FRAME_INTERVAL_MS = 33;
+
+    private final JTextPane textPane;
+    private final AttributeSet attributes;
+    private final Timer flushTimer;
+    private final StringBuilder pending = new StringBuilder();
+    private boolean firstTokenReceived = false;
+    private boolean autoScroll = true;
+
+    // Salida paginada para respuestas que superan documentLimit caracteres
+    private ResponseTextStore store;
+    private PagedTextView pagedView;
+    private int documentLimit = Integer.MAX_VALUE;
+    private Runnable onPaged;
+    private boolean paged = false;
+
+    /**
+     * Crea un appender con la frecuencia de refresco por defecto
+     */
+    public StreamingTextAppender(JTextPane textPane) {
+        this(textPane, null, DEFAULT_FRAME_INTERVAL_MS);
+    }
+
+    /**
+     * Crea un appender indicando el estilo del texto y el intervalo entre volcados
+     */
+    public StreamingTextAppender(JTextPane textPane, AttributeSet attributes, int frameIntervalMs) {
+        this.textPane = textPane;
+        this.attributes = attributes;
+        this.flushTimer = new Timer(frameIntervalMs, e -> flush());
+        this.flushTimer.setRepeats(true);
+    }
+
+    /**
+     * Guarda todo el texto en el almacén de la vista paginada. Cuando el texto supera
+     * documentLimit caracteres se llama una vez a onPaged (que debe mostrar la vista
+     * en lugar del panel) y el resto se muestra solo en la vista. Debe establecerse
+     * antes del primer token.
+     */
+    public void setPagedOutput(PagedTextView pagedView, int documentLimit, Runnable onPaged) {
+        this.pagedView = pagedView;
+        this.store = pagedView.getStore();
+        this.documentLimit = documentLimit;
+        this.onPaged = onPaged;
+    }
+
+    /**
+     * Añade un fragmento de texto. Puede llamarse desde cualquier hilo.
+     */
+    public void append(String token) {
+        if (token == null || token.isEmpty()) {
+            return;
+        }
+
+        boolean flushNow;
+        synchronized (pending) {
+            pending.append(token);
+            if (store != null) {
+                store.append(token);
+            }
+            flushNow = !firstTokenReceived;
+            firstTokenReceived = true;
+        }
+
+        // El primer token se muestra sin esperar al siguiente fotograma
+        if (flushNow) {
+            SwingUtilities.invokeLater(() -> {
+                flush();
+                flushTimer.start();
+            });
+        }
+    }
+
+    /**
+     * Detiene el temporizador y vuelca el texto pendiente. Debe llamarse desde el EDT.
+     */
+    public void finish() {
+        flushTimer.stop();
+        flush();
+    }
+
+    /**
+     * Indica si el panel debe desplazarse automáticamente al final con cada volcado
+     */
+    public void setAutoScroll(boolean autoScroll) {
+        this.autoScroll = autoScroll;
+    }
+
+    /**
+     * Indica si la respuesta se está mostrando en la vista paginada
+     */
+    public boolean isPaged() {
+        return paged;
+    }
+
+    /**
+     * Indica si ya se ha recibido algún token
+     */
+    public boolean hasReceivedText() {
+        synchronized (pending) {
+            return firstTokenReceived;
+        }
+    }
+
+    /**
+     * Vuelca el texto acumulado al documento (se ejecuta en el EDT)
+     */
+    private void flush() {
+        String chunk;
+        synchronized (pending) {
+            if (pending.length() == 0) {
+                return;
+            }
+            chunk = pending.toString();
+            pending.setLength(0);
+        }
+
+        if (!paged && store != null && store.length() > documentLimit) {
+            paged = true;
+            onPaged.run();
+        }
+        if (paged) {
+            pagedView.textAppended(autoScroll);
+            return;
+        }
+
+        StyledDocument doc = textPane.getStyledDocument();
+        try {
+            doc.insertString(doc.getLength(), chunk, attributes);
+            if (autoScroll) {
+                textPane.setCaretPosition(doc.getLength());
+            }
+        } catch (BadLocationException e) {
+            logger.error("Error al añadir texto en streaming al documento", e);
+        }
+    }
+}
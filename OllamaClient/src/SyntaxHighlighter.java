@@ -0,0 +1,328 @@
+package OllamaClient.src;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.Segment;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.StyledDocument;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resaltado de sintaxis incremental de un StyledDocument
+ *
+ * Guarda el estado del analizador al final de cada línea. Al cambiar el
+ * documento solo se vuelven a analizar las líneas modificadas, y las siguientes
+ * únicamente mientras su estado final cambie (por ejemplo, al abrir o cerrar un
+ * comentario de bloque). Así, añadir texto al final durante el streaming o
+ * editar una línea de un archivo grande cuesta lo proporcional al cambio.
+ *
+ * Con un lenguaje fijo se resalta el documento entero (archivos de código). Sin
+ * lenguaje el documento es una respuesta en markdown: el texto queda con el
+ * estilo base y solo se resaltan los bloques delimitados por "```", con el
+ * lenguaje indicado en la línea de apertura.
+ *
+ * Los cambios llegan como eventos del documento y el estilo se aplica en una
+ * tarea posterior del EDT, porque el documento no admite cambios de atributos
+ * mientras notifica. highlightAll permite resaltar de una vez un documento que
+ * aún no está en ningún componente, desde cualquier hilo.
+ */
+public class SyntaxHighlighter implements DocumentListener {
+    private static final Logger logger = LoggerFactory.getLogger(SyntaxHighlighter.class);
+
+    // Estado de una línea que aún no se ha analizado
+    private static final int UNKNOWN = -1;
+
+    // Codificación del estado en modo respuesta: bit de bloque, lenguaje y estado del analizador
+    private static final int FENCE_FLAG = 1 << 30;
+    private static final int LANGUAGE_SHIFT = 20;
+    private static final int LEXER_STATE_MASK = (1 << LANGUAGE_SHIFT) - 1;
+    private static final String FENCE = "```";
+
+    private final StyledDocument doc;
+    private final SyntaxLexer.Language language;
+    private final AttributeSet textStyle;
+    private final AttributeSet codeStyle;
+    private final Map<SyntaxLexer.TokenType, AttributeSet> tokenStyles;
+
+    // Estado del analizador al final de cada línea (mismo número de entradas que líneas)
+    private final List<Integer> lineStates = new ArrayList<>();
+
+    // Rango de líneas pendientes de analizar
+    private int dirtyStart = Integer.MAX_VALUE;
+    private int dirtyEnd = -1;
+    private boolean restyleScheduled = false;
+
+    private final Segment segment = new Segment();
+
+    /**
+     * @param doc       documento a resaltar
+     * @param language  lenguaje del documento, o null para una respuesta con bloques de código
+     * @param textStyle estilo base del texto (null para dejar el del componente)
+     * @param codeStyle estilo base de los bloques de código (solo en modo respuesta)
+     */
+    public SyntaxHighlighter(StyledDocument doc, SyntaxLexer.Language language,
+                             AttributeSet textStyle, AttributeSet codeStyle) {
+        this.doc = doc;
+        this.language = language;
+        this.textStyle = textStyle != null ? textStyle : SimpleAttributeSet.EMPTY;
+        this.codeStyle = codeStyle != null ? codeStyle : this.textStyle;
+        this.tokenStyles = createTokenStyles(language != null ? this.textStyle : this.codeStyle);
+    }
+
+    /**
+     * Resalta el documento completo y empieza a seguir sus cambios (en el EDT)
+     */
+    public void install() {
+        highlightAll();
+        listen();
+    }
+
+    /**
+     * Empieza a seguir los cambios de un documento ya resaltado con highlightAll
+     * (por ejemplo, construido fuera del EDT y asignado después al componente)
+     */
+    public void listen() {
+        doc.addDocumentListener(this);
+    }
+
+    /**
+     * Deja de seguir los cambios del documento
+     */
+    public void uninstall() {
+        doc.removeDocumentListener(this);
+    }
+
+    /**
+     * Resalta el documento completo de forma síncrona. Puede llamarse desde cualquier
+     * hilo si el documento todavía no pertenece a ningún componente.
+     */
+    public void highlightAll() {
+        lineStates.clear();
+        int lines = doc.getDefaultRootElement().getElementCount();
+        for (int i = 0; i < lines; i++) {
+            lineStates.add(UNKNOWN);
+        }
+        dirtyStart = Integer.MAX_VALUE;
+        dirtyEnd = -1;
+        restyle(0, lines - 1);
+    }
+
+    @Override
+    public void insertUpdate(DocumentEvent e) {
+        documentChanged(e);
+    }
+
+    @Override
+    public void removeUpdate(DocumentEvent e) {
+        documentChanged(e);
+    }
+
+    @Override
+    public void changedUpdate(DocumentEvent e) {
+        // Cambios de atributos (incluidos los del propio resaltado): no afectan al análisis
+    }
+
+    /**
+     * Ajusta la caché de estados a las líneas añadidas o eliminadas y marca las afectadas
+     */
+    private void documentChanged(DocumentEvent e) {
+        Element root = doc.getDefaultRootElement();
+        DocumentEvent.ElementChange change = e.getChange(root);
+        if (change != null) {
+            splice(change.getIndex(), change.getChildrenRemoved().length, change.getChildrenAdded().length);
+        }
+
+        // Líneas que contienen el texto modificado; al partir una línea el documento
+        // conserva su elemento y solo notifica los nuevos, por lo que no basta el cambio
+        int first = root.getElementIndex(e.getOffset());
+        int last = e.getType() == DocumentEvent.EventType.INSERT
+                ? root.getElementIndex(e.getOffset() + e.getLength())
+                : first;
+        if (change != null) {
+            first = Math.min(first, change.getIndex());
+            last = Math.max(last, change.getIndex() + change.getChildrenAdded().length - 1);
+        }
+        markDirty(first, last);
+
+        if (!restyleScheduled) {
+            restyleScheduled = true;
+            SwingUtilities.invokeLater(this::restylePending);
+        }
+    }
+
+    private void splice(int index, int removed, int added) {
+        for (int i = 0; i < removed && index < lineStates.size(); i++) {
+            lineStates.remove(index);
+        }
+        for (int i = 0; i < added; i++) {
+            lineStates.add(Math.min(index, lineStates.size()), UNKNOWN);
+        }
+
+        // Desplazar el rango pendiente si está por detrás del cambio
+        int delta = added - removed;
+        if (dirtyStart <= dirtyEnd) {
+            if (dirtyEnd >= index) {
+                dirtyEnd = Math.max(index, dirtyEnd + delta);
+            }
+            if (dirtyStart > index) {
+                dirtyStart = Math.max(index, dirtyStart + delta);
+            }
+        }
+    }
+
+    private void markDirty(int start, int end) {
+        dirtyStart = Math.min(dirtyStart, start);
+        dirtyEnd = Math.max(dirtyEnd, end);
+    }
+
+    private void restylePending() {
+        restyleScheduled = false;
+        if (dirtyStart > dirtyEnd) {
+            return;
+        }
+        int start = dirtyStart;
+        int end = dirtyEnd;
+        dirtyStart = Integer.MAX_VALUE;
+        dirtyEnd = -1;
+        restyle(start, end);
+    }
+
+    /**
+     * Analiza las líneas de start a end y continúa mientras el estado final de una
+     * línea no coincida con el guardado, ya que entonces cambia el de la siguiente
+     */
+    private void restyle(int start, int end) {
+        Element root = doc.getDefaultRootElement();
+        int lines = root.getElementCount();
+        while (lineStates.size() < lines) {
+            lineStates.add(UNKNOWN);
+        }
+        while (lineStates.size() > lines) {
+            lineStates.remove(lineStates.size() - 1);
+        }
+        start = Math.max(0, Math.min(start, lines - 1));
+
+        int state = start == 0 ? SyntaxLexer.INITIAL : lineStates.get(start - 1);
+        if (state == UNKNOWN) {
+            // No debería ocurrir; por seguridad se analiza desde el principio
+            start = 0;
+            state = SyntaxLexer.INITIAL;
+        }
+
+        try {
+            for (int i = start; i < lines; i++) {
+                int newState = styleLine(root.getElement(i), state);
+                int oldState = lineStates.set(i, newState);
+                if (i >= end && oldState == newState) {
+                    break;
+                }
+                state = newState;
+            }
+        } catch (BadLocationException e) {
+            logger.error("Error al resaltar la sintaxis del documento", e);
+        }
+    }
+
+    /**
+     * Aplica el estilo a una línea y devuelve el estado con el que termina
+     */
+    private int styleLine(Element line, int state) throws BadLocationException {
+        int start = line.getStartOffset();
+        int length = Math.min(line.getEndOffset(), doc.getLength()) - start;
+        if (length < 0) {
+            return state;
+        }
+        doc.getText(start, length, segment);
+        int textLength = length > 0 && segment.charAt(length - 1) == '\n' ? length - 1 : length;
+        CharSequence text = segment.subSequence(0, textLength);
+
+        if (language != null) {
+            doc.setCharacterAttributes(start, length, textStyle, true);
+            return SyntaxLexer.lexLine(language, text, state, (s, e, type) ->
+                    doc.setCharacterAttributes(start + s, e - s, tokenStyles.get(type), true));
+        }
+
+        // Respuesta en markdown: las líneas de apertura y cierre de bloque quedan como texto
+        boolean inFence = (state & FENCE_FLAG) != 0;
+        if (isFenceLine(text)) {
+            doc.setCharacterAttributes(start, length, textStyle, true);
+            if (inFence) {
+                return SyntaxLexer.INITIAL;
+            }
+            SyntaxLexer.Language fenceLanguage = SyntaxLexer.Language.forFenceInfo(
+                    text.toString().trim().substring(FENCE.length()));
+            int languageCode = fenceLanguage != null ? fenceLanguage.ordinal() + 1 : 0;
+            return FENCE_FLAG | (languageCode << LANGUAGE_SHIFT);
+        }
+
+        if (!inFence) {
+            doc.setCharacterAttributes(start, length, textStyle, true);
+            return state;
+        }
+
+        doc.setCharacterAttributes(start, length, codeStyle, true);
+        int languageCode = (state & ~FENCE_FLAG) >> LANGUAGE_SHIFT;
+        if (languageCode == 0) {
+            return state;
+        }
+        SyntaxLexer.Language fenceLanguage = SyntaxLexer.Language.values()[languageCode - 1];
+        int lexerState = SyntaxLexer.lexLine(fenceLanguage, text, state & LEXER_STATE_MASK, (s, e, type) ->
+                doc.setCharacterAttributes(start + s, e - s, tokenStyles.get(type), true));
+        return FENCE_FLAG | (languageCode << LANGUAGE_SHIFT) | (lexerState & LEXER_STATE_MASK);
+    }
+
+    private static boolean isFenceLine(CharSequence text) {
+        int i = 0;
+        while (i < text.length() && i < 3 && text.charAt(i) == ' ') {
+            i++;
+        }
+        return text.length() - i >= FENCE.length() && text.subSequence(i, i + FENCE.length()).toString().equals(FENCE);
+    }
+
+    /**
+     * Crea los estilos de cada tipo de token sobre el estilo base, con una paleta
+     * clara u oscura según el fondo del código
+     */
+    private static Map<SyntaxLexer.TokenType, AttributeSet> createTokenStyles(AttributeSet base) {
+        Color background = StyleConstants.getBackground(base);
+        boolean dark = base.isDefined(StyleConstants.Background) && isDark(background);
+
+        Map<SyntaxLexer.TokenType, AttributeSet> styles = new EnumMap<>(SyntaxLexer.TokenType.class);
+        styles.put(SyntaxLexer.TokenType.KEYWORD, tokenStyle(base, dark ? new Color(86, 156, 214) : new Color(0, 0, 160), true, false));
+        styles.put(SyntaxLexer.TokenType.TYPE, tokenStyle(base, dark ? new Color(78, 201, 176) : new Color(38, 127, 153), false, false));
+        styles.put(SyntaxLexer.TokenType.STRING, tokenStyle(base, dark ? new Color(206, 145, 120) : new Color(163, 21, 21), false, false));
+        styles.put(SyntaxLexer.TokenType.NUMBER, tokenStyle(base, dark ? new Color(181, 206, 168) : new Color(9, 134, 88), false, false));
+        styles.put(SyntaxLexer.TokenType.COMMENT, tokenStyle(base, dark ? new Color(106, 153, 85) : new Color(0, 128, 0), false, true));
+        styles.put(SyntaxLexer.TokenType.TAG, tokenStyle(base, dark ? new Color(86, 156, 214) : new Color(128, 0, 0), false, false));
+        styles.put(SyntaxLexer.TokenType.ATTRIBUTE, tokenStyle(base, dark ? new Color(156, 220, 254) : new Color(180, 80, 0), false, false));
+        return styles;
+    }
+
+    private static AttributeSet tokenStyle(AttributeSet base, Color color, boolean bold, boolean italic) {
+        SimpleAttributeSet style = new SimpleAttributeSet(base);
+        StyleConstants.setForeground(style, color);
+        if (bold) {
+            StyleConstants.setBold(style, true);
+        }
+        if (italic) {
+            StyleConstants.setItalic(style, true);
+        }
+        return style;
+    }
+
+    private static boolean isDark(Color color) {
+        return (0.299 * color.getRed() + 0.587 * color.getGreen() + 0.114 * color.getBlue()) < 128;
+    }
+}
@@ -0,0 +1,652 @@
+package OllamaClient.src;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Analizadores léxicos por líneas para el resaltado de sintaxis
+ *
+ * Cada línea se analiza a partir del estado con el que terminó la anterior
+ * (por ejemplo, dentro de un comentario de bloque o de una cadena de varias
+ * líneas) y devuelve el estado con el que termina. Guardando ese estado por
+ * línea, un cambio solo obliga a volver a analizar las líneas editadas y las
+ * siguientes cuyo estado inicial haya cambiado.
+ *
+ * El análisis es deliberadamente aproximado: distingue palabras clave, tipos,
+ * cadenas, números, comentarios, etiquetas y atributos, sin construir un árbol
+ * sintáctico. El contenido de los bloques script y style de HTML se muestra
+ * como texto.
+ */
+public final class SyntaxLexer {
+
+    // Lenguajes soportados
+    public enum Language {
+        JAVA,
+        PYTHON,
+        JAVASCRIPT,
+        HTML,
+        CSS,
+        XML,
+        JSON;
+
+        /**
+         * Obtiene el lenguaje de una extensión de archivo (null si no se reconoce)
+         */
+        public static Language forExtension(String extension) {
+            if (extension == null) {
+                return null;
+            }
+            switch (extension.toLowerCase(Locale.ROOT)) {
+                case "java":
+                    return JAVA;
+                case "py":
+                    return PYTHON;
+                case "js":
+                case "mjs":
+                case "cjs":
+                    return JAVASCRIPT;
+                case "html":
+                case "htm":
+                    return HTML;
+                case "css":
+                    return CSS;
+                case "xml":
+                case "xsd":
+                case "xsl":
+                case "svg":
+                    return XML;
+                case "json":
+                    return JSON;
+                default:
+                    return null;
+            }
+        }
+
+        /**
+         * Obtiene el lenguaje de la etiqueta de un bloque de código markdown ("```java")
+         */
+        public static Language forFenceInfo(String info) {
+            if (info == null || info.isEmpty()) {
+                return null;
+            }
+            String name = info.trim().split("[\\s{,]", 2)[0].toLowerCase(Locale.ROOT);
+            switch (name) {
+                case "python":
+                case "python3":
+                    return PYTHON;
+                case "javascript":
+                case "jsx":
+                case "ts":
+                case "typescript":
+                case "tsx":
+                case "node":
+                    return JAVASCRIPT;
+                case "xhtml":
+                    return HTML;
+                case "json5":
+                case "jsonc":
+                    return JSON;
+                default:
+                    return forExtension(name);
+            }
+        }
+    }
+
+    // Tipos de token que se resaltan (el resto del texto conserva el estilo base)
+    public enum TokenType {
+        KEYWORD,
+        TYPE,
+        STRING,
+        NUMBER,
+        COMMENT,
+        TAG,
+        ATTRIBUTE
+    }
+
+    /**
+     * Receptor de los tokens de una línea (posiciones relativas a la línea)
+     */
+    public interface TokenSink {
+        void token(int start, int end, TokenType type);
+    }
+
+    // Estado al comienzo del documento
+    public static final int INITIAL = 0;
+
+    // Estados de los lenguajes tipo C (Java, JavaScript)
+    private static final int C_BLOCK_COMMENT = 1;
+    private static final int C_TEXT_BLOCK = 2;
+    private static final int C_TEMPLATE = 3;
+
+    // Estados de Python
+    private static final int PY_TRIPLE_SINGLE = 1;
+    private static final int PY_TRIPLE_DOUBLE = 2;
+
+    // Estados de HTML/XML
+    private static final int MARKUP_COMMENT = 1;
+    private static final int MARKUP_TAG = 2;
+    private static final int MARKUP_CDATA = 3;
+
+    // Estado de CSS: bit de comentario y profundidad de llaves en el resto
+    private static final int CSS_COMMENT = 1;
+
+    private static final Set<String> JAVA_KEYWORDS = new HashSet<>(Arrays.asList(
+            "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const",
+            "continue", "default", "do", "double", "else", "enum", "extends", "final", "finally", "float",
+            "for", "goto", "if", "implements", "import", "instanceof", "int", "interface", "long", "native",
+            "new", "package", "private", "protected", "public", "return", "short", "static", "strictfp",
+            "super", "switch", "synchronized", "this", "throw", "throws", "transient", "try", "void",
+            "volatile", "while", "var", "record", "sealed", "permits", "yield", "true", "false", "null"));
+
+    private static final Set<String> JS_KEYWORDS = new HashSet<>(Arrays.asList(
+            "async", "await", "break", "case", "catch", "class", "const", "continue", "debugger", "default",
+            "delete", "do", "else", "export", "extends", "finally", "for", "from", "function", "if", "import",
+            "in", "instanceof", "let", "new", "of", "return", "static", "super", "switch", "this", "throw",
+            "try", "typeof", "var", "void", "while", "with", "yield", "true", "false", "null", "undefined",
+            "interface", "type", "enum", "implements", "private", "protected", "public", "readonly"));
+
+    private static final Set<String> PYTHON_KEYWORDS = new HashSet<>(Arrays.asList(
+            "and", "as", "assert", "async", "await", "break", "class", "continue", "def", "del", "elif",
+            "else", "except", "finally", "for", "from", "global", "if", "import", "in", "is", "lambda",
+            "nonlocal", "not", "or", "pass", "raise", "return", "try", "while", "with", "yield", "match",
+            "case", "True", "False", "None", "self"));
+
+    private static final Set<String> JSON_KEYWORDS = new HashSet<>(Arrays.asList("true", "false", "null"));
+
+    private SyntaxLexer() {
+    }
+
+    /**
+     * Analiza una línea (sin el salto de línea final) y devuelve el estado con el que termina
+     */
+    public static int lexLine(Language language, CharSequence line, int state, TokenSink sink) {
+        switch (language) {
+            case JAVA:
+            case JAVASCRIPT:
+                return lexCLike(language, line, state, sink);
+            case PYTHON:
+                return lexPython(line, state, sink);
+            case HTML:
+            case XML:
+                return lexMarkup(line, state, sink);
+            case CSS:
+                return lexCss(line, state, sink);
+            case JSON:
+                lexJson(line, sink);
+                return INITIAL;
+            default:
+                return state;
+        }
+    }
+
+    /**
+     * Java y JavaScript: comentarios de línea y de bloque, cadenas, bloques de texto
+     * de Java, plantillas de JavaScript, números, palabras clave y tipos
+     */
+    private static int lexCLike(Language language, CharSequence line, int state, TokenSink sink) {
+        boolean java = language == Language.JAVA;
+        Set<String> keywords = java ? JAVA_KEYWORDS : JS_KEYWORDS;
+        int n = line.length();
+        int i = 0;
+
+        // Continuación de una construcción de varias líneas
+        if (state == C_BLOCK_COMMENT) {
+            int end = indexOf(line, "*/", 0);
+            if (end < 0) {
+                sink.token(0, n, TokenType.COMMENT);
+                return C_BLOCK_COMMENT;
+            }
+            sink.token(0, end + 2, TokenType.COMMENT);
+            i = end + 2;
+        } else if (state == C_TEXT_BLOCK) {
+            int end = indexOf(line, "\"\"\"", 0);
+            if (end < 0) {
+                sink.token(0, n, TokenType.STRING);
+                return C_TEXT_BLOCK;
+            }
+            sink.token(0, end + 3, TokenType.STRING);
+            i = end + 3;
+        } else if (state == C_TEMPLATE) {
+            int end = endOfString(line, 0, '`');
+            if (end < 0) {
+                sink.token(0, n, TokenType.STRING);
+                return C_TEMPLATE;
+            }
+            sink.token(0, end, TokenType.STRING);
+            i = end;
+        }
+
+        while (i < n) {
+            char c = line.charAt(i);
+            char next = i + 1 < n ? line.charAt(i + 1) : '\0';
+
+            if (c == '/' && next == '/') {
+                sink.token(i, n, TokenType.COMMENT);
+                return INITIAL;
+            }
+            if (c == '/' && next == '*') {
+                int end = indexOf(line, "*/", i + 2);
+                if (end < 0) {
+                    sink.token(i, n, TokenType.COMMENT);
+                    return C_BLOCK_COMMENT;
+                }
+                sink.token(i, end + 2, TokenType.COMMENT);
+                i = end + 2;
+            } else if (java && c == '"' && startsWith(line, "\"\"\"", i)) {
+                int end = indexOf(line, "\"\"\"", i + 3);
+                if (end < 0) {
+                    sink.token(i, n, TokenType.STRING);
+                    return C_TEXT_BLOCK;
+                }
+                sink.token(i, end + 3, TokenType.STRING);
+                i = end + 3;
+            } else if (c == '"' || c == '\'' || (!java && c == '`')) {
+                int end = endOfString(line, i + 1, c);
+                if (end < 0) {
+                    sink.token(i, n, TokenType.STRING);
+                    return c == '`' ? C_TEMPLATE : INITIAL;
+                }
+                sink.token(i, end, TokenType.STRING);
+                i = end;
+            } else if (isNumberStart(line, i)) {
+                int end = endOfNumber(line, i);
+                sink.token(i, end, TokenType.NUMBER);
+                i = end;
+            } else if (java && c == '@' && i + 1 < n && Character.isJavaIdentifierStart(next)) {
+                int end = endOfIdentifier(line, i + 1);
+                sink.token(i, end, TokenType.TYPE);
+                i = end;
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int end = endOfIdentifier(line, i);
+                String word = line.subSequence(i, end).toString();
+                if (keywords.contains(word)) {
+                    sink.token(i, end, TokenType.KEYWORD);
+                } else if (Character.isUpperCase(c)) {
+                    sink.token(i, end, TokenType.TYPE);
+                }
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        return INITIAL;
+    }
+
+    /**
+     * Python: comentarios, cadenas simples y triples (con prefijos r, b, f, u), decoradores
+     */
+    private static int lexPython(CharSequence line, int state, TokenSink sink) {
+        int n = line.length();
+        int i = 0;
+
+        if (state == PY_TRIPLE_SINGLE || state == PY_TRIPLE_DOUBLE) {
+            String delimiter = state == PY_TRIPLE_SINGLE ? "'''" : "\"\"\"";
+            int end = indexOf(line, delimiter, 0);
+            if (end < 0) {
+                sink.token(0, n, TokenType.STRING);
+                return state;
+            }
+            sink.token(0, end + 3, TokenType.STRING);
+            i = end + 3;
+        }
+
+        while (i < n) {
+            char c = line.charAt(i);
+
+            if (c == '#') {
+                sink.token(i, n, TokenType.COMMENT);
+                return INITIAL;
+            }
+
+            // Prefijos de cadena: r"..", b'..', f"..", rb'..'
+            int quote = i;
+            while (quote < n && quote - i < 2 && "rRbBfFuU".indexOf(line.charAt(quote)) >= 0) {
+                quote++;
+            }
+            if (quote < n && (line.charAt(quote) == '"' || line.charAt(quote) == '\'')
+                    && (quote == i || i == 0 || !Character.isJavaIdentifierPart(line.charAt(i - 1)))) {
+                char q = line.charAt(quote);
+                String triple = q == '"' ? "\"\"\"" : "'''";
+                if (startsWith(line, triple, quote)) {
+                    int end = indexOf(line, triple, quote + 3);
+                    if (end < 0) {
+                        sink.token(i, n, TokenType.STRING);
+                        return q == '"' ? PY_TRIPLE_DOUBLE : PY_TRIPLE_SINGLE;
+                    }
+                    sink.token(i, end + 3, TokenType.STRING);
+                    i = end + 3;
+                } else {
+                    int end = endOfString(line, quote + 1, q);
+                    end = end < 0 ? n : end;
+                    sink.token(i, end, TokenType.STRING);
+                    i = end;
+                }
+                continue;
+            }
+
+            if (c == '@' && i + 1 < n && Character.isJavaIdentifierStart(line.charAt(i + 1))) {
+                int end = endOfIdentifier(line, i + 1);
+                sink.token(i, end, TokenType.TYPE);
+                i = end;
+            } else if (isNumberStart(line, i)) {
+                int end = endOfNumber(line, i);
+                sink.token(i, end, TokenType.NUMBER);
+                i = end;
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int end = endOfIdentifier(line, i);
+                String word = line.subSequence(i, end).toString();
+                if (PYTHON_KEYWORDS.contains(word)) {
+                    sink.token(i, end, TokenType.KEYWORD);
+                } else if (Character.isUpperCase(c)) {
+                    sink.token(i, end, TokenType.TYPE);
+                }
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        return INITIAL;
+    }
+
+    /**
+     * HTML y XML: etiquetas, atributos, valores, comentarios y secciones CDATA.
+     * Una etiqueta puede repartir sus atributos entre varias líneas.
+     */
+    private static int lexMarkup(CharSequence line, int state, TokenSink sink) {
+        int n = line.length();
+        int i = 0;
+
+        while (i < n) {
+            if (state == MARKUP_COMMENT || state == MARKUP_CDATA) {
+                String close = state == MARKUP_COMMENT ? "-->" : "]]>";
+                int end = indexOf(line, close, i);
+                TokenType type = state == MARKUP_COMMENT ? TokenType.COMMENT : TokenType.STRING;
+                if (end < 0) {
+                    sink.token(i, n, type);
+                    return state;
+                }
+                sink.token(i, end + 3, type);
+                i = end + 3;
+                state = INITIAL;
+            } else if (state == MARKUP_TAG) {
+                char c = line.charAt(i);
+                if (c == '>') {
+                    sink.token(i, i + 1, TokenType.TAG);
+                    i++;
+                    state = INITIAL;
+                } else if ((c == '/' || c == '?') && i + 1 < n && line.charAt(i + 1) == '>') {
+                    sink.token(i, i + 2, TokenType.TAG);
+                    i += 2;
+                    state = INITIAL;
+                } else if (c == '"' || c == '\'') {
+                    int end = endOfString(line, i + 1, c);
+                    end = end < 0 ? n : end;
+                    sink.token(i, end, TokenType.STRING);
+                    i = end;
+                } else if (isNameChar(c)) {
+                    int end = i;
+                    while (end < n && isNameChar(line.charAt(end))) {
+                        end++;
+                    }
+                    sink.token(i, end, TokenType.ATTRIBUTE);
+                    i = end;
+                } else {
+                    i++;
+                }
+            } else {
+                int open = indexOf(line, "<", i);
+                if (open < 0) {
+                    return INITIAL;
+                }
+                if (startsWith(line, "<!--", open)) {
+                    state = MARKUP_COMMENT;
+                    i = open;
+                    int end = indexOf(line, "-->", open + 4);
+                    if (end < 0) {
+                        sink.token(open, n, TokenType.COMMENT);
+                        return MARKUP_COMMENT;
+                    }
+                    sink.token(open, end + 3, TokenType.COMMENT);
+                    i = end + 3;
+                    state = INITIAL;
+                } else if (startsWith(line, "<![CDATA[", open)) {
+                    sink.token(open, open + 9, TokenType.TAG);
+                    i = open + 9;
+                    state = MARKUP_CDATA;
+                } else {
+                    // Nombre de la etiqueta, con '/', '?' o '!' delante
+                    int end = open + 1;
+                    if (end < n && "/?!".indexOf(line.charAt(end)) >= 0) {
+                        end++;
+                    }
+                    while (end < n && isNameChar(line.charAt(end))) {
+                        end++;
+                    }
+                    if (end == open + 1) {
+                        // '<' suelto en el texto
+                        i = open + 1;
+                        continue;
+                    }
+                    sink.token(open, end, TokenType.TAG);
+                    i = end;
+                    state = MARKUP_TAG;
+                }
+            }
+        }
+        return state;
+    }
+
+    /**
+     * CSS: selectores, propiedades, valores, reglas @ y comentarios. El estado
+     * guarda si se está dentro de un comentario y la profundidad de llaves.
+     */
+    private static int lexCss(CharSequence line, int state, TokenSink sink) {
+        int n = line.length();
+        boolean inComment = (state & CSS_COMMENT) != 0;
+        int depth = state >> 1;
+        int i = 0;
+
+        while (i < n) {
+            if (inComment) {
+                int end = indexOf(line, "*/", i);
+                if (end < 0) {
+                    sink.token(i, n, TokenType.COMMENT);
+                    return (depth << 1) | CSS_COMMENT;
+                }
+                sink.token(i, end + 2, TokenType.COMMENT);
+                i = end + 2;
+                inComment = false;
+                continue;
+            }
+
+            char c = line.charAt(i);
+            if (c == '/' && i + 1 < n && line.charAt(i + 1) == '*') {
+                inComment = true;
+                sink.token(i, i + 2, TokenType.COMMENT);
+                i += 2;
+            } else if (c == '{') {
+                depth++;
+                i++;
+            } else if (c == '}') {
+                depth = Math.max(0, depth - 1);
+                i++;
+            } else if (c == '"' || c == '\'') {
+                int end = endOfString(line, i + 1, c);
+                end = end < 0 ? n : end;
+                sink.token(i, end, TokenType.STRING);
+                i = end;
+            } else if (c == '@' || (c == '!' && startsWith(line, "!important", i))) {
+                int end = i + 1;
+                while (end < n && isCssNameChar(line.charAt(end))) {
+                    end++;
+                }
+                sink.token(i, end, TokenType.KEYWORD);
+                i = end;
+            } else if (depth > 0 && c == '#' && i + 1 < n && Character.digit(line.charAt(i + 1), 16) >= 0
+                    && isPropertyValue(line, i)) {
+                int end = i + 1;
+                while (end < n && Character.digit(line.charAt(end), 16) >= 0) {
+                    end++;
+                }
+                sink.token(i, end, TokenType.NUMBER);
+                i = end;
+            } else if (isNumberStart(line, i) && (i == 0 || !isCssNameChar(line.charAt(i - 1)))) {
+                int end = endOfNumber(line, i);
+                while (end < n && (Character.isLetter(line.charAt(end)) || line.charAt(end) == '%')) {
+                    end++;
+                }
+                sink.token(i, end, TokenType.NUMBER);
+                i = end;
+            } else if (isCssNameChar(c) || c == '.' || c == '#') {
+                int end = i + 1;
+                while (end < n && isCssNameChar(line.charAt(end))) {
+                    end++;
+                }
+                if (depth > 0 && nextNonSpace(line, end) == ':' && c != '.' && c != '#') {
+                    sink.token(i, end, TokenType.ATTRIBUTE);
+                } else if (depth == 0 || nextNonSpace(line, end) == '{') {
+                    sink.token(i, end, c == '.' || c == '#' ? TokenType.ATTRIBUTE : TokenType.TAG);
+                }
+                i = end;
+            } else {
+                i++;
+            }
+        }
+        return (depth << 1) | (inComment ? CSS_COMMENT : 0);
+    }
+
+    /**
+     * JSON: las cadenas seguidas de ':' son claves; no hay construcciones de varias líneas
+     */
+    private static void lexJson(CharSequence line, TokenSink sink) {
+        int n = line.length();
+        int i = 0;
+        while (i < n) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                int end = endOfString(line, i + 1, '"');
+                end = end < 0 ? n : end;
+                sink.token(i, end, nextNonSpace(line, end) == ':' ? TokenType.ATTRIBUTE : TokenType.STRING);
+                i = end;
+            } else if (c == '-' || isNumberStart(line, i)) {
+                int end = endOfNumber(line, c == '-' ? i + 1 : i);
+                if (end > i + 1 || c != '-') {
+                    sink.token(i, end, TokenType.NUMBER);
+                }
+                i = Math.max(end, i + 1);
+            } else if (Character.isLetter(c)) {
+                int end = endOfIdentifier(line, i);
+                if (JSON_KEYWORDS.contains(line.subSequence(i, end).toString())) {
+                    sink.token(i, end, TokenType.KEYWORD);
+                }
+                i = end;
+            } else {
+                i++;
+            }
+        }
+    }
+
+    // Utilidades de búsqueda sobre CharSequence (las líneas llegan como Segment del documento)
+
+    private static int indexOf(CharSequence text, String target, int from) {
+        int last = text.length() - target.length();
+        for (int i = Math.max(0, from); i <= last; i++) {
+            if (startsWith(text, target, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(CharSequence text, String prefix, int at) {
+        if (at < 0 || at + prefix.length() > text.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (text.charAt(at + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Devuelve la posición siguiente a la comilla de cierre, o -1 si la cadena no se cierra en la línea
+     */
+    private static int endOfString(CharSequence text, int from, char quote) {
+        for (int i = from; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == quote) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isNumberStart(CharSequence text, int i) {
+        char c = text.charAt(i);
+        if (Character.isDigit(c)) {
+            return i == 0 || !Character.isJavaIdentifierPart(text.charAt(i - 1));
+        }
+        return c == '.' && i + 1 < text.length() && Character.isDigit(text.charAt(i + 1))
+                && (i == 0 || !Character.isJavaIdentifierPart(text.charAt(i - 1)));
+    }
+
+    private static int endOfNumber(CharSequence text, int i) {
+        int n = text.length();
+        while (i < n) {
+            char c = text.charAt(i);
+            boolean exponentSign = (c == '+' || c == '-') && i > 0
+                    && (text.charAt(i - 1) == 'e' || text.charAt(i - 1) == 'E');
+            if (Character.isLetterOrDigit(c) || c == '.' || c == '_' || exponentSign) {
+                i++;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private static int endOfIdentifier(CharSequence text, int i) {
+        int n = text.length();
+        while (i < n && Character.isJavaIdentifierPart(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '-' || c == '_' || c == ':' || c == '.';
+    }
+
+    private static boolean isCssNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '-' || c == '_';
+    }
+
+    private static char nextNonSpace(CharSequence text, int i) {
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i < text.length() ? text.charAt(i) : '\0';
+    }
+
+    /**
+     * Indica si la posición está en la parte de valor de una declaración ("color: #fff")
+     */
+    private static boolean isPropertyValue(CharSequence text, int i) {
+        for (int j = i - 1; j >= 0; j--) {
+            char c = text.charAt(j);
+            if (c == ':') {
+                return true;
+            }
+            if (c == ';' || c == '{' || c == '}') {
+                return false;
+            }
+        }
+        return false;
+    }
+}
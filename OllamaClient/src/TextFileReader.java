@@ -0,0 +1,338 @@
+package OllamaClient.src;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Lectura de archivos de texto grandes (registros, código, volcados) con límite de bytes
+ *
+ * Solo se proyecta en memoria (memory-mapped) la parte del archivo que se va a
+ * mostrar: el principio, el final, ambos o una ventana a partir de una posición,
+ * y se decodifica directamente desde la proyección al texto resultante, de modo
+ * que un registro de 500 MB nunca se copia entero al heap. La codificación se
+ * deduce de la marca BOM si existe; si no, se comprueba si el principio del
+ * archivo es UTF-8 válido o parece UTF-16, y en otro caso se usa windows-1252.
+ * Los cortes se ajustan al límite de un carácter y los saltos de línea se
+ * normalizan a '\n'.
+ */
+public final class TextFileReader {
+
+    // Bytes del principio del archivo que se examinan para deducir la codificación
+    private static final int DETECTION_BYTES = 64 * 1024;
+
+    // Límite de cada lectura: la ventana se decodifica en un único buffer de caracteres
+    private static final long MAX_WINDOW_BYTES = Integer.MAX_VALUE / 4;
+
+    private static final Charset FALLBACK_CHARSET = Charset.isSupported("windows-1252")
+            ? Charset.forName("windows-1252") : StandardCharsets.ISO_8859_1;
+
+    /**
+     * Parte del archivo que se lee cuando supera el límite
+     */
+    public enum Sampling {
+        HEAD, TAIL, HEAD_TAIL;
+
+        /**
+         * Interpreta el valor de configuración ("head", "tail" o "headtail"); HEAD si no es válido
+         */
+        public static Sampling fromConfig(String value) {
+            if (value != null) {
+                switch (value.trim().toLowerCase(Locale.ROOT)) {
+                    case "tail":
+                        return TAIL;
+                    case "headtail":
+                    case "head_tail":
+                        return HEAD_TAIL;
+                    default:
+                        break;
+                }
+            }
+            return HEAD;
+        }
+    }
+
+    /**
+     * Texto leído y datos de la parte del archivo que representa
+     */
+    public static final class Sample {
+        private final String text;
+        private final Charset charset;
+        private final long fileSize;
+        private final long bytesRead;
+        private final boolean truncated;
+
+        private Sample(String text, Charset charset, long fileSize, long bytesRead, boolean truncated) {
+            this.text = text;
+            this.charset = charset;
+            this.fileSize = fileSize;
+            this.bytesRead = bytesRead;
+            this.truncated = truncated;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public Charset getCharset() {
+            return charset;
+        }
+
+        public long getFileSize() {
+            return fileSize;
+        }
+
+        /**
+         * Bytes de texto leídos (sin contar la BOM)
+         */
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        /**
+         * Indica si no se ha leído todo el archivo
+         */
+        public boolean isTruncated() {
+            return truncated;
+        }
+    }
+
+    private TextFileReader() {
+    }
+
+    /**
+     * Lee el archivo completo si no supera maxBytes o, si lo supera, la parte indicada
+     * por sampling. Con HEAD_TAIL se leen la primera y la última mitad del límite,
+     * separadas por una línea que indica los bytes omitidos.
+     */
+    public static Sample read(File file, Sampling sampling, long maxBytes) throws IOException {
+        long limit = Math.max(1, Math.min(maxBytes, MAX_WINDOW_BYTES));
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            Encoding encoding = detect(channel, size);
+            long start = encoding.bomLength;
+            long available = size - start;
+
+            if (available <= limit) {
+                return decode(channel, encoding, size, start, size, size, size);
+            }
+            switch (sampling) {
+                case TAIL:
+                    return decode(channel, encoding, size, size - limit, size, size, size);
+                case HEAD_TAIL:
+                    long half = limit / 2;
+                    return decode(channel, encoding, size, start, start + half, size - (limit - half), size);
+                default:
+                    return decode(channel, encoding, size, start, start + limit, size, size);
+            }
+        }
+    }
+
+    /**
+     * Lee como mucho maxBytes a partir de la posición offset (en bytes) del archivo
+     */
+    public static Sample readWindow(File file, long offset, long maxBytes) throws IOException {
+        long limit = Math.max(1, Math.min(maxBytes, MAX_WINDOW_BYTES));
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            Encoding encoding = detect(channel, size);
+            long start = Math.min(size, Math.max(offset, encoding.bomLength));
+            long end = Math.min(size, start + limit);
+            return decode(channel, encoding, size, start, end, end, end);
+        }
+    }
+
+    /**
+     * Decodifica [start, headEnd) y, si tailStart &lt; tailEnd, también [tailStart, tailEnd)
+     * precedido de una línea con los bytes omitidos
+     */
+    private static Sample decode(FileChannel channel, Encoding encoding, long size,
+                                 long start, long headEnd, long tailStart, long tailEnd) throws IOException {
+        String marker = tailStart < tailEnd
+                ? "\n[... " + (tailStart - headEnd) + " bytes omitidos ...]\n" : "";
+        long bytes = (headEnd - start) + (tailEnd - tailStart);
+
+        CharsetDecoder decoder = newDecoder(encoding.charset);
+        CharBuffer out = CharBuffer.allocate((int) Math.ceil(bytes * decoder.maxCharsPerByte()) + marker.length() + 1);
+        decodeRegion(channel, encoding, size, start, headEnd, decoder, out);
+        if (!marker.isEmpty()) {
+            out.put(marker);
+            decodeRegion(channel, encoding, size, tailStart, tailEnd, newDecoder(encoding.charset), out);
+        }
+
+        int length = normalizeLineBreaks(out.array(), out.position());
+        return new Sample(new String(out.array(), 0, length), encoding.charset, size, bytes,
+                bytes < size - encoding.bomLength);
+    }
+
+    /**
+     * Decodifica una región proyectada en memoria, ajustando sus extremos al límite de un carácter
+     */
+    private static void decodeRegion(FileChannel channel, Encoding encoding, long size, long start, long end,
+                                     CharsetDecoder decoder, CharBuffer out) throws IOException {
+        if (end <= start) {
+            return;
+        }
+        MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        int from = start > encoding.bomLength ? characterStart(region, 0, encoding, start) : 0;
+        int to = end < size ? characterStart(region, region.limit(), encoding, end) : region.limit();
+        if (to <= from) {
+            return;
+        }
+        region.position(from);
+        region.limit(to);
+        decoder.decode(region, out, true);
+        decoder.flush(out);
+    }
+
+    /**
+     * Primera posición desde index (relativa a la región) en la que empieza un carácter.
+     * Al principio de la región se avanza; al final se retrocede para no cortar un carácter.
+     */
+    private static int characterStart(ByteBuffer region, int index, Encoding encoding, long absolute) {
+        if (encoding.unitSize == 2) {
+            boolean odd = ((absolute - encoding.bomLength) & 1) == 1;
+            return odd ? (index == 0 ? 1 : index - 1) : index;
+        }
+        if (encoding.charset != StandardCharsets.UTF_8) {
+            return index;
+        }
+        if (index == 0) {
+            // Saltar bytes de continuación (10xxxxxx) de un carácter empezado antes de la región
+            int skip = 0;
+            while (skip < 3 && skip < region.limit() && (region.get(skip) & 0xC0) == 0x80) {
+                skip++;
+            }
+            return skip;
+        }
+        // Retroceder hasta el byte inicial del último carácter si está incompleto
+        for (int back = 1; back <= 3 && index - back >= 0; back++) {
+            int b = region.get(index - back) & 0xFF;
+            if ((b & 0xC0) == 0x80) {
+                continue;
+            }
+            int length = b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : b >= 0xC0 ? 2 : 1;
+            return length > back ? index - back : index;
+        }
+        return index;
+    }
+
+    /**
+     * Sustituye "\r\n" y "\r" por "\n" sobre el mismo array y devuelve la nueva longitud
+     */
+    private static int normalizeLineBreaks(char[] chars, int length) {
+        int write = 0;
+        for (int read = 0; read < length; read++) {
+            char c = chars[read];
+            if (c == '\r') {
+                chars[write++] = '\n';
+                if (read + 1 < length && chars[read + 1] == '\n') {
+                    read++;
+                }
+            } else {
+                chars[write++] = c;
+            }
+        }
+        return write;
+    }
+
+    private static CharsetDecoder newDecoder(Charset charset) {
+        return charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Codificación deducida y longitud de su BOM
+     */
+    private static final class Encoding {
+        private final Charset charset;
+        private final int bomLength;
+        private final int unitSize;
+
+        private Encoding(Charset charset, int bomLength, int unitSize) {
+            this.charset = charset;
+            this.bomLength = bomLength;
+            this.unitSize = unitSize;
+        }
+    }
+
+    /**
+     * Deduce la codificación a partir de los primeros bytes del archivo
+     */
+    private static Encoding detect(FileChannel channel, long size) throws IOException {
+        if (size == 0) {
+            return new Encoding(StandardCharsets.UTF_8, 0, 1);
+        }
+        ByteBuffer head = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, DETECTION_BYTES));
+        return detectCharset(head, head.limit() == size);
+    }
+
+    /**
+     * Deduce la codificación de un bloque de bytes: BOM, UTF-8 válido, UTF-16 sin BOM
+     * (por la posición de los bytes nulos) o windows-1252. complete indica si el bloque
+     * es el archivo entero (si no, un carácter cortado al final no invalida el UTF-8).
+     */
+    private static Encoding detectCharset(ByteBuffer head, boolean complete) {
+        int n = head.limit();
+        int b0 = n > 0 ? head.get(0) & 0xFF : -1;
+        int b1 = n > 1 ? head.get(1) & 0xFF : -1;
+        int b2 = n > 2 ? head.get(2) & 0xFF : -1;
+        if (b0 == 0xEF && b1 == 0xBB && b2 == 0xBF) {
+            return new Encoding(StandardCharsets.UTF_8, 3, 1);
+        }
+        if (b0 == 0xFE && b1 == 0xFF) {
+            return new Encoding(StandardCharsets.UTF_16BE, 2, 2);
+        }
+        if (b0 == 0xFF && b1 == 0xFE) {
+            return new Encoding(StandardCharsets.UTF_16LE, 2, 2);
+        }
+
+        // Texto UTF-16 sin BOM: casi todos los bytes nulos caen en posiciones de la misma paridad
+        int evenZeros = 0;
+        int oddZeros = 0;
+        for (int i = 0; i < n; i++) {
+            if (head.get(i) == 0) {
+                if ((i & 1) == 0) {
+                    evenZeros++;
+                } else {
+                    oddZeros++;
+                }
+            }
+        }
+        int pairs = Math.max(1, n / 2);
+        if (evenZeros > pairs * 0.3 && oddZeros < pairs * 0.05) {
+            return new Encoding(StandardCharsets.UTF_16BE, 0, 2);
+        }
+        if (oddZeros > pairs * 0.3 && evenZeros < pairs * 0.05) {
+            return new Encoding(StandardCharsets.UTF_16LE, 0, 2);
+        }
+
+        CharsetDecoder validator = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        ByteBuffer input = head.duplicate();
+        input.position(0);
+        CharBuffer scratch = CharBuffer.allocate(4096);
+        while (true) {
+            CoderResult result = validator.decode(input, scratch, complete);
+            if (result.isError()) {
+                return new Encoding(FALLBACK_CHARSET, 0, 1);
+            }
+            if (result.isUnderflow()) {
+                return new Encoding(StandardCharsets.UTF_8, 0, 1);
+            }
+            scratch.clear();
+        }
+    }
+}
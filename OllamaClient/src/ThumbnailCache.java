@@ -0,0 +1,299 @@
+package OllamaClient.src;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caché de miniaturas de imágenes remotas en dos niveles
+ *
+ * Las miniaturas ya escaladas se guardan en memoria (LRU) y en disco, con clave
+ * URL y tamaño, de modo que reconstruir la vista de resultados no vuelve a
+ * descargar ni a escalar nada. Las cargas simultáneas de la misma miniatura
+ * comparten una sola descarga, y una carga que nadie espera ya (porque su
+ * resultado ha dejado de estar visible) se cancela antes de empezar o durante
+ * la descarga.
+ */
+public class ThumbnailCache {
+    private static final Logger logger = LoggerFactory.getLogger(ThumbnailCache.class);
+
+    // Subdirectorio de la caché de miniaturas dentro del directorio de configuración
+    private static final String CACHE_DIR_NAME = "cache" + File.separator + "thumbnails";
+
+    public static final int DEFAULT_CACHE_ENTRIES = 200;
+    public static final int DEFAULT_CACHE_MAX_MB = 64;
+
+    // Límites de la descarga de cada imagen
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+    private static final int READ_TIMEOUT_MS = 10000;
+    private static final int MAX_DOWNLOAD_BYTES = 20 * 1024 * 1024;
+
+    /**
+     * Carga en curso de una miniatura, compartida por todos los que la esperan
+     */
+    private static final class Load {
+        private final CompletableFuture<BufferedImage> shared = new CompletableFuture<>();
+        private int waiters = 0;
+    }
+
+    private static ThumbnailCache instance;
+
+    private final ConfigManager configManager;
+    private final File cacheDir;
+    private final ExecutorService executor;
+
+    // Miniaturas por URL y tamaño (LRU)
+    private final Map<String, BufferedImage> memory;
+
+    // Cargas en curso por URL y tamaño (protegido por su propio monitor)
+    private final Map<String, Load> pending = new HashMap<>();
+
+    /**
+     * Constructor privado para Singleton
+     */
+    private ThumbnailCache() {
+        this.configManager = ConfigManager.getInstance();
+        this.cacheDir = new File(configManager.getConfigDir(), CACHE_DIR_NAME);
+
+        int maxEntries = Math.max(1, configManager.getMainConfig("thumbnailCacheEntries", DEFAULT_CACHE_ENTRIES));
+        this.memory = Collections.synchronizedMap(new LinkedHashMap<String, BufferedImage>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, BufferedImage> eldest) {
+                return size() > maxEntries;
+            }
+        });
+
+        // Hilos daemon para no impedir la finalización de la aplicación
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(3, runnable -> {
+            Thread thread = new Thread(runnable, "thumbnail-loader-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Obtiene la instancia única de la caché de miniaturas
+     */
+    public static synchronized ThumbnailCache getInstance() {
+        if (instance == null) {
+            instance = new ThumbnailCache();
+        }
+        return instance;
+    }
+
+    /**
+     * Devuelve la miniatura si está en memoria, sin bloquear (apto para el EDT)
+     */
+    public BufferedImage getIfPresent(String url, int maxSize) {
+        return memory.get(keyOf(url, maxSize));
+    }
+
+    /**
+     * Carga la miniatura de la imagen ajustada a maxSize. Cada llamada devuelve su
+     * propio future; cancelarlo indica que ya no se necesita, y la descarga se
+     * cancela cuando no queda nadie esperándola.
+     */
+    public CompletableFuture<BufferedImage> load(String url, int maxSize) {
+        String key = keyOf(url, maxSize);
+        BufferedImage cached = memory.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        Load load;
+        boolean created = false;
+        synchronized (pending) {
+            load = pending.get(key);
+            if (load == null) {
+                load = new Load();
+                pending.put(key, load);
+                created = true;
+            }
+            load.waiters++;
+        }
+
+        Load current = load;
+        CompletableFuture<BufferedImage> result = new CompletableFuture<>();
+        current.shared.whenComplete((image, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(image);
+            }
+        });
+        result.whenComplete((image, error) -> {
+            if (result.isCancelled()) {
+                release(key, current);
+            }
+        });
+
+        if (created) {
+            executor.execute(() -> run(key, url, maxSize, current));
+        }
+        return result;
+    }
+
+    /**
+     * Retira a un interesado de la carga y la cancela si era el último
+     */
+    private void release(String key, Load load) {
+        synchronized (pending) {
+            if (--load.waiters > 0) {
+                return;
+            }
+            pending.remove(key, load);
+        }
+        load.shared.cancel(false);
+    }
+
+    private void run(String key, String url, int maxSize, Load load) {
+        try {
+            // Cancelada mientras esperaba en la cola
+            if (load.shared.isDone()) {
+                return;
+            }
+
+            File cacheFile = cacheFileFor(key);
+            BufferedImage thumbnail = readFromDisk(cacheFile);
+            if (thumbnail == null) {
+                byte[] data = download(url, load);
+                thumbnail = createThumbnail(data, url, maxSize);
+                writeToDisk(thumbnail, cacheFile);
+            }
+
+            memory.put(key, thumbnail);
+            load.shared.complete(thumbnail);
+        } catch (CancellationException e) {
+            logger.debug("Descarga de miniatura cancelada: {}", url);
+        } catch (Throwable e) {
+            load.shared.completeExceptionally(e);
+        } finally {
+            synchronized (pending) {
+                pending.remove(key, load);
+            }
+        }
+    }
+
+    /**
+     * Descarga la imagen completa, comprobando entre bloques si la carga se ha cancelado
+     */
+    private byte[] download(String url, Load load) throws IOException {
+        URLConnection connection = new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        byte[] buffer = new byte[16 * 1024];
+        try (InputStream input = connection.getInputStream()) {
+            int n;
+            while ((n = input.read(buffer)) > 0) {
+                if (load.shared.isCancelled()) {
+                    throw new CancellationException();
+                }
+                data.write(buffer, 0, n);
+                if (data.size() > MAX_DOWNLOAD_BYTES) {
+                    throw new IOException("La imagen supera el tamaño máximo de descarga: " + url);
+                }
+            }
+        }
+        return data.toByteArray();
+    }
+
+    /**
+     * Decodifica la imagen con submuestreo y la escala para que quepa en maxSize
+     */
+    private static BufferedImage createThumbnail(byte[] data, String url, int maxSize) throws IOException {
+        BufferedImage image;
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            // El doble de resolución antes del escalado final mantiene la calidad del bicúbico
+            image = ImagePipeline.readPreview(input, url, maxSize * 2);
+        }
+        if (image == null) {
+            throw new IOException("Formato de imagen no soportado: " + url);
+        }
+
+        // Redimensionar la imagen manteniendo la proporción
+        double scale = Math.min(
+                (double) maxSize / image.getWidth(),
+                (double) maxSize / image.getHeight()
+        );
+        int width = Math.max(1, (int) (image.getWidth() * scale));
+        int height = Math.max(1, (int) (image.getHeight() * scale));
+
+        BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = thumbnail.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return thumbnail;
+    }
+
+    private BufferedImage readFromDisk(File cacheFile) {
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+        try {
+            BufferedImage image = ImageIO.read(cacheFile);
+            // Marcar como usada para que la limpieza elimine primero las que no se usan
+            cacheFile.setLastModified(System.currentTimeMillis());
+            return image;
+        } catch (IOException e) {
+            logger.warn("Miniatura en caché ilegible, se descarga de nuevo: {}", cacheFile.getName());
+            return null;
+        }
+    }
+
+    private void writeToDisk(BufferedImage thumbnail, File cacheFile) {
+        try {
+            if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+                throw new IOException("No se pudo crear el directorio de caché: " + cacheDir.getPath());
+            }
+
+            // Escribir en un temporal y renombrar para no dejar un archivo a medias
+            File tempFile = new File(cacheFile.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+            ImageIO.write(thumbnail, "png", tempFile);
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+            long maxBytes = configManager.getMainConfig("thumbnailCacheMaxMb", DEFAULT_CACHE_MAX_MB) * 1024L * 1024L;
+            CacheFiles.trim(cacheDir, maxBytes, cacheFile);
+        } catch (IOException e) {
+            // La miniatura sigue en memoria; solo se pierde la copia en disco
+            logger.warn("No se pudo guardar la miniatura en caché: {}", e.getMessage());
+        }
+    }
+
+    private File cacheFileFor(String key) {
+        return new File(cacheDir, CacheFiles.sha256Hex(key) + ".png");
+    }
+
+    private static String keyOf(String url, int maxSize) {
+        return maxSize + "|" + url;
+    }
+}